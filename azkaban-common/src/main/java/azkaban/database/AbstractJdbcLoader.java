@@ -18,6 +18,7 @@ package azkaban.database;
 
 import java.io.IOException;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
@@ -29,11 +30,14 @@ import org.apache.commons.dbutils.ResultSetHandler;
 import azkaban.utils.Props;
 
 public abstract class AbstractJdbcLoader {
+  private static final int STREAMING_FETCH_SIZE = 1000;
+
   /**
-   * Used for when we store text data. Plain uses UTF8 encoding.
+   * Used for when we store text data. Plain uses UTF8 encoding. Binary is the
+   * compressed form of BinaryObjectUtils, for data stored as JSON objects.
    */
   public static enum EncodingType {
-    PLAIN(1), GZIP(2);
+    PLAIN(1), GZIP(2), BINARY(3);
 
     private int numVal;
 
@@ -51,6 +55,8 @@ public abstract class AbstractJdbcLoader {
         return PLAIN;
       case 2:
         return GZIP;
+      case 3:
+        return BINARY;
       default:
         return PLAIN;
       }
@@ -80,6 +86,29 @@ public abstract class AbstractJdbcLoader {
     return new QueryRunner(dataSource);
   }
 
+  /**
+   * Query runner for result sets that are handled one row at a time. The
+   * driver hands rows over as the database sends them, instead of reading
+   * the whole result set into memory first.
+   */
+  protected QueryRunner createStreamingQueryRunner() {
+    final boolean isMySQL = "mysql".equals(dataSource.getDBType());
+    return new QueryRunner(dataSource) {
+      @Override
+      protected PreparedStatement prepareStatement(Connection conn, String sql)
+          throws SQLException {
+        PreparedStatement statement =
+            conn.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY,
+                ResultSet.CONCUR_READ_ONLY);
+        // MySQL's driver only streams with this special fetch size, others
+        // take the fetch size as a hint
+        statement.setFetchSize(isMySQL ? Integer.MIN_VALUE
+            : STREAMING_FETCH_SIZE);
+        return statement;
+      }
+    };
+  }
+
   protected boolean allowsOnDuplicateKey() {
     return dataSource.allowsOnDuplicateKey();
   }
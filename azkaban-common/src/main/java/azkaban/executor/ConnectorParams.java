@@ -34,6 +34,9 @@ public interface ConnectorParams {
   public static final String ATTACHMENTS_ACTION = "attachments";
   public static final String METADATA_ACTION = "metadata";
   public static final String RELOAD_JOBTYPE_PLUGINS_ACTION = "reloadJobTypePlugins";
+  // flows waiting to start on an executor, and taking one of them off it
+  public static final String QUEUED_FLOWS_ACTION = "queuedFlows";
+  public static final String REVOKE_ACTION = "revoke";
 
   public static final String MODIFY_EXECUTION_ACTION = "modifyExecution";
   public static final String MODIFY_EXECUTION_ACTION_TYPE = "modifyType";
@@ -46,6 +49,14 @@ public interface ConnectorParams {
   public static final String MODIFY_RESUME_JOBS = "resumeJobs";
   public static final String MODIFY_JOBS_LIST = "jobIds";
 
+  // log requests: raw sends the log as is with the range in the headers, wait
+  // is how long to wait for a log to grow in ms
+  public static final String LOG_RAW_PARAM = "raw";
+  public static final String LOG_WAIT_PARAM = "wait";
+  public static final String LOG_OFFSET_HEADER = "Azkaban-Log-Offset";
+  public static final String LOG_LENGTH_HEADER = "Azkaban-Log-Length";
+  public static final long MAX_LOG_WAIT_MS = 30 * 1000;
+
   public static final String START_PARAM = "start";
   public static final String END_PARAM = "end";
   public static final String STATUS_PARAM = "status";
@@ -58,6 +69,7 @@ public interface ConnectorParams {
   public static final String RESPONSE_ALIVE = "alive";
   public static final String RESPONSE_UPDATETIME = "lasttime";
   public static final String RESPONSE_UPDATED_FLOWS = "updated";
+  public static final String RESPONSE_QUEUED_FLOWS = "queued";
 
   public static final int NODE_NAME_INDEX = 0;
   public static final int NODE_STATUS_INDEX = 1;
@@ -77,6 +89,10 @@ public interface ConnectorParams {
   public static final String UPDATE_MAP_END_TIME = "endTime";
   public static final String UPDATE_MAP_NODES = "nodes";
 
+  public static final String PUSH_EXECUTOR_HOST_PARAM = "executorHost";
+  public static final String PUSH_EXECUTOR_PORT_PARAM = "executorPort";
+  public static final String PUSH_EXECUTOR_INFO_PARAM = "executorInfo";
+
   public static final String JMX_GET_MBEANS = "getMBeans";
   public static final String JMX_GET_MBEAN_INFO = "getMBeanInfo";
   public static final String JMX_GET_MBEAN_ATTRIBUTE = "getAttribute";
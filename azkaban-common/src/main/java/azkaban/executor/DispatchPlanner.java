@@ -0,0 +1,224 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import azkaban.executor.selector.Selector;
+
+/**
+ * Places queued flows on executors between executor info refreshes.
+ *
+ * The {@link ExecutorInfo} of each executor says what it had left at the
+ * last refresh: flow slots, memory and cpu. Every flow placed on an executor
+ * since is taken off what it has left, so the filters and comparators of the
+ * selector see the executors as they will be once the flows run, and a round
+ * can place many flows without asking the executors again. Flows go in queue
+ * order to the executor the selector likes best, which fills executors until
+ * the filters rule them out.
+ *
+ * What a flow is expected to take comes from its footprint, if it ran before
+ * and footprints are kept, and from the given defaults otherwise. Measured
+ * memory below the default is taken as the default. A flow whose memory was
+ * measured above it only goes to executors with that much memory left,
+ * unless no executor has that much in total.
+ *
+ * The executor infos are only changed through the planner, which is safe to
+ * use from the threads dispatching the flows.
+ */
+public class DispatchPlanner {
+  private final Selector<Executor, ExecutableFlow> selector;
+  private final long flowMemoryInMB;
+  private final double flowCpuUsage;
+  private final FlowFootprints footprints;
+  // executor id -> last time a flow was taken off what it has left
+  private final ConcurrentHashMap<Integer, Long> reserveTimes =
+    new ConcurrentHashMap<Integer, Long>();
+
+  /**
+   * @param selector       picks the executor of a flow, null if none fits
+   * @param flowMemoryInMB memory a flow is expected to take
+   * @param flowCpuUsage   cpu percentage a flow is expected to take
+   */
+  public DispatchPlanner(Selector<Executor, ExecutableFlow> selector,
+    long flowMemoryInMB, double flowCpuUsage) {
+    this(selector, flowMemoryInMB, flowCpuUsage, null);
+  }
+
+  /**
+   * @param footprints what flows took before, null to always use the defaults
+   */
+  public DispatchPlanner(Selector<Executor, ExecutableFlow> selector,
+    long flowMemoryInMB, double flowCpuUsage, FlowFootprints footprints) {
+    this.selector = selector;
+    this.flowMemoryInMB = flowMemoryInMB;
+    this.flowCpuUsage = flowCpuUsage;
+    this.footprints = footprints;
+  }
+
+  /**
+   * Picks the executor of the flow among the given ones and takes the flow
+   * off what it has left. Returns null if none of them fits.
+   */
+  public synchronized Executor select(ExecutableFlow flow,
+    Collection<Executor> executors) {
+    Collection<Executor> candidates = executors;
+    long measuredMemory = getMeasuredMemoryInMB(flow);
+    if (measuredMemory > 0) {
+      List<Executor> fitting = new ArrayList<Executor>();
+      boolean fitsAnywhere = false;
+      for (Executor executor : executors) {
+        ExecutorInfo info = executor.getExecutorInfo();
+        if (info == null) {
+          continue;
+        }
+        if (info.getRemainingMemoryInMB() >= measuredMemory) {
+          fitting.add(executor);
+        }
+        fitsAnywhere |= getTotalMemoryInMB(info) >= measuredMemory;
+      }
+      // a flow bigger than every executor still goes somewhere
+      if (fitsAnywhere) {
+        if (fitting.isEmpty()) {
+          return null;
+        }
+        candidates = fitting;
+      }
+    }
+
+    Executor executor = selector.getBest(candidates, flow);
+    if (executor != null) {
+      reserve(executor, flow);
+    }
+    return executor;
+  }
+
+  /**
+   * Whether the flow only goes to executors with its measured memory left, so
+   * it may fit nowhere while flows without measurements still do
+   */
+  public boolean isSizedByFootprint(ExecutableFlow flow) {
+    return getMeasuredMemoryInMB(flow) > 0;
+  }
+
+  /**
+   * Takes the flow off what the executor has left
+   */
+  public synchronized void reserve(Executor executor, ExecutableFlow flow) {
+    ExecutorInfo info = executor.getExecutorInfo();
+    if (info == null) {
+      return;
+    }
+    long now = System.currentTimeMillis();
+    adjust(info, 1, getMemoryInMB(flow), getCpuUsage(flow));
+    info.setLastDispatchedTime(now);
+    reserveTimes.put(executor.getId(), now);
+  }
+
+  /**
+   * Last time a flow was taken off what the executor has left, 0 if never.
+   * Executor infos sampled before don't count that flow.
+   */
+  public long getLastReserveTime(Executor executor) {
+    Long reserveTime = reserveTimes.get(executor.getId());
+    return reserveTime == null ? 0 : reserveTime;
+  }
+
+  /**
+   * Gives back what a flow that couldn't be dispatched to the executor took
+   */
+  public synchronized void release(Executor executor, ExecutableFlow flow) {
+    ExecutorInfo info = executor.getExecutorInfo();
+    if (info == null) {
+      return;
+    }
+    adjust(info, -1, -getMemoryInMB(flow), -getCpuUsage(flow));
+  }
+
+  /**
+   * Memory the flow is expected to take
+   */
+  public long getMemoryInMB(ExecutableFlow flow) {
+    long measuredMemory = getMeasuredMemoryInMB(flow);
+    if (measuredMemory >= 0) {
+      return measuredMemory;
+    }
+    // without measurements, jobs running at once are taken to need the
+    // default each
+    FlowFootprints.Footprint footprint = getFootprint(flow);
+    if (footprint != null && footprint.getParallelism() > 1) {
+      return Math.round(flowMemoryInMB * footprint.getParallelism());
+    }
+    return flowMemoryInMB;
+  }
+
+  /**
+   * Cpu the flow is expected to take
+   */
+  public double getCpuUsage(ExecutableFlow flow) {
+    FlowFootprints.Footprint footprint = getFootprint(flow);
+    if (footprint != null && footprint.getCpuLoad() >= 0) {
+      return footprint.getCpuLoad();
+    }
+    return flowCpuUsage;
+  }
+
+  /*
+   * Measurements below the default don't count, the memory of processes the
+   * executor couldn't see may be missing from them
+   */
+  private long getMeasuredMemoryInMB(ExecutableFlow flow) {
+    FlowFootprints.Footprint footprint = getFootprint(flow);
+    if (footprint == null || footprint.getPeakMemoryInMB() < flowMemoryInMB) {
+      return -1;
+    }
+    return footprint.getPeakMemoryInMB();
+  }
+
+  private FlowFootprints.Footprint getFootprint(ExecutableFlow flow) {
+    return footprints == null || flow == null ? null : footprints.get(flow);
+  }
+
+  private static long getTotalMemoryInMB(ExecutorInfo info) {
+    double remainingPercent = info.getRemainingMemoryPercent();
+    if (remainingPercent <= 0) {
+      return 0;
+    }
+    return (long) (info.getRemainingMemoryInMB() * 100 / remainingPercent);
+  }
+
+  private static void adjust(ExecutorInfo info, int flows, long memoryInMB,
+    double cpuUsage) {
+    info.setRemainingFlowCapacity(info.getRemainingFlowCapacity() - flows);
+    info.setNumberOfAssignedFlows(info.getNumberOfAssignedFlows() + flows);
+    info.setCpuUpsage(info.getCpuUsage() + cpuUsage);
+
+    // the executor only reports the memory it has left, its total follows
+    // from the percentage
+    long remainingMemory = info.getRemainingMemoryInMB();
+    double remainingPercent = info.getRemainingMemoryPercent();
+    if (remainingMemory > 0 && remainingPercent > 0) {
+      double totalMemory = remainingMemory * 100 / remainingPercent;
+      info.setRemainingMemoryPercent(remainingPercent - memoryInMB * 100
+        / totalMemory);
+    }
+    info.setRemainingMemoryInMB(remainingMemory - memoryInMB);
+  }
+}
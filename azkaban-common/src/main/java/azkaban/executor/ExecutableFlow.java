@@ -34,6 +34,8 @@ public class ExecutableFlow extends ExecutableFlowBase {
   public static final String PROJECTNAME_PARAM = "projectName";
   public static final String LASTMODIFIEDTIME_PARAM = "lastModfiedTime";
   public static final String LASTMODIFIEDUSER_PARAM = "lastModifiedUser";
+  public static final String PEAKMEMORY_PARAM = "peakMemoryInMB";
+  public static final String CPUSECONDS_PARAM = "cpuSeconds";
 
 
   private int executionId = -1;
@@ -46,6 +48,9 @@ public class ExecutableFlow extends ExecutableFlowBase {
   private long lastModifiedTimestamp;
   private String submitUser;
   private String executionPath;
+  // measured by the executor, -1 if unknown
+  private long peakMemoryInMB = -1;
+  private long cpuSeconds = -1;
 
   private HashSet<String> proxyUsers = new HashSet<String>();
   private ExecutionOptions executionOptions;
@@ -188,6 +193,28 @@ public class ExecutableFlow extends ExecutableFlowBase {
     this.submitTime = submitTime;
   }
 
+  /**
+   * Most memory the processes of the flow's jobs took at once, -1 if unknown
+   */
+  public long getPeakMemoryInMB() {
+    return peakMemoryInMB;
+  }
+
+  public void setPeakMemoryInMB(long peakMemoryInMB) {
+    this.peakMemoryInMB = peakMemoryInMB;
+  }
+
+  /**
+   * Cpu time the processes of the flow's jobs took, -1 if unknown
+   */
+  public long getCpuSeconds() {
+    return cpuSeconds;
+  }
+
+  public void setCpuSeconds(long cpuSeconds) {
+    this.cpuSeconds = cpuSeconds;
+  }
+
   @Override
   public Map<String, Object> toObject() {
     HashMap<String, Object> flowObj = new HashMap<String, Object>();
@@ -215,6 +242,13 @@ public class ExecutableFlow extends ExecutableFlowBase {
 
     flowObj.put(SUBMITTIME_PARAM, submitTime);
 
+    if (peakMemoryInMB >= 0) {
+      flowObj.put(PEAKMEMORY_PARAM, peakMemoryInMB);
+    }
+    if (cpuSeconds >= 0) {
+      flowObj.put(CPUSECONDS_PARAM, cpuSeconds);
+    }
+
     return flowObj;
   }
 
@@ -243,6 +277,8 @@ public class ExecutableFlow extends ExecutableFlowBase {
     this.lastModifiedTimestamp = flowObj.getLong(LASTMODIFIEDTIME_PARAM);
     this.lastModifiedUser = flowObj.getString(LASTMODIFIEDUSER_PARAM);
     this.submitTime = flowObj.getLong(SUBMITTIME_PARAM);
+    this.peakMemoryInMB = flowObj.getLong(PEAKMEMORY_PARAM, -1L);
+    this.cpuSeconds = flowObj.getLong(CPUSECONDS_PARAM, -1L);
 
     if (flowObj.containsKey(EXECUTIONOPTIONS_PARAM)) {
       this.executionOptions =
@@ -264,9 +300,27 @@ public class ExecutableFlow extends ExecutableFlowBase {
   public Map<String, Object> toUpdateObject(long lastUpdateTime) {
     Map<String, Object> updateData = super.toUpdateObject(lastUpdateTime);
     updateData.put(EXECUTIONID_PARAM, this.executionId);
+    if (peakMemoryInMB >= 0) {
+      updateData.put(PEAKMEMORY_PARAM, peakMemoryInMB);
+    }
+    if (cpuSeconds >= 0) {
+      updateData.put(CPUSECONDS_PARAM, cpuSeconds);
+    }
     return updateData;
   }
 
+  @Override
+  public void applyUpdateObject(TypedMapWrapper<String, Object> updateData,
+      List<ExecutableNode> updatedNodes) {
+    super.applyUpdateObject(updateData, updatedNodes);
+    if (updateData.containsKey(PEAKMEMORY_PARAM)) {
+      this.peakMemoryInMB = updateData.getLong(PEAKMEMORY_PARAM);
+    }
+    if (updateData.containsKey(CPUSECONDS_PARAM)) {
+      this.cpuSeconds = updateData.getLong(CPUSECONDS_PARAM);
+    }
+  }
+
   @Override
   public void resetForRetry() {
     super.resetForRetry();
@@ -114,6 +114,10 @@ public class ExecutableFlowBase extends ExecutableNode {
     return flowId;
   }
 
+  protected void setFlowId(String flowId) {
+    this.flowId = flowId;
+  }
+
   protected void setFlow(Project project, Flow flow) {
     this.flowId = flow.getId();
     flowProps.putAll(flow.getAllFlowProps());
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import azkaban.utils.FileIOUtils.LogData;
+
+/**
+ * Storage of the logs of flows and jobs. A log is identified by the execution
+ * id, the job's nested id (empty for the flow's own log) and the attempt, and
+ * is written in order as consecutive byte ranges.
+ *
+ * The store used by {@link JdbcExecutorLoader} is set with
+ * executor.log.store.class. The class needs a constructor taking Props. The
+ * execution_logs table is used if it isn't set.
+ */
+public interface ExecutionLogStore {
+
+  /**
+   * Stores length bytes of data as the part of the log that starts at
+   * startByte. Writing the same part again replaces it, so failed appends can
+   * be retried.
+   */
+  public void appendLog(int execId, String name, int attempt, int startByte,
+      byte[] data, int length) throws ExecutorManagerException;
+
+  /**
+   * Reads up to length bytes of the log from startByte, trimmed to whole
+   * UTF-8 characters.
+   *
+   * @return the logs read, or null if there is nothing stored at startByte
+   */
+  public LogData fetchLogs(int execId, String name, int attempt,
+      int startByte, int length) throws ExecutorManagerException;
+
+  /**
+   * Removes the logs written before the given time
+   *
+   * @return the number of log parts removed
+   */
+  public int removeLogsByTime(long millis) throws ExecutorManagerException;
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.log4j.Logger;
+
+import azkaban.server.AbstractServiceServlet;
+import azkaban.utils.JSONUtils;
+
+/**
+ * Receives execution status updates pushed by executors.
+ *
+ * The request body is a json object holding the executor host and port along
+ * with a list of update objects, the same ones an executor returns to an
+ * update poll, and optionally the executor statistics and the shared push
+ * secret. The response lists the execution ids this server isn't tracking as
+ * running, so the executor can resend their full state.
+ */
+public class ExecutionUpdateServlet extends AbstractServiceServlet {
+  private static final long serialVersionUID = 1L;
+  private static final Logger logger = Logger
+      .getLogger(ExecutionUpdateServlet.class);
+
+  private final ExecutorManager executorManager;
+
+  public ExecutionUpdateServlet(ExecutorManager executorManager) {
+    this.executorManager = executorManager;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public void doPost(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    HashMap<String, Object> respMap = new HashMap<String, Object>();
+    try {
+      Map<String, Object> body =
+          (Map<String, Object>) JSONUtils.parseJSONFromReader(req.getReader());
+      String host =
+          (String) body.get(ConnectorParams.PUSH_EXECUTOR_HOST_PARAM);
+      Integer port =
+          (Integer) body.get(ConnectorParams.PUSH_EXECUTOR_PORT_PARAM);
+      List<Map<String, Object>> updates =
+          (List<Map<String, Object>>) body
+              .get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
+      if (host == null || port == null) {
+        throw new ExecutorManagerException("Missing executor host or port");
+      }
+      executorManager.authorizePush(host,
+          (String) body.get(ConnectorParams.SHAREDTOKEN_PARAM),
+          req.getRemoteAddr());
+      if (updates == null) {
+        updates = new ArrayList<Map<String, Object>>();
+      }
+      Object infoObj = body.get(ConnectorParams.PUSH_EXECUTOR_INFO_PARAM);
+      ExecutorInfo info =
+          infoObj == null ? null : ExecutorInfo.fromJSONString(JSONUtils
+              .toJSON(infoObj));
+
+      List<Integer> notFound =
+          executorManager.handlePushedUpdates(host, port, updates, info);
+      respMap.put(ConnectorParams.STATUS_PARAM,
+          ConnectorParams.RESPONSE_SUCCESS);
+      respMap.put(ConnectorParams.RESPONSE_NOTFOUND, notFound);
+    } catch (Exception e) {
+      logger.error(e.getMessage(), e);
+      respMap.put(ConnectorParams.RESPONSE_ERROR, e.getMessage());
+    }
+    writeJSON(resp, respMap);
+  }
+}
@@ -20,6 +20,8 @@ import java.io.File;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonGenerator;
+
 import azkaban.executor.ExecutorLogEvent.EventType;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.Pair;
@@ -35,6 +37,12 @@ public interface ExecutorLoader {
   public Map<Integer, Pair<ExecutionReference, ExecutableFlow>> fetchActiveFlows()
       throws ExecutorManagerException;
 
+  /**
+   * The fetchFlowHistory methods return summaries of the executions, newest
+   * first. The summaries are read without the flow data, so they have the
+   * ids, submit info, schedule id, status and times of the executions but not
+   * their nodes or execution options. Use fetchExecutableFlow for the rest.
+   */
   public List<ExecutableFlow> fetchFlowHistory(int skip, int num)
       throws ExecutorManagerException;
 
@@ -48,6 +56,37 @@ public interface ExecutorLoader {
       String flowContains, String userNameContains, int status, long startData,
       long endData, int skip, int num) throws ExecutorManagerException;
 
+  /**
+   * Same as the filtered fetchFlowHistory, but pages by execution id rather
+   * than by offset: fetches up to num executions with an id lower than
+   * beforeExecId. A beforeExecId of -1 starts from the newest execution.
+   */
+  public List<ExecutableFlow> fetchFlowHistoryBefore(String projContain,
+      String flowContains, String userNameContains, int status, long startData,
+      long endData, int beforeExecId, int num) throws ExecutorManagerException;
+
+  /**
+   * Writes the summaries of the executions matching the filters to the
+   * generator as JSON objects, newest first, as the rows are read from the
+   * database. Up to num executions are written, starting after the cursor, or
+   * from the newest execution if the cursor is null.
+   *
+   * @return the cursor to fetch the next page from, or null if there are no
+   *         more executions
+   */
+  public HistoryCursor writeFlowHistory(JsonGenerator generator,
+      String projContain, String flowContains, String userNameContains,
+      int status, long startData, long endData, HistoryCursor cursor, int num)
+      throws ExecutorManagerException;
+
+  /**
+   * Writes the runs of a job to the generator as JSON objects, newest first,
+   * as the rows are read from the database. Same paging as writeFlowHistory.
+   */
+  public HistoryCursor writeJobHistory(JsonGenerator generator, int projectId,
+      String jobId, HistoryCursor cursor, int num)
+      throws ExecutorManagerException;
+
   /**
    * <pre>
    * Fetch all executors from executors table
@@ -241,12 +280,29 @@ public interface ExecutorLoader {
   public void uploadLogFile(int execId, String name, int attempt, File... files)
       throws ExecutorManagerException;
 
+  /**
+   * Stores the part of a log starting at startByte, for logs that are
+   * uploaded bit by bit while they're written. See
+   * {@link ExecutionLogStore#appendLog}.
+   */
+  public void appendLog(int execId, String name, int attempt, int startByte,
+      byte[] data, int length) throws ExecutorManagerException;
+
   public void uploadAttachmentFile(ExecutableNode node, File file)
       throws ExecutorManagerException;
 
   public void updateExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException;
 
+  /**
+   * Persists the state of the flow's nodes updated after lastUpdateTime,
+   * along with the flow's own status, without rewriting the whole flow.
+   * Fetching the flow gives back the state with these updates applied, and the
+   * next updateExecutableFlow call replaces them.
+   */
+  public void appendExecutableFlowUpdate(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException;
+
   public void uploadExecutableNode(ExecutableNode node, Props inputParams)
       throws ExecutorManagerException;
 
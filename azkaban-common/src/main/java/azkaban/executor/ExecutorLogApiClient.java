@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import org.apache.http.Header;
+import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
+import org.apache.http.client.HttpResponseException;
+import org.apache.http.util.EntityUtils;
+
+import azkaban.utils.FileIOUtils.LogData;
+import azkaban.utils.JSONUtils;
+import azkaban.utils.RestfulApiClient;
+
+/**
+ * Client for the raw log requests to the executors, which send the log as
+ * plain text with its offset and length in the headers. Executors that don't
+ * know raw requests answer with the usual json log object, which is read
+ * instead.
+ */
+public class ExecutorLogApiClient extends RestfulApiClient<LogData> {
+  private static final ExecutorLogApiClient instance =
+      new ExecutorLogApiClient();
+
+  private ExecutorLogApiClient() {
+  }
+
+  public static ExecutorLogApiClient getInstance() {
+    return instance;
+  }
+
+  @Override
+  protected LogData parseResponse(HttpResponse response)
+      throws HttpResponseException, IOException {
+    final StatusLine statusLine = response.getStatusLine();
+    if (statusLine.getStatusCode() >= 300) {
+      if (response.getEntity() != null) {
+        EntityUtils.consume(response.getEntity());
+      }
+      throw new HttpResponseException(statusLine.getStatusCode(),
+          statusLine.getReasonPhrase());
+    }
+
+    byte[] data =
+        response.getEntity() != null ? EntityUtils.toByteArray(response
+            .getEntity()) : new byte[0];
+    if (response.getFirstHeader(ConnectorParams.LOG_LENGTH_HEADER) == null) {
+      return parseJsonLog(data);
+    }
+    int offset = getIntHeader(response, ConnectorParams.LOG_OFFSET_HEADER);
+    int length = getIntHeader(response, ConnectorParams.LOG_LENGTH_HEADER);
+    if (length != data.length) {
+      throw new IOException("Expected " + length + " bytes of log, got "
+          + data.length);
+    }
+
+    return new LogData(offset, length, new String(data,
+        StandardCharsets.UTF_8));
+  }
+
+  @SuppressWarnings("unchecked")
+  private static LogData parseJsonLog(byte[] data) throws IOException {
+    Object json =
+        JSONUtils.parseJSONFromString(new String(data, StandardCharsets.UTF_8));
+    if (!(json instanceof Map)) {
+      throw new IOException("Log response is neither raw nor a log object");
+    }
+    Map<String, Object> map = (Map<String, Object>) json;
+    if (map.containsKey(ConnectorParams.RESPONSE_ERROR)) {
+      throw new IOException((String) map.get(ConnectorParams.RESPONSE_ERROR));
+    }
+    return LogData.createLogDataFromObject(map);
+  }
+
+  private static int getIntHeader(HttpResponse response, String name)
+      throws IOException {
+    Header header = response.getFirstHeader(name);
+    if (header == null) {
+      throw new IOException("Log response is missing header " + name);
+    }
+    try {
+      return Integer.parseInt(header.getValue());
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid " + name + " " + header.getValue(), e);
+    }
+  }
+}
@@ -19,24 +19,32 @@ package azkaban.executor;
 import java.io.File;
 import java.io.IOException;
 import java.lang.Thread.State;
+import java.net.InetAddress;
 import java.net.URI;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -44,6 +52,7 @@ import java.util.stream.Stream;
 import com.google.common.collect.Lists;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
 import org.joda.time.DateTime;
 
 import azkaban.alert.Alerter;
@@ -59,8 +68,10 @@ import azkaban.scheduler.ScheduleStatisticManager;
 import azkaban.utils.FileIOUtils.JobMetaData;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.JSONUtils;
+import azkaban.utils.LatencyHistogram;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
+import azkaban.utils.Triple;
 
 /**
  * Executor manager used to manage the client side job.
@@ -86,7 +97,45 @@ public class ExecutorManager extends EventHandler implements
       "azkaban.executorinfo.refresh.maxThreads";
   private static final String AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED =
     "azkaban.maxDispatchingErrors";
+  private static final String AZKABAN_EXECUTOR_PUSH_STREAM_TIMEOUT_MS =
+    "azkaban.executor.push.stream.timeout.ms";
+  // secret executors send along with pushed updates. Without one, pushes are
+  // only taken from the address of the executor they claim to come from.
+  private static final String AZKABAN_EXECUTOR_PUSH_SECRET =
+    "azkaban.executor.push.secret";
+  private static final String AZKABAN_EXECUTOR_UPDATE_MAX_THREADS =
+    "azkaban.executor.update.maxThreads";
+  private static final String AZKABAN_EXECUTOR_UPDATE_TIMEOUT_MS =
+    "azkaban.executor.update.timeout.ms";
+  // flows whose updates failed are checked again after this interval, and
+  // evicted after this many failures in a row
+  private static final String AZKABAN_EXECUTOR_UPDATE_ERROR_INTERVAL_MS =
+    "azkaban.executor.update.error.interval.ms";
+  private static final String AZKABAN_EXECUTOR_UPDATE_MAX_ERRORS =
+    "azkaban.executor.update.max.errors";
+  // queued flows placed on executors in one dispatch round
+  private static final String AZKABAN_DISPATCH_BATCH_SIZE =
+    "azkaban.dispatch.batch.size";
+  private static final String AZKABAN_DISPATCH_MAX_THREADS =
+    "azkaban.dispatch.maxThreads";
+  // expected footprint of a flow, taken off what an executor has left until
+  // its executor info is refreshed
+  private static final String AZKABAN_DISPATCH_FLOW_MEMORY_IN_MB =
+    "azkaban.dispatch.flow.memory.mb";
+  private static final String AZKABAN_DISPATCH_FLOW_CPU_PERCENT =
+    "azkaban.dispatch.flow.cpu.percent";
+  // weight of the latest execution in what a flow is expected to take, 0 to
+  // always expect the defaults above
+  private static final String AZKABAN_DISPATCH_FOOTPRINT_WEIGHT =
+    "azkaban.dispatch.footprint.weight";
+  // how often flows waiting on busy executors are moved to idle ones, 0 never
+  // moves them
+  private static final String AZKABAN_DISPATCH_REBALANCE_INTERVAL_MS =
+    "azkaban.dispatch.rebalance.interval.ms";
+  private static final String AZKABAN_DISPATCH_REBALANCE_MAX_FLOWS =
+    "azkaban.dispatch.rebalance.max.flows";
   private static final int AZKABAN_HTTP_REQUEST_EXECID_LIMIT = 100;
+  private static final long DEFAULT_PUSH_STREAM_TIMEOUT_MS = 15000;
 
   private static Logger logger = Logger.getLogger(ExecutorManager.class);
   private ExecutorLoader executorLoader;
@@ -97,11 +146,32 @@ public class ExecutorManager extends EventHandler implements
       new ConcurrentHashMap<Integer, Pair<ExecutionReference, ExecutableFlow>>();
   private ConcurrentHashMap<Integer, ExecutableFlow> recentlyFinished =
       new ConcurrentHashMap<Integer, ExecutableFlow>();
+  // queued and running flows by flow, executor and user, from submission till
+  // they're moved to recentlyFinished
+  private final RunningFlowRegistry runningFlowRegistry =
+      new RunningFlowRegistry();
+
+  // executor id -> last time that executor pushed updates (or a heartbeat).
+  // Executors with a live push stream are not polled by the updater thread.
+  private final ConcurrentHashMap<Integer, Long> lastUpdatePushTimes =
+      new ConcurrentHashMap<Integer, Long>();
+  // executor id -> last statistics pushed by that executor and the time they
+  // arrived. Executors with a live push stream are not asked for their
+  // statistics on refresh.
+  private final ConcurrentHashMap<Integer, Pair<ExecutorInfo, Long>> pushedExecutorInfos =
+      new ConcurrentHashMap<Integer, Pair<ExecutorInfo, Long>>();
+  // executors push the statistics they cached up to this long before
+  private static final long PUSHED_EXECUTOR_INFO_MAX_AGE_MS = 1000;
+  // serializes applying updates between the updater thread and pushes
+  private final Object executionUpdateLock = new Object();
+  private long pushStreamTimeoutMs = DEFAULT_PUSH_STREAM_TIMEOUT_MS;
+  private final String pushSecret;
 
   QueuedExecutions queuedFlows;
 
   final private Set<Executor> activeExecutors = new HashSet<Executor>();
   private QueueProcessorThread queueProcessor;
+  private final AtomicLong numRebalancedFlows = new AtomicLong();
 
   private ExecutingManagerUpdaterThread executingManager;
   // 12 weeks
@@ -121,6 +191,21 @@ public class ExecutorManager extends EventHandler implements
   private Map<String, Integer> comparatorWeightsMap;
   private long lastSuccessfulExecutorInfoRefresh;
   private ExecutorService executorInforRefresherService;
+  private DispatchPlanner dispatchPlanner;
+  // what finished flows took, null if not kept
+  private final FlowFootprints flowFootprints;
+  // sends the flows of a dispatch round to their executors
+  private ExecutorService dispatcherService;
+
+  // fans out update calls of the updater thread to the executors
+  private ExecutorService executorUpdaterService;
+  private long updateTimeoutMs;
+  // executor id -> update calls submitted but not returned yet
+  private final ConcurrentHashMap<Integer, AtomicInteger> pendingUpdateCalls =
+      new ConcurrentHashMap<Integer, AtomicInteger>();
+  // host:port -> round trip times of update calls
+  private final ConcurrentHashMap<String, LatencyHistogram> updateRoundTrips =
+      new ConcurrentHashMap<String, LatencyHistogram>();
 
   private static final String DATADOG_ENABLED = "azkaban.alerter.datadog.enabled";
   private static final String POLARIS_DATADOG_ALERTER_NAME = "polaris-datadog-metrics";
@@ -132,6 +217,14 @@ public class ExecutorManager extends EventHandler implements
     this.alerters = alerters;
     this.azkProps = azkProps;
     this.executorLoader = loader;
+    this.pushStreamTimeoutMs =
+        azkProps.getLong(AZKABAN_EXECUTOR_PUSH_STREAM_TIMEOUT_MS,
+            DEFAULT_PUSH_STREAM_TIMEOUT_MS);
+    this.pushSecret = azkProps.getString(AZKABAN_EXECUTOR_PUSH_SECRET, null);
+    double footprintWeight =
+        azkProps.getDouble(AZKABAN_DISPATCH_FOOTPRINT_WEIGHT, 0.3);
+    this.flowFootprints =
+        footprintWeight > 0 ? new FlowFootprints(footprintWeight) : null;
     this.setupExecutors();
     this.loadRunningFlows();
 
@@ -141,6 +234,12 @@ public class ExecutorManager extends EventHandler implements
 
     cacheDir = new File(azkProps.getString("cache.directory", "cache"));
 
+    executorUpdaterService =
+        Executors.newFixedThreadPool(azkProps.getInt(
+          AZKABAN_EXECUTOR_UPDATE_MAX_THREADS, 10));
+    updateTimeoutMs =
+        azkProps.getLong(AZKABAN_EXECUTOR_UPDATE_TIMEOUT_MS, 10000);
+
     executingManager = new ExecutingManagerUpdaterThread();
     executingManager.start();
 
@@ -182,13 +281,25 @@ public class ExecutorManager extends EventHandler implements
         Executors.newFixedThreadPool(azkProps.getInt(
           AZKABAN_EXECUTORINFO_REFRESH_MAX_THREADS, 5));
 
+    dispatchPlanner =
+      new DispatchPlanner(new ExecutorSelector(filterList,
+        comparatorWeightsMap), azkProps.getLong(
+        AZKABAN_DISPATCH_FLOW_MEMORY_IN_MB, 512), azkProps.getDouble(
+        AZKABAN_DISPATCH_FLOW_CPU_PERCENT, 0), flowFootprints);
+    dispatcherService =
+      Executors.newFixedThreadPool(azkProps.getInt(
+        AZKABAN_DISPATCH_MAX_THREADS, 10));
+
     // configure queue processor
     queueProcessor =
       new QueueProcessorThread(azkProps.getBoolean(
         AZKABAN_QUEUEPROCESSING_ENABLED, true), azkProps.getLong(
         AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_MS, 50000), azkProps.getInt(
         AZKABAN_ACTIVE_EXECUTOR_REFRESH_IN_NUM_FLOW, 5), azkProps.getInt(
-        AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED, activeExecutors.size()));
+        AZKABAN_MAX_DISPATCHING_ERRORS_PERMITTED, activeExecutors.size()),
+        azkProps.getInt(AZKABAN_DISPATCH_BATCH_SIZE, 100), azkProps.getLong(
+        AZKABAN_DISPATCH_REBALANCE_INTERVAL_MS, 10000), azkProps.getInt(
+        AZKABAN_DISPATCH_REBALANCE_MAX_FLOWS, 10));
 
     queueProcessor.start();
   }
@@ -250,13 +361,28 @@ public class ExecutorManager extends EventHandler implements
       List<Pair<Executor, Future<String>>> futures =
         new ArrayList<Pair<Executor, Future<String>>>();
       for (final Executor executor : activeExecutors) {
-        // execute each executorInfo refresh task to fetch
+        ExecutorInfo pushedInfo = getPushedExecutorInfo(executor);
+        if (pushedInfo != null) {
+          // statistics that may have been sampled before the planner last
+          // placed a flow here don't count it, the planner's account stands
+          // until newer ones arrive
+          if (executor.getExecutorInfo() == null
+            || !pushedInfoPredatesReservations(executor)) {
+            executor.setExecutorInfo(pushedInfo);
+          }
+          continue;
+        }
+
+        // execute each executorInfo refresh task to fetch. The executor
+        // caches its statistics, which wouldn't count the flows dispatched
+        // to it since.
         Future<String> fetchExecutionInfo =
           executorInforRefresherService.submit(new Callable<String>() {
             @Override
             public String call() throws Exception {
               return callExecutorForJsonString(executor.getHost(),
-                executor.getPort(), "/serverStatistics", null);
+                executor.getPort(), "/serverStatistics", Arrays.asList(
+                  new Pair<String, String>("nocache", "true")));
             }
           });
         futures.add(new Pair<Executor, Future<String>>(executor,
@@ -351,6 +477,53 @@ public class ExecutorManager extends EventHandler implements
     return this.lastSuccessfulExecutorInfoRefresh;
   }
 
+  /**
+   * Number of queued flows dispatched to executors since start up
+   *
+   * @return
+   */
+  public long getNumDispatchedFlows() {
+    return isMultiExecutorMode() ? queueProcessor.getNumDispatched() : 0;
+  }
+
+  /**
+   * Queued flows dispatched per second over the last minute
+   *
+   * @return
+   */
+  public double getDispatchRate() {
+    return isMultiExecutorMode() ? queueProcessor.getDispatchRate() : 0;
+  }
+
+  /**
+   * Number of flows dispatched by the last dispatch round
+   *
+   * @return
+   */
+  public int getLastDispatchRoundSize() {
+    return isMultiExecutorMode() ? queueProcessor.getLastRoundSize() : 0;
+  }
+
+  /**
+   * Time the last dispatch round took, from taking the flows off the queue
+   * till all of them were dispatched
+   *
+   * @return
+   */
+  public long getLastDispatchRoundTimeMs() {
+    return isMultiExecutorMode() ? queueProcessor.getLastRoundTimeMs() : 0;
+  }
+
+  /**
+   * Number of flows moved from the queue of a busy executor to an idle one
+   * since start up
+   *
+   * @return
+   */
+  public long getNumRebalancedFlows() {
+    return numRebalancedFlows.get();
+  }
+
   /**
    * Get currently supported Comparators available to use via azkaban.properties
    *
@@ -442,6 +615,9 @@ public class ExecutorManager extends EventHandler implements
 
   private void loadRunningFlows() throws ExecutorManagerException {
     runningFlows.putAll(executorLoader.fetchActiveFlows());
+    for (Pair<ExecutionReference, ExecutableFlow> pair : runningFlows.values()) {
+      runningFlowRegistry.add(pair.getSecond(), pair.getFirst().getExecutor());
+    }
   }
 
   /*
@@ -454,6 +630,7 @@ public class ExecutorManager extends EventHandler implements
     if (retrievedExecutions != null) {
       for (Pair<ExecutionReference, ExecutableFlow> pair : retrievedExecutions) {
         queuedFlows.enqueue(pair.getSecond(), pair.getFirst());
+        runningFlowRegistry.add(pair.getSecond(), null);
       }
     }
   }
@@ -468,26 +645,22 @@ public class ExecutorManager extends EventHandler implements
    */
   @Override
   public List<Integer> getRunningFlows(int projectId, String flowId) {
-    List<Integer> executionIds = new ArrayList<Integer>();
-    executionIds.addAll(getRunningFlowsHelper(projectId, flowId,
-      queuedFlows.getAllEntries()));
-    executionIds.addAll(getRunningFlowsHelper(projectId, flowId,
-      runningFlows.values()));
-    Collections.sort(executionIds);
-    return executionIds;
+    return runningFlowRegistry.getExecutionIds(projectId, flowId);
   }
 
-  /* Helper method for getRunningFlows */
-  private List<Integer> getRunningFlowsHelper(int projectId, String flowId,
-    Collection<Pair<ExecutionReference, ExecutableFlow>> collection) {
-    List<Integer> executionIds = new ArrayList<Integer>();
-    for (Pair<ExecutionReference, ExecutableFlow> ref : collection) {
-      if (ref.getSecond().getFlowId().equals(flowId)
-        && ref.getSecond().getProjectId() == projectId) {
-        executionIds.add(ref.getFirst().getExecId());
-      }
-    }
-    return executionIds;
+  /**
+   * Execution ids of the flows dispatched to the executor and not finished,
+   * sorted
+   */
+  public List<Integer> getRunningFlows(Executor executor) {
+    return runningFlowRegistry.getExecutionIdsOfExecutor(executor.getId());
+  }
+
+  /**
+   * Execution ids of the queued or running flows the user submitted, sorted
+   */
+  public List<Integer> getRunningFlowsOfUser(String user) {
+    return runningFlowRegistry.getExecutionIdsOfUser(user);
   }
 
   /**
@@ -525,26 +698,7 @@ public class ExecutorManager extends EventHandler implements
    */
   @Override
   public boolean isFlowRunning(int projectId, String flowId) {
-    boolean isRunning = false;
-    isRunning =
-      isRunning
-        || isFlowRunningHelper(projectId, flowId, queuedFlows.getAllEntries());
-    isRunning =
-      isRunning
-        || isFlowRunningHelper(projectId, flowId, runningFlows.values());
-    return isRunning;
-  }
-
-  /* Search a running flow in a collection */
-  private boolean isFlowRunningHelper(int projectId, String flowId,
-    Collection<Pair<ExecutionReference, ExecutableFlow>> collection) {
-    for (Pair<ExecutionReference, ExecutableFlow> ref : collection) {
-      if (ref.getSecond().getProjectId() == projectId
-        && ref.getSecond().getFlowId().equals(flowId)) {
-        return true;
-      }
-    }
-    return false;
+    return runningFlowRegistry.hasFlow(projectId, flowId);
   }
 
   /**
@@ -666,6 +820,33 @@ public class ExecutorManager extends EventHandler implements
     return flows;
   }
 
+  @Override
+  public List<ExecutableFlow> getExecutableFlowsBefore(String projContain,
+      String flowContain, String userContain, int status, long begin, long end,
+      int beforeExecId, int size) throws ExecutorManagerException {
+    List<ExecutableFlow> flows =
+        executorLoader.fetchFlowHistoryBefore(projContain, flowContain,
+            userContain, status, begin, end, beforeExecId, size);
+    return flows;
+  }
+
+  @Override
+  public HistoryCursor writeExecutableFlows(JsonGenerator generator,
+      String projContain, String flowContain, String userContain, int status,
+      long begin, long end, HistoryCursor cursor, int size)
+      throws ExecutorManagerException {
+    return executorLoader.writeFlowHistory(generator, projContain,
+        flowContain, userContain, status, begin, end, cursor, size);
+  }
+
+  @Override
+  public HistoryCursor writeExecutableJobs(JsonGenerator generator,
+      Project project, String jobId, HistoryCursor cursor, int size)
+      throws ExecutorManagerException {
+    return executorLoader.writeJobHistory(generator, project.getId(), jobId,
+        cursor, size);
+  }
+
   @Override
   public List<ExecutableJobInfo> getExecutableJobs(Project project,
       String jobId, int skip, int size) throws ExecutorManagerException {
@@ -698,11 +879,8 @@ public class ExecutorManager extends EventHandler implements
       Pair<String, String> lengthParam =
           new Pair<String, String>("length", String.valueOf(length));
 
-      @SuppressWarnings("unchecked")
-      Map<String, Object> result =
-          callExecutorServer(pair.getFirst(), ConnectorParams.LOG_ACTION,
-              typeParam, offsetParam, lengthParam);
-      return LogData.createLogDataFromObject(result);
+      return callExecutorForLog(pair.getFirst(), typeParam, offsetParam,
+          lengthParam);
     } else {
       LogData value =
           executorLoader.fetchLogs(exFlow.getExecutionId(), "", 0, offset,
@@ -714,6 +892,13 @@ public class ExecutorManager extends EventHandler implements
   @Override
   public LogData getExecutionJobLog(ExecutableFlow exFlow, String jobId,
       int offset, int length, int attempt) throws ExecutorManagerException {
+    return getExecutionJobLog(exFlow, jobId, offset, length, attempt, 0);
+  }
+
+  @Override
+  public LogData getExecutionJobLog(ExecutableFlow exFlow, String jobId,
+      int offset, int length, int attempt, long waitMs)
+      throws ExecutorManagerException {
     Pair<ExecutionReference, ExecutableFlow> pair =
         runningFlows.get(exFlow.getExecutionId());
     if (pair != null) {
@@ -726,12 +911,12 @@ public class ExecutorManager extends EventHandler implements
           new Pair<String, String>("length", String.valueOf(length));
       Pair<String, String> attemptParam =
           new Pair<String, String>("attempt", String.valueOf(attempt));
+      Pair<String, String> waitParam =
+          new Pair<String, String>(ConnectorParams.LOG_WAIT_PARAM,
+              String.valueOf(Math.min(waitMs, ConnectorParams.MAX_LOG_WAIT_MS)));
 
-      @SuppressWarnings("unchecked")
-      Map<String, Object> result =
-          callExecutorServer(pair.getFirst(), ConnectorParams.LOG_ACTION,
-              typeParam, jobIdParam, offsetParam, lengthParam, attemptParam);
-      return LogData.createLogDataFromObject(result);
+      return callExecutorForLog(pair.getFirst(), typeParam, jobIdParam,
+          offsetParam, lengthParam, attemptParam, waitParam);
     } else {
       LogData value =
           executorLoader.fetchLogs(exFlow.getExecutionId(), jobId, attempt,
@@ -740,6 +925,32 @@ public class ExecutorManager extends EventHandler implements
     }
   }
 
+  /*
+   * Log requests skip the JSON encoding on both ends, the executor sends the
+   * log as is.
+   */
+  private LogData callExecutorForLog(ExecutionReference ref,
+      Pair<String, String>... params) throws ExecutorManagerException {
+    List<Pair<String, String>> paramList =
+        new ArrayList<Pair<String, String>>(Arrays.asList(params));
+    paramList.add(new Pair<String, String>(ConnectorParams.ACTION_PARAM,
+        ConnectorParams.LOG_ACTION));
+    paramList.add(new Pair<String, String>(ConnectorParams.EXECID_PARAM,
+        String.valueOf(ref.getExecId())));
+    paramList.add(new Pair<String, String>(ConnectorParams.LOG_RAW_PARAM,
+        "true"));
+
+    try {
+      @SuppressWarnings("unchecked")
+      URI uri =
+          ExecutorLogApiClient.buildUri(ref.getHost(), ref.getPort(),
+              "/executor", true, paramList.toArray(new Pair[0]));
+      return ExecutorLogApiClient.getInstance().httpGet(uri, null);
+    } catch (IOException e) {
+      throw new ExecutorManagerException(e);
+    }
+  }
+
   @Override
   public List<Object> getExecutionJobStats(ExecutableFlow exFlow, String jobId,
       int attempt) throws ExecutorManagerException {
@@ -1042,21 +1253,29 @@ public class ExecutorManager extends EventHandler implements
         ExecutionReference reference =
           new ExecutionReference(exflow.getExecutionId());
 
-        if (isMultiExecutorMode()) {
-          //Take MultiExecutor route
-          executorLoader.addActiveExecutableReference(reference);
-          queuedFlows.enqueue(exflow, reference);
-        } else {
-          // assign only local executor we have
-          Executor choosenExecutor = activeExecutors.iterator().next();
-          executorLoader.addActiveExecutableReference(reference);
-          try {
-            dispatch(reference, exflow, choosenExecutor);
-          } catch (ExecutorManagerException e) {
-            executorLoader.removeActiveExecutableReference(reference
-              .getExecId());
-            throw e;
+        // registered before it can be dispatched, and dropped again if it
+        // never gets that far
+        runningFlowRegistry.add(exflow, null);
+        try {
+          if (isMultiExecutorMode()) {
+            //Take MultiExecutor route
+            executorLoader.addActiveExecutableReference(reference);
+            queuedFlows.enqueue(exflow, reference);
+          } else {
+            // assign only local executor we have
+            Executor choosenExecutor = activeExecutors.iterator().next();
+            executorLoader.addActiveExecutableReference(reference);
+            try {
+              dispatch(reference, exflow, choosenExecutor);
+            } catch (ExecutorManagerException e) {
+              executorLoader.removeActiveExecutableReference(reference
+                .getExecId());
+              throw e;
+            }
           }
+        } catch (ExecutorManagerException e) {
+          runningFlowRegistry.remove(exflow.getExecutionId());
+          throw e;
         }
         message +=
           "Execution submitted successfully with exec id "
@@ -1227,8 +1446,76 @@ public class ExecutorManager extends EventHandler implements
   public void shutdown() {
     if (isMultiExecutorMode()) {
       queueProcessor.shutdown();
+      dispatcherService.shutdownNow();
     }
     executingManager.shutdown();
+    executorUpdaterService.shutdownNow();
+  }
+
+  /**
+   * Round trip times of the update calls made to each executor, by host:port
+   */
+  public Map<String, String> getExecutorUpdateRoundTrips() {
+    Map<String, String> roundTrips = new TreeMap<String, String>();
+    for (Map.Entry<String, LatencyHistogram> entry : updateRoundTrips
+        .entrySet()) {
+      roundTrips.put(entry.getKey(), entry.getValue().toString());
+    }
+    return roundTrips;
+  }
+
+  /*
+   * Asynchronously asks an executor for updates of a batch of executions,
+   * recording the round trip time of the call.
+   */
+  private Future<Map<String, Object>> submitUpdateCall(final Executor executor,
+      final Pair<String, String> executionIds,
+      final Pair<String, String> updateTimes) {
+    final AtomicInteger pending = getPendingUpdateCalls(executor);
+    pending.incrementAndGet();
+    try {
+      return executorUpdaterService.submit(new Callable<Map<String, Object>>() {
+        @Override
+        public Map<String, Object> call() throws Exception {
+          long startTime = System.currentTimeMillis();
+          try {
+            return callExecutorServer(executor.getHost(), executor.getPort(),
+                ConnectorParams.UPDATE_ACTION, null, null, executionIds,
+                updateTimes);
+          } finally {
+            getUpdateRoundTrips(executor).record(
+                System.currentTimeMillis() - startTime);
+            pending.decrementAndGet();
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      pending.decrementAndGet();
+      throw e;
+    }
+  }
+
+  private boolean hasPendingUpdateCalls(Executor executor) {
+    return getPendingUpdateCalls(executor).get() > 0;
+  }
+
+  private AtomicInteger getPendingUpdateCalls(Executor executor) {
+    AtomicInteger pending = pendingUpdateCalls.get(executor.getId());
+    if (pending == null) {
+      pendingUpdateCalls.putIfAbsent(executor.getId(), new AtomicInteger());
+      pending = pendingUpdateCalls.get(executor.getId());
+    }
+    return pending;
+  }
+
+  private LatencyHistogram getUpdateRoundTrips(Executor executor) {
+    String hostPort = executor.getHost() + ":" + executor.getPort();
+    LatencyHistogram histogram = updateRoundTrips.get(hostPort);
+    if (histogram == null) {
+      updateRoundTrips.putIfAbsent(hostPort, new LatencyHistogram());
+      histogram = updateRoundTrips.get(hostPort);
+    }
+    return histogram;
   }
 
   private class ExecutingManagerUpdaterThread extends Thread {
@@ -1236,6 +1523,11 @@ public class ExecutorManager extends EventHandler implements
 
     public ExecutingManagerUpdaterThread() {
       this.setName("ExecutorManagerUpdaterThread");
+      numErrors =
+          azkProps.getInt(AZKABAN_EXECUTOR_UPDATE_MAX_ERRORS, numErrors);
+      errorThreshold =
+          azkProps.getLong(AZKABAN_EXECUTOR_UPDATE_ERROR_INTERVAL_MS,
+              errorThreshold);
     }
 
     // 10 mins recently finished threshold.
@@ -1252,6 +1544,35 @@ public class ExecutorManager extends EventHandler implements
       shutdown = true;
     }
 
+    /*
+     * Backs off checking flows whose update failed, and gives up on them after
+     * numErrors failures in a row.
+     */
+    private void handleUpdateFailure(List<Integer> executionIds,
+        List<ExecutableFlow> finalizeFlows) {
+      for (Integer execId : executionIds) {
+        Pair<ExecutionReference, ExecutableFlow> pair = runningFlows.get(execId);
+        if (pair == null) {
+          continue;
+        }
+
+        updaterStage =
+            "Failed to get update. Doing some clean up for flow " + execId;
+
+        ExecutionReference ref = pair.getFirst();
+        int numErrors = ref.getNumErrors();
+        if (ref.getNumErrors() < this.numErrors) {
+          ref.setNextCheckTime(System.currentTimeMillis() + errorThreshold);
+          ref.setNumErrors(++numErrors);
+        } else {
+          logger.error("Evicting flow " + execId
+              + ". The executor is unresponsive.");
+          // TODO should send out an unresponsive email here.
+          finalizeFlows.add(pair.getSecond());
+        }
+      }
+    }
+
     @SuppressWarnings("unchecked")
     public void run() {
       while (!shutdown) {
@@ -1267,6 +1588,11 @@ public class ExecutorManager extends EventHandler implements
               new ArrayList<ExecutableFlow>();
 
           if (exFlowMap.size() > 0) {
+            // Updates are requested from all executors at once, so a round
+            // takes as long as the slowest executor instead of the sum.
+            long deadline = System.currentTimeMillis() + updateTimeoutMs;
+            List<Triple<Executor, List<Integer>, Future<Map<String, Object>>>> updateCalls =
+                new ArrayList<Triple<Executor, List<Integer>, Future<Map<String, Object>>>>();
             for (Map.Entry<Executor, List<ExecutableFlow>> entry : exFlowMap
                 .entrySet()) {
               List<Long> updateTimesList = new ArrayList<Long>();
@@ -1274,6 +1600,21 @@ public class ExecutorManager extends EventHandler implements
 
               Executor executor = entry.getKey();
 
+              if (hasPendingUpdateCalls(executor)) {
+                // Don't let a hung executor take over the update pool. It is
+                // picked up again once its earlier calls return. Until then
+                // its flows fail their updates, so they're evicted if it
+                // stays hung.
+                logger.warn("Skipping update of " + executor.getHost() + ":"
+                    + executor.getPort() + ", previous update still pending.");
+                List<Integer> skippedIds = new ArrayList<Integer>();
+                for (ExecutableFlow flow : entry.getValue()) {
+                  skippedIds.add(flow.getExecutionId());
+                }
+                handleUpdateFailure(skippedIds, finalizeFlows);
+                continue;
+              }
+
               updaterStage =
                   "Starting update flows on " + executor.getHost() + ":"
                       + executor.getPort();
@@ -1291,108 +1632,64 @@ public class ExecutorManager extends EventHandler implements
               logger.info(String.format("Updating %d executions, partitioned into %d calls",
                       executionIdsList.size(), executionIdsPartitions.size()));
 
-              List<Pair<String, String>> updateTimes =
-                  updateTimesPartitions.stream()
-                    .map(timesList ->
-                      new Pair<String, String>(ConnectorParams.UPDATE_TIME_LIST_PARAM,
-                          JSONUtils.toJSON(timesList)))
-                    .collect(Collectors.toList());
-              List<Pair<String, String>> executionIds =
-                  executionIdsPartitions.stream()
-                    .map(idList ->
-                      new Pair<String, String>(ConnectorParams.EXEC_ID_LIST_PARAM,
-                          JSONUtils.toJSON(idList)))
-                    .collect(Collectors.toList());
-
-              List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
-              for (int i = 0; i < updateTimes.size(); i++) {
-                try {
-                  results.add(callExecutorServer(executor.getHost(),
-                          executor.getPort(), ConnectorParams.UPDATE_ACTION,
-                          null, null, executionIds.get(i), updateTimes.get(i)));
-                } catch (IOException e) {
-                  logger.error(e);
-                  for (ExecutableFlow flow : entry.getValue()) {
-                    if (executionIdsPartitions.get(i).contains(flow.getExecutionId())) {
-                      Pair<ExecutionReference, ExecutableFlow> pair =
-                              runningFlows.get(flow.getExecutionId());
-
-                      updaterStage =
-                              "Failed to get update. Doing some clean up for flow "
-                                      + pair.getSecond().getExecutionId();
-
-                      if (pair != null) {
-                        ExecutionReference ref = pair.getFirst();
-                        int numErrors = ref.getNumErrors();
-                        if (ref.getNumErrors() < this.numErrors) {
-                          ref.setNextCheckTime(System.currentTimeMillis()
-                                  + errorThreshold);
-                          ref.setNumErrors(++numErrors);
-                        } else {
-                          logger.error("Evicting flow " + flow.getExecutionId()
-                                  + ". The executor is unresponsive.");
-                          // TODO should send out an unresponsive email here.
-                          finalizeFlows.add(pair.getSecond());
-                        }
-                      }
-                    }
-                  }
-                }
+              for (int i = 0; i < executionIdsPartitions.size(); i++) {
+                Pair<String, String> updateTimes =
+                    new Pair<String, String>(ConnectorParams.UPDATE_TIME_LIST_PARAM,
+                        JSONUtils.toJSON(updateTimesPartitions.get(i)));
+                Pair<String, String> executionIds =
+                    new Pair<String, String>(ConnectorParams.EXEC_ID_LIST_PARAM,
+                        JSONUtils.toJSON(executionIdsPartitions.get(i)));
+                updateCalls.add(new Triple<Executor, List<Integer>, Future<Map<String, Object>>>(
+                    executor, executionIdsPartitions.get(i),
+                    submitUpdateCall(executor, executionIds, updateTimes)));
               }
+            }
 
-              // We gets results
-              if (results != null) {
-                List<Map<String, Object>> executionUpdates =
-                    results.stream().flatMap(respMap -> {
-                    List<Map<String, Object>> updated =
-                        (List<Map<String, Object>>) respMap.get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
-                    return updated.stream();
-                    })
-                    .collect(Collectors.toList());
-                for (Map<String, Object> updateMap : executionUpdates) {
-                  try {
-                    ExecutableFlow flow = updateExecution(updateMap);
-
-                    updaterStage = "Updated flow " + flow.getExecutionId();
-
-                    if (isFinished(flow)) {
-                      finishedFlows.add(flow);
-                      finalizeFlows.add(flow);
-                    }
-                  } catch (ExecutorManagerException e) {
-                    ExecutableFlow flow = e.getExecutableFlow();
-                    logger.error(e);
-
-                    if (flow != null) {
-                      logger.error("Finalizing flow " + flow.getExecutionId());
-                      finalizeFlows.add(flow);
-                    }
-                  }
-                }
+            updaterStage =
+                "Waiting for " + updateCalls.size() + " update calls.";
+
+            List<Map<String, Object>> results = new ArrayList<Map<String, Object>>();
+            for (Triple<Executor, List<Integer>, Future<Map<String, Object>>> call : updateCalls) {
+              Executor executor = call.getFirst();
+              Future<Map<String, Object>> future = call.getThird();
+              try {
+                long remainingMs =
+                    Math.max(0, deadline - System.currentTimeMillis());
+                results.add(future.get(remainingMs, TimeUnit.MILLISECONDS));
+              } catch (TimeoutException e) {
+                // The call is left to finish on its own, the executor isn't
+                // asked again until it does.
+                logger.error("Timed out getting updates from "
+                    + executor.getHost() + ":" + executor.getPort());
+                handleUpdateFailure(call.getSecond(), finalizeFlows);
+              } catch (ExecutionException e) {
+                logger.error(e.getCause());
+                handleUpdateFailure(call.getSecond(), finalizeFlows);
               }
             }
 
+            // We gets results
+            List<Map<String, Object>> executionUpdates =
+                results.stream().flatMap(respMap -> {
+                List<Map<String, Object>> updated =
+                    (List<Map<String, Object>>) respMap.get(ConnectorParams.RESPONSE_UPDATED_FLOWS);
+                return updated.stream();
+                })
+                .collect(Collectors.toList());
+            synchronized (executionUpdateLock) {
+              applyExecutionUpdates(executionUpdates, finishedFlows,
+                  finalizeFlows);
+            }
+
             updaterStage = "Evicting old recently finished flows.";
 
             evictOldRecentlyFinished(recentlyFinishedLifetimeMs);
-            // Add new finished
-            for (ExecutableFlow flow : finishedFlows) {
-              if (flow.getScheduleId() >= 0
-                  && flow.getStatus() == Status.SUCCEEDED) {
-                ScheduleStatisticManager.invalidateCache(flow.getScheduleId(),
-                    cacheDir);
-              }
-              fireEventListeners(Event.create(flow, Type.FLOW_FINISHED));
-              recentlyFinished.put(flow.getExecutionId(), flow);
-            }
 
-            updaterStage =
-                "Finalizing " + finalizeFlows.size() + " error flows.";
-
-            // Kill error flows
-            for (ExecutableFlow flow : finalizeFlows) {
-              finalizeFlows(flow);
+            synchronized (executionUpdateLock) {
+              completeUpdatedFlows(finishedFlows, finalizeFlows);
             }
+          } else {
+            evictOldRecentlyFinished(recentlyFinishedLifetimeMs);
           }
 
           updaterStage = "Updated all active flows. Waiting for next round.";
@@ -1414,6 +1711,227 @@ public class ExecutorManager extends EventHandler implements
     }
   }
 
+  /*
+   * Applies status deltas reported by executors. Flows that reached a final
+   * state are collected in finishedFlows, and flows whose update was an error
+   * are collected in finalizeFlows.
+   */
+  private void applyExecutionUpdates(List<Map<String, Object>> executionUpdates,
+      List<ExecutableFlow> finishedFlows, List<ExecutableFlow> finalizeFlows) {
+    for (Map<String, Object> updateMap : executionUpdates) {
+      try {
+        ExecutableFlow flow = updateExecution(updateMap);
+
+        updaterStage = "Updated flow " + flow.getExecutionId();
+
+        if (isFinished(flow)) {
+          finishedFlows.add(flow);
+          finalizeFlows.add(flow);
+        }
+      } catch (ExecutorManagerException e) {
+        ExecutableFlow flow = e.getExecutableFlow();
+        logger.error(e);
+
+        if (flow != null) {
+          logger.error("Finalizing flow " + flow.getExecutionId());
+          finalizeFlows.add(flow);
+        }
+      }
+    }
+  }
+
+  /*
+   * Moves finished flows to recently finished and finalizes error flows. A flow
+   * may already have been completed through a push while a poll for it was in
+   * flight, so flows that are no longer running are skipped.
+   */
+  private void completeUpdatedFlows(List<ExecutableFlow> finishedFlows,
+      List<ExecutableFlow> finalizeFlows) {
+    // Add new finished
+    for (ExecutableFlow flow : finishedFlows) {
+      if (!runningFlows.containsKey(flow.getExecutionId())) {
+        continue;
+      }
+      if (flow.getScheduleId() >= 0
+          && flow.getStatus() == Status.SUCCEEDED) {
+        ScheduleStatisticManager.invalidateCache(flow.getScheduleId(),
+            cacheDir);
+      }
+      fireEventListeners(Event.create(flow, Type.FLOW_FINISHED));
+      recentlyFinished.put(flow.getExecutionId(), flow);
+      if (flowFootprints != null) {
+        flowFootprints.record(flow);
+      }
+    }
+
+    updaterStage =
+        "Finalizing " + finalizeFlows.size() + " error flows.";
+
+    // Kill error flows
+    for (ExecutableFlow flow : finalizeFlows) {
+      if (runningFlows.containsKey(flow.getExecutionId())) {
+        finalizeFlows(flow);
+      }
+    }
+  }
+
+  /**
+   * Applies a batch of execution updates pushed by an executor. Receiving a
+   * push, even an empty heartbeat, marks the executor's stream as live so the
+   * updater thread stops polling it until pushes stop arriving for
+   * azkaban.executor.push.stream.timeout.ms.
+   *
+   * @return execution ids in the batch that are not running on this server,
+   *         which the executor should send again in full
+   * @throws ExecutorManagerException if the executor is unknown
+   */
+  public List<Integer> handlePushedUpdates(String host, int port,
+      List<Map<String, Object>> executionUpdates)
+      throws ExecutorManagerException {
+    return handlePushedUpdates(host, port, executionUpdates, null);
+  }
+
+  /**
+   * Checks that a push claiming to come from the executor on the given host
+   * may be applied. When azkaban.executor.push.secret is set the push must
+   * carry the same secret, otherwise it must come from one of the host's
+   * addresses.
+   *
+   * @throws ExecutorManagerException if the push is not authorized
+   */
+  public void authorizePush(String host, String secret, String remoteAddr)
+      throws ExecutorManagerException {
+    if (pushSecret != null) {
+      if (secret == null
+          || !MessageDigest.isEqual(
+              pushSecret.getBytes(StandardCharsets.UTF_8),
+              secret.getBytes(StandardCharsets.UTF_8))) {
+        throw new ExecutorManagerException("Invalid push secret from "
+            + remoteAddr);
+      }
+      return;
+    }
+
+    try {
+      InetAddress remote = InetAddress.getByName(remoteAddr);
+      for (InetAddress address : InetAddress.getAllByName(host)) {
+        if (address.equals(remote)) {
+          return;
+        }
+      }
+    } catch (UnknownHostException e) {
+      throw new ExecutorManagerException("Failed to resolve pushing executor "
+          + host, e);
+    }
+    throw new ExecutorManagerException("Update for executor " + host
+        + " pushed from " + remoteAddr);
+  }
+
+  /**
+   * Applies updates pushed by an executor along with its statistics, if it
+   * sent them. Updates for flows the executor isn't running are dropped.
+   */
+  public List<Integer> handlePushedUpdates(String host, int port,
+      List<Map<String, Object>> executionUpdates, ExecutorInfo executorInfo)
+      throws ExecutorManagerException {
+    Executor executor = findExecutor(host, port);
+    if (executor == null) {
+      throw new ExecutorManagerException("Update pushed by unknown executor "
+          + host + ":" + port);
+    }
+    if (executorInfo != null) {
+      pushedExecutorInfos.put(executor.getId(),
+          new Pair<ExecutorInfo, Long>(executorInfo, System.currentTimeMillis()));
+    }
+    lastUpdatePushTimes.put(executor.getId(), System.currentTimeMillis());
+
+    List<Integer> unknownExecIds = new ArrayList<Integer>();
+    List<Map<String, Object>> knownUpdates =
+        new ArrayList<Map<String, Object>>();
+    for (Map<String, Object> updateMap : executionUpdates) {
+      Integer execId = (Integer) updateMap.get(ConnectorParams.UPDATE_MAP_EXEC_ID);
+      Pair<ExecutionReference, ExecutableFlow> running =
+          execId == null ? null : runningFlows.get(execId);
+      if (execId != null && running == null) {
+        unknownExecIds.add(execId);
+      } else if (running != null
+          && !isRunningOn(running.getFirst(), executor)) {
+        logger.warn("Dropping update of execution " + execId
+            + " pushed by executor " + executor.getId()
+            + " which is not running it");
+      } else {
+        knownUpdates.add(updateMap);
+      }
+    }
+
+    ArrayList<ExecutableFlow> finishedFlows = new ArrayList<ExecutableFlow>();
+    ArrayList<ExecutableFlow> finalizeFlows = new ArrayList<ExecutableFlow>();
+    synchronized (executionUpdateLock) {
+      applyExecutionUpdates(knownUpdates, finishedFlows, finalizeFlows);
+      completeUpdatedFlows(finishedFlows, finalizeFlows);
+    }
+    return unknownExecIds;
+  }
+
+  private static boolean isRunningOn(ExecutionReference ref,
+      Executor executor) {
+    return ref.getExecutor() != null
+        && ref.getExecutor().getId() == executor.getId();
+  }
+
+  /* Whether the executor pushed updates recently enough to skip polling it */
+  private boolean isPushStreamAlive(Executor executor) {
+    Long lastPushTime = lastUpdatePushTimes.get(executor.getId());
+    return lastPushTime != null
+        && System.currentTimeMillis() - lastPushTime < pushStreamTimeoutMs;
+  }
+
+  /*
+   * A copy of the last statistics the executor pushed, null if it doesn't
+   * push them or its push stream is down. The copy is the dispatcher's to
+   * change.
+   */
+  ExecutorInfo getPushedExecutorInfo(Executor executor) {
+    Pair<ExecutorInfo, Long> pushed = pushedExecutorInfos.get(executor.getId());
+    if (pushed == null || !isPushStreamAlive(executor)) {
+      return null;
+    }
+    ExecutorInfo info = pushed.getFirst();
+    return new ExecutorInfo(info.getRemainingMemoryPercent(),
+        info.getRemainingMemoryInMB(), info.getRemainingFlowCapacity(),
+        info.getLastDispatchedTime(), info.getCpuUsage(),
+        info.getNumberOfAssignedFlows());
+  }
+
+  /*
+   * Whether the statistics the executor last pushed may have been sampled
+   * before the dispatch planner last took a flow off what it has left
+   */
+  boolean pushedInfoPredatesReservations(Executor executor) {
+    Pair<ExecutorInfo, Long> pushed = pushedExecutorInfos.get(executor.getId());
+    return pushed != null
+        && pushed.getSecond() - PUSHED_EXECUTOR_INFO_MAX_AGE_MS <= dispatchPlanner
+            .getLastReserveTime(executor);
+  }
+
+  /* Find an executor either active or still running flows by host and port */
+  private Executor findExecutor(String host, int port) {
+    for (Executor executor : activeExecutors) {
+      if (executor.getHost().equals(host) && executor.getPort() == port) {
+        return executor;
+      }
+    }
+    for (Pair<ExecutionReference, ExecutableFlow> running : runningFlows
+        .values()) {
+      Executor executor = running.getFirst().getExecutor();
+      if (executor != null && executor.getHost().equals(host)
+          && executor.getPort() == port) {
+        return executor;
+      }
+    }
+    return null;
+  }
+
   private void finalizeFlows(ExecutableFlow flow) {
 
     int execId = flow.getExecutionId();
@@ -1448,6 +1966,7 @@ public class ExecutorManager extends EventHandler implements
 
       updaterStage = "finalizing flow " + execId + " cleaning from memory";
       runningFlows.remove(execId);
+      runningFlowRegistry.remove(execId);
       fireEventListeners(Event.create(dsFlow, Type.FLOW_FINISHED));
       recentlyFinished.put(execId, dsFlow);
 
@@ -1672,6 +2191,11 @@ public class ExecutorManager extends EventHandler implements
         continue;
       }
 
+      // Executors pushing their updates don't need to be polled.
+      if (executor != null && isPushStreamAlive(executor)) {
+        continue;
+      }
+
       List<ExecutableFlow> flows = exFlowMap.get(executor);
       if (flows == null) {
         flows = new ArrayList<ExecutableFlow>();
@@ -1782,35 +2306,220 @@ public class ExecutorManager extends EventHandler implements
     // move from flow to running flows
     runningFlows.put(exflow.getExecutionId(),
       new Pair<ExecutionReference, ExecutableFlow>(reference, exflow));
+    runningFlowRegistry.setExecutor(exflow.getExecutionId(), choosenExecutor);
 
     logger.info(String.format(
       "Successfully dispatched exec %d with error count %d",
       exflow.getExecutionId(), reference.getNumErrors()));
   }
 
+  /*
+   * What finished flows took, null if not kept
+   */
+  FlowFootprints getFlowFootprints() {
+    return flowFootprints;
+  }
+
+  /*
+   * Picks the executors of the given queued flows the way a dispatch round
+   * does, without dispatching them
+   */
+  List<Triple<ExecutionReference, ExecutableFlow, Executor>> placeFlows(
+    List<Pair<ExecutionReference, ExecutableFlow>> candidates,
+    Set<Executor> availableExecutors) {
+    return queueProcessor.placeFlows(candidates, availableExecutors);
+  }
+
+  /**
+   * Moves flows that wait to start on busy executors to executors with free
+   * flow slots, the ones waiting the longest first. Flows queued here go to
+   * the idle executors first, so nothing is moved while there are any.
+   *
+   * @return number of flows moved
+   */
+  int rebalanceQueuedFlows(int maxFlows) {
+    if (!queuedFlows.isEmpty()) {
+      return 0;
+    }
+
+    // busy executors with their remaining flow capacity
+    List<Pair<Executor, Integer>> busyExecutors =
+      new ArrayList<Pair<Executor, Integer>>();
+    Set<Executor> idleExecutors = new HashSet<Executor>();
+    synchronized (activeExecutors) {
+      for (Executor executor : activeExecutors) {
+        ExecutorInfo info = executor.getExecutorInfo();
+        if (info == null) {
+          continue;
+        }
+        // flows waiting on an executor take it below 0
+        if (info.getRemainingFlowCapacity() < 0) {
+          busyExecutors.add(new Pair<Executor, Integer>(executor, info
+            .getRemainingFlowCapacity()));
+        } else if (info.getRemainingFlowCapacity() > 0) {
+          idleExecutors.add(executor);
+        }
+      }
+    }
+    if (busyExecutors.isEmpty() || idleExecutors.isEmpty()) {
+      return 0;
+    }
+    // the most flows waiting first
+    busyExecutors.sort((a, b) -> Integer.compare(a.getSecond(), b.getSecond()));
+
+    int moved = 0;
+    for (Pair<Executor, Integer> busy : busyExecutors) {
+      Executor busyExecutor = busy.getFirst();
+      List<Integer> waitingIds;
+      try {
+        waitingIds = fetchQueuedExecutionIds(busyExecutor);
+      } catch (IOException e) {
+        logger.warn("Failed to fetch the flows waiting on " + busyExecutor, e);
+        continue;
+      }
+
+      // the last ones in the executor's queue wait the longest
+      for (int i = waitingIds.size() - 1; i >= 0 && moved < maxFlows; i--) {
+        Pair<ExecutionReference, ExecutableFlow> pair =
+          runningFlows.get(waitingIds.get(i));
+        if (pair == null || pair.getFirst().getExecutor() == null
+          || pair.getFirst().getExecutor().getId() != busyExecutor.getId()
+          || isPinnedToExecutor(pair.getSecond())) {
+          continue;
+        }
+
+        ExecutableFlow exflow = pair.getSecond();
+        Executor idleExecutor = dispatchPlanner.select(exflow, idleExecutors);
+        if (idleExecutor == null) {
+          return moved;
+        }
+        if (moveFlow(pair.getFirst(), exflow, busyExecutor, idleExecutor)) {
+          numRebalancedFlows.incrementAndGet();
+          moved++;
+        }
+      }
+    }
+    return moved;
+  }
+
+  /*
+   * Takes the flow off the executor it waits on and dispatches it to the other
+   * one, or queues it here if that fails. Returns whether it was moved.
+   */
+  private boolean moveFlow(ExecutionReference reference, ExecutableFlow exflow,
+    Executor from, Executor to) {
+    synchronized (exflow) {
+      try {
+        Map<String, Object> response =
+          callExecutorServer(exflow, from, ConnectorParams.REVOKE_ACTION);
+        if (response.containsKey(ConnectorParams.RESPONSE_ERROR)) {
+          // it started meanwhile
+          dispatchPlanner.release(to, exflow);
+          return false;
+        }
+      } catch (ExecutorManagerException e) {
+        logger.warn("Failed to revoke exec " + exflow.getExecutionId()
+          + " from " + from, e);
+        dispatchPlanner.release(to, exflow);
+        return false;
+      }
+      dispatchPlanner.release(from, exflow);
+
+      try {
+        dispatch(reference, exflow, to);
+        logger.info(String.format("Moved exec %d waiting on %s to %s",
+          exflow.getExecutionId(), from, to));
+        return true;
+      } catch (ExecutorManagerException e) {
+        logger.warn("Failed to move exec " + exflow.getExecutionId() + " to "
+          + to + ", queueing it", e);
+        dispatchPlanner.release(to, exflow);
+        runningFlows.remove(exflow.getExecutionId());
+        runningFlowRegistry.setExecutor(exflow.getExecutionId(), null);
+        try {
+          queuedFlows.enqueue(exflow, reference);
+        } catch (ExecutorManagerException ex) {
+          logger.error("Failed to queue exec " + exflow.getExecutionId(), ex);
+          finalizeFlows(exflow);
+        }
+        return false;
+      }
+    }
+  }
+
+  private List<Integer> fetchQueuedExecutionIds(Executor executor)
+    throws IOException {
+    Map<String, Object> response =
+      callExecutorServer(executor.getHost(), executor.getPort(),
+        ConnectorParams.QUEUED_FLOWS_ACTION, null, null);
+    List<Integer> execIds = new ArrayList<Integer>();
+    Object queued = response.get(ConnectorParams.RESPONSE_QUEUED_FLOWS);
+    if (queued instanceof List) {
+      for (Object execId : (List<?>) queued) {
+        execIds.add(((Number) execId).intValue());
+      }
+    }
+    return execIds;
+  }
+
+  private static boolean isPinnedToExecutor(ExecutableFlow exflow) {
+    ExecutionOptions options = exflow.getExecutionOptions();
+    return options != null && options.getFlowParameters() != null
+      && options.getFlowParameters().containsKey(ExecutionOptions.USE_EXECUTOR);
+  }
+
   /*
    * This thread is responsible for processing queued flows using dispatcher and
-   * making rest api calls to executor server
+   * making rest api calls to executor server.
+   *
+   * Flows are taken off the queue in rounds of up to dispatchBatchSize. A round
+   * places them on executors with the dispatch planner, which keeps track of
+   * what every executor has left since its executor info was refreshed, and
+   * then dispatches them concurrently. Flows which fit nowhere go back to the
+   * queue, so one of them doesn't hold up the rest of the round.
+   *
+   * Once the queue is empty, flows waiting on busy executors are moved to idle
+   * ones every rebalance interval. That runs here between rounds, so it
+   * doesn't refresh the executor infos under a round.
    */
   private class QueueProcessorThread extends Thread {
     private static final long QUEUE_PROCESSOR_WAIT_IN_MS = 1000;
+    // flows just dispatched take a while to show in the memory an executor
+    // reports, so executors that look full aren't refreshed more often
+    private static final long MIN_EARLY_REFRESH_INTERVAL_MS = 1000;
+    private static final long DISPATCH_RATE_WINDOW_MS = 60 * 1000;
     private final int maxDispatchingErrors;
     private final long activeExecutorRefreshWindowInMilisec;
     private final int activeExecutorRefreshWindowInFlows;
+    private final int dispatchBatchSize;
+    private final long rebalanceIntervalMs;
+    private final int rebalanceMaxFlows;
+    private long lastRebalanceTime = System.currentTimeMillis();
 
     private volatile boolean shutdown = false;
     private volatile boolean isActive = true;
 
+    // end time and number of dispatched flows of the recent rounds
+    private final LinkedList<Pair<Long, Integer>> recentRounds =
+      new LinkedList<Pair<Long, Integer>>();
+    private final AtomicLong numDispatched = new AtomicLong();
+    private volatile int lastRoundSize = 0;
+    private volatile long lastRoundTimeMs = 0;
+
     public QueueProcessorThread(boolean isActive,
       long activeExecutorRefreshWindowInTime,
       int activeExecutorRefreshWindowInFlows,
-      int maxDispatchingErrors) {
+      int maxDispatchingErrors, int dispatchBatchSize,
+      long rebalanceIntervalMs, int rebalanceMaxFlows) {
       setActive(isActive);
       this.maxDispatchingErrors = maxDispatchingErrors;
       this.activeExecutorRefreshWindowInFlows =
         activeExecutorRefreshWindowInFlows;
       this.activeExecutorRefreshWindowInMilisec =
         activeExecutorRefreshWindowInTime;
+      this.dispatchBatchSize = Math.max(1, dispatchBatchSize);
+      this.rebalanceIntervalMs = rebalanceIntervalMs;
+      this.rebalanceMaxFlows = rebalanceMaxFlows;
       this.setName("AzkabanWebServer-QueueProcessor-Thread");
     }
 
@@ -1828,6 +2537,29 @@ public class ExecutorManager extends EventHandler implements
       this.interrupt();
     }
 
+    public long getNumDispatched() {
+      return numDispatched.get();
+    }
+
+    public int getLastRoundSize() {
+      return lastRoundSize;
+    }
+
+    public long getLastRoundTimeMs() {
+      return lastRoundTimeMs;
+    }
+
+    public double getDispatchRate() {
+      synchronized (recentRounds) {
+        pruneRecentRounds(System.currentTimeMillis());
+        long dispatched = 0;
+        for (Pair<Long, Integer> round : recentRounds) {
+          dispatched += round.getSecond();
+        }
+        return dispatched * 1000.0 / DISPATCH_RATE_WINDOW_MS;
+      }
+    }
+
     public void run() {
       // Loops till QueueProcessorThread is shutdown
       while (!shutdown) {
@@ -1837,6 +2569,7 @@ public class ExecutorManager extends EventHandler implements
             if (isActive) {
               processQueuedFlows(activeExecutorRefreshWindowInMilisec,
                 activeExecutorRefreshWindowInFlows);
+              rebalanceIfDue();
             }
             wait(QUEUE_PROCESSOR_WAIT_IN_MS);
           } catch (Exception e) {
@@ -1847,84 +2580,226 @@ public class ExecutorManager extends EventHandler implements
       }
     }
 
+    /*
+     * Refreshes the executor infos and moves waiting flows to idle executors
+     * if the rebalance interval has passed
+     */
+    private void rebalanceIfDue() {
+      long currentTime = System.currentTimeMillis();
+      if (rebalanceIntervalMs <= 0
+        || currentTime - lastRebalanceTime < rebalanceIntervalMs
+        || !queuedFlows.isEmpty()) {
+        return;
+      }
+      lastRebalanceTime = currentTime;
+      try {
+        refreshExecutors();
+        int moved = rebalanceQueuedFlows(rebalanceMaxFlows);
+        if (moved > 0) {
+          logger.info("Moved " + moved + " flows to idle executors");
+        }
+      } catch (Throwable t) {
+        logger.error("Failed to rebalance flows waiting on executors", t);
+      }
+    }
+
+    /*
+     * Takes the next flows to dispatch off the queue. Waits no longer than
+     * until the next rebalance is due, returning none if the queue stayed
+     * empty.
+     */
+    private List<Pair<ExecutionReference, ExecutableFlow>> fetchCandidates()
+      throws InterruptedException {
+      if (rebalanceIntervalMs <= 0) {
+        return queuedFlows.fetchHeads(dispatchBatchSize);
+      }
+      long timeout =
+        lastRebalanceTime + rebalanceIntervalMs - System.currentTimeMillis();
+      return queuedFlows.fetchHeads(dispatchBatchSize, Math.max(1, timeout));
+    }
+
     /* Method responsible for processing the non-dispatched flows */
     private void processQueuedFlows(long activeExecutorsRefreshWindow,
       int maxContinuousFlowProcessed) throws InterruptedException,
       ExecutorManagerException {
       long lastExecutorRefreshTime = 0;
-      Pair<ExecutionReference, ExecutableFlow> runningCandidate;
       int currentContinuousFlowProcessed = 0;
+      boolean executorsFull = false;
+      List<Pair<ExecutionReference, ExecutableFlow>> candidates;
 
-      while (isActive() && (runningCandidate = queuedFlows.fetchHead()) != null) {
-        ExecutionReference reference = runningCandidate.getFirst();
-        ExecutableFlow exflow = runningCandidate.getSecond();
-
+      while (isActive()
+        && !(candidates = fetchCandidates()).isEmpty()) {
         long currentTime = System.currentTimeMillis();
 
-        // if we have dispatched more than maxContinuousFlowProcessed or
-        // It has been more then activeExecutorsRefreshWindow millisec since we
-        // refreshed
+        // if we have dispatched more than maxContinuousFlowProcessed, the
+        // executors looked full after dispatching flows, or It has been more
+        // then activeExecutorsRefreshWindow millisec since we refreshed
         if (currentTime - lastExecutorRefreshTime > activeExecutorsRefreshWindow
-          || currentContinuousFlowProcessed >= maxContinuousFlowProcessed) {
+          || currentContinuousFlowProcessed >= maxContinuousFlowProcessed
+          || (executorsFull && currentContinuousFlowProcessed > 0
+            && currentTime - lastExecutorRefreshTime
+              >= MIN_EARLY_REFRESH_INTERVAL_MS)) {
           // Refresh executorInfo for all activeExecutors
           refreshExecutors();
           lastExecutorRefreshTime = currentTime;
           currentContinuousFlowProcessed = 0;
         }
 
-        /**
-         * <pre>
-         *  TODO: Work around till we improve Filters to have a notion of GlobalSystemState.
-         *        Currently we try each queued flow once to infer a global busy state
-         * Possible improvements:-
-         *   1. Move system level filters in refreshExecutors and sleep if we have all executors busy after refresh
-         *   2. Implement GlobalSystemState in selector or in a third place to manage system filters. Basically
-         *      taking out all the filters which do not depend on the flow but are still being part of Selector.
-         * Assumptions:-
-         *   1. no one else except QueueProcessor is updating ExecutableFlow update time
-         *   2. re-attempting a flow (which has been tried before) is considered as all executors are busy
-         * </pre>
-         */
-        if(exflow.getUpdateTime() > lastExecutorRefreshTime) {
-          // put back in the queue
-          queuedFlows.enqueue(exflow, reference);
+        // process flows with current snapshot of activeExecutors
+        int processed =
+          dispatchRound(candidates, new HashSet<Executor>(activeExecutors));
+        currentContinuousFlowProcessed += processed;
+        executorsFull = processed < candidates.size();
+
+        if (processed == 0) {
+          // all executors are busy even as of the last refresh, wait till
+          // next executor refresh, or till they may be refreshed early if
+          // flows were dispatched since the last one
+          long refreshWindow =
+            currentContinuousFlowProcessed > 0 ? MIN_EARLY_REFRESH_INTERVAL_MS
+              : activeExecutorsRefreshWindow;
           long sleepInterval =
-            activeExecutorsRefreshWindow
-              - (currentTime - lastExecutorRefreshTime);
-          // wait till next executor refresh
-          sleep(sleepInterval);
-        } else {
-          exflow.setUpdateTime(currentTime);
-          // process flow with current snapshot of activeExecutors
-          selectExecutorAndDispatchFlow(reference, exflow, new HashSet<Executor>(activeExecutors));
+            refreshWindow
+              - (System.currentTimeMillis() - lastExecutorRefreshTime);
+          if (sleepInterval > 0) {
+            sleep(sleepInterval);
+          }
         }
+      }
+    }
+
+    /*
+     * Places the candidates on the available executors and dispatches them.
+     * Returns the number of candidates which left the queue, either dispatched
+     * or failed for good.
+     */
+    private int dispatchRound(
+      List<Pair<ExecutionReference, ExecutableFlow>> candidates,
+      final Set<Executor> availableExecutors) throws InterruptedException {
+      long startTime = System.currentTimeMillis();
+      List<Future<Boolean>> dispatches = new ArrayList<Future<Boolean>>();
+
+      for (Triple<ExecutionReference, ExecutableFlow, Executor> placement : placeFlows(
+        candidates, availableExecutors)) {
+        final ExecutionReference reference = placement.getFirst();
+        final ExecutableFlow exflow = placement.getSecond();
+        final Executor selectedExecutor = placement.getThird();
+        dispatches.add(dispatcherService.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() throws Exception {
+            return dispatchFlow(reference, exflow, selectedExecutor,
+              new HashSet<Executor>(availableExecutors));
+          }
+        }));
+      }
+
+      int dispatched = 0;
+      for (Future<Boolean> dispatch : dispatches) {
+        try {
+          if (dispatch.get()) {
+            dispatched++;
+          }
+        } catch (ExecutionException e) {
+          logger.error("Failed to process queued flow", e.getCause());
+        }
+      }
+      recordRound(startTime, dispatched);
 
-        // do not count failed flow processsing (flows still in queue)
-        if(queuedFlows.getFlow(exflow.getExecutionId()) == null) {
-          currentContinuousFlowProcessed++;
+      // do not count failed flow processsing (flows still in queue)
+      int processed = 0;
+      for (Pair<ExecutionReference, ExecutableFlow> candidate : candidates) {
+        if (!queuedFlows.hasExecution(candidate.getSecond().getExecutionId())) {
+          processed++;
         }
       }
+      return processed;
     }
 
-    /* process flow with a snapshot of available Executors */
-    private void selectExecutorAndDispatchFlow(ExecutionReference reference,
-      ExecutableFlow exflow, Set<Executor> availableExecutors)
-      throws ExecutorManagerException {
+    /*
+     * Picks the executor of each candidate, in queue order. Candidates which
+     * fit nowhere go back to the queue.
+     */
+    private List<Triple<ExecutionReference, ExecutableFlow, Executor>> placeFlows(
+      List<Pair<ExecutionReference, ExecutableFlow>> candidates,
+      Set<Executor> availableExecutors) {
+      long updateTime = System.currentTimeMillis();
+      List<Triple<ExecutionReference, ExecutableFlow, Executor>> placements =
+        new ArrayList<Triple<ExecutionReference, ExecutableFlow, Executor>>();
+      boolean executorsFull = false;
+
+      for (Pair<ExecutionReference, ExecutableFlow> candidate : candidates) {
+        ExecutionReference reference = candidate.getFirst();
+        ExecutableFlow exflow = candidate.getSecond();
+        exflow.setUpdateTime(updateTime);
+
+        // the filters don't depend on the flow, once no executor fits the rest
+        // only go where the user asked for
+        Executor selectedExecutor =
+          selectExecutor(exflow, availableExecutors, !executorsFull);
+        if (selectedExecutor == null) {
+          // a flow sized by its footprint may not fit where smaller ones do
+          executorsFull |= !dispatchPlanner.isSizedByFootprint(exflow);
+          try {
+            handleNoExecutorSelectedCase(reference, exflow);
+          } catch (ExecutorManagerException e) {
+            logger.error("Failed to put back queued flow "
+              + exflow.getExecutionId(), e);
+          }
+          continue;
+        }
+        placements.add(new Triple<ExecutionReference, ExecutableFlow, Executor>(
+          reference, exflow, selectedExecutor));
+      }
+      return placements;
+    }
+
+    private void recordRound(long startTime, int dispatched) {
+      long endTime = System.currentTimeMillis();
+      lastRoundSize = dispatched;
+      lastRoundTimeMs = endTime - startTime;
+      numDispatched.addAndGet(dispatched);
+      synchronized (recentRounds) {
+        recentRounds.add(new Pair<Long, Integer>(endTime, dispatched));
+        pruneRecentRounds(endTime);
+      }
+      if (dispatched > 0) {
+        logger.info(String.format(
+          "Dispatched %d flows in %d ms, %.2f flows/sec over the last minute",
+          dispatched, lastRoundTimeMs, getDispatchRate()));
+      }
+    }
+
+    private void pruneRecentRounds(long currentTime) {
+      while (!recentRounds.isEmpty()
+        && recentRounds.getFirst().getFirst() < currentTime
+          - DISPATCH_RATE_WINDOW_MS) {
+        recentRounds.removeFirst();
+      }
+    }
+
+    /*
+     * Dispatches the flow to the selected executor, trying other available
+     * executors if it fails. Returns whether the flow was dispatched.
+     */
+    private boolean dispatchFlow(ExecutionReference reference,
+      ExecutableFlow exflow, Executor selectedExecutor,
+      Set<Executor> availableExecutors) throws ExecutorManagerException {
       synchronized (exflow) {
-        Executor selectedExecutor = selectExecutor(exflow, availableExecutors);
-        if (selectedExecutor != null) {
+        while (selectedExecutor != null) {
           try {
             dispatch(reference, exflow, selectedExecutor);
+            return true;
           } catch (ExecutorManagerException e) {
             logger.warn(String.format(
               "Executor %s responded with exception for exec: %d",
               selectedExecutor, exflow.getExecutionId()), e);
-            handleDispatchExceptionCase(reference, exflow, selectedExecutor,
-              availableExecutors);
+            dispatchPlanner.release(selectedExecutor, exflow);
+            selectedExecutor =
+              handleDispatchExceptionCase(reference, exflow, selectedExecutor,
+                availableExecutors);
           }
-        } else {
-          handleNoExecutorSelectedCase(reference, exflow);
         }
+        return false;
       }
     }
 
@@ -1965,24 +2840,32 @@ public class ExecutorManager extends EventHandler implements
       return executor;
     }
 
-    /* Choose Executor for exflow among the available executors */
+    /*
+     * Choose Executor for exflow among the available executors, and take the
+     * flow off what it has left
+     */
     private Executor selectExecutor(ExecutableFlow exflow,
-      Set<Executor> availableExecutors) {
+      Set<Executor> availableExecutors, boolean useDispatcher) {
       Executor choosenExecutor =
         getUserSpecifiedExecutor(exflow.getExecutionOptions(),
           exflow.getExecutionId());
 
-      // If no executor was specified by admin
-      if (choosenExecutor == null) {
+      if (choosenExecutor != null) {
+        dispatchPlanner.reserve(choosenExecutor, exflow);
+      } else if (useDispatcher) {
+        // If no executor was specified by admin
         logger.info("Using dispatcher for execution id :"
           + exflow.getExecutionId());
-        ExecutorSelector selector = new ExecutorSelector(filterList, comparatorWeightsMap);
-        choosenExecutor = selector.getBest(availableExecutors, exflow);
+        choosenExecutor = dispatchPlanner.select(exflow, availableExecutors);
       }
       return choosenExecutor;
     }
 
-    private void handleDispatchExceptionCase(ExecutionReference reference,
+    /*
+     * Returns the executor to try next, null if the flow was put back in the
+     * queue or failed
+     */
+    private Executor handleDispatchExceptionCase(ExecutionReference reference,
       ExecutableFlow exflow, Executor lastSelectedExecutor,
       Set<Executor> remainingExecutors) throws ExecutorManagerException {
       logger
@@ -1995,11 +2878,17 @@ public class ExecutorManager extends EventHandler implements
         || remainingExecutors.size() <= 1) {
         logger.error("Failed to process queued flow");
         finalizeFlows(exflow);
-      } else {
-        remainingExecutors.remove(lastSelectedExecutor);
-        // try other executors except chosenExecutor
-        selectExecutorAndDispatchFlow(reference, exflow, remainingExecutors);
+        return null;
+      }
+
+      remainingExecutors.remove(lastSelectedExecutor);
+      // try other executors except chosenExecutor
+      Executor selectedExecutor =
+        selectExecutor(exflow, remainingExecutors, true);
+      if (selectedExecutor == null) {
+        handleNoExecutorSelectedCase(reference, exflow);
       }
+      return selectedExecutor;
     }
 
     private void handleNoExecutorSelectedCase(ExecutionReference reference,
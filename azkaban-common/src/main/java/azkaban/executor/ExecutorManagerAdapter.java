@@ -23,6 +23,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.codehaus.jackson.JsonGenerator;
+
 import azkaban.project.Project;
 import azkaban.utils.FileIOUtils.JobMetaData;
 import azkaban.utils.FileIOUtils.LogData;
@@ -116,6 +118,31 @@ public interface ExecutorManagerAdapter {
       String flowContain, String userContain, int status, long begin, long end,
       int skip, int size) throws ExecutorManagerException;
 
+  /**
+   * Fetches the next page of executions older than beforeExecId, which is
+   * usually the last execution id of the previous page.
+   */
+  public List<ExecutableFlow> getExecutableFlowsBefore(String projContain,
+      String flowContain, String userContain, int status, long begin, long end,
+      int beforeExecId, int size) throws ExecutorManagerException;
+
+  /**
+   * Streams a page of the execution history to the generator, see
+   * {@link ExecutorLoader#writeFlowHistory}.
+   */
+  public HistoryCursor writeExecutableFlows(JsonGenerator generator,
+      String projContain, String flowContain, String userContain, int status,
+      long begin, long end, HistoryCursor cursor, int size)
+      throws ExecutorManagerException;
+
+  /**
+   * Streams a page of the runs of a job to the generator, see
+   * {@link ExecutorLoader#writeJobHistory}.
+   */
+  public HistoryCursor writeExecutableJobs(JsonGenerator generator,
+      Project project, String jobId, HistoryCursor cursor, int size)
+      throws ExecutorManagerException;
+
   public int getExecutableFlows(int projectId, String flowId, int from,
       int length, List<ExecutableFlow> outputList)
       throws ExecutorManagerException;
@@ -138,6 +165,14 @@ public interface ExecutorManagerAdapter {
   public LogData getExecutionJobLog(ExecutableFlow exFlow, String jobId,
       int offset, int length, int attempt) throws ExecutorManagerException;
 
+  /**
+   * Same as getExecutionJobLog, but if the job is running and there's nothing
+   * in its log past offset yet, waits up to waitMs for more to be written.
+   */
+  public LogData getExecutionJobLog(ExecutableFlow exFlow, String jobId,
+      int offset, int length, int attempt, long waitMs)
+      throws ExecutorManagerException;
+
   public List<Object> getExecutionJobStats(ExecutableFlow exflow, String jobId,
       int attempt) throws ExecutorManagerException;
 
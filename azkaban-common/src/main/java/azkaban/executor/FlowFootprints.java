@@ -0,0 +1,179 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import azkaban.utils.Pair;
+
+/**
+ * How heavy each flow is, learned from its past executions.
+ *
+ * A footprint is kept per project and flow: the memory its job processes took
+ * at most at once, their cpu time and how many of its jobs ran at once, along
+ * with how long it ran. Cpu time, parallelism and duration are averaged with
+ * the given weight on the latest execution. The memory is a peak which jumps
+ * up to any higher one seen and decays towards lower ones, so a flow that
+ * once needed more memory isn't placed as if it never did.
+ */
+public class FlowFootprints {
+  private final double weight;
+  private final ConcurrentHashMap<Pair<Integer, String>, Footprint> footprints =
+      new ConcurrentHashMap<Pair<Integer, String>, Footprint>();
+
+  /**
+   * @param weight weight of the latest execution, between 0 and 1
+   */
+  public FlowFootprints(double weight) {
+    this.weight = weight;
+  }
+
+  /**
+   * Learns from a finished execution of the flow
+   */
+  public void record(ExecutableFlow flow) {
+    if (flow.getStartTime() <= 0 || flow.getEndTime() < flow.getStartTime()) {
+      return;
+    }
+    double durationSeconds = (flow.getEndTime() - flow.getStartTime()) / 1000.0;
+    int parallelism = getParallelism(flow);
+
+    Pair<Integer, String> key = getKey(flow);
+    Footprint footprint = footprints.get(key);
+    if (footprint == null) {
+      footprints.putIfAbsent(key, new Footprint());
+      footprint = footprints.get(key);
+    }
+    footprint.add(flow.getPeakMemoryInMB(), flow.getCpuSeconds(),
+        parallelism, durationSeconds, weight);
+  }
+
+  /**
+   * The footprint of the flow, null if it never finished on this server
+   */
+  public Footprint get(ExecutableFlow flow) {
+    return footprints.get(getKey(flow));
+  }
+
+  public int size() {
+    return footprints.size();
+  }
+
+  private static Pair<Integer, String> getKey(ExecutableFlow flow) {
+    return new Pair<Integer, String>(flow.getProjectId(), flow.getFlowId());
+  }
+
+  /*
+   * Most jobs of the flow, embedded flows included, that ran at once
+   */
+  static int getParallelism(ExecutableFlowBase flow) {
+    List<Pair<Long, Integer>> events = new ArrayList<Pair<Long, Integer>>();
+    addJobEvents(flow, events);
+    // ends go before starts at the same time
+    Collections.sort(events, (a, b) -> {
+      int result = Long.compare(a.getFirst(), b.getFirst());
+      return result != 0 ? result : Integer.compare(a.getSecond(), b.getSecond());
+    });
+
+    int running = 0;
+    int parallelism = 0;
+    for (Pair<Long, Integer> event : events) {
+      running += event.getSecond();
+      parallelism = Math.max(parallelism, running);
+    }
+    return parallelism;
+  }
+
+  private static void addJobEvents(ExecutableFlowBase flow,
+      List<Pair<Long, Integer>> events) {
+    for (ExecutableNode node : flow.getExecutableNodes()) {
+      if (node instanceof ExecutableFlowBase) {
+        addJobEvents((ExecutableFlowBase) node, events);
+      } else if (node.getStartTime() > 0
+          && node.getEndTime() >= node.getStartTime()) {
+        events.add(new Pair<Long, Integer>(node.getStartTime(), 1));
+        events.add(new Pair<Long, Integer>(node.getEndTime(), -1));
+      }
+    }
+  }
+
+  public static class Footprint {
+    private double peakMemoryInMB = -1;
+    private double cpuSeconds = -1;
+    private double parallelism = -1;
+    private double durationSeconds = -1;
+    private int numExecutions = 0;
+
+    private synchronized void add(long peakMemoryInMB, long cpuSeconds,
+        int parallelism, double durationSeconds, double weight) {
+      if (peakMemoryInMB >= 0) {
+        this.peakMemoryInMB =
+            peakMemoryInMB >= this.peakMemoryInMB ? peakMemoryInMB : average(
+                this.peakMemoryInMB, peakMemoryInMB, weight);
+      }
+      if (cpuSeconds >= 0) {
+        this.cpuSeconds = average(this.cpuSeconds, cpuSeconds, weight);
+      }
+      this.parallelism = average(this.parallelism, parallelism, weight);
+      this.durationSeconds =
+          average(this.durationSeconds, durationSeconds, weight);
+      numExecutions++;
+    }
+
+    private static double average(double current, double latest,
+        double weight) {
+      return current < 0 ? latest : current + weight * (latest - current);
+    }
+
+    /**
+     * Memory the flow is expected to take at most, -1 if it was never measured
+     */
+    public synchronized long getPeakMemoryInMB() {
+      return (long) Math.ceil(peakMemoryInMB);
+    }
+
+    /**
+     * Cpus the flow is expected to keep busy on average, -1 if its cpu time
+     * was never measured
+     */
+    public synchronized double getCpuLoad() {
+      if (cpuSeconds < 0) {
+        return -1;
+      }
+      return durationSeconds > 0 ? cpuSeconds / durationSeconds : 0;
+    }
+
+    public synchronized double getCpuSeconds() {
+      return cpuSeconds;
+    }
+
+    public synchronized double getParallelism() {
+      return parallelism;
+    }
+
+    public synchronized double getDurationSeconds() {
+      return durationSeconds;
+    }
+
+    public synchronized int getNumExecutions() {
+      return numExecutions;
+    }
+  }
+}
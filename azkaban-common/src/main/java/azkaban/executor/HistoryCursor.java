@@ -0,0 +1,93 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Position in the execution or job history, which is ordered newest first.
+ * The next page starts right after the row the cursor points at, so paging
+ * through the history never reads the rows of the earlier pages again.
+ *
+ * Cursors are handed to clients as opaque tokens.
+ */
+public class HistoryCursor {
+  private final int execId;
+  private final int attempt;
+
+  public HistoryCursor(int execId) {
+    this(execId, 0);
+  }
+
+  public HistoryCursor(int execId, int attempt) {
+    this.execId = execId;
+    this.attempt = attempt;
+  }
+
+  public int getExecId() {
+    return execId;
+  }
+
+  public int getAttempt() {
+    return attempt;
+  }
+
+  public String toToken() {
+    String key = execId + "." + attempt;
+    return Base64.encodeBase64URLSafeString(key
+        .getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @throws IllegalArgumentException if the token isn't a valid cursor
+   */
+  public static HistoryCursor fromToken(String token) {
+    String key = new String(Base64.decodeBase64(token), StandardCharsets.UTF_8);
+    int split = key.indexOf('.');
+    if (split < 0) {
+      throw new IllegalArgumentException("Invalid history cursor " + token);
+    }
+
+    try {
+      return new HistoryCursor(Integer.parseInt(key.substring(0, split)),
+          Integer.parseInt(key.substring(split + 1)));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid history cursor " + token, e);
+    }
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (!(obj instanceof HistoryCursor)) {
+      return false;
+    }
+    HistoryCursor other = (HistoryCursor) obj;
+    return execId == other.execId && attempt == other.attempt;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * execId + attempt;
+  }
+
+  @Override
+  public String toString() {
+    return execId + "." + attempt;
+  }
+}
@@ -27,6 +27,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
@@ -39,10 +40,12 @@ import org.apache.commons.dbutils.ResultSetHandler;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonGenerator;
 import org.joda.time.DateTime;
 
 import azkaban.database.AbstractJdbcLoader;
 import azkaban.executor.ExecutorLogEvent.EventType;
+import azkaban.utils.BinaryObjectUtils;
 import azkaban.utils.FileIOUtils;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.GZIPUtils;
@@ -50,16 +53,38 @@ import azkaban.utils.JSONUtils;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import azkaban.utils.PropsUtils;
+import azkaban.utils.Utils;
 
 public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     ExecutorLoader {
   private static final Logger logger = Logger
       .getLogger(JdbcExecutorLoader.class);
 
+  public static final String LOG_STORE_CLASS = "executor.log.store.class";
+
+  // 50K rows in execution_logs, uploaded up to 20 at a time
+  private static final int LOG_PART_SIZE = 50 * 1024;
+  private static final int LOG_UPLOAD_BATCH_SIZE = 20 * LOG_PART_SIZE;
+
   private EncodingType defaultEncodingType = EncodingType.GZIP;
+  // encoding of execution_flows.flow_data
+  private EncodingType flowDataEncodingType = EncodingType.GZIP;
+  private final ExecutionLogStore logStore;
 
   public JdbcExecutorLoader(Props props) {
     super(props);
+    flowDataEncodingType =
+        EncodingType.valueOf(props.getString(
+            "azkaban.executor.flow.data.encoding", EncodingType.GZIP.name())
+            .toUpperCase());
+
+    Class<?> logStoreClass = props.getClass(LOG_STORE_CLASS, null);
+    if (logStoreClass == null) {
+      logStore = new ExecutionLogsTable();
+    } else {
+      logger.info("Loading log store " + logStoreClass.getName());
+      logStore = (ExecutionLogStore) Utils.callConstructor(logStoreClass, props);
+    }
   }
 
   public EncodingType getDefaultEncodingType() {
@@ -70,12 +95,50 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     this.defaultEncodingType = defaultEncodingType;
   }
 
+  public EncodingType getFlowDataEncodingType() {
+    return flowDataEncodingType;
+  }
+
+  public void setFlowDataEncodingType(EncodingType flowDataEncodingType) {
+    this.flowDataEncodingType = flowDataEncodingType;
+  }
+
+  /**
+   * Encodes the object form of a flow for the flow_data column
+   */
+  static byte[] encodeFlowData(Object flowObj, EncodingType encType)
+      throws IOException {
+    if (encType == EncodingType.BINARY) {
+      return BinaryObjectUtils.toCompressedBinary(flowObj);
+    }
+
+    byte[] data = JSONUtils.toJSON(flowObj).getBytes("UTF-8");
+    if (encType == EncodingType.GZIP) {
+      data = GZIPUtils.gzipBytes(data);
+    }
+    return data;
+  }
+
+  /**
+   * Decodes the flow_data column back into the object form of a flow
+   */
+  static Object decodeFlowData(byte[] data, EncodingType encType)
+      throws IOException {
+    if (encType == EncodingType.BINARY) {
+      return BinaryObjectUtils.fromCompressedBinary(data);
+    } else if (encType == EncodingType.GZIP) {
+      return JSONUtils.parseJSONFromString(GZIPUtils.unGzipString(data,
+          "UTF-8"));
+    }
+    return JSONUtils.parseJSONFromString(new String(data, "UTF-8"));
+  }
+
   @Override
   public synchronized void uploadExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException {
     Connection connection = getConnection();
     try {
-      uploadExecutableFlow(connection, flow, defaultEncodingType);
+      uploadExecutableFlow(connection, flow, flowDataEncodingType);
     } catch (IOException e) {
       throw new ExecutorManagerException("Error uploading flow", e);
     } finally {
@@ -88,8 +151,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       throws ExecutorManagerException, IOException {
     final String INSERT_EXECUTABLE_FLOW =
         "INSERT INTO execution_flows "
-            + "(project_id, flow_id, version, status, submit_time, submit_user, update_time) "
-            + "values (?,?,?,?,?,?,?)";
+            + "(project_id, flow_id, version, status, submit_time, submit_user, update_time, schedule_id) "
+            + "values (?,?,?,?,?,?,?,?)";
     QueryRunner runner = new QueryRunner();
     long submitTime = System.currentTimeMillis();
 
@@ -98,7 +161,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       flow.setStatus(Status.PREPARING);
       runner.update(connection, INSERT_EXECUTABLE_FLOW, flow.getProjectId(),
           flow.getFlowId(), flow.getVersion(), Status.PREPARING.getNumVal(),
-          submitTime, flow.getSubmitUser(), submitTime);
+          submitTime, flow.getSubmitUser(), submitTime, flow.getScheduleId());
       connection.commit();
       id =
           runner.query(connection, LastInsertID.LAST_INSERT_ID,
@@ -123,7 +186,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     Connection connection = this.getConnection();
 
     try {
-      updateExecutableFlow(connection, flow, defaultEncodingType);
+      updateExecutableFlow(connection, flow, flowDataEncodingType);
     } finally {
       DbUtils.closeQuietly(connection);
     }
@@ -137,15 +200,9 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
             + "WHERE exec_id=?";
     QueryRunner runner = new QueryRunner();
 
-    String json = JSONUtils.toJSON(flow.toObject());
     byte[] data = null;
     try {
-      byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-
-      if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
+      data = encodeFlowData(flow.toObject(), encType);
     } catch (IOException e) {
       throw new ExecutorManagerException("Error encoding the execution flow.");
     }
@@ -154,12 +211,97 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       runner.update(connection, UPDATE_EXECUTABLE_FLOW_DATA, flow.getStatus()
           .getNumVal(), flow.getUpdateTime(), flow.getStartTime(), flow
           .getEndTime(), encType.getNumVal(), data, flow.getExecutionId());
+      // The flow data has all of the updates logged so far
+      runner.update(connection, FetchFlowUpdates.DELETE_FLOW_UPDATES,
+          flow.getExecutionId());
       connection.commit();
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error updating flow.", e);
     }
   }
 
+  /**
+   * Logs the nodes updated since lastUpdateTime instead of rewriting all of
+   * the flow data. The logged updates are applied to the flow data whenever
+   * the flow is fetched, until the next full update replaces them.
+   */
+  @Override
+  public void appendExecutableFlowUpdate(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException {
+    final String UPDATE_EXECUTABLE_FLOW_STATUS =
+        "UPDATE execution_flows "
+            + "SET status=?,update_time=?,start_time=?,end_time=? "
+            + "WHERE exec_id=?";
+    final String INSERT_FLOW_UPDATE =
+        "INSERT INTO execution_flow_updates "
+            + "(exec_id, update_time, enc_type, update_data) values (?,?,?,?)";
+    QueryRunner runner = new QueryRunner();
+
+    byte[] data = null;
+    try {
+      data =
+          encodeFlowData(flow.toUpdateObject(lastUpdateTime),
+              flowDataEncodingType);
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error encoding the flow update.", e);
+    }
+
+    Connection connection = getConnection();
+    try {
+      runner.update(connection, UPDATE_EXECUTABLE_FLOW_STATUS, flow
+          .getStatus().getNumVal(), flow.getUpdateTime(), flow.getStartTime(),
+          flow.getEndTime(), flow.getExecutionId());
+      runner.update(connection, INSERT_FLOW_UPDATE, flow.getExecutionId(),
+          flow.getUpdateTime(), flowDataEncodingType.getNumVal(), data);
+      connection.commit();
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error logging flow update.", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  /*
+   * Applies the logged updates of the flows, in the order they were logged.
+   */
+  private void applyFlowUpdates(QueryRunner runner,
+      Collection<ExecutableFlow> flows) throws SQLException {
+    if (flows.isEmpty()) {
+      return;
+    }
+
+    Map<Integer, ExecutableFlow> flowsById =
+        new HashMap<Integer, ExecutableFlow>();
+    StringBuilder query =
+        new StringBuilder(FetchFlowUpdates.FETCH_FLOW_UPDATES_BASE);
+    for (ExecutableFlow flow : flows) {
+      query.append(flowsById.isEmpty() ? "?" : ",?");
+      flowsById.put(flow.getExecutionId(), flow);
+    }
+    query.append(FetchFlowUpdates.FETCH_FLOW_UPDATES_ORDER);
+
+    List<Pair<Integer, Object>> updates =
+        runner.query(query.toString(), new FetchFlowUpdates(), flowsById
+            .keySet().toArray());
+    for (Pair<Integer, Object> update : updates) {
+      @SuppressWarnings("unchecked")
+      Map<String, Object> updateData = (Map<String, Object>) update.getSecond();
+      flowsById.get(update.getFirst()).applyUpdateObject(updateData);
+    }
+  }
+
+  private void applyFlowUpdates(QueryRunner runner,
+      Iterable<Pair<ExecutionReference, ExecutableFlow>> flows)
+      throws SQLException {
+    List<ExecutableFlow> exFlows = new ArrayList<ExecutableFlow>();
+    for (Pair<ExecutionReference, ExecutableFlow> flow : flows) {
+      if (flow != null) {
+        exFlows.add(flow.getSecond());
+      }
+    }
+    applyFlowUpdates(runner, exFlows);
+  }
+
   @Override
   public ExecutableFlow fetchExecutableFlow(int id)
       throws ExecutorManagerException {
@@ -170,6 +312,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       List<ExecutableFlow> properties =
           runner.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW, flowHandler,
               id);
+      applyFlowUpdates(runner, properties);
       if (properties.isEmpty()) {
         return null;
       } else {
@@ -195,6 +338,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       List<Pair<ExecutionReference, ExecutableFlow>> flows =
         runner.query(FetchQueuedExecutableFlows.FETCH_QUEUED_EXECUTABLE_FLOW,
           flowHandler);
+      applyFlowUpdates(runner, flows);
       return flows;
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
@@ -211,6 +355,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       Map<Integer, Pair<ExecutionReference, ExecutableFlow>> properties =
           runner.query(FetchActiveExecutableFlows.FETCH_ACTIVE_EXECUTABLE_FLOW,
               flowHandler);
+      applyFlowUpdates(runner, properties.values());
       return properties;
     } catch (SQLException e) {
       throw new ExecutorManagerException("Error fetching active flows", e);
@@ -266,11 +411,13 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   public List<ExecutableFlow> fetchFlowHistory(int projectId, String flowId,
       int skip, int num) throws ExecutorManagerException {
     QueryRunner runner = createQueryRunner();
-    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
+    FetchExecutableFlowSummaries flowHandler =
+        new FetchExecutableFlowSummaries();
 
     try {
       List<ExecutableFlow> properties =
-          runner.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_HISTORY,
+          runner.query(
+              FetchExecutableFlowSummaries.FETCH_EXECUTABLE_FLOW_HISTORY,
               flowHandler, projectId, flowId, skip, num);
       return properties;
     } catch (SQLException e) {
@@ -282,11 +429,13 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   public List<ExecutableFlow> fetchFlowHistory(int projectId, String flowId,
       int skip, int num, Status status) throws ExecutorManagerException {
     QueryRunner runner = createQueryRunner();
-    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
+    FetchExecutableFlowSummaries flowHandler =
+        new FetchExecutableFlowSummaries();
 
     try {
       List<ExecutableFlow> properties =
-          runner.query(FetchExecutableFlows.FETCH_EXECUTABLE_FLOW_BY_STATUS,
+          runner.query(
+              FetchExecutableFlowSummaries.FETCH_EXECUTABLE_FLOW_BY_STATUS,
               flowHandler, projectId, flowId, status.getNumVal(), skip, num);
       return properties;
     } catch (SQLException e) {
@@ -299,11 +448,13 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       throws ExecutorManagerException {
     QueryRunner runner = createQueryRunner();
 
-    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
+    FetchExecutableFlowSummaries flowHandler =
+        new FetchExecutableFlowSummaries();
 
     try {
       List<ExecutableFlow> properties =
-          runner.query(FetchExecutableFlows.FETCH_ALL_EXECUTABLE_FLOW_HISTORY,
+          runner.query(
+              FetchExecutableFlowSummaries.FETCH_ALL_EXECUTABLE_FLOW_HISTORY,
               flowHandler, skip, num);
       return properties;
     } catch (SQLException e) {
@@ -315,12 +466,80 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   public List<ExecutableFlow> fetchFlowHistory(String projContain,
       String flowContains, String userNameContains, int status, long startTime,
       long endTime, int skip, int num) throws ExecutorManagerException {
-    String query = FetchExecutableFlows.FETCH_BASE_EXECUTABLE_FLOW_QUERY;
+    return fetchFlowHistory(projContain, flowContains, userNameContains,
+        status, startTime, endTime, -1, skip, num);
+  }
+
+  /**
+   * Keyset pagination: the database seeks straight to beforeExecId on the
+   * primary key instead of reading and throwing away all of the skipped rows,
+   * so the last pages are as cheap as the first one.
+   */
+  @Override
+  public List<ExecutableFlow> fetchFlowHistoryBefore(String projContain,
+      String flowContains, String userNameContains, int status, long startTime,
+      long endTime, int beforeExecId, int num)
+      throws ExecutorManagerException {
+    return fetchFlowHistory(projContain, flowContains, userNameContains,
+        status, startTime, endTime, beforeExecId, 0, num);
+  }
+
+  private List<ExecutableFlow> fetchFlowHistory(String projContain,
+      String flowContains, String userNameContains, int status, long startTime,
+      long endTime, int beforeExecId, int skip, int num)
+      throws ExecutorManagerException {
+    ArrayList<Object> params = new ArrayList<Object>();
+    String query =
+        createFlowHistoryQuery(params, projContain, flowContains,
+            userNameContains, status, startTime, endTime, beforeExecId, skip,
+            num);
+
+    QueryRunner runner = createQueryRunner();
+    FetchExecutableFlowSummaries flowHandler =
+        new FetchExecutableFlowSummaries();
+
+    try {
+      List<ExecutableFlow> properties =
+          runner.query(query, flowHandler, params.toArray());
+      return properties;
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error fetching active flows", e);
+    }
+  }
+
+  @Override
+  public HistoryCursor writeFlowHistory(JsonGenerator generator,
+      String projContain, String flowContains, String userNameContains,
+      int status, long startTime, long endTime, HistoryCursor cursor, int num)
+      throws ExecutorManagerException {
     ArrayList<Object> params = new ArrayList<Object>();
+    String query =
+        createFlowHistoryQuery(params, projContain, flowContains,
+            userNameContains, status, startTime, endTime,
+            cursor == null ? -1 : cursor.getExecId(), 0, num);
+
+    QueryRunner runner = createStreamingQueryRunner();
+    try {
+      return runner.query(query, new WriteExecutableFlowSummaries(generator,
+          num), params.toArray());
+    } catch (SQLException e) {
+      throw new ExecutorManagerException("Error writing flow history", e);
+    }
+  }
+
+  /*
+   * Builds the filtered history query, adding its parameters to params.
+   */
+  private String createFlowHistoryQuery(List<Object> params,
+      String projContain, String flowContains, String userNameContains,
+      int status, long startTime, long endTime, int beforeExecId, int skip,
+      int num) {
+    String query =
+        FetchExecutableFlowSummaries.FETCH_BASE_EXECUTABLE_FLOW_SUMMARY_QUERY;
 
     boolean first = true;
     if (projContain != null && !projContain.isEmpty()) {
-      query += " ef JOIN projects p ON ef.project_id = p.id WHERE name LIKE ?";
+      query += " JOIN projects p ON ef.project_id = p.id WHERE p.name LIKE ?";
       params.add('%' + projContain + '%');
       first = false;
     }
@@ -333,7 +552,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
         query += " AND ";
       }
 
-      query += " flow_id LIKE ?";
+      query += " ef.flow_id LIKE ?";
       params.add('%' + flowContains + '%');
     }
 
@@ -344,7 +563,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       } else {
         query += " AND ";
       }
-      query += " submit_user LIKE ?";
+      query += " ef.submit_user LIKE ?";
       params.add('%' + userNameContains + '%');
     }
 
@@ -355,7 +574,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       } else {
         query += " AND ";
       }
-      query += " status = ?";
+      query += " ef.status = ?";
       params.add(status);
     }
 
@@ -366,7 +585,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       } else {
         query += " AND ";
       }
-      query += " start_time > ?";
+      query += " ef.start_time > ?";
       params.add(startTime);
     }
 
@@ -377,26 +596,28 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
       } else {
         query += " AND ";
       }
-      query += " end_time < ?";
+      query += " ef.end_time < ?";
       params.add(endTime);
     }
 
+    if (beforeExecId > 0) {
+      if (first) {
+        query += " WHERE ";
+        first = false;
+      } else {
+        query += " AND ";
+      }
+      query += " ef.exec_id < ?";
+      params.add(beforeExecId);
+    }
+
     if (skip > -1 && num > 0) {
-      query += "  ORDER BY exec_id DESC LIMIT ?, ?";
+      query += "  ORDER BY ef.exec_id DESC LIMIT ?, ?";
       params.add(skip);
       params.add(num);
     }
 
-    QueryRunner runner = createQueryRunner();
-    FetchExecutableFlows flowHandler = new FetchExecutableFlows();
-
-    try {
-      List<ExecutableFlow> properties =
-          runner.query(query, flowHandler, params.toArray());
-      return properties;
-    } catch (SQLException e) {
-      throw new ExecutorManagerException("Error fetching active flows", e);
-    }
+    return query;
   }
 
   @Override
@@ -619,23 +840,33 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   }
 
   @Override
-  public LogData fetchLogs(int execId, String name, int attempt, int startByte,
-      int length) throws ExecutorManagerException {
-    QueryRunner runner = createQueryRunner();
+  public HistoryCursor writeJobHistory(JsonGenerator generator, int projectId,
+      String jobId, HistoryCursor cursor, int num)
+      throws ExecutorManagerException {
+    QueryRunner runner = createStreamingQueryRunner();
+    WriteExecutableJobInfos handler =
+        new WriteExecutableJobInfos(generator, num);
 
-    FetchLogsHandler handler =
-        new FetchLogsHandler(startByte, length + startByte);
     try {
-      LogData result =
-          runner.query(FetchLogsHandler.FETCH_LOGS, handler, execId, name,
-              attempt, startByte, startByte + length);
-      return result;
+      if (cursor == null) {
+        return runner.query(WriteExecutableJobInfos.FETCH_JOB_HISTORY, handler,
+            projectId, jobId, num);
+      }
+      return runner.query(WriteExecutableJobInfos.FETCH_JOB_HISTORY_AFTER,
+          handler, projectId, jobId, cursor.getExecId(), cursor.getExecId(),
+          cursor.getAttempt(), num);
     } catch (SQLException e) {
-      throw new ExecutorManagerException("Error fetching logs " + execId
-          + " : " + name, e);
+      throw new ExecutorManagerException("Error writing job history " + jobId,
+          e);
     }
   }
 
+  @Override
+  public LogData fetchLogs(int execId, String name, int attempt, int startByte,
+      int length) throws ExecutorManagerException {
+    return logStore.fetchLogs(execId, name, attempt, startByte, length);
+  }
+
   @Override
   public List<Object> fetchAttachments(int execId, String jobId, int attempt)
       throws ExecutorManagerException {
@@ -665,87 +896,134 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /**
+   * Uploads the files as one log, in batches of up to 1MB.
+   */
   @Override
   public void uploadLogFile(int execId, String name, int attempt, File... files)
       throws ExecutorManagerException {
-    Connection connection = getConnection();
-    try {
-      uploadLogFile(connection, execId, name, attempt, files,
-          defaultEncodingType);
-      connection.commit();
-    } catch (SQLException e) {
-      throw new ExecutorManagerException("Error committing log", e);
-    } catch (IOException e) {
-      throw new ExecutorManagerException("Error committing log", e);
-    } finally {
-      DbUtils.closeQuietly(connection);
-    }
-  }
-
-  private void uploadLogFile(Connection connection, int execId, String name,
-      int attempt, File[] files, EncodingType encType)
-      throws ExecutorManagerException, IOException {
-    // 50K buffer... if logs are greater than this, we chunk.
-    // However, we better prevent large log files from being uploaded somehow
-    byte[] buffer = new byte[50 * 1024];
+    byte[] buffer = new byte[LOG_UPLOAD_BATCH_SIZE];
     int pos = 0;
-    int length = buffer.length;
     int startByte = 0;
     try {
-      for (int i = 0; i < files.length; ++i) {
-        File file = files[i];
-
+      for (File file : files) {
         BufferedInputStream bufferedStream =
             new BufferedInputStream(new FileInputStream(file));
         try {
-          int size = bufferedStream.read(buffer, pos, length);
+          int size = bufferedStream.read(buffer, pos, buffer.length - pos);
           while (size >= 0) {
-            if (pos + size == buffer.length) {
-              // Flush here.
-              uploadLogPart(connection, execId, name, attempt, startByte,
-                  startByte + buffer.length, encType, buffer, buffer.length);
-
+            pos += size;
+            if (pos == buffer.length) {
+              logStore.appendLog(execId, name, attempt, startByte, buffer, pos);
+              startByte += pos;
               pos = 0;
-              length = buffer.length;
-              startByte += buffer.length;
-            } else {
-              // Usually end of file.
-              pos += size;
-              length = buffer.length - pos;
             }
-            size = bufferedStream.read(buffer, pos, length);
+            size = bufferedStream.read(buffer, pos, buffer.length - pos);
           }
         } finally {
           IOUtils.closeQuietly(bufferedStream);
         }
       }
 
-      // Final commit of buffer.
       if (pos > 0) {
-        uploadLogPart(connection, execId, name, attempt, startByte, startByte
-            + pos, encType, buffer, pos);
+        logStore.appendLog(execId, name, attempt, startByte, buffer, pos);
       }
-    } catch (SQLException e) {
-      throw new ExecutorManagerException("Error writing log part.", e);
     } catch (IOException e) {
       throw new ExecutorManagerException("Error chunking", e);
     }
   }
 
+  @Override
+  public void appendLog(int execId, String name, int attempt, int startByte,
+      byte[] data, int length) throws ExecutorManagerException {
+    logStore.appendLog(execId, name, attempt, startByte, data, length);
+  }
+
+  /**
+   * The default log store, keeping logs in the execution_logs table in parts
+   * of up to 50K.
+   */
+  private class ExecutionLogsTable implements ExecutionLogStore {
+
+    @Override
+    public void appendLog(int execId, String name, int attempt,
+        int startByte, byte[] data, int length)
+        throws ExecutorManagerException {
+      final String DELETE_EXECUTION_LOGS =
+          "DELETE FROM execution_logs WHERE exec_id=? AND name=? "
+              + "AND attempt=? AND start_byte>=? AND start_byte<?";
+      QueryRunner runner = new QueryRunner();
+      Connection connection = getConnection();
+      try {
+        // parts left by an earlier attempt at the same append
+        runner.update(connection, DELETE_EXECUTION_LOGS, execId, name,
+            attempt, startByte, startByte + length);
+        for (int offset = 0; offset < length; offset += LOG_PART_SIZE) {
+          uploadLogPart(connection, execId, name, attempt, startByte + offset,
+              defaultEncodingType, data, offset,
+              Math.min(LOG_PART_SIZE, length - offset));
+        }
+        connection.commit();
+      } catch (SQLException e) {
+        throw new ExecutorManagerException("Error writing log part.", e);
+      } catch (IOException e) {
+        throw new ExecutorManagerException("Error writing log part.", e);
+      } finally {
+        DbUtils.closeQuietly(connection);
+      }
+    }
+
+    @Override
+    public LogData fetchLogs(int execId, String name, int attempt,
+        int startByte, int length) throws ExecutorManagerException {
+      QueryRunner runner = createQueryRunner();
+
+      FetchLogsHandler handler =
+          new FetchLogsHandler(startByte, length + startByte);
+      try {
+        LogData result =
+            runner.query(FetchLogsHandler.FETCH_LOGS, handler, execId, name,
+                attempt, startByte, startByte + length);
+        return result;
+      } catch (SQLException e) {
+        throw new ExecutorManagerException("Error fetching logs " + execId
+            + " : " + name, e);
+      }
+    }
+
+    @Override
+    public int removeLogsByTime(long millis) throws ExecutorManagerException {
+      final String DELETE_BY_TIME =
+          "DELETE FROM execution_logs WHERE upload_time < ?";
+
+      QueryRunner runner = createQueryRunner();
+      int updateNum = 0;
+      try {
+        updateNum = runner.update(DELETE_BY_TIME, millis);
+      } catch (SQLException e) {
+        e.printStackTrace();
+        throw new ExecutorManagerException(
+            "Error deleting old execution_logs before " + millis, e);
+      }
+
+      return updateNum;
+    }
+  }
+
   private void uploadLogPart(Connection connection, int execId, String name,
-      int attempt, int startByte, int endByte, EncodingType encType,
-      byte[] buffer, int length) throws SQLException, IOException {
+      int attempt, int startByte, EncodingType encType, byte[] buffer,
+      int offset, int length) throws SQLException, IOException {
     final String INSERT_EXECUTION_LOGS =
         "INSERT INTO execution_logs "
             + "(exec_id, name, attempt, enc_type, start_byte, end_byte, "
             + "log, upload_time) VALUES (?,?,?,?,?,?,?,?)";
 
     QueryRunner runner = new QueryRunner();
-    byte[] buf = buffer;
+    byte[] buf;
     if (encType == EncodingType.GZIP) {
-      buf = GZIPUtils.gzipBytes(buf, 0, length);
-    } else if (length < buf.length) {
-      buf = Arrays.copyOf(buffer, length);
+      buf = GZIPUtils.gzipBytes(buffer, offset, length);
+    } else {
+      buf = Arrays.copyOfRange(buffer, offset, offset + length);
     }
 
     runner.update(connection, INSERT_EXECUTION_LOGS, execId, name, attempt,
@@ -1290,19 +1568,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           logger.error("Found a flow with empty data blob exec_id: " + id);
         } else {
           EncodingType encType = EncodingType.fromInteger(encodingType);
-          Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
-
+            Object flowObj = decodeFlowData(data, encType);
             ExecutableFlow exFlow =
               ExecutableFlow.createExecutableFlowFromObject(flowObj);
             ExecutionReference ref = new ExecutionReference(id);
@@ -1356,19 +1623,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
           execFlows.put(id, null);
         } else {
           EncodingType encType = EncodingType.fromInteger(encodingType);
-          Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package or
-            // helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
-
+            Object flowObj = decodeFlowData(data, encType);
             ExecutableFlow exFlow =
                 ExecutableFlow.createExecutableFlowFromObject(flowObj);
             Executor executor = new Executor(executorId, host, port, executorStatus);
@@ -1389,8 +1645,6 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
 
   private static class FetchExecutableFlows implements
       ResultSetHandler<List<ExecutableFlow>> {
-    private static String FETCH_BASE_EXECUTABLE_FLOW_QUERY =
-        "SELECT exec_id, enc_type, flow_data FROM execution_flows ";
     private static String FETCH_EXECUTABLE_FLOW =
         "SELECT exec_id, enc_type, flow_data FROM execution_flows "
             + "WHERE exec_id=?";
@@ -1399,17 +1653,6 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     // +
     // "FROM execution_flows ex " +
     // "INNER JOIN active_executing_flows ax ON ex.exec_id = ax.exec_id";
-    private static String FETCH_ALL_EXECUTABLE_FLOW_HISTORY =
-        "SELECT exec_id, enc_type, flow_data FROM execution_flows "
-            + "ORDER BY exec_id DESC LIMIT ?, ?";
-    private static String FETCH_EXECUTABLE_FLOW_HISTORY =
-        "SELECT exec_id, enc_type, flow_data FROM execution_flows "
-            + "WHERE project_id=? AND flow_id=? "
-            + "ORDER BY exec_id DESC LIMIT ?, ?";
-    private static String FETCH_EXECUTABLE_FLOW_BY_STATUS =
-        "SELECT exec_id, enc_type, flow_data FROM execution_flows "
-            + "WHERE project_id=? AND flow_id=? AND status=? "
-            + "ORDER BY exec_id DESC LIMIT ?, ?";
 
     @Override
     public List<ExecutableFlow> handle(ResultSet rs) throws SQLException {
@@ -1425,19 +1668,8 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
 
         if (data != null) {
           EncodingType encType = EncodingType.fromInteger(encodingType);
-          Object flowObj;
           try {
-            // Convoluted way to inflate strings. Should find common package
-            // or helper function.
-            if (encType == EncodingType.GZIP) {
-              // Decompress the sucker.
-              String jsonString = GZIPUtils.unGzipString(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            } else {
-              String jsonString = new String(data, "UTF-8");
-              flowObj = JSONUtils.parseJSONFromString(jsonString);
-            }
-
+            Object flowObj = decodeFlowData(data, encType);
             ExecutableFlow exFlow =
                 ExecutableFlow.createExecutableFlowFromObject(flowObj);
             execFlows.add(exFlow);
@@ -1451,6 +1683,198 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /**
+   * JDBC ResultSetHandler to fetch executions without their flow data. Only
+   * the columns kept up to date on every update are read, so the summaries
+   * have the flow's ids, submit info, status and times but none of its nodes
+   * or options.
+   */
+  private static class FetchExecutableFlowSummaries implements
+      ResultSetHandler<List<ExecutableFlow>> {
+    private static String FETCH_BASE_EXECUTABLE_FLOW_SUMMARY_QUERY =
+        "SELECT ef.exec_id, ef.project_id, ef.version, ef.flow_id, ef.status, "
+            + "ef.submit_user, ef.submit_time, ef.update_time, ef.start_time, "
+            + "ef.end_time, ef.schedule_id FROM execution_flows ef ";
+    private static String FETCH_ALL_EXECUTABLE_FLOW_HISTORY =
+        FETCH_BASE_EXECUTABLE_FLOW_SUMMARY_QUERY
+            + "ORDER BY ef.exec_id DESC LIMIT ?, ?";
+    private static String FETCH_EXECUTABLE_FLOW_HISTORY =
+        FETCH_BASE_EXECUTABLE_FLOW_SUMMARY_QUERY
+            + "WHERE ef.project_id=? AND ef.flow_id=? "
+            + "ORDER BY ef.exec_id DESC LIMIT ?, ?";
+    private static String FETCH_EXECUTABLE_FLOW_BY_STATUS =
+        FETCH_BASE_EXECUTABLE_FLOW_SUMMARY_QUERY
+            + "WHERE ef.project_id=? AND ef.flow_id=? AND ef.status=? "
+            + "ORDER BY ef.exec_id DESC LIMIT ?, ?";
+
+    @Override
+    public List<ExecutableFlow> handle(ResultSet rs) throws SQLException {
+      if (!rs.next()) {
+        return Collections.<ExecutableFlow> emptyList();
+      }
+
+      List<ExecutableFlow> execFlows = new ArrayList<ExecutableFlow>();
+      do {
+        ExecutableFlow exFlow = new ExecutableFlow();
+        exFlow.setExecutionId(rs.getInt(1));
+        exFlow.setProjectId(rs.getInt(2));
+        exFlow.setVersion(rs.getInt(3));
+        exFlow.setFlowId(rs.getString(4));
+        exFlow.setStatus(Status.fromInteger(rs.getInt(5)));
+        exFlow.setSubmitUser(rs.getString(6));
+        exFlow.setSubmitTime(rs.getLong(7));
+        exFlow.setUpdateTime(rs.getLong(8));
+        exFlow.setStartTime(rs.getLong(9));
+        exFlow.setEndTime(rs.getLong(10));
+        int scheduleId = rs.getInt(11);
+        exFlow.setScheduleId(rs.wasNull() ? -1 : scheduleId);
+        execFlows.add(exFlow);
+      } while (rs.next());
+
+      return execFlows;
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler that writes execution summaries to a JSON generator
+   * as they are read, instead of collecting them. Returns the cursor of the
+   * last row if the page is full, null if there are no more rows.
+   */
+  private static class WriteExecutableFlowSummaries implements
+      ResultSetHandler<HistoryCursor> {
+    private final JsonGenerator generator;
+    private final int num;
+
+    private WriteExecutableFlowSummaries(JsonGenerator generator, int num) {
+      this.generator = generator;
+      this.num = num;
+    }
+
+    @Override
+    public HistoryCursor handle(ResultSet rs) throws SQLException {
+      int count = 0;
+      int lastExecId = -1;
+      try {
+        while (rs.next()) {
+          lastExecId = rs.getInt(1);
+          generator.writeStartObject();
+          generator.writeNumberField("execId", lastExecId);
+          generator.writeNumberField("projectId", rs.getInt(2));
+          generator.writeNumberField("version", rs.getInt(3));
+          generator.writeStringField("flowId", rs.getString(4));
+          generator.writeStringField("status",
+              Status.fromInteger(rs.getInt(5)).toString());
+          generator.writeStringField("submitUser", rs.getString(6));
+          generator.writeNumberField("submitTime", rs.getLong(7));
+          generator.writeNumberField("updateTime", rs.getLong(8));
+          generator.writeNumberField("startTime", rs.getLong(9));
+          generator.writeNumberField("endTime", rs.getLong(10));
+          int scheduleId = rs.getInt(11);
+          generator.writeNumberField("scheduleId", rs.wasNull() ? -1
+              : scheduleId);
+          generator.writeEndObject();
+          count++;
+        }
+      } catch (IOException e) {
+        throw new SQLException("Error writing flow history", e);
+      }
+
+      return count < num ? null : new HistoryCursor(lastExecId);
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler that writes the runs of a job to a JSON generator as
+   * they are read, newest first. Returns the cursor of the last row if the
+   * page is full, null if there are no more rows.
+   */
+  private static class WriteExecutableJobInfos implements
+      ResultSetHandler<HistoryCursor> {
+    private static String FETCH_JOB_HISTORY =
+        "SELECT exec_id, project_id, version, flow_id, job_id, "
+            + "start_time, end_time, status, attempt FROM execution_jobs "
+            + "WHERE project_id=? AND job_id=? "
+            + "ORDER BY exec_id DESC, attempt DESC LIMIT ?";
+    private static String FETCH_JOB_HISTORY_AFTER =
+        "SELECT exec_id, project_id, version, flow_id, job_id, "
+            + "start_time, end_time, status, attempt FROM execution_jobs "
+            + "WHERE project_id=? AND job_id=? "
+            + "AND (exec_id<? OR (exec_id=? AND attempt<?)) "
+            + "ORDER BY exec_id DESC, attempt DESC LIMIT ?";
+
+    private final JsonGenerator generator;
+    private final int num;
+
+    private WriteExecutableJobInfos(JsonGenerator generator, int num) {
+      this.generator = generator;
+      this.num = num;
+    }
+
+    @Override
+    public HistoryCursor handle(ResultSet rs) throws SQLException {
+      int count = 0;
+      int lastExecId = -1;
+      int lastAttempt = 0;
+      try {
+        while (rs.next()) {
+          lastExecId = rs.getInt(1);
+          lastAttempt = rs.getInt(9);
+          generator.writeStartObject();
+          generator.writeNumberField("execId", lastExecId);
+          generator.writeNumberField("projectId", rs.getInt(2));
+          generator.writeNumberField("version", rs.getInt(3));
+          generator.writeStringField("flowId", rs.getString(4));
+          generator.writeStringField("jobId", rs.getString(5));
+          generator.writeNumberField("startTime", rs.getLong(6));
+          generator.writeNumberField("endTime", rs.getLong(7));
+          generator.writeStringField("status",
+              Status.fromInteger(rs.getInt(8)).toString());
+          generator.writeNumberField("attempt", lastAttempt);
+          generator.writeEndObject();
+          count++;
+        }
+      } catch (IOException e) {
+        throw new SQLException("Error writing job history", e);
+      }
+
+      return count < num ? null : new HistoryCursor(lastExecId, lastAttempt);
+    }
+  }
+
+  /**
+   * JDBC ResultSetHandler to fetch the logged updates of flows, as pairs of
+   * execution id and update object
+   */
+  private static class FetchFlowUpdates implements
+      ResultSetHandler<List<Pair<Integer, Object>>> {
+    private static String FETCH_FLOW_UPDATES_BASE =
+        "SELECT exec_id, enc_type, update_data FROM execution_flow_updates "
+            + "WHERE exec_id IN (";
+    private static String FETCH_FLOW_UPDATES_ORDER =
+        ") ORDER BY exec_id, update_id";
+    private static String DELETE_FLOW_UPDATES =
+        "DELETE FROM execution_flow_updates WHERE exec_id=?";
+
+    @Override
+    public List<Pair<Integer, Object>> handle(ResultSet rs)
+        throws SQLException {
+      List<Pair<Integer, Object>> updates =
+          new ArrayList<Pair<Integer, Object>>();
+      while (rs.next()) {
+        int id = rs.getInt(1);
+        EncodingType encType = EncodingType.fromInteger(rs.getInt(2));
+        byte[] data = rs.getBytes(3);
+        try {
+          updates.add(new Pair<Integer, Object>(id, decodeFlowData(data,
+              encType)));
+        } catch (IOException e) {
+          throw new SQLException("Error retrieving flow update " + id, e);
+        }
+      }
+      return updates;
+    }
+  }
+
   private static class IntHandler implements ResultSetHandler<Integer> {
     private static String NUM_EXECUTIONS =
         "SELECT COUNT(1) FROM execution_flows";
@@ -1473,20 +1897,7 @@ public class JdbcExecutorLoader extends AbstractJdbcLoader implements
   @Override
   public int removeExecutionLogsByTime(long millis)
       throws ExecutorManagerException {
-    final String DELETE_BY_TIME =
-        "DELETE FROM execution_logs WHERE upload_time < ?";
-
-    QueryRunner runner = createQueryRunner();
-    int updateNum = 0;
-    try {
-      updateNum = runner.update(DELETE_BY_TIME, millis);
-    } catch (SQLException e) {
-      e.printStackTrace();
-      throw new ExecutorManagerException(
-          "Error deleting old execution_logs before " + millis, e);
-    }
-
-    return updateNum;
+    return logStore.removeLogsByTime(millis);
   }
 
   /**
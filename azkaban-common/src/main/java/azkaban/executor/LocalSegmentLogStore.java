@@ -0,0 +1,202 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.log4j.Logger;
+
+import azkaban.utils.FileIOUtils;
+import azkaban.utils.FileIOUtils.LogData;
+import azkaban.utils.Pair;
+import azkaban.utils.Props;
+
+/**
+ * Keeps logs on the local file system instead of in the database. Every log
+ * is split into fixed size segment files, segment n holding the bytes from
+ * n * segmentSize on, so the segment and position of any byte offset are
+ * computed rather than looked up and a range read opens only the segments it
+ * covers.
+ *
+ * Logs are laid out as dir/execId/(flow|job-name).attempt/n.seg. The web
+ * server reads the logs the executors write, so the directory has to be
+ * shared between them, or everything has to run on one host as with the solo
+ * server.
+ */
+public class LocalSegmentLogStore implements ExecutionLogStore {
+  private static final Logger logger = Logger
+      .getLogger(LocalSegmentLogStore.class);
+
+  public static final String LOG_STORE_DIR = "executor.log.store.dir";
+  public static final String LOG_SEGMENT_SIZE =
+      "executor.log.store.segment.size";
+
+  private static final int DEFAULT_SEGMENT_SIZE = 4 * 1024 * 1024;
+  private static final String SEGMENT_SUFFIX = ".seg";
+
+  private final File rootDir;
+  private final int segmentSize;
+
+  public LocalSegmentLogStore(Props props) {
+    this(new File(props.getString(LOG_STORE_DIR, "logs")), props.getInt(
+        LOG_SEGMENT_SIZE, DEFAULT_SEGMENT_SIZE));
+  }
+
+  public LocalSegmentLogStore(File rootDir, int segmentSize) {
+    this.rootDir = rootDir;
+    this.segmentSize = segmentSize;
+    rootDir.mkdirs();
+    logger.info("Storing logs in " + rootDir + " in segments of "
+        + segmentSize + " bytes");
+  }
+
+  @Override
+  public void appendLog(int execId, String name, int attempt, int startByte,
+      byte[] data, int length) throws ExecutorManagerException {
+    File logDir = getLogDir(execId, name, attempt);
+    logDir.mkdirs();
+
+    int written = 0;
+    try {
+      while (written < length) {
+        int position = startByte + written;
+        int offset = position % segmentSize;
+        int num = Math.min(length - written, segmentSize - offset);
+        RandomAccessFile segment =
+            new RandomAccessFile(getSegmentFile(logDir, position), "rw");
+        try {
+          segment.seek(offset);
+          segment.write(data, written, num);
+        } finally {
+          segment.close();
+        }
+        written += num;
+      }
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error writing log " + execId + " : "
+          + name, e);
+    }
+  }
+
+  @Override
+  public LogData fetchLogs(int execId, String name, int attempt,
+      int startByte, int length) throws ExecutorManagerException {
+    File logDir = getLogDir(execId, name, attempt);
+    if (!logDir.exists() || length <= 0) {
+      return null;
+    }
+
+    byte[] buffer = new byte[length];
+    int read = 0;
+    try {
+      while (read < length) {
+        int position = startByte + read;
+        File segmentFile = getSegmentFile(logDir, position);
+        if (!segmentFile.exists()) {
+          break;
+        }
+
+        int offset = position % segmentSize;
+        RandomAccessFile segment = new RandomAccessFile(segmentFile, "r");
+        int num;
+        try {
+          long available = segment.length() - offset;
+          num = (int) Math.min(length - read, available);
+          if (num <= 0) {
+            break;
+          }
+          segment.seek(offset);
+          segment.readFully(buffer, read, num);
+        } finally {
+          segment.close();
+        }
+        read += num;
+
+        // only full segments are followed by another one
+        if (offset + num < segmentSize) {
+          break;
+        }
+      }
+    } catch (IOException e) {
+      throw new ExecutorManagerException("Error reading log " + execId + " : "
+          + name, e);
+    }
+
+    if (read == 0) {
+      return null;
+    }
+    Pair<Integer, Integer> range = FileIOUtils.getUtf8Range(buffer, 0, read);
+    return new LogData(startByte + range.getFirst(), range.getSecond(),
+        new String(buffer, range.getFirst(), range.getSecond(),
+            StandardCharsets.UTF_8));
+  }
+
+  @Override
+  public int removeLogsByTime(long millis) throws ExecutorManagerException {
+    int removed = 0;
+    File[] execDirs = rootDir.listFiles();
+    if (execDirs == null) {
+      return 0;
+    }
+
+    for (File execDir : execDirs) {
+      File[] logDirs = execDir.listFiles();
+      if (logDirs == null) {
+        continue;
+      }
+      for (File logDir : logDirs) {
+        File[] segments = logDir.listFiles();
+        if (segments == null) {
+          continue;
+        }
+        for (File segment : segments) {
+          if (segment.lastModified() < millis && segment.delete()) {
+            removed++;
+          }
+        }
+        // only goes if it's empty
+        logDir.delete();
+      }
+      execDir.delete();
+    }
+    return removed;
+  }
+
+  private File getLogDir(int execId, String name, int attempt) {
+    String logName;
+    if (name == null || name.isEmpty()) {
+      logName = "flow";
+    } else {
+      try {
+        logName = "job-" + URLEncoder.encode(name, "UTF-8");
+      } catch (UnsupportedEncodingException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+    return new File(new File(rootDir, String.valueOf(execId)), logName + "."
+        + attempt);
+  }
+
+  private File getSegmentFile(File logDir, int position) {
+    return new File(logDir, (position / segmentSize) + SEGMENT_SUFFIX);
+  }
+}
@@ -1,10 +1,13 @@
 package azkaban.executor;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.log4j.Logger;
 
@@ -50,6 +53,60 @@ public class QueuedExecutions {
     return pair;
   }
 
+  /**
+   * Takes up to max flows off the head of the queue, in priority order.
+   * Waits for the first one like {@link #fetchHead()}, but not for the rest.
+   *
+   * @param max
+   * @return
+   * @throws InterruptedException
+   */
+  public List<Pair<ExecutionReference, ExecutableFlow>> fetchHeads(int max)
+    throws InterruptedException {
+    List<Pair<ExecutionReference, ExecutableFlow>> heads =
+      new ArrayList<Pair<ExecutionReference, ExecutableFlow>>();
+    heads.add(fetchHead());
+    return pollHeads(heads, max);
+  }
+
+  /**
+   * Like {@link #fetchHeads(int)}, but waits for the first flow at most
+   * timeoutMs milliseconds, returning an empty list if none was queued.
+   *
+   * @param max
+   * @param timeoutMs
+   * @return
+   * @throws InterruptedException
+   */
+  public List<Pair<ExecutionReference, ExecutableFlow>> fetchHeads(int max,
+    long timeoutMs) throws InterruptedException {
+    List<Pair<ExecutionReference, ExecutableFlow>> heads =
+      new ArrayList<Pair<ExecutionReference, ExecutableFlow>>();
+    Pair<ExecutionReference, ExecutableFlow> head =
+      queuedFlowList.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    if (head == null) {
+      return heads;
+    }
+    if (head.getFirst() != null) {
+      queuedFlowMap.remove(head.getFirst().getExecId());
+    }
+    heads.add(head);
+    return pollHeads(heads, max);
+  }
+
+  /* Adds flows already queued to the heads, up to max */
+  private List<Pair<ExecutionReference, ExecutableFlow>> pollHeads(
+    List<Pair<ExecutionReference, ExecutableFlow>> heads, int max) {
+    Pair<ExecutionReference, ExecutableFlow> pair;
+    while (heads.size() < max && (pair = queuedFlowList.poll()) != null) {
+      if (pair.getFirst() != null) {
+        queuedFlowMap.remove(pair.getFirst().getExecId());
+      }
+      heads.add(pair);
+    }
+    return heads;
+  }
+
   /**
    * Helper method to have a single point of deletion in the queued flows
    *
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import azkaban.utils.Pair;
+
+/**
+ * Execution ids of the active executions, queued or running, by project and
+ * flow, by executor and by the user who submitted them.
+ *
+ * Lookups don't lock. Every index maps a key to a concurrent set of ids, and
+ * a set only changes inside a compute on its key, so an id is never added to
+ * a set that was just dropped for being empty. An execution stays registered
+ * from submission until it's finalized, including while it's dispatched.
+ */
+public class RunningFlowRegistry {
+  private final ConcurrentHashMap<Integer, Keys> executions =
+      new ConcurrentHashMap<Integer, Keys>();
+  private final ConcurrentHashMap<Pair<Integer, String>, Set<Integer>> byFlow =
+      new ConcurrentHashMap<Pair<Integer, String>, Set<Integer>>();
+  private final ConcurrentHashMap<Integer, Set<Integer>> byExecutor =
+      new ConcurrentHashMap<Integer, Set<Integer>>();
+  private final ConcurrentHashMap<String, Set<Integer>> byUser =
+      new ConcurrentHashMap<String, Set<Integer>>();
+
+  /**
+   * Registers the execution, or moves it to the executor if it is registered
+   *
+   * @param executor executor it runs on, null while it's queued
+   */
+  public void add(ExecutableFlow flow, Executor executor) {
+    final int execId = flow.getExecutionId();
+    final Keys keys =
+        new Keys(new Pair<Integer, String>(flow.getProjectId(),
+            flow.getFlowId()), executor == null ? null : executor.getId(),
+            flow.getSubmitUser());
+    executions.compute(execId, (id, old) -> {
+      if (old != null) {
+        unindex(execId, old);
+      }
+      index(execId, keys);
+      return keys;
+    });
+  }
+
+  /**
+   * Moves a registered execution to the executor, null if it went back to the
+   * queue
+   */
+  public void setExecutor(final int execId, final Executor executor) {
+    executions.computeIfPresent(execId, (id, old) -> {
+      Keys keys =
+          new Keys(old.flow, executor == null ? null : executor.getId(),
+              old.user);
+      removeFrom(byExecutor, old.executorId, execId);
+      addTo(byExecutor, keys.executorId, execId);
+      return keys;
+    });
+  }
+
+  public void remove(final int execId) {
+    executions.computeIfPresent(execId, (id, old) -> {
+      unindex(execId, old);
+      return null;
+    });
+  }
+
+  public boolean contains(int execId) {
+    return executions.containsKey(execId);
+  }
+
+  public boolean hasFlow(int projectId, String flowId) {
+    return byFlow.containsKey(new Pair<Integer, String>(projectId, flowId));
+  }
+
+  /**
+   * Active executions of the flow, sorted
+   */
+  public List<Integer> getExecutionIds(int projectId, String flowId) {
+    return toSortedList(byFlow.get(new Pair<Integer, String>(projectId,
+        flowId)));
+  }
+
+  /**
+   * Executions dispatched to the executor, sorted
+   */
+  public List<Integer> getExecutionIdsOfExecutor(int executorId) {
+    return toSortedList(byExecutor.get(executorId));
+  }
+
+  /**
+   * Active executions the user submitted, sorted
+   */
+  public List<Integer> getExecutionIdsOfUser(String user) {
+    return user == null ? Collections.<Integer> emptyList()
+        : toSortedList(byUser.get(user));
+  }
+
+  public int size() {
+    return executions.size();
+  }
+
+  private void index(int execId, Keys keys) {
+    addTo(byFlow, keys.flow, execId);
+    addTo(byExecutor, keys.executorId, execId);
+    addTo(byUser, keys.user, execId);
+  }
+
+  private void unindex(int execId, Keys keys) {
+    removeFrom(byFlow, keys.flow, execId);
+    removeFrom(byExecutor, keys.executorId, execId);
+    removeFrom(byUser, keys.user, execId);
+  }
+
+  private static <K> void addTo(ConcurrentHashMap<K, Set<Integer>> index,
+      K key, final int execId) {
+    if (key == null) {
+      return;
+    }
+    index.compute(key, (k, ids) -> {
+      if (ids == null) {
+        ids = ConcurrentHashMap.newKeySet();
+      }
+      ids.add(execId);
+      return ids;
+    });
+  }
+
+  private static <K> void removeFrom(ConcurrentHashMap<K, Set<Integer>> index,
+      K key, final int execId) {
+    if (key == null) {
+      return;
+    }
+    index.computeIfPresent(key, (k, ids) -> {
+      ids.remove(execId);
+      return ids.isEmpty() ? null : ids;
+    });
+  }
+
+  private static List<Integer> toSortedList(Set<Integer> ids) {
+    if (ids == null) {
+      return new ArrayList<Integer>();
+    }
+    List<Integer> list = new ArrayList<Integer>(ids);
+    Collections.sort(list);
+    return list;
+  }
+
+  /*
+   * What an execution is indexed under
+   */
+  private static class Keys {
+    private final Pair<Integer, String> flow;
+    private final Integer executorId;
+    private final String user;
+
+    private Keys(Pair<Integer, String> flow, Integer executorId, String user) {
+      this.flow = flow;
+      this.executorId = executorId;
+      this.user = user;
+    }
+  }
+}
@@ -18,6 +18,7 @@ package azkaban.jmx;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import azkaban.executor.ExecutorManager;
 
@@ -93,4 +94,34 @@ public class JmxExecutorManager implements JmxExecutorManagerMBean {
     return manager.getLastSuccessfulExecutorInfoRefresh();
   }
 
+  @Override
+  public Map<String, String> getExecutorUpdateRoundTrips() {
+    return manager.getExecutorUpdateRoundTrips();
+  }
+
+  @Override
+  public long getNumDispatchedFlows() {
+    return manager.getNumDispatchedFlows();
+  }
+
+  @Override
+  public double getDispatchRate() {
+    return manager.getDispatchRate();
+  }
+
+  @Override
+  public int getLastDispatchRoundSize() {
+    return manager.getLastDispatchRoundSize();
+  }
+
+  @Override
+  public long getLastDispatchRoundTimeMs() {
+    return manager.getLastDispatchRoundTimeMs();
+  }
+
+  @Override
+  public long getNumRebalancedFlows() {
+    return manager.getNumRebalancedFlows();
+  }
+
 }
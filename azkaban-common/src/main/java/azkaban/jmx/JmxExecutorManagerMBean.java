@@ -17,6 +17,7 @@
 package azkaban.jmx;
 
 import java.util.List;
+import java.util.Map;
 
 public interface JmxExecutorManagerMBean {
   @DisplayName("OPERATION: getNumRunningFlows")
@@ -58,4 +59,22 @@ public interface JmxExecutorManagerMBean {
   @DisplayName("OPERATION: getLastSuccessfulExecutorInfoRefresh")
   long getLastSuccessfulExecutorInfoRefresh();
 
+  @DisplayName("OPERATION: getExecutorUpdateRoundTrips")
+  Map<String, String> getExecutorUpdateRoundTrips();
+
+  @DisplayName("OPERATION: getNumDispatchedFlows")
+  long getNumDispatchedFlows();
+
+  @DisplayName("OPERATION: getDispatchRate")
+  double getDispatchRate();
+
+  @DisplayName("OPERATION: getLastDispatchRoundSize")
+  int getLastDispatchRoundSize();
+
+  @DisplayName("OPERATION: getLastDispatchRoundTimeMs")
+  long getLastDispatchRoundTimeMs();
+
+  @DisplayName("OPERATION: getNumRebalancedFlows")
+  long getNumRebalancedFlows();
+
 }
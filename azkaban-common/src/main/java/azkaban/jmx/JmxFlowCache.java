@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.jmx;
+
+import azkaban.project.FlowCache;
+
+public class JmxFlowCache implements JmxFlowCacheMBean {
+  private final FlowCache cache;
+
+  public JmxFlowCache(FlowCache cache) {
+    this.cache = cache;
+  }
+
+  @Override
+  public long getHits() {
+    return cache.getHits();
+  }
+
+  @Override
+  public long getMisses() {
+    return cache.getMisses();
+  }
+
+  @Override
+  public long getEvictions() {
+    return cache.getEvictions();
+  }
+
+  @Override
+  public int getNumProjectVersions() {
+    return cache.getNumProjectVersions();
+  }
+
+  @Override
+  public long getSize() {
+    return cache.getSize();
+  }
+
+  @Override
+  public long getMaxSize() {
+    return cache.getMaxSize();
+  }
+}
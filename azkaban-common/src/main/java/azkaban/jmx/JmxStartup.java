@@ -0,0 +1,61 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.jmx;
+
+import azkaban.project.ProjectManager;
+import azkaban.trigger.TriggerManagerAdapter;
+
+public class JmxStartup implements JmxStartupMBean {
+  private final ProjectManager projectManager;
+  private final TriggerManagerAdapter triggerManager;
+  private volatile long servingTimeMs = -1;
+
+  public JmxStartup(ProjectManager projectManager,
+      TriggerManagerAdapter triggerManager) {
+    this.projectManager = projectManager;
+    this.triggerManager = triggerManager;
+  }
+
+  public void setServingTimeMs(long servingTimeMs) {
+    this.servingTimeMs = servingTimeMs;
+  }
+
+  @Override
+  public long getServingTimeMs() {
+    return servingTimeMs;
+  }
+
+  @Override
+  public boolean isProjectsLoaded() {
+    return projectManager.isProjectsLoaded();
+  }
+
+  @Override
+  public long getProjectLoadTimeMs() {
+    return projectManager.getLoadTimeMs();
+  }
+
+  @Override
+  public boolean isTriggersLoaded() {
+    return triggerManager.isTriggersLoaded();
+  }
+
+  @Override
+  public long getTriggerLoadTimeMs() {
+    return triggerManager.getJMX().getLoadTimeMs();
+  }
+}
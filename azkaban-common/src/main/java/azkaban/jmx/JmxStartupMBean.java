@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.jmx;
+
+public interface JmxStartupMBean {
+  // from the start of the jvm until the server accepts requests
+  @DisplayName("OPERATION: getServingTimeMs")
+  public long getServingTimeMs();
+
+  @DisplayName("OPERATION: isProjectsLoaded")
+  public boolean isProjectsLoaded();
+
+  @DisplayName("OPERATION: getProjectLoadTimeMs")
+  public long getProjectLoadTimeMs();
+
+  @DisplayName("OPERATION: isTriggersLoaded")
+  public boolean isTriggersLoaded();
+
+  @DisplayName("OPERATION: getTriggerLoadTimeMs")
+  public long getTriggerLoadTimeMs();
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.jmx;
+
+import azkaban.trigger.TriggerActionRunner;
+
+public class JmxTriggerActionRunner implements JmxTriggerActionRunnerMBean {
+  private final TriggerActionRunner runner;
+
+  public JmxTriggerActionRunner(TriggerActionRunner runner) {
+    this.runner = runner;
+  }
+
+  @Override
+  public int getNumPending() {
+    return runner.getNumPending();
+  }
+
+  @Override
+  public long getNumSucceeded() {
+    return runner.getNumSucceeded();
+  }
+
+  @Override
+  public long getNumFailed() {
+    return runner.getNumFailed();
+  }
+
+  @Override
+  public long getNumRetried() {
+    return runner.getNumRetried();
+  }
+
+  @Override
+  public long getNumTimedOut() {
+    return runner.getNumTimedOut();
+  }
+
+  @Override
+  public long getAverageActionTimeMs() {
+    return runner.getAverageActionTimeMs();
+  }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.jmx;
+
+public interface JmxTriggerActionRunnerMBean {
+  @DisplayName("OPERATION: getNumPending")
+  public int getNumPending();
+
+  @DisplayName("OPERATION: getNumSucceeded")
+  public long getNumSucceeded();
+
+  @DisplayName("OPERATION: getNumFailed")
+  public long getNumFailed();
+
+  @DisplayName("OPERATION: getNumRetried")
+  public long getNumRetried();
+
+  @DisplayName("OPERATION: getNumTimedOut")
+  public long getNumTimedOut();
+
+  @DisplayName("OPERATION: getAverageActionTimeMs")
+  public long getAverageActionTimeMs();
+}
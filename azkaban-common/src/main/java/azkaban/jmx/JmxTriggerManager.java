@@ -70,4 +70,14 @@ public class JmxTriggerManager implements JmxTriggerManagerMBean {
   public String getScannerThreadStage() {
     return jmxStats.getScannerThreadStage();
   }
+
+  @Override
+  public String getOwnedShards() {
+    return jmxStats.getOwnedShards();
+  }
+
+  @Override
+  public int getNumLiveServers() {
+    return jmxStats.getNumLiveServers();
+  }
 }
@@ -44,4 +44,10 @@ public interface JmxTriggerManagerMBean {
 
   @DisplayName("OPERATION: getScannerThreadStage")
   public String getScannerThreadStage();
+
+  @DisplayName("OPERATION: getOwnedShards")
+  public String getOwnedShards();
+
+  @DisplayName("OPERATION: getNumLiveServers")
+  public int getNumLiveServers();
 }
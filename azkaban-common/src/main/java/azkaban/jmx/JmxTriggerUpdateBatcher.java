@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.jmx;
+
+import azkaban.trigger.TriggerUpdateBatcher;
+
+public class JmxTriggerUpdateBatcher implements JmxTriggerUpdateBatcherMBean {
+  private final TriggerUpdateBatcher batcher;
+
+  public JmxTriggerUpdateBatcher(TriggerUpdateBatcher batcher) {
+    this.batcher = batcher;
+  }
+
+  @Override
+  public int getNumPending() {
+    return batcher.getNumPending();
+  }
+
+  @Override
+  public long getOldestPendingAgeMs() {
+    return batcher.getOldestPendingAgeMs();
+  }
+
+  @Override
+  public long getNumUpdates() {
+    return batcher.getNumUpdates();
+  }
+
+  @Override
+  public long getNumCoalesced() {
+    return batcher.getNumCoalesced();
+  }
+
+  @Override
+  public long getNumWritten() {
+    return batcher.getNumWritten();
+  }
+
+  @Override
+  public long getNumFailedFlushes() {
+    return batcher.getNumFailedFlushes();
+  }
+
+  @Override
+  public long getAverageFlushTimeMs() {
+    return batcher.getAverageFlushTimeMs();
+  }
+
+  @Override
+  public long getLastFlushTimeMs() {
+    return batcher.getLastFlushTimeMs();
+  }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.jmx;
+
+public interface JmxTriggerUpdateBatcherMBean {
+  @DisplayName("OPERATION: getNumPending")
+  public int getNumPending();
+
+  @DisplayName("OPERATION: getOldestPendingAgeMs")
+  public long getOldestPendingAgeMs();
+
+  @DisplayName("OPERATION: getNumUpdates")
+  public long getNumUpdates();
+
+  @DisplayName("OPERATION: getNumCoalesced")
+  public long getNumCoalesced();
+
+  @DisplayName("OPERATION: getNumWritten")
+  public long getNumWritten();
+
+  @DisplayName("OPERATION: getNumFailedFlushes")
+  public long getNumFailedFlushes();
+
+  @DisplayName("OPERATION: getAverageFlushTimeMs")
+  public long getAverageFlushTimeMs();
+
+  @DisplayName("OPERATION: getLastFlushTimeMs")
+  public long getLastFlushTimeMs();
+}
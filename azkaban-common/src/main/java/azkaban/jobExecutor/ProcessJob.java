@@ -322,6 +322,17 @@ public class ProcessJob extends AbstractProcessJob {
     return process.getProcessId();
   }
 
+  /**
+   * Id of the job's process while it runs, -1 otherwise
+   */
+  public int getRunningProcessId() {
+    AzkabanProcess current = process;
+    if (current == null || !current.isRunning()) {
+      return -1;
+    }
+    return current.getProcessId();
+  }
+
   public String getPath() {
     return _jobPath == null ? "" : _jobPath;
   }
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.project;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import azkaban.flow.Flow;
+import azkaban.utils.Pair;
+
+/**
+ * Parsed flows of the project versions, loaded when they're first asked for.
+ *
+ * The flows of a project version don't change once uploaded, so they're
+ * cached by project id and version. The cache is bounded by the total number
+ * of nodes and edges of the flows in it, which is what their memory use grows
+ * with, and drops the least recently used project versions first.
+ */
+public class FlowCache {
+  private static final Logger logger = Logger.getLogger(FlowCache.class);
+
+  private final ProjectLoader loader;
+  private final long maxSize;
+
+  private final LinkedHashMap<Pair<Integer, Integer>, CachedFlows> entries =
+      new LinkedHashMap<Pair<Integer, Integer>, CachedFlows>(16, 0.75f, true);
+  private long size = 0;
+  private long hits = 0;
+  private long misses = 0;
+  private long evictions = 0;
+
+  public FlowCache(ProjectLoader loader, long maxSize) {
+    this.loader = loader;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * The flows of the project's current version by flow id
+   *
+   * @throws IllegalStateException if they couldn't be loaded
+   */
+  public Map<String, Flow> getFlows(Project project) {
+    Pair<Integer, Integer> key = getKey(project);
+    synchronized (this) {
+      CachedFlows cached = entries.get(key);
+      if (cached != null) {
+        hits++;
+        return cached.flows;
+      }
+      misses++;
+    }
+
+    List<Flow> flowList;
+    try {
+      flowList = loader.fetchAllProjectFlows(project);
+    } catch (ProjectManagerException e) {
+      throw new IllegalStateException("Could not load flows of project "
+          + project.getName() + " version " + project.getVersion(), e);
+    }
+
+    Map<String, Flow> flows = new HashMap<String, Flow>();
+    for (Flow flow : flowList) {
+      flows.put(flow.getId(), flow);
+    }
+
+    synchronized (this) {
+      // someone else may have loaded them meanwhile, everyone has to get the
+      // same flow objects
+      CachedFlows cached = entries.get(key);
+      if (cached != null) {
+        return cached.flows;
+      }
+      add(key, flows);
+    }
+    return flows;
+  }
+
+  /**
+   * Replaces the flows of the project's current version
+   */
+  public synchronized void putFlows(Project project, Map<String, Flow> flows) {
+    add(getKey(project), flows);
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  public synchronized long getEvictions() {
+    return evictions;
+  }
+
+  public synchronized int getNumProjectVersions() {
+    return entries.size();
+  }
+
+  /**
+   * Total number of nodes and edges of the cached flows
+   */
+  public synchronized long getSize() {
+    return size;
+  }
+
+  public long getMaxSize() {
+    return maxSize;
+  }
+
+  private void add(Pair<Integer, Integer> key, Map<String, Flow> flows) {
+    CachedFlows old = entries.remove(key);
+    if (old != null) {
+      size -= old.size;
+    }
+
+    CachedFlows cached = new CachedFlows(flows);
+    entries.put(key, cached);
+    size += cached.size;
+
+    // the flows just added stay even if they don't fit on their own
+    Iterator<Map.Entry<Pair<Integer, Integer>, CachedFlows>> iterator =
+        entries.entrySet().iterator();
+    while (size > maxSize && entries.size() > 1) {
+      Map.Entry<Pair<Integer, Integer>, CachedFlows> eldest = iterator.next();
+      iterator.remove();
+      size -= eldest.getValue().size;
+      evictions++;
+      logger.debug("Evicted flows of project " + eldest.getKey().getFirst()
+          + " version " + eldest.getKey().getSecond());
+    }
+  }
+
+  private static Pair<Integer, Integer> getKey(Project project) {
+    return new Pair<Integer, Integer>(project.getId(), project.getVersion());
+  }
+
+  private static class CachedFlows {
+    private final Map<String, Flow> flows;
+    private final long size;
+
+    private CachedFlows(Map<String, Flow> flows) {
+      this.flows = flows;
+      long size = 0;
+      for (Flow flow : flows.values()) {
+        size += 1 + flow.getNodes().size() + flow.getEdges().size();
+      }
+      this.size = size;
+    }
+  }
+}
@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -32,6 +33,10 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
@@ -59,6 +64,8 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
 
   private static final int CHUCK_SIZE = 1024 * 1024 * 10;
   private File tempDir;
+  private final int downloadThreads;
+  private ExecutorService chunkFetcherService;
 
   private EncodingType defaultEncodingType = EncodingType.GZIP;
 
@@ -68,6 +75,7 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     if (!tempDir.exists()) {
       tempDir.mkdirs();
     }
+    downloadThreads = props.getInt("project.download.threads", 4);
   }
 
   @Override
@@ -116,6 +124,49 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     return projects;
   }
 
+  @Override
+  public List<Project> fetchActiveProjects(int afterId, int num)
+      throws ProjectManagerException {
+    Connection connection = getConnection();
+    QueryRunner runner = new QueryRunner();
+    try {
+      List<Project> projects =
+          runner.query(connection,
+              ProjectResultHandler.SELECT_ACTIVE_PROJECTS_AFTER_ID,
+              new ProjectResultHandler(), afterId, num);
+      if (projects.isEmpty()) {
+        return projects;
+      }
+
+      // one query for the permissions of the whole page
+      int lastId = projects.get(projects.size() - 1).getId();
+      Map<Integer, List<Triple<String, Boolean, Permission>>> permissions =
+          runner.query(connection,
+              ProjectPermissionsByIdResultHandler.SELECT_PERMISSIONS_IN_RANGE,
+              new ProjectPermissionsByIdResultHandler(), afterId, lastId);
+      for (Project project : projects) {
+        List<Triple<String, Boolean, Permission>> projectPermissions =
+            permissions.get(project.getId());
+        if (projectPermissions == null) {
+          continue;
+        }
+        for (Triple<String, Boolean, Permission> entry : projectPermissions) {
+          if (entry.getSecond()) {
+            project.setGroupPermission(entry.getFirst(), entry.getThird());
+          } else {
+            project.setUserPermission(entry.getFirst(), entry.getThird());
+          }
+        }
+      }
+      return projects;
+    } catch (SQLException e) {
+      throw new ProjectManagerException("Error retrieving projects after id "
+          + afterId, e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
   @Override
   public Project fetchProjectById(int id) throws ProjectManagerException {
     Connection connection = getConnection();
@@ -461,6 +512,55 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
 
   private ProjectFileHandler getUploadedFile(Connection connection,
       int projectId, int version) throws ProjectManagerException {
+    ProjectFileHandler projHandler =
+        fetchProjectFileInfo(connection, projectId, version);
+    if (projHandler == null) {
+      return null;
+    }
+
+    File file = null;
+    try {
+      file =
+          File.createTempFile(projHandler.getFileName(),
+              String.valueOf(version), tempDir);
+    } catch (IOException e) {
+      throw new ProjectManagerException(
+          "Error creating temp file for stream.");
+    }
+
+    // The stream checks the md5 once all of the file has been read.
+    InputStream inStream = getUploadedFileStream(projHandler);
+    BufferedOutputStream bStream = null;
+    try {
+      bStream = new BufferedOutputStream(new FileOutputStream(file));
+      IOUtils.copy(inStream, bStream);
+      bStream.close();
+    } catch (IOException e) {
+      file.delete();
+      throw new ProjectManagerException("Error writing file", e);
+    } finally {
+      IOUtils.closeQuietly(bStream);
+      IOUtils.closeQuietly(inStream);
+    }
+    logger.info("Md5 Hash is valid");
+
+    projHandler.setLocalFile(file);
+    return projHandler;
+  }
+
+  @Override
+  public ProjectFileHandler fetchProjectFileInfo(int projectId, int version)
+      throws ProjectManagerException {
+    Connection connection = getConnection();
+    try {
+      return fetchProjectFileInfo(connection, projectId, version);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  private ProjectFileHandler fetchProjectFileInfo(Connection connection,
+      int projectId, int version) throws ProjectManagerException {
     QueryRunner runner = new QueryRunner();
     ProjectVersionResultHandler pfHandler = new ProjectVersionResultHandler();
 
@@ -479,72 +579,60 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
       return null;
     }
 
-    ProjectFileHandler projHandler = projectFiles.get(0);
-    int numChunks = projHandler.getNumChunks();
-    BufferedOutputStream bStream = null;
-    File file = null;
-    try {
-      try {
-        file =
-            File.createTempFile(projHandler.getFileName(),
-                String.valueOf(version), tempDir);
-
-        bStream = new BufferedOutputStream(new FileOutputStream(file));
-      } catch (IOException e) {
-        throw new ProjectManagerException(
-            "Error creating temp file for stream.");
-      }
+    return projectFiles.get(0);
+  }
 
-      int collect = 5;
-      int fromChunk = 0;
-      int toChunk = collect;
-      do {
-        ProjectFileChunkResultHandler chunkHandler =
-            new ProjectFileChunkResultHandler();
-        List<byte[]> data = null;
-        try {
-          data =
-              runner.query(connection,
+  /**
+   * Chunks are fetched on their own connections, up to project.download.threads
+   * of them at once.
+   */
+  @Override
+  public InputStream getUploadedFileStream(ProjectFileHandler handler)
+      throws ProjectManagerException {
+    final int projectId = handler.getProjectId();
+    final int version = handler.getVersion();
+    ProjectFileChunkInputStream.ChunkFetcher fetcher =
+        new ProjectFileChunkInputStream.ChunkFetcher() {
+          @Override
+          public List<byte[]> fetchChunks(int fromChunk, int toChunk)
+              throws ProjectManagerException {
+            Connection connection = getConnection();
+            try {
+              return new QueryRunner().query(connection,
                   ProjectFileChunkResultHandler.SELECT_PROJECT_CHUNKS_FILE,
-                  chunkHandler, projectId, version, fromChunk, toChunk);
-        } catch (SQLException e) {
-          logger.error(e);
-          throw new ProjectManagerException("Query for uploaded file for "
-              + projectId + " failed.", e);
-        }
-
-        try {
-          for (byte[] d : data) {
-            bStream.write(d);
+                  new ProjectFileChunkResultHandler(), projectId, version,
+                  fromChunk, toChunk);
+            } catch (SQLException e) {
+              logger.error(e);
+              throw new ProjectManagerException("Query for uploaded file for "
+                  + projectId + " failed.", e);
+            } finally {
+              DbUtils.closeQuietly(connection);
+            }
           }
-        } catch (IOException e) {
-          throw new ProjectManagerException("Error writing file", e);
-        }
+        };
 
-        // Add all the bytes to the stream.
-        fromChunk += collect;
-        toChunk += collect;
-      } while (fromChunk <= numChunks);
-    } finally {
-      IOUtils.closeQuietly(bStream);
-    }
-
-    // Check md5.
-    byte[] md5 = null;
-    try {
-      md5 = Md5Hasher.md5Hash(file);
-    } catch (IOException e) {
-      throw new ProjectManagerException("Error getting md5 hash.", e);
-    }
+    return new ProjectFileChunkInputStream(fetcher, getChunkFetcherService(),
+        handler.getNumChunks(), downloadThreads, handler.getMd5Hash());
+  }
 
-    if (Arrays.equals(projHandler.getMd5Hash(), md5)) {
-      logger.info("Md5 Hash is valid");
-    } else {
-      throw new ProjectManagerException("Md5 Hash failed on retrieval of file");
+  private synchronized ExecutorService getChunkFetcherService() {
+    if (chunkFetcherService == null) {
+      chunkFetcherService =
+          Executors.newFixedThreadPool(downloadThreads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+              Thread thread =
+                  new Thread(r, "ProjectFileFetcher-"
+                      + threadCount.incrementAndGet());
+              thread.setDaemon(true);
+              return thread;
+            }
+          });
     }
-
-    projHandler.setLocalFile(file);
-    return projHandler;
+    return chunkFetcherService;
   }
 
   @Override
@@ -1202,6 +1290,9 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     private static String SELECT_ALL_ACTIVE_PROJECTS =
         "SELECT id, name, active, modified_time, create_time, version, last_modified_by, description, enc_type, settings_blob FROM projects WHERE active=true";
 
+    private static String SELECT_ACTIVE_PROJECTS_AFTER_ID =
+        "SELECT id, name, active, modified_time, create_time, version, last_modified_by, description, enc_type, settings_blob FROM projects WHERE active=true AND id>? ORDER BY id LIMIT ?";
+
     private static String SELECT_ACTIVE_PROJECT_BY_NAME =
         "SELECT id, name, active, modified_time, create_time, version, last_modified_by, description, enc_type, settings_blob FROM projects WHERE name=? AND active=true";
 
@@ -1291,6 +1382,35 @@ public class JdbcProjectLoader extends AbstractJdbcLoader implements
     }
   }
 
+  private static class ProjectPermissionsByIdResultHandler implements
+      ResultSetHandler<Map<Integer, List<Triple<String, Boolean, Permission>>>> {
+    private static String SELECT_PERMISSIONS_IN_RANGE =
+        "SELECT project_id, modified_time, name, permissions, isGroup FROM project_permissions WHERE project_id>? AND project_id<=?";
+
+    @Override
+    public Map<Integer, List<Triple<String, Boolean, Permission>>> handle(
+        ResultSet rs) throws SQLException {
+      Map<Integer, List<Triple<String, Boolean, Permission>>> permissions =
+          new HashMap<Integer, List<Triple<String, Boolean, Permission>>>();
+      while (rs.next()) {
+        int projectId = rs.getInt(1);
+        String username = rs.getString(3);
+        int permissionFlag = rs.getInt(4);
+        boolean val = rs.getBoolean(5);
+
+        List<Triple<String, Boolean, Permission>> projectPermissions =
+            permissions.get(projectId);
+        if (projectPermissions == null) {
+          projectPermissions = new ArrayList<Triple<String, Boolean, Permission>>();
+          permissions.put(projectId, projectPermissions);
+        }
+        projectPermissions.add(new Triple<String, Boolean, Permission>(
+            username, val, new Permission(permissionFlag)));
+      }
+      return permissions;
+    }
+  }
+
   private static class ProjectFlowsResultHandler implements
       ResultSetHandler<List<Flow>> {
     private static String SELECT_PROJECT_FLOW =
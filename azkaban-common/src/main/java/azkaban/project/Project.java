@@ -46,6 +46,7 @@ public class Project {
   private LinkedHashMap<String, Permission> groupPermissionMap =
       new LinkedHashMap<String, Permission>();
   private Map<String, Flow> flows = null;
+  private FlowCache flowCache = null;
   private HashSet<String> proxyUsers = new HashSet<String>();
   private Map<String, Object> metadata = new HashMap<String, Object>();
 
@@ -58,11 +59,25 @@ public class Project {
     return name;
   }
 
+  /**
+   * Keeps the flows in the cache instead of in the project, so they're only
+   * loaded when needed.
+   */
+  public void setFlowCache(FlowCache flowCache) {
+    this.flowCache = flowCache;
+    this.flows = null;
+  }
+
   public void setFlows(Map<String, Flow> flows) {
-    this.flows = flows;
+    if (flowCache != null) {
+      flowCache.putFlows(this, flows);
+    } else {
+      this.flows = flows;
+    }
   }
 
   public Flow getFlow(String flowId) {
+    Map<String, Flow> flows = getFlowMap();
     if (flows == null) {
       return null;
     }
@@ -71,10 +86,14 @@ public class Project {
   }
 
   public Map<String, Flow> getFlowMap() {
+    if (flowCache != null) {
+      return flowCache.getFlows(this);
+    }
     return flows;
   }
 
   public List<Flow> getFlows() {
+    Map<String, Flow> flows = getFlowMap();
     List<Flow> retFlow = null;
     if (flows != null) {
       retFlow = new ArrayList<Flow>(flows.values());
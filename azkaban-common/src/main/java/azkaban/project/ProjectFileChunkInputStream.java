@@ -0,0 +1,181 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.project;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import azkaban.utils.Md5Hasher;
+
+/**
+ * Streams the chunks of an uploaded project file in order, while the next
+ * chunks are fetched in parallel.
+ *
+ * At most maxChunksAhead chunks are being fetched or buffered at any time,
+ * which bounds the memory used to maxChunksAhead times the chunk size. The
+ * md5 of the content is computed as it is read and checked against the
+ * expected one when the end of the stream is reached, so callers must read
+ * the stream to the end before trusting what they read.
+ */
+class ProjectFileChunkInputStream extends InputStream {
+
+  /**
+   * Fetches the chunks numbered from fromChunk (inclusive) to toChunk
+   * (exclusive), in order.
+   */
+  interface ChunkFetcher {
+    List<byte[]> fetchChunks(int fromChunk, int toChunk)
+        throws ProjectManagerException;
+  }
+
+  private final ChunkFetcher fetcher;
+  private final ExecutorService fetcherService;
+  private final int numChunks;
+  private final int maxChunksAhead;
+  private final byte[] expectedMd5;
+  private final MessageDigest digest = Md5Hasher.getMd5Digest();
+
+  private final Deque<Future<List<byte[]>>> pendingChunks =
+      new ArrayDeque<Future<List<byte[]>>>();
+  private int nextChunkToFetch = 0;
+
+  private Iterator<byte[]> currentChunks = null;
+  private byte[] currentChunk = null;
+  private int position = 0;
+  private boolean verified = false;
+  private boolean closed = false;
+
+  ProjectFileChunkInputStream(ChunkFetcher fetcher,
+      ExecutorService fetcherService, int numChunks, int maxChunksAhead,
+      byte[] expectedMd5) {
+    this.fetcher = fetcher;
+    this.fetcherService = fetcherService;
+    this.numChunks = numChunks;
+    this.maxChunksAhead = Math.max(1, maxChunksAhead);
+    this.expectedMd5 = expectedMd5;
+    fetchAhead();
+  }
+
+  private void fetchAhead() {
+    while (!closed && pendingChunks.size() < maxChunksAhead
+        && nextChunkToFetch < numChunks) {
+      final int chunk = nextChunkToFetch++;
+      pendingChunks.add(fetcherService.submit(new Callable<List<byte[]>>() {
+        @Override
+        public List<byte[]> call() throws Exception {
+          return fetcher.fetchChunks(chunk, chunk + 1);
+        }
+      }));
+    }
+  }
+
+  /*
+   * Moves on to the next non empty chunk. Returns false at the end of the
+   * file, once the md5 has been checked.
+   */
+  private boolean nextChunk() throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+
+    while (currentChunk == null || position >= currentChunk.length) {
+      if (currentChunks != null && currentChunks.hasNext()) {
+        currentChunk = currentChunks.next();
+        position = 0;
+        continue;
+      }
+
+      Future<List<byte[]>> next = pendingChunks.poll();
+      if (next == null) {
+        verify();
+        return false;
+      }
+
+      try {
+        currentChunks = next.get().iterator();
+      } catch (InterruptedException e) {
+        close();
+        throw new IOException("Interrupted while fetching project file", e);
+      } catch (ExecutionException e) {
+        close();
+        throw new IOException("Error fetching project file", e.getCause());
+      }
+      currentChunk = null;
+      fetchAhead();
+    }
+    return true;
+  }
+
+  private void verify() throws IOException {
+    if (verified) {
+      return;
+    }
+    if (!Arrays.equals(expectedMd5, digest.digest())) {
+      throw new IOException("Md5 Hash failed on retrieval of file");
+    }
+    verified = true;
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextChunk()) {
+      return -1;
+    }
+    int b = currentChunk[position++] & 0xff;
+    digest.update((byte) b);
+    return b;
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    if (length == 0) {
+      return 0;
+    }
+    if (!nextChunk()) {
+      return -1;
+    }
+    int num = Math.min(length, currentChunk.length - position);
+    System.arraycopy(currentChunk, position, buffer, offset, num);
+    digest.update(currentChunk, position, num);
+    position += num;
+    return num;
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    for (Future<List<byte[]>> pending : pendingChunks) {
+      pending.cancel(true);
+    }
+    pendingChunks.clear();
+    currentChunks = null;
+    currentChunk = null;
+  }
+}
@@ -17,6 +17,7 @@
 package azkaban.project;
 
 import java.io.File;
+import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -38,6 +39,15 @@ public interface ProjectLoader {
    */
   public List<Project> fetchAllActiveProjects() throws ProjectManagerException;
 
+  /**
+   * Returns up to num active projects with ids greater than afterId, ordered
+   * by id, with their permissions. Used to load the projects a page at a time.
+   *
+   * @throws ProjectManagerException
+   */
+  public List<Project> fetchActiveProjects(int afterId, int num)
+      throws ProjectManagerException;
+
   /**
    * Loads whole project, including permissions, by the project id.
    *
@@ -151,6 +161,24 @@ public interface ProjectLoader {
   public ProjectFileHandler getUploadedFile(int projectId, int version)
       throws ProjectManagerException;
 
+  /**
+   * Get the description of an uploaded file, without fetching the file.
+   *
+   * @return null if the project version doesn't exist
+   */
+  public ProjectFileHandler fetchProjectFileInfo(int projectId, int version)
+      throws ProjectManagerException;
+
+  /**
+   * Opens a stream over the content of an uploaded file. The md5 of the
+   * content is checked when the end of the stream is reached, and an
+   * IOException is thrown then if it doesn't match.
+   *
+   * @param handler as returned by fetchProjectFileInfo
+   */
+  public InputStream getUploadedFileStream(ProjectFileHandler handler)
+      throws ProjectManagerException;
+
   /**
    * Changes and commits different project version.
    *
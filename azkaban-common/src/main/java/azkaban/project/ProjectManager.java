@@ -31,9 +31,11 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -43,6 +45,17 @@ import java.util.zip.ZipFile;
 public class ProjectManager {
   private static final Logger logger = Logger.getLogger(ProjectManager.class);
 
+  // total nodes and edges of the cached flows, 0 keeps all flows loaded
+  public static final String FLOW_CACHE_SIZE = "project.flow.cache.size";
+  private static final long DEFAULT_FLOW_CACHE_SIZE = 200000;
+
+  // load the projects a page at a time in the background instead of in the
+  // constructor, looking up the ones not loaded yet in the store
+  public static final String LOAD_IN_BACKGROUND = "project.load.background";
+  public static final String LOAD_PAGE_SIZE = "project.load.page.size";
+  private static final int DEFAULT_LOAD_PAGE_SIZE = 500;
+  private static final long LOAD_RETRY_INTERVAL_MS = 10000;
+
   private ConcurrentHashMap<Integer, Project> projectsById =
       new ConcurrentHashMap<Integer, Project>();
   private ConcurrentHashMap<String, Project> projectsByName =
@@ -52,6 +65,13 @@ public class ProjectManager {
   private final File tempDir;
   private final int projectVersionRetention;
   private final boolean creatorDefaultPermissions;
+  // null if every project keeps its flows loaded
+  private final FlowCache flowCache;
+
+  private volatile boolean projectsLoaded = false;
+  private volatile long loadTimeMs = -1;
+  // ids of the projects removed before they were loaded, guarded by this
+  private final Set<Integer> removedWhileLoading = new HashSet<Integer>();
 
   public ProjectManager(ProjectLoader loader, Props props) {
     this.projectLoader = loader;
@@ -69,6 +89,15 @@ public class ProjectManager {
       tempDir.mkdirs();
     }
 
+    long flowCacheSize = props.getLong(FLOW_CACHE_SIZE, DEFAULT_FLOW_CACHE_SIZE);
+    if (flowCacheSize > 0) {
+      logger.info("Caching flows of up to " + flowCacheSize
+          + " nodes and edges");
+      flowCache = new FlowCache(loader, flowCacheSize);
+    } else {
+      flowCache = null;
+    }
+
     // The prop passed to XmlValidatorManager is used to initialize all the
     // validators
     // Each validator will take certain key/value pairs from the prop to
@@ -78,11 +107,17 @@ public class ProjectManager {
     // By instantiating an object of XmlValidatorManager, this will verify the
     // config files for the validators.
     new XmlValidatorManager(prop);
-    loadAllProjects();
+    if (props.getBoolean(LOAD_IN_BACKGROUND, false)) {
+      new ProjectLoaderThread(props.getInt(LOAD_PAGE_SIZE,
+          DEFAULT_LOAD_PAGE_SIZE)).start();
+    } else {
+      loadAllProjects();
+    }
     loadProjectWhiteList();
   }
 
   private void loadAllProjects() {
+    long startTime = System.currentTimeMillis();
     List<Project> projects;
     try {
       projects = projectLoader.fetchAllActiveProjects();
@@ -95,8 +130,111 @@ public class ProjectManager {
     }
 
     for (Project proj : projects) {
-      loadAllProjectFlows(proj);
+      if (flowCache != null) {
+        // flows are loaded on first use
+        proj.setFlowCache(flowCache);
+      } else {
+        loadAllProjectFlows(proj);
+      }
     }
+    loadTimeMs = System.currentTimeMillis() - startTime;
+    projectsLoaded = true;
+  }
+
+  /**
+   * Adds a project read from the store while the projects are loaded in the
+   * background, unless it's been added or removed meanwhile.
+   *
+   * @return the project everyone else gets for its id
+   */
+  private Project addLoadedProject(Project project) {
+    if (flowCache != null) {
+      project.setFlowCache(flowCache);
+    } else {
+      loadAllProjectFlows(project);
+    }
+
+    synchronized (this) {
+      if (removedWhileLoading.contains(project.getId())) {
+        return project;
+      }
+      Project existing = projectsById.putIfAbsent(project.getId(), project);
+      if (existing != null) {
+        return existing;
+      }
+      projectsByName.put(project.getName(), project);
+      return project;
+    }
+  }
+
+  /**
+   * Loads the active projects a page at a time, so the server can serve
+   * requests before all of them are loaded.
+   */
+  private class ProjectLoaderThread extends Thread {
+    private final int pageSize;
+
+    public ProjectLoaderThread(int pageSize) {
+      this.pageSize = pageSize;
+      this.setName("ProjectManager-Project-Loader-Thread");
+      this.setDaemon(true);
+    }
+
+    @Override
+    public void run() {
+      long startTime = System.currentTimeMillis();
+      int lastId = -1;
+      int count = 0;
+      while (true) {
+        try {
+          List<Project> page =
+              projectLoader.fetchActiveProjects(lastId, pageSize);
+          for (Project project : page) {
+            addLoadedProject(project);
+            // a project is only passed once it's loaded, so it's loaded again
+            // on a retry
+            lastId = Math.max(lastId, project.getId());
+            count++;
+          }
+
+          if (page.size() < pageSize) {
+            synchronized (ProjectManager.this) {
+              projectsLoaded = true;
+              removedWhileLoading.clear();
+            }
+            loadTimeMs = System.currentTimeMillis() - startTime;
+            logger.info("Loaded " + count + " projects in " + loadTimeMs
+                + " ms.");
+            return;
+          }
+        } catch (Throwable t) {
+          // anything escaping would leave the projects loading forever
+          logger.error("Failed to load projects after " + lastId
+              + ", retrying.", t);
+          try {
+            Thread.sleep(LOAD_RETRY_INTERVAL_MS);
+          } catch (InterruptedException ie) {
+            logger.info("Interrupted while loading projects.");
+            return;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * False while the projects are still loaded in the background, when the
+   * project lists may not have all of them yet.
+   */
+  public boolean isProjectsLoaded() {
+    return projectsLoaded;
+  }
+
+  /**
+   * Time it took to load all the projects, -1 while they're still loading
+   */
+  public long getLoadTimeMs() {
+    return loadTimeMs;
   }
 
   private void loadAllProjectFlows(Project project) {
@@ -113,6 +251,13 @@ public class ProjectManager {
     }
   }
 
+  /**
+   * @return null if flows aren't cached
+   */
+  public FlowCache getFlowCache() {
+    return flowCache;
+  }
+
   public List<String> getProjectNames() {
     return new ArrayList<String>(projectsByName.keySet());
   }
@@ -196,6 +341,10 @@ public class ProjectManager {
      * @param name
      */
     public Boolean isActiveProject(String name) {
+        if (!projectsLoaded && !projectsByName.containsKey(name)) {
+            Project project = getProject(name);
+            return project != null && project.isActive();
+        }
         return projectsByName.containsKey(name);
     }
 
@@ -205,6 +354,10 @@ public class ProjectManager {
      * @param name
      */
     public Boolean isActiveProject(int id) {
+        if (!projectsLoaded && !projectsById.containsKey(id)) {
+            Project project = getProject(id);
+            return project != null && project.isActive();
+        }
         return projectsById.containsKey(id);
     }
 
@@ -216,12 +369,13 @@ public class ProjectManager {
      * @return
      */
     public Project getProject(String name) {
-        Project fetchedProject = null;
-        if (isActiveProject(name)) {
-            fetchedProject = projectsByName.get(name);
-        } else {
+        Project fetchedProject = projectsByName.get(name);
+        if (fetchedProject == null) {
             try {
                 fetchedProject = projectLoader.fetchProjectByName(name);
+                if (!projectsLoaded && fetchedProject.isActive()) {
+                    fetchedProject = addLoadedProject(fetchedProject);
+                }
             } catch (ProjectManagerException e) {
                 logger.error("Could not load project from store.", e);
             }
@@ -237,12 +391,13 @@ public class ProjectManager {
      * @return
      */
     public Project getProject(int id) {
-        Project fetchedProject = null;
-        if (isActiveProject(id)) {
-            fetchedProject = projectsById.get(id);
-        } else {
+        Project fetchedProject = projectsById.get(id);
+        if (fetchedProject == null) {
             try {
                 fetchedProject = projectLoader.fetchProjectById(id);
+                if (!projectsLoaded && fetchedProject.isActive()) {
+                    fetchedProject = addLoadedProject(fetchedProject);
+                }
             } catch (ProjectManagerException e) {
                 logger.error("Could not load project from store.", e);
             }
@@ -263,7 +418,7 @@ public class ProjectManager {
           "Project names must start with a letter, followed by any number of letters, digits, '-' or '_'.");
     }
 
-    if (projectsByName.containsKey(projectName)) {
+    if (isActiveProject(projectName)) {
       throw new ProjectManagerException("Project already exists.");
     }
 
@@ -271,6 +426,9 @@ public class ProjectManager {
         + creator.getUserId());
     Project newProject =
         projectLoader.createNewProject(projectName, description, creator);
+    if (flowCache != null) {
+      newProject.setFlowCache(flowCache);
+    }
     projectsByName.put(newProject.getName(), newProject);
     projectsById.put(newProject.getId(), newProject);
 
@@ -326,6 +484,9 @@ public class ProjectManager {
 
     projectsByName.remove(project.getName());
     projectsById.remove(project.getId());
+    if (!projectsLoaded) {
+      removedWhileLoading.add(project.getId());
+    }
 
     return project;
   }
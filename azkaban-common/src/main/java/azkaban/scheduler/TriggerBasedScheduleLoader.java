@@ -129,10 +129,14 @@ public class TriggerBasedScheduleLoader implements ScheduleLoader {
   @Override
   public synchronized List<Schedule> loadSchedules()
       throws ScheduleManagerException {
+    // triggers admitted later may be older than the ones already here
+    boolean triggersLoaded = triggerManager.isTriggersLoaded();
     List<Trigger> triggers = triggerManager.getTriggers(triggerSource);
     List<Schedule> schedules = new ArrayList<Schedule>();
     for (Trigger t : triggers) {
-      lastUpdateTime = Math.max(lastUpdateTime, t.getLastModifyTime());
+      if (triggersLoaded) {
+        lastUpdateTime = Math.max(lastUpdateTime, t.getLastModifyTime());
+      }
       Schedule s = triggerToSchedule(t);
       schedules.add(s);
       System.out.println("loaded schedule for " + s.getProjectId()
@@ -194,6 +198,9 @@ public class TriggerBasedScheduleLoader implements ScheduleLoader {
   @Override
   public synchronized List<Schedule> loadUpdatedSchedules()
       throws ScheduleManagerException {
+    // triggers admitted later may be older than the ones already here, so
+    // everything is looked at again until all of them are
+    boolean triggersLoaded = triggerManager.isTriggersLoaded();
     List<Trigger> triggers;
     try {
       triggers =
@@ -204,7 +211,9 @@ public class TriggerBasedScheduleLoader implements ScheduleLoader {
     }
     List<Schedule> schedules = new ArrayList<Schedule>();
     for (Trigger t : triggers) {
-      lastUpdateTime = Math.max(lastUpdateTime, t.getLastModifyTime());
+      if (triggersLoaded) {
+        lastUpdateTime = Math.max(lastUpdateTime, t.getLastModifyTime());
+      }
       Schedule s = triggerToSchedule(t);
       schedules.add(s);
       System.out.println("loaded schedule for " + s.getProjectId()
@@ -21,8 +21,11 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
@@ -37,9 +40,21 @@ import azkaban.utils.JSONUtils;
 import azkaban.utils.Props;
 
 public class JdbcTriggerLoader extends AbstractJdbcLoader implements
-    TriggerLoader {
+    TriggerLoader, TriggerLeaseLoader {
   private static Logger logger = Logger.getLogger(JdbcTriggerLoader.class);
 
+  // write the states checks leave triggers in behind, in batches. Off by
+  // default, since the states queued in the last flush interval are lost if
+  // the server dies. The trigger manager writes the states of triggers whose
+  // actions run through with updateTriggers.
+  public static final String WRITE_BEHIND = "trigger.write.behind";
+  public static final String WRITE_BEHIND_INTERVAL_MS =
+      "trigger.write.behind.interval.ms";
+  public static final String WRITE_BEHIND_BATCH_SIZE =
+      "trigger.write.behind.batch.size";
+  private static final long DEFAULT_WRITE_BEHIND_INTERVAL_MS = 500;
+  private static final int DEFAULT_WRITE_BEHIND_BATCH_SIZE = 500;
+
   private EncodingType defaultEncodingType = EncodingType.GZIP;
 
   private static final String triggerTblName = "triggers";
@@ -52,10 +67,41 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
       "SELECT trigger_id, trigger_source, modify_time, enc_type, data FROM "
           + triggerTblName;
 
+  private static String GET_TRIGGERS_AFTER_ID =
+      "SELECT trigger_id, trigger_source, modify_time, enc_type, data FROM "
+          + triggerTblName + " WHERE trigger_id>? ORDER BY trigger_id LIMIT ?";
+
   private static String GET_TRIGGER =
       "SELECT trigger_id, trigger_source, modify_time, enc_type, data FROM "
           + triggerTblName + " WHERE trigger_id=?";
 
+  private static String GET_TRIGGER_MODIFY_TIMES =
+      "SELECT trigger_id, modify_time FROM " + triggerTblName
+          + " WHERE modify_time > ?";
+
+  private static String GET_TRIGGERS_OF_SHARDS =
+      "SELECT trigger_id, trigger_source, modify_time, enc_type, data FROM "
+          + triggerTblName + " WHERE MOD(trigger_id, ?) IN ";
+
+  private static String UPDATE_HEARTBEAT =
+      "UPDATE trigger_owners SET heartbeat_time=? WHERE owner=?";
+
+  private static String ADD_OWNER =
+      "INSERT INTO trigger_owners (owner, heartbeat_time) values (?,?)";
+
+  private static String GET_LIVE_OWNERS =
+      "SELECT owner FROM trigger_owners WHERE heartbeat_time>?";
+
+  private static String RENEW_LEASE =
+      "UPDATE trigger_leases SET owner=?, lease_expire_time=? WHERE shard=? "
+          + "AND (owner=? OR owner IS NULL OR lease_expire_time<?)";
+
+  private static String ADD_LEASE =
+      "INSERT INTO trigger_leases (shard, owner, lease_expire_time) values (?,?,?)";
+
+  private static String RELEASE_LEASE =
+      "UPDATE trigger_leases SET owner=NULL, lease_expire_time=0 WHERE shard=? AND owner=?";
+
   private static String ADD_TRIGGER = "INSERT INTO " + triggerTblName
       + " ( modify_time) values (?)";
 
@@ -67,6 +113,15 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
           + triggerTblName
           + " SET trigger_source=?, modify_time=?, enc_type=?, data=? WHERE trigger_id=?";
 
+  // doesn't overwrite a newer state written right away meanwhile
+  private static String UPDATE_TRIGGER_STATE =
+      "UPDATE "
+          + triggerTblName
+          + " SET trigger_source=?, modify_time=?, enc_type=?, data=? WHERE trigger_id=? AND modify_time<=?";
+
+  // null writes the trigger states through
+  private final TriggerUpdateBatcher updateBatcher;
+
   public EncodingType getDefaultEncodingType() {
     return defaultEncodingType;
   }
@@ -77,6 +132,23 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
 
   public JdbcTriggerLoader(Props props) {
     super(props);
+    if (props.getBoolean(WRITE_BEHIND, false)) {
+      updateBatcher =
+          new TriggerUpdateBatcher(new TriggerStateWriter(), props.getLong(
+              WRITE_BEHIND_INTERVAL_MS, DEFAULT_WRITE_BEHIND_INTERVAL_MS),
+              props.getInt(WRITE_BEHIND_BATCH_SIZE,
+                  DEFAULT_WRITE_BEHIND_BATCH_SIZE));
+      updateBatcher.start();
+    } else {
+      updateBatcher = null;
+    }
+  }
+
+  /**
+   * Null unless the trigger states are written behind
+   */
+  public TriggerUpdateBatcher getUpdateBatcher() {
+    return updateBatcher;
   }
 
   @Override
@@ -133,9 +205,151 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     return triggers;
   }
 
+  @Override
+  public List<Trigger> loadTriggers(int afterId, int num)
+      throws TriggerLoaderException {
+    Connection connection = getConnection();
+
+    QueryRunner runner = new QueryRunner();
+    ResultSetHandler<List<Trigger>> handler = new TriggerResultHandler();
+
+    try {
+      return runner.query(connection, GET_TRIGGERS_AFTER_ID, handler, afterId,
+          num);
+    } catch (SQLException e) {
+      logger.error(GET_TRIGGERS_AFTER_ID + " failed.");
+      throw new TriggerLoaderException("Loading triggers from db failed. ", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  @Override
+  public void heartbeat(String owner, long time) throws TriggerLoaderException {
+    QueryRunner runner = createQueryRunner();
+    try {
+      if (runner.update(UPDATE_HEARTBEAT, time, owner) == 0) {
+        runner.update(ADD_OWNER, owner, time);
+      }
+    } catch (SQLException e) {
+      throw new TriggerLoaderException("Failed to record heartbeat of "
+          + owner, e);
+    }
+  }
+
+  @Override
+  public List<String> fetchLiveOwners(long since)
+      throws TriggerLoaderException {
+    QueryRunner runner = createQueryRunner();
+    try {
+      return runner.query(GET_LIVE_OWNERS, new ResultSetHandler<List<String>>() {
+        @Override
+        public List<String> handle(ResultSet rs) throws SQLException {
+          List<String> owners = new ArrayList<String>();
+          while (rs.next()) {
+            owners.add(rs.getString(1));
+          }
+          return owners;
+        }
+      }, since);
+    } catch (SQLException e) {
+      throw new TriggerLoaderException("Failed to fetch trigger owners", e);
+    }
+  }
+
+  @Override
+  public boolean acquireLease(int shard, String owner, long now,
+      long expireTime) throws TriggerLoaderException {
+    QueryRunner runner = createQueryRunner();
+    try {
+      if (runner.update(RENEW_LEASE, owner, expireTime, shard, owner, now) > 0) {
+        return true;
+      }
+    } catch (SQLException e) {
+      throw new TriggerLoaderException("Failed to acquire lease of shard "
+          + shard, e);
+    }
+
+    // no one has held the shard yet, or someone else holds it and the insert
+    // fails
+    try {
+      runner.update(ADD_LEASE, shard, owner, expireTime);
+      return true;
+    } catch (SQLException e) {
+      if (logger.isDebugEnabled()) {
+        logger.debug("Lease of shard " + shard + " is held.", e);
+      }
+      return false;
+    }
+  }
+
+  @Override
+  public void releaseLease(int shard, String owner)
+      throws TriggerLoaderException {
+    QueryRunner runner = createQueryRunner();
+    try {
+      runner.update(RELEASE_LEASE, shard, owner);
+    } catch (SQLException e) {
+      throw new TriggerLoaderException("Failed to release lease of shard "
+          + shard, e);
+    }
+  }
+
+  @Override
+  public Map<Integer, Long> fetchTriggerModifyTimes(long modifiedAfter)
+      throws TriggerLoaderException {
+    QueryRunner runner = createQueryRunner();
+    try {
+      return runner.query(GET_TRIGGER_MODIFY_TIMES,
+          new ResultSetHandler<Map<Integer, Long>>() {
+            @Override
+            public Map<Integer, Long> handle(ResultSet rs) throws SQLException {
+              Map<Integer, Long> modifyTimes = new HashMap<Integer, Long>();
+              while (rs.next()) {
+                modifyTimes.put(rs.getInt(1), rs.getLong(2));
+              }
+              return modifyTimes;
+            }
+          }, modifiedAfter);
+    } catch (SQLException e) {
+      throw new TriggerLoaderException("Failed to fetch trigger modify times",
+          e);
+    }
+  }
+
+  @Override
+  public List<Trigger> loadTriggers(int numShards, Collection<Integer> shards)
+      throws TriggerLoaderException {
+    if (shards.isEmpty()) {
+      return new ArrayList<Trigger>();
+    }
+
+    StringBuilder query = new StringBuilder(GET_TRIGGERS_OF_SHARDS);
+    List<Object> params = new ArrayList<Object>();
+    params.add(numShards);
+    query.append('(');
+    for (Integer shard : shards) {
+      query.append(params.size() == 1 ? "?" : ",?");
+      params.add(shard);
+    }
+    query.append(')');
+
+    QueryRunner runner = createQueryRunner();
+    try {
+      return runner.query(query.toString(), new TriggerResultHandler(),
+          params.toArray());
+    } catch (SQLException e) {
+      logger.error(query + " failed.");
+      throw new TriggerLoaderException("Loading triggers from db failed. ", e);
+    }
+  }
+
   @Override
   public void removeTrigger(Trigger t) throws TriggerLoaderException {
     logger.info("Removing trigger " + t.toString() + " from db.");
+    if (updateBatcher != null) {
+      updateBatcher.discard(t.getTriggerId());
+    }
 
     QueryRunner runner = createQueryRunner();
     try {
@@ -198,6 +412,9 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
       logger.debug("Updating trigger " + t.getTriggerId() + " into db.");
     }
     t.setLastModifyTime(System.currentTimeMillis());
+    if (updateBatcher != null) {
+      updateBatcher.discard(t.getTriggerId());
+    }
     Connection connection = getConnection();
     try {
       updateTrigger(connection, t, defaultEncodingType);
@@ -210,20 +427,93 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     }
   }
 
+  @Override
+  public void updateTriggers(List<Trigger> triggers)
+      throws TriggerLoaderException {
+    if (triggers.isEmpty()) {
+      return;
+    }
+    EncodingType encType = defaultEncodingType;
+    long modifyTime = System.currentTimeMillis();
+    Object[][] params = new Object[triggers.size()][];
+    for (int i = 0; i < triggers.size(); i++) {
+      Trigger t = triggers.get(i);
+      t.setLastModifyTime(modifyTime);
+      if (updateBatcher != null) {
+        updateBatcher.discard(t.getTriggerId());
+      }
+      byte[] data;
+      try {
+        data = encode(t.toJson(), encType);
+      } catch (IOException e) {
+        throw new TriggerLoaderException("Error encoding the trigger "
+            + t.toString(), e);
+      }
+      params[i] =
+          new Object[] { t.getSource(), t.getLastModifyTime(),
+              encType.getNumVal(), data, t.getTriggerId() };
+    }
+
+    Connection connection = getConnection();
+    try {
+      new QueryRunner().batch(connection, UPDATE_TRIGGER, params);
+      connection.commit();
+      if (logger.isDebugEnabled()) {
+        logger.debug("Updated " + triggers.size() + " triggers.");
+      }
+    } catch (SQLException e) {
+      logger.error(UPDATE_TRIGGER + " failed.");
+      throw new TriggerLoaderException("Updating " + triggers.size()
+          + " triggers into db failed. ", e);
+    } finally {
+      DbUtils.closeQuietly(connection);
+    }
+  }
+
+  @Override
+  public void updateTriggerState(Trigger t) throws TriggerLoaderException {
+    if (updateBatcher == null) {
+      updateTrigger(t);
+      return;
+    }
+    t.setLastModifyTime(System.currentTimeMillis());
+    updateBatcher.add(t);
+  }
+
+  @Override
+  public void flush() throws TriggerLoaderException {
+    if (updateBatcher != null) {
+      updateBatcher.flush();
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    if (updateBatcher != null) {
+      updateBatcher.shutdown();
+    }
+  }
+
+  private static byte[] encode(Object jsonObj, EncodingType encType)
+      throws IOException {
+    String json = JSONUtils.toJSON(jsonObj);
+    byte[] stringData = json.getBytes("UTF-8");
+    byte[] data = stringData;
+
+    if (encType == EncodingType.GZIP) {
+      data = GZIPUtils.gzipBytes(stringData);
+    }
+    logger.debug("NumChars: " + json.length() + " UTF-8:" + stringData.length
+        + " Gzip:" + data.length);
+    return data;
+  }
+
   private void updateTrigger(Connection connection, Trigger t,
       EncodingType encType) throws TriggerLoaderException {
 
-    String json = JSONUtils.toJSON(t.toJson());
     byte[] data = null;
     try {
-      byte[] stringData = json.getBytes("UTF-8");
-      data = stringData;
-
-      if (encType == EncodingType.GZIP) {
-        data = GZIPUtils.gzipBytes(stringData);
-      }
-      logger.debug("NumChars: " + json.length() + " UTF-8:" + stringData.length
-          + " Gzip:" + data.length);
+      data = encode(t.toJson(), encType);
     } catch (IOException e) {
       throw new TriggerLoaderException("Error encoding the trigger "
           + t.toString());
@@ -251,6 +541,47 @@ public class JdbcTriggerLoader extends AbstractJdbcLoader implements
     }
   }
 
+  /**
+   * Writes a batch of trigger states in one statement batch and transaction
+   */
+  private class TriggerStateWriter implements TriggerUpdateBatcher.StateWriter {
+    @Override
+    public void write(List<TriggerUpdateBatcher.TriggerState> states)
+        throws TriggerLoaderException {
+      EncodingType encType = defaultEncodingType;
+      Object[][] params = new Object[states.size()][];
+      for (int i = 0; i < states.size(); i++) {
+        TriggerUpdateBatcher.TriggerState state = states.get(i);
+        byte[] data;
+        try {
+          data = encode(state.getJson(), encType);
+        } catch (IOException e) {
+          throw new TriggerLoaderException("Error encoding the trigger "
+              + state.getTriggerId(), e);
+        }
+        params[i] =
+            new Object[] { state.getSource(), state.getModifyTime(),
+                encType.getNumVal(), data, state.getTriggerId(),
+                state.getModifyTime() };
+      }
+
+      Connection connection = getConnection();
+      try {
+        new QueryRunner().batch(connection, UPDATE_TRIGGER_STATE, params);
+        connection.commit();
+        if (logger.isDebugEnabled()) {
+          logger.debug("Wrote " + states.size() + " trigger states.");
+        }
+      } catch (SQLException e) {
+        logger.error(UPDATE_TRIGGER_STATE + " failed.");
+        throw new TriggerLoaderException("Writing " + states.size()
+            + " trigger states into db failed. ", e);
+      } finally {
+        DbUtils.closeQuietly(connection);
+      }
+    }
+  }
+
   private static class LastInsertID implements ResultSetHandler<Long> {
     private static String LAST_INSERT_ID = "SELECT LAST_INSERT_ID()";
 
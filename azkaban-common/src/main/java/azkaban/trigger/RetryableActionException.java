@@ -0,0 +1,34 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+/**
+ * Thrown by a trigger action that failed before it did any of what it does,
+ * so it is safe to try it again. Actions failing any other way aren't tried
+ * again, since trying them again may do some of it twice.
+ */
+public class RetryableActionException extends TriggerException {
+  private static final long serialVersionUID = 1L;
+
+  public RetryableActionException(String message) {
+    super(message);
+  }
+
+  public RetryableActionException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Runs the actions of the triggers that fire on a pool of threads, so a slow
+ * action, like sending mail through a slow server, doesn't hold up the other
+ * triggers.
+ *
+ * The actions of a trigger run one after the other, and each time a trigger
+ * fires its actions run after the ones it fired before. An action that throws
+ * a {@link RetryableActionException} is tried again after an interval, other
+ * failures aren't since the action may have done part of what it does. An
+ * action that runs longer than the timeout is interrupted and isn't tried
+ * again either.
+ *
+ * With no threads the actions run right away on the calling thread.
+ */
+public class TriggerActionRunner {
+  private static final Logger logger = Logger
+      .getLogger(TriggerActionRunner.class);
+
+  private final ThreadPoolExecutor workers;
+  private final ScheduledExecutorService timer;
+  private final long timeoutMs;
+  private final int maxRetries;
+  private final long retryIntervalMs;
+
+  // runs waiting by trigger id, the first of which is running, guarded by this
+  private final Map<Integer, Deque<ActionRun>> runs =
+      new HashMap<Integer, Deque<ActionRun>>();
+
+  private final AtomicInteger numPending = new AtomicInteger();
+  private final AtomicLong numSucceeded = new AtomicLong();
+  private final AtomicLong numFailed = new AtomicLong();
+  private final AtomicLong numRetried = new AtomicLong();
+  private final AtomicLong numTimedOut = new AtomicLong();
+  private final AtomicLong numAttempts = new AtomicLong();
+  private final AtomicLong totalTimeMs = new AtomicLong();
+
+  public TriggerActionRunner(int numThreads, long timeoutMs, int maxRetries,
+      long retryIntervalMs) {
+    this.timeoutMs = timeoutMs;
+    this.maxRetries = maxRetries;
+    this.retryIntervalMs = retryIntervalMs;
+    if (numThreads > 0) {
+      workers =
+          new ThreadPoolExecutor(numThreads, numThreads, 60, TimeUnit.SECONDS,
+              new LinkedBlockingQueue<Runnable>(), new NamedThreadFactory(
+                  "azk-trigger-action-"));
+      workers.allowCoreThreadTimeOut(true);
+      timer =
+          Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory(
+              "azk-trigger-action-timer-"));
+    } else {
+      workers = null;
+      timer = null;
+    }
+  }
+
+  /**
+   * Runs the actions the trigger fired
+   *
+   * @param kind what fired them, for the logs
+   */
+  public void run(Trigger t, List<TriggerAction> actions, String kind) {
+    if (actions.isEmpty()) {
+      return;
+    }
+
+    ActionRun run =
+        new ActionRun(t.getTriggerId(), new ArrayList<TriggerAction>(actions),
+            kind);
+    numPending.addAndGet(actions.size());
+    if (workers == null) {
+      run.runInline();
+      return;
+    }
+
+    synchronized (this) {
+      Deque<ActionRun> waiting = runs.get(run.triggerId);
+      if (waiting != null) {
+        waiting.add(run);
+        return;
+      }
+      waiting = new ArrayDeque<ActionRun>();
+      waiting.add(run);
+      runs.put(run.triggerId, waiting);
+    }
+    execute(run);
+  }
+
+  public void shutdown() {
+    if (workers != null) {
+      workers.shutdownNow();
+      timer.shutdownNow();
+    }
+  }
+
+  /**
+   * Actions waiting to run or running
+   */
+  public int getNumPending() {
+    return numPending.get();
+  }
+
+  public long getNumSucceeded() {
+    return numSucceeded.get();
+  }
+
+  /**
+   * Actions that failed every time they were tried
+   */
+  public long getNumFailed() {
+    return numFailed.get();
+  }
+
+  public long getNumRetried() {
+    return numRetried.get();
+  }
+
+  public long getNumTimedOut() {
+    return numTimedOut.get();
+  }
+
+  public long getAverageActionTimeMs() {
+    long attempts = numAttempts.get();
+    return attempts == 0 ? 0 : totalTimeMs.get() / attempts;
+  }
+
+  private void execute(Runnable task) {
+    try {
+      workers.execute(task);
+    } catch (RejectedExecutionException e) {
+      logger.warn("Trigger action runner is shut down, dropping actions.");
+    }
+  }
+
+  /*
+   * The actions one trigger fired once
+   */
+  private class ActionRun implements Runnable {
+    private static final int RUNNING = 0;
+    private static final int DONE = 1;
+    private static final int TIMED_OUT = 2;
+
+    private final int triggerId;
+    private final List<TriggerAction> actions;
+    private final String kind;
+    private int index = 0;
+    private int attempt = 0;
+
+    private ActionRun(int triggerId, List<TriggerAction> actions, String kind) {
+      this.triggerId = triggerId;
+      this.actions = actions;
+      this.kind = kind;
+    }
+
+    private void runInline() {
+      for (TriggerAction action : actions) {
+        logger.info("Doing " + kind + " actions");
+        long startTime = System.currentTimeMillis();
+        try {
+          action.doAction();
+          numSucceeded.incrementAndGet();
+        } catch (Throwable th) {
+          numFailed.incrementAndGet();
+          logger.error("Failed to do " + kind + " action "
+              + action.getDescription(), th);
+        }
+        recordAttempt(startTime);
+        numPending.decrementAndGet();
+      }
+    }
+
+    @Override
+    public void run() {
+      TriggerAction action = actions.get(index);
+      logger.info("Doing " + kind + " action " + action.getDescription()
+          + " of trigger " + triggerId);
+
+      final Thread thread = Thread.currentThread();
+      final AtomicInteger state = new AtomicInteger(RUNNING);
+      ScheduledFuture<?> timeout = null;
+      if (timeoutMs > 0) {
+        timeout = timer.schedule(new Runnable() {
+          @Override
+          public void run() {
+            if (state.compareAndSet(RUNNING, TIMED_OUT)) {
+              thread.interrupt();
+            }
+          }
+        }, timeoutMs, TimeUnit.MILLISECONDS);
+      }
+
+      long startTime = System.currentTimeMillis();
+      Throwable error = null;
+      try {
+        action.doAction();
+      } catch (Throwable th) {
+        error = th;
+      } finally {
+        if (timeout != null) {
+          timeout.cancel(false);
+        }
+      }
+      recordAttempt(startTime);
+
+      if (!state.compareAndSet(RUNNING, DONE)) {
+        // clear the interrupt in case the action didn't
+        Thread.interrupted();
+        numTimedOut.incrementAndGet();
+        logger.error("The " + kind + " action " + action.getDescription()
+            + " of trigger " + triggerId + " timed out after " + timeoutMs
+            + " ms.", error);
+      } else if (error == null) {
+        numSucceeded.incrementAndGet();
+      } else if (attempt < maxRetries
+          && error instanceof RetryableActionException) {
+        attempt++;
+        numRetried.incrementAndGet();
+        logger.warn("Failed to do " + kind + " action "
+            + action.getDescription() + " of trigger " + triggerId
+            + ", trying again in " + retryIntervalMs + " ms.", error);
+        retryLater();
+        return;
+      } else {
+        numFailed.incrementAndGet();
+        logger.error("Failed to do " + kind + " action "
+            + action.getDescription() + " of trigger " + triggerId, error);
+      }
+
+      numPending.decrementAndGet();
+      index++;
+      attempt = 0;
+      if (index < actions.size()) {
+        execute(this);
+      } else {
+        runNext();
+      }
+    }
+
+    private void retryLater() {
+      try {
+        timer.schedule(new Runnable() {
+          @Override
+          public void run() {
+            execute(ActionRun.this);
+          }
+        }, retryIntervalMs, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        logger.warn("Trigger action runner is shut down, dropping actions.");
+      }
+    }
+
+    private void runNext() {
+      ActionRun next;
+      synchronized (TriggerActionRunner.this) {
+        Deque<ActionRun> waiting = runs.get(triggerId);
+        waiting.poll();
+        next = waiting.peek();
+        if (next == null) {
+          runs.remove(triggerId);
+        }
+      }
+      if (next != null) {
+        execute(next);
+      }
+    }
+  }
+
+  private void recordAttempt(long startTime) {
+    numAttempts.incrementAndGet();
+    totalTimeMs.addAndGet(System.currentTimeMillis() - startTime);
+  }
+
+  private static class NamedThreadFactory implements ThreadFactory {
+    private final String prefix;
+    private final AtomicInteger count = new AtomicInteger();
+
+    private NamedThreadFactory(String prefix) {
+      this.prefix = prefix;
+    }
+
+    @Override
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, prefix + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stores what the web servers sharing the triggers need to split them up:
+ * which servers are alive and which of them owns each shard of the triggers.
+ */
+public interface TriggerLeaseLoader {
+
+  /**
+   * Records that the owner is alive at the time
+   */
+  public void heartbeat(String owner, long time) throws TriggerLoaderException;
+
+  /**
+   * Owners whose last heartbeat is after the time
+   */
+  public List<String> fetchLiveOwners(long since)
+      throws TriggerLoaderException;
+
+  /**
+   * Gives the owner the lease of the shard until expireTime, if no one else
+   * holds it at now.
+   *
+   * @return true if the owner holds the lease
+   */
+  public boolean acquireLease(int shard, String owner, long now,
+      long expireTime) throws TriggerLoaderException;
+
+  /**
+   * Gives up the owner's lease of the shard
+   */
+  public void releaseLease(int shard, String owner)
+      throws TriggerLoaderException;
+
+  /**
+   * Last modify time of the stored triggers modified after the time by
+   * trigger id, to find the triggers other servers changed. All of them with
+   * -1.
+   */
+  public Map<Integer, Long> fetchTriggerModifyTimes(long modifiedAfter)
+      throws TriggerLoaderException;
+
+  /**
+   * Loads the triggers whose id modulo numShards is one of the shards
+   */
+  public List<Trigger> loadTriggers(int numShards, Collection<Integer> shards)
+      throws TriggerLoaderException;
+}
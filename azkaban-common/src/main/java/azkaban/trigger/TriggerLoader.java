@@ -26,8 +26,38 @@ public interface TriggerLoader {
 
   public void updateTrigger(Trigger t) throws TriggerLoaderException;
 
+  /**
+   * Writes the triggers right away, in one batch. Triggers that were removed
+   * meanwhile are skipped.
+   */
+  public void updateTriggers(List<Trigger> triggers)
+      throws TriggerLoaderException;
+
+  /**
+   * Saves the state a check left the trigger in. It may be written behind,
+   * and is only durable once flush returns.
+   */
+  public void updateTriggerState(Trigger t) throws TriggerLoaderException;
+
+  /**
+   * Writes the trigger states that haven't been written yet
+   */
+  public void flush() throws TriggerLoaderException;
+
+  /**
+   * Writes the trigger states that haven't been written yet and stops
+   * writing behind
+   */
+  public void shutdown();
+
   public List<Trigger> loadTriggers() throws TriggerLoaderException;
 
+  /**
+   * Loads up to num triggers with ids greater than afterId, ordered by id
+   */
+  public List<Trigger> loadTriggers(int afterId, int num)
+      throws TriggerLoaderException;
+
   public Trigger loadTrigger(int triggerId) throws TriggerLoaderException;
 
   public List<Trigger> getUpdatedTriggers(long lastUpdateTime)
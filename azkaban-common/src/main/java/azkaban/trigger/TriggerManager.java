@@ -26,14 +26,42 @@ import azkaban.utils.Props;
 import org.apache.log4j.Logger;
 
 import java.util.*;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.PriorityBlockingQueue;
 
 public class TriggerManager extends EventHandler implements
     TriggerManagerAdapter {
   private static Logger logger = Logger.getLogger(TriggerManager.class);
   public static final long DEFAULT_SCANNER_INTERVAL_MS = 60000;
+  // trigger info with the execution the trigger is checked again for when it
+  // finishes
+  public static final String MONITORED_EXECUTION =
+      "monitored.finished.execution";
+
+  // start the scanner right away and admit the triggers into it a page at a
+  // time in the background
+  public static final String LOAD_IN_BACKGROUND = "trigger.load.background";
+  public static final String LOAD_PAGE_SIZE = "trigger.load.page.size";
+  private static final int DEFAULT_LOAD_PAGE_SIZE = 500;
+  private static final long LOAD_RETRY_INTERVAL_MS = 10000;
+
+  // threads running the trigger actions, 0 runs them on the scanner thread
+  public static final String ACTION_THREADS = "trigger.action.threads";
+  public static final String ACTION_TIMEOUT_MS = "trigger.action.timeout.ms";
+  public static final String ACTION_RETRIES = "trigger.action.retries";
+  public static final String ACTION_RETRY_INTERVAL_MS =
+      "trigger.action.retry.interval.ms";
+  private static final int DEFAULT_ACTION_THREADS = 10;
+  private static final long DEFAULT_ACTION_TIMEOUT_MS = 5 * 60 * 1000;
+  // only actions that failed before doing anything are tried again
+  private static final int DEFAULT_ACTION_RETRIES = 0;
+  private static final long DEFAULT_ACTION_RETRY_INTERVAL_MS = 10000;
+
+  // with shards, triggers other servers changed are read after every lease
+  // renewal, but the whole table is only read this often to find the ones
+  // they removed
+  public static final String FULL_SYNC_INTERVAL_MS =
+      "trigger.full.sync.interval.ms";
+  private static final long DEFAULT_FULL_SYNC_INTERVAL_MS = 60000;
 
   private static Map<Integer, Trigger> triggerIdMap =
       new ConcurrentHashMap<Integer, Trigger>();
@@ -43,6 +71,7 @@ public class TriggerManager extends EventHandler implements
   private TriggerLoader triggerLoader;
 
   private final TriggerScannerThread runnerThread;
+  private final TriggerActionRunner actionRunner;
   private long lastRunnerThreadCheckTime = -1;
   private long runnerThreadIdleTime = -1;
   private LocalTriggerJMX jmxStats = new LocalTriggerJMX();
@@ -54,6 +83,22 @@ public class TriggerManager extends EventHandler implements
 
   private String scannerStage = "";
 
+  private final boolean loadInBackground;
+  private final int loadPageSize;
+  private TriggerLoaderThread loaderThread;
+  private volatile boolean triggersLoaded = false;
+  private volatile long loadTimeMs = -1;
+  // ids of the triggers removed before they were admitted, guarded by syncObj
+  private final Set<Integer> removedWhileLoading = new HashSet<Integer>();
+
+  // null unless the triggers are split between several servers
+  private final TriggerShardManager shardManager;
+  // ids of the triggers removed here to the time they were removed, so a
+  // sync that read them before doesn't bring them back, guarded by syncObj
+  private final Map<Integer, Long> recentlyRemoved =
+      new HashMap<Integer, Long>();
+  private final long fullSyncIntervalMs;
+
   public TriggerManager(Props props, TriggerLoader triggerLoader,
       ExecutorManager executorManager) throws TriggerManagerException {
 
@@ -62,6 +107,38 @@ public class TriggerManager extends EventHandler implements
     long scannerInterval =
         props.getLong("trigger.scan.interval", DEFAULT_SCANNER_INTERVAL_MS);
     runnerThread = new TriggerScannerThread(scannerInterval);
+    actionRunner =
+        new TriggerActionRunner(props.getInt(ACTION_THREADS,
+            DEFAULT_ACTION_THREADS), props.getLong(ACTION_TIMEOUT_MS,
+            DEFAULT_ACTION_TIMEOUT_MS), props.getInt(ACTION_RETRIES,
+            DEFAULT_ACTION_RETRIES), props.getLong(ACTION_RETRY_INTERVAL_MS,
+            DEFAULT_ACTION_RETRY_INTERVAL_MS));
+    loadInBackground = props.getBoolean(LOAD_IN_BACKGROUND, false);
+    loadPageSize = props.getInt(LOAD_PAGE_SIZE, DEFAULT_LOAD_PAGE_SIZE);
+
+    int numShards = props.getInt(TriggerShardManager.SHARD_COUNT, 0);
+    if (numShards > 0) {
+      if (!(triggerLoader instanceof TriggerLeaseLoader)) {
+        throw new TriggerManagerException("Trigger loader "
+            + triggerLoader.getClass().getName()
+            + " can't hold the leases of trigger shards.");
+      }
+      String owner =
+          props.getString(TriggerShardManager.OWNER,
+              props.getString("server.hostname", "localhost") + ":"
+                  + props.getString("server.port", "8081"));
+      shardManager =
+          new TriggerShardManager((TriggerLeaseLoader) triggerLoader,
+              new ShardSync(), numShards, owner, props.getLong(
+                  TriggerShardManager.LEASE_DURATION_MS,
+                  TriggerShardManager.DEFAULT_LEASE_DURATION_MS),
+              props.getLong(TriggerShardManager.LEASE_RENEW_INTERVAL_MS,
+                  TriggerShardManager.DEFAULT_LEASE_RENEW_INTERVAL_MS));
+    } else {
+      shardManager = null;
+    }
+    fullSyncIntervalMs =
+        props.getLong(FULL_SYNC_INTERVAL_MS, DEFAULT_FULL_SYNC_INTERVAL_MS);
 
     checkerTypeLoader = new CheckerTypeLoader();
     actionTypeLoader = new ActionTypeLoader();
@@ -83,7 +160,15 @@ public class TriggerManager extends EventHandler implements
 
   @Override
   public void start() throws TriggerManagerException {
+    if (loadInBackground) {
+      runnerThread.start();
+      loaderThread = new TriggerLoaderThread();
+      loaderThread.start();
+      startShardManager();
+      return;
+    }
 
+    long startTime = System.currentTimeMillis();
     try {
       // expect loader to return valid triggers
       List<Trigger> triggers = triggerLoader.loadTriggers();
@@ -95,8 +180,31 @@ public class TriggerManager extends EventHandler implements
       e.printStackTrace();
       throw new TriggerManagerException(e);
     }
+    loadTimeMs = System.currentTimeMillis() - startTime;
+    triggersLoaded = true;
 
     runnerThread.start();
+    startShardManager();
+  }
+
+  private void startShardManager() {
+    if (shardManager != null) {
+      logger.info("Checking the triggers of " + shardManager.getNumShards()
+          + " shards as " + shardManager.getOwner());
+      shardManager.start();
+    }
+  }
+
+  @Override
+  public boolean isTriggersLoaded() {
+    return triggersLoaded;
+  }
+
+  /**
+   * Time it took to load all the triggers, -1 while they're still loading
+   */
+  public long getLoadTimeMs() {
+    return loadTimeMs;
   }
 
   protected CheckerTypeLoader getCheckerLoader() {
@@ -122,15 +230,20 @@ public class TriggerManager extends EventHandler implements
   public void removeTrigger(int id) throws TriggerManagerException {
     synchronized (syncObj) {
       Trigger t = triggerIdMap.get(id);
+      if (t == null && !triggersLoaded) {
+        // not admitted yet
+        t = loadNotAdmittedTrigger(id);
+      }
       if (t != null) {
-        removeTrigger(triggerIdMap.get(id));
+        removeTrigger(t);
       }
     }
   }
 
   public void updateTrigger(int id) throws TriggerManagerException {
     synchronized (syncObj) {
-      if (!triggerIdMap.containsKey(id)) {
+      if (!triggerIdMap.containsKey(id)
+          && (triggersLoaded || loadNotAdmittedTrigger(id) == null)) {
         throw new TriggerManagerException("The trigger to update " + id
             + " doesn't exist!");
       }
@@ -157,6 +270,12 @@ public class TriggerManager extends EventHandler implements
     synchronized (syncObj) {
       runnerThread.deleteTrigger(t);
       triggerIdMap.remove(t.getTriggerId());
+      if (!triggersLoaded) {
+        removedWhileLoading.add(t.getTriggerId());
+      }
+      if (shardManager != null) {
+        recentlyRemoved.put(t.getTriggerId(), System.currentTimeMillis());
+      }
       try {
         t.stopCheckers();
         triggerLoader.removeTrigger(t);
@@ -166,23 +285,291 @@ public class TriggerManager extends EventHandler implements
     }
   }
 
+  public TriggerLoader getTriggerLoader() {
+    return triggerLoader;
+  }
+
+  public TriggerActionRunner getActionRunner() {
+    return actionRunner;
+  }
+
+  /**
+   * Null unless the triggers are split between several servers
+   */
+  public TriggerShardManager getShardManager() {
+    return shardManager;
+  }
+
   public List<Trigger> getTriggers() {
     return new ArrayList<Trigger>(triggerIdMap.values());
   }
 
+  /**
+   * The trigger from the store, or null if it isn't there or was removed
+   * before the loader thread got to it.
+   */
+  private Trigger loadNotAdmittedTrigger(int id) {
+    if (removedWhileLoading.contains(id)) {
+      return null;
+    }
+    try {
+      return triggerLoader.loadTrigger(id);
+    } catch (TriggerLoaderException e) {
+      logger.warn("Trigger " + id + " is not in the store.", e);
+      return null;
+    }
+  }
+
+  /**
+   * Admits the stored triggers into the scanner a page at a time, so the
+   * server doesn't wait for all of them to be loaded. Triggers inserted,
+   * updated or removed meanwhile keep the changes made to them.
+   */
+  private class TriggerLoaderThread extends Thread {
+    private volatile boolean shutdown = false;
+
+    public TriggerLoaderThread() {
+      this.setName("TriggerRunnerManager-Trigger-Loader-Thread");
+      this.setDaemon(true);
+    }
+
+    public void shutdown() {
+      shutdown = true;
+      this.interrupt();
+    }
+
+    @Override
+    public void run() {
+      long startTime = System.currentTimeMillis();
+      int lastId = -1;
+      int count = 0;
+      while (!shutdown) {
+        try {
+          List<Trigger> page = triggerLoader.loadTriggers(lastId, loadPageSize);
+          synchronized (syncObj) {
+            for (Trigger t : page) {
+              if (!triggerIdMap.containsKey(t.getTriggerId())
+                  && !removedWhileLoading.contains(t.getTriggerId())) {
+                runnerThread.addTrigger(t);
+                triggerIdMap.put(t.getTriggerId(), t);
+                count++;
+              }
+              // a trigger is only passed once it's loaded, so it's loaded
+              // again on a retry
+              lastId = Math.max(lastId, t.getTriggerId());
+            }
+          }
+
+          if (page.size() < loadPageSize) {
+            synchronized (syncObj) {
+              triggersLoaded = true;
+              removedWhileLoading.clear();
+            }
+            loadTimeMs = System.currentTimeMillis() - startTime;
+            logger.info("Loaded " + count + " triggers in " + loadTimeMs
+                + " ms.");
+            return;
+          }
+        } catch (Throwable t) {
+          // anything escaping would leave the triggers loading forever
+          logger.error("Failed to load triggers after " + lastId
+              + ", retrying.", t);
+          try {
+            Thread.sleep(LOAD_RETRY_INTERVAL_MS);
+          } catch (InterruptedException ie) {
+            logger.info("Interrupted. Probably to shut down.");
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Keeps the triggers in step with the shards this server holds. Triggers of
+   * an acquired shard are reloaded before they're checked, since the server
+   * that held it may have fired or changed them. Triggers other servers
+   * insert or change are picked up after every lease renewal, and the ones
+   * they remove at the next full sync, so every server can still show all of
+   * them.
+   */
+  private class ShardSync implements TriggerShardManager.ShardListener {
+    // only used by the shard manager thread
+    private long lastSyncStart = -1;
+    private long lastFullSyncStart = -1;
+
+    @Override
+    public void shardsAcquired(Set<Integer> shards) {
+      long loadStart = System.currentTimeMillis();
+      List<Trigger> triggers;
+      try {
+        triggers =
+            ((TriggerLeaseLoader) triggerLoader).loadTriggers(
+                shardManager.getNumShards(), shards);
+      } catch (TriggerLoaderException e) {
+        // the shards aren't taken until they're loaded, it's retried at the
+        // next renewal
+        throw new IllegalStateException("Failed to load the triggers of shards "
+            + shards, e);
+      }
+
+      synchronized (syncObj) {
+        Set<Integer> loadedIds = new HashSet<Integer>();
+        for (Trigger t : triggers) {
+          loadedIds.add(t.getTriggerId());
+          Trigger current = triggerIdMap.get(t.getTriggerId());
+          if (current != null
+              && current.getLastModifyTime() >= t.getLastModifyTime()) {
+            // up to date, only due right away
+            runnerThread.addTrigger(current);
+          } else if (!recentlyRemoved.containsKey(t.getTriggerId())) {
+            replaceTrigger(current, t);
+          }
+        }
+        for (Trigger t : new ArrayList<Trigger>(triggerIdMap.values())) {
+          if (shards.contains(shardManager.getShard(t.getTriggerId()))
+              && !loadedIds.contains(t.getTriggerId())
+              && t.getLastModifyTime() < loadStart) {
+            dropTrigger(t);
+          }
+        }
+      }
+    }
+
+    @Override
+    public void shardsReleasing(Set<Integer> shards) {
+      // waits for a scan that may still be checking them to finish
+      synchronized (syncObj) {
+        logger.info("Stopped checking the triggers of shards " + shards);
+      }
+      // the server taking them over loads the states written so far
+      try {
+        triggerLoader.flush();
+      } catch (TriggerLoaderException e) {
+        throw new IllegalStateException("Failed to write the trigger states "
+            + "of shards " + shards, e);
+      }
+    }
+
+    @Override
+    public void leasesRenewed() {
+      if (!triggersLoaded) {
+        return;
+      }
+
+      long syncStart = System.currentTimeMillis();
+      // triggers inserted here just now may not have been read yet
+      long removedBefore = syncStart - shardManager.getRenewIntervalMs();
+      boolean fullSync =
+          lastFullSyncStart < 0
+              || syncStart - lastFullSyncStart >= fullSyncIntervalMs;
+      // changes written by others may show up to a renew interval after their
+      // modify time
+      long modifiedAfter =
+          fullSync ? -1 : lastSyncStart - shardManager.getRenewIntervalMs();
+      Map<Integer, Long> modifyTimes;
+      try {
+        modifyTimes =
+            ((TriggerLeaseLoader) triggerLoader)
+                .fetchTriggerModifyTimes(modifiedAfter);
+      } catch (TriggerLoaderException e) {
+        logger.error("Failed to sync triggers changed by other servers.", e);
+        return;
+      }
+
+      for (Map.Entry<Integer, Long> entry : modifyTimes.entrySet()) {
+        Trigger current = triggerIdMap.get(entry.getKey());
+        if (current != null && current.getLastModifyTime() >= entry.getValue()) {
+          continue;
+        }
+        Trigger t;
+        try {
+          t = triggerLoader.loadTrigger(entry.getKey());
+        } catch (TriggerLoaderException e) {
+          // removed meanwhile
+          logger.debug("Failed to load trigger " + entry.getKey(), e);
+          continue;
+        }
+        synchronized (syncObj) {
+          current = triggerIdMap.get(t.getTriggerId());
+          if ((current == null || current.getLastModifyTime() < t
+              .getLastModifyTime())
+              && !recentlyRemoved.containsKey(t.getTriggerId())) {
+            replaceTrigger(current, t);
+          }
+        }
+      }
+
+      synchronized (syncObj) {
+        if (fullSync) {
+          for (Trigger t : new ArrayList<Trigger>(triggerIdMap.values())) {
+            if (!modifyTimes.containsKey(t.getTriggerId())
+                && t.getLastModifyTime() < removedBefore) {
+              dropTrigger(t);
+            }
+          }
+        }
+        Iterator<Long> removeTimes = recentlyRemoved.values().iterator();
+        while (removeTimes.hasNext()) {
+          if (removeTimes.next() < removedBefore) {
+            removeTimes.remove();
+          }
+        }
+      }
+
+      lastSyncStart = syncStart;
+      if (fullSync) {
+        lastFullSyncStart = syncStart;
+      }
+    }
+
+    // guarded by syncObj
+    private void replaceTrigger(Trigger current, Trigger t) {
+      if (current != null) {
+        runnerThread.deleteTrigger(current);
+        current.stopCheckers();
+      }
+      runnerThread.addTrigger(t);
+      triggerIdMap.put(t.getTriggerId(), t);
+    }
+
+    /*
+     * Drops a trigger another server removed, it's already gone from the
+     * store. Guarded by syncObj.
+     */
+    private void dropTrigger(Trigger t) {
+      logger.info("Trigger " + t.getTriggerId() + " was removed elsewhere.");
+      runnerThread.deleteTrigger(t);
+      triggerIdMap.remove(t.getTriggerId());
+      t.stopCheckers();
+    }
+  }
+
   public Map<String, Class<? extends ConditionChecker>> getSupportedCheckers() {
     return checkerTypeLoader.getSupportedCheckers();
   }
 
+  /**
+   * Checks the triggers when they're due. The triggers are kept ordered by the
+   * time they're due, so a scan only looks at the triggers that are due and
+   * not at every trigger. A trigger is due once its next check time has
+   * passed. Triggers whose next check time doesn't move ahead, like the ones
+   * watching executions, are checked every scan interval, and the ones
+   * monitoring an execution are checked as soon as it finishes.
+   */
   private class TriggerScannerThread extends Thread {
-    private BlockingQueue<Trigger> triggers;
-    private Map<Integer, ExecutableFlow> justFinishedFlows;
+    // guarded by syncObj
+    private final TreeSet<ScheduledTrigger> schedule =
+        new TreeSet<ScheduledTrigger>();
+    private final Map<Trigger, ScheduledTrigger> scheduled =
+        new IdentityHashMap<Trigger, ScheduledTrigger>();
+    private final Map<Integer, Set<Trigger>> monitoringTriggers =
+        new HashMap<Integer, Set<Trigger>>();
+    private long sequence = 0;
+
     private boolean shutdown = false;
     private final long scannerInterval;
 
     public TriggerScannerThread(long scannerInterval) {
-      triggers = new PriorityBlockingQueue<Trigger>(1, new TriggerComparator());
-      justFinishedFlows = new ConcurrentHashMap<Integer, ExecutableFlow>();
       this.setName("TriggerRunnerManager-Trigger-Scanner-Thread");
       this.scannerInterval = scannerInterval;
     }
@@ -195,19 +582,74 @@ public class TriggerManager extends EventHandler implements
 
     public void addJustFinishedFlow(ExecutableFlow flow) {
       synchronized (syncObj) {
-        justFinishedFlows.put(flow.getExecutionId(), flow);
+        Set<Trigger> triggers = monitoringTriggers.get(flow.getExecutionId());
+        if (triggers == null) {
+          return;
+        }
+        for (Trigger t : triggers) {
+          logger.info("Monitored execution has finished. Checking trigger earlier "
+              + t.getTriggerId());
+          schedule(t, System.currentTimeMillis());
+        }
+        syncObj.notifyAll();
       }
     }
 
     public void addTrigger(Trigger t) {
       synchronized (syncObj) {
         t.updateNextCheckTime();
-        triggers.add(t);
+        // a new trigger that is already due is checked right away
+        long now = System.currentTimeMillis();
+        schedule(t, t.getNextCheckTime() < now ? now : getDueTime(t, now));
+
+        Integer execId = getMonitoredExecution(t);
+        if (execId != null) {
+          Set<Trigger> triggers = monitoringTriggers.get(execId);
+          if (triggers == null) {
+            triggers = Collections.newSetFromMap(
+                new IdentityHashMap<Trigger, Boolean>());
+            monitoringTriggers.put(execId, triggers);
+          }
+          triggers.add(t);
+        }
       }
     }
 
     public void deleteTrigger(Trigger t) {
-      triggers.remove(t);
+      synchronized (syncObj) {
+        ScheduledTrigger entry = scheduled.remove(t);
+        if (entry == null) {
+          return;
+        }
+        schedule.remove(entry);
+
+        Integer execId = getMonitoredExecution(t);
+        if (execId != null) {
+          Set<Trigger> triggers = monitoringTriggers.get(execId);
+          if (triggers != null) {
+            triggers.remove(t);
+            if (triggers.isEmpty()) {
+              monitoringTriggers.remove(execId);
+            }
+          }
+        }
+      }
+    }
+
+    public int getNumScheduledTriggers() {
+      synchronized (syncObj) {
+        return scheduled.size();
+      }
+    }
+
+    /**
+     * When the trigger is next checked, -1 if it isn't scheduled
+     */
+    public long getDueTime(Trigger t) {
+      synchronized (syncObj) {
+        ScheduledTrigger entry = scheduled.get(t);
+        return entry == null ? -1 : entry.dueTime;
+      }
     }
 
     public void run() {
@@ -221,8 +663,7 @@ public class TriggerManager extends EventHandler implements
                     + lastRunnerThreadCheckTime;
 
             try {
-              checkAllTriggers();
-              justFinishedFlows.clear();
+              checkDueTriggers();
             } catch (Exception e) {
               e.printStackTrace();
               logger.error(e.getMessage());
@@ -233,15 +674,23 @@ public class TriggerManager extends EventHandler implements
 
             scannerStage = "Done flipping all triggers.";
 
+            long now = System.currentTimeMillis();
             runnerThreadIdleTime =
-                scannerInterval
-                    - (System.currentTimeMillis() - lastRunnerThreadCheckTime);
+                scannerInterval - (now - lastRunnerThreadCheckTime);
 
             if (runnerThreadIdleTime < 0) {
               logger.error("Trigger manager thread " + this.getName()
                   + " is too busy!");
             } else {
-              syncObj.wait(runnerThreadIdleTime);
+              // sleep until the next trigger is due, and check in every scan
+              // interval either way
+              long wait = runnerThreadIdleTime;
+              if (!schedule.isEmpty()) {
+                wait = Math.min(wait, schedule.first().dueTime - now);
+              }
+              if (wait > 0) {
+                syncObj.wait(wait);
+              }
             }
           } catch (InterruptedException e) {
             logger.info("Interrupted. Probably to shut down.");
@@ -250,120 +699,215 @@ public class TriggerManager extends EventHandler implements
       }
     }
 
-    private void checkAllTriggers() throws TriggerManagerException {
+    private void checkDueTriggers() throws TriggerManagerException {
       long now = System.currentTimeMillis();
 
-      // sweep through the rest of them
-      for (Trigger t : triggers) {
-        try {
-          scannerStage = "Checking for trigger " + t.getTriggerId();
-
-          boolean shouldSkip = true;
-          if (shouldSkip && t.getInfo() != null && t.getInfo().containsKey("monitored.finished.execution")) {
-            int execId = Integer.valueOf((String) t.getInfo().get("monitored.finished.execution"));
-            if (justFinishedFlows.containsKey(execId)) {
-              logger.info("Monitored execution has finished. Checking trigger earlier " + t.getTriggerId());
-              shouldSkip = false;
-            }
-          }
-          if (shouldSkip && t.getNextCheckTime() > now) {
-            shouldSkip = false;
-          }
+      // take the due triggers out first, checking them can add and remove
+      // triggers
+      List<Trigger> dueTriggers = new ArrayList<Trigger>();
+      while (!schedule.isEmpty() && schedule.first().dueTime <= now) {
+        dueTriggers.add(schedule.pollFirst().trigger);
+      }
 
-          if (shouldSkip) {
-            logger.info("Skipping trigger" + t.getTriggerId() + " until " + t.getNextCheckTime());
-          }
+      List<FiredTrigger> fired = new ArrayList<FiredTrigger>();
+      for (Trigger t : dueTriggers) {
+        // the triggers of shards other servers hold stay scheduled, in case
+        // this server takes the shard over
+        if (shardManager == null || shardManager.owns(t.getTriggerId())) {
+          checkTrigger(t, fired);
+        }
 
-          if (logger.isDebugEnabled()) {
-            logger.info("Checking trigger " + t.getTriggerId());
-          }
-          if (t.getStatus().equals(TriggerStatus.READY)) {
-            if (t.triggerConditionMet()) {
-              onTriggerTrigger(t);
-            } else if (t.expireConditionMet()) {
-              onTriggerExpire(t);
-            }
-          }
-          if (t.getStatus().equals(TriggerStatus.EXPIRED) && t.getSource().equals("azkaban")) {
-            removeTrigger(t);
-          } else {
-            t.updateNextCheckTime();
-          }
-        } catch (Throwable th) {
-          //skip this trigger, moving on to the next one
-          logger.error("Failed to process trigger with id : " + t.getTriggerId(), th);
+        // unless it's been removed or replaced meanwhile
+        if (scanned(t)) {
+          schedule(t, getDueTime(t, System.currentTimeMillis()));
         }
       }
+      runFired(fired);
     }
 
-    private void onTriggerTrigger(Trigger t) throws TriggerManagerException {
-      List<TriggerAction> actions = t.getTriggerActions();
-      for (TriggerAction action : actions) {
-        try {
-          logger.info("Doing trigger actions");
-          action.doAction();
-        } catch (Exception e) {
-          logger.error("Failed to do action " + action.getDescription(), e);
-        } catch (Throwable th) {
-          logger.error("Failed to do action " + action.getDescription(), th);
+    private void checkTrigger(Trigger t, List<FiredTrigger> fired) {
+      try {
+        scannerStage = "Checking for trigger " + t.getTriggerId();
+
+        if (logger.isDebugEnabled()) {
+          logger.debug("Checking trigger " + t.getTriggerId());
+        }
+        if (t.getStatus().equals(TriggerStatus.READY)) {
+          if (t.triggerConditionMet()) {
+            onTriggerTrigger(t, fired);
+          } else if (t.expireConditionMet()) {
+            onTriggerExpire(t, fired);
+          }
         }
+        if (t.getStatus().equals(TriggerStatus.EXPIRED) && t.getSource().equals("azkaban")) {
+          removeTrigger(t);
+        } else {
+          t.updateNextCheckTime();
+        }
+      } catch (Throwable th) {
+        //skip this trigger, moving on to the next one
+        logger.error("Failed to process trigger with id : " + t.getTriggerId(), th);
       }
+    }
+
+    private boolean scanned(Trigger t) {
+      ScheduledTrigger entry = scheduled.get(t);
+      return entry != null && !schedule.contains(entry);
+    }
+
+    private void schedule(Trigger t, long dueTime) {
+      ScheduledTrigger entry = scheduled.get(t);
+      if (entry != null) {
+        schedule.remove(entry);
+      }
+      entry = new ScheduledTrigger(t, dueTime, sequence++);
+      scheduled.put(t, entry);
+      schedule.add(entry);
+      if (schedule.first() == entry) {
+        // wake the scanner up if it's waiting for a later trigger
+        syncObj.notifyAll();
+      }
+    }
+
+    /*
+     * Conditions are met once their next check time has passed. A next check
+     * time that has already passed, or that conditions don't keep, means
+     * checking at every scan.
+     */
+    private long getDueTime(Trigger t, long now) {
+      long nextCheckTime = t.getNextCheckTime();
+      if (nextCheckTime < now) {
+        return now + scannerInterval;
+      }
+      return nextCheckTime == Long.MAX_VALUE ? nextCheckTime
+          : nextCheckTime + 1;
+    }
+
+    /*
+     * The actions run on the action runner once the scan pass is over, the
+     * trigger's own state changes here in the order its conditions are met.
+     */
+    private void onTriggerTrigger(Trigger t, List<FiredTrigger> fired)
+        throws TriggerManagerException {
+      List<TriggerAction> actions = t.getTriggerActions();
       if (t.isResetOnTrigger()) {
         t.resetTriggerConditions();
         t.resetExpireCondition();
       } else {
         t.setStatus(TriggerStatus.EXPIRED);
       }
-      try {
-        triggerLoader.updateTrigger(t);
-      } catch (TriggerLoaderException e) {
-        throw new TriggerManagerException(e);
-      }
+      saveState(t, actions, "trigger", fired);
     }
 
-    private void onTriggerExpire(Trigger t) throws TriggerManagerException {
-      List<TriggerAction> expireActions = t.getExpireActions();
-      for (TriggerAction action : expireActions) {
-        try {
-          logger.info("Doing expire actions");
-          action.doAction();
-        } catch (Exception e) {
-          logger.error("Failed to do expire action " + action.getDescription(),
-              e);
-        } catch (Throwable th) {
-          logger.error("Failed to do expire action " + action.getDescription(),
-              th);
-        }
-      }
+    private void onTriggerExpire(Trigger t, List<FiredTrigger> fired)
+        throws TriggerManagerException {
+      List<TriggerAction> actions = t.getExpireActions();
       if (t.isResetOnExpire()) {
         t.resetTriggerConditions();
         t.resetExpireCondition();
       } else {
         t.setStatus(TriggerStatus.EXPIRED);
       }
+      saveState(t, actions, "expire", fired);
+    }
+
+    private void saveState(Trigger t, List<TriggerAction> actions,
+        String kind, List<FiredTrigger> fired) throws TriggerManagerException {
+      if (!actions.isEmpty()) {
+        fired.add(new FiredTrigger(t, actions, kind));
+        return;
+      }
       try {
-        triggerLoader.updateTrigger(t);
+        triggerLoader.updateTriggerState(t);
       } catch (TriggerLoaderException e) {
         throw new TriggerManagerException(e);
       }
     }
 
-    private class TriggerComparator implements Comparator<Trigger> {
-      @Override
-      public int compare(Trigger arg0, Trigger arg1) {
-        long first = arg1.getNextCheckTime();
-        long second = arg0.getNextCheckTime();
-
-        if (first == second) {
-          return 0;
-        } else if (first < second) {
-          return 1;
+    /*
+     * The states of the triggers whose actions are about to run are written
+     * through in one batch before they run, so the triggers don't fire again
+     * if this server dies or loses their shards before the states are written
+     * behind. The actions run even if the write fails.
+     */
+    private void runFired(List<FiredTrigger> fired) {
+      if (fired.isEmpty()) {
+        return;
+      }
+      List<Trigger> triggers = new ArrayList<Trigger>();
+      for (FiredTrigger f : fired) {
+        // expired triggers are gone already
+        if (scheduled.containsKey(f.trigger)) {
+          triggers.add(f.trigger);
         }
-        return -1;
+      }
+      try {
+        scannerStage = "Writing " + triggers.size() + " fired triggers";
+        triggerLoader.updateTriggers(triggers);
+      } catch (Throwable th) {
+        logger.error("Failed to write the states of " + triggers.size()
+            + " fired triggers", th);
+      }
+      for (FiredTrigger f : fired) {
+        actionRunner.run(f.trigger, f.actions, f.kind);
       }
     }
   }
 
+  /*
+   * The actions a trigger fired in a scan pass
+   */
+  private static class FiredTrigger {
+    private final Trigger trigger;
+    private final List<TriggerAction> actions;
+    private final String kind;
+
+    private FiredTrigger(Trigger trigger, List<TriggerAction> actions,
+        String kind) {
+      this.trigger = trigger;
+      this.actions = actions;
+      this.kind = kind;
+    }
+  }
+
+  private static Integer getMonitoredExecution(Trigger t) {
+    Object execId =
+        t.getInfo() == null ? null : t.getInfo().get(
+            MONITORED_EXECUTION);
+    if (execId == null) {
+      return null;
+    }
+    try {
+      return Integer.valueOf(execId.toString());
+    } catch (NumberFormatException e) {
+      logger.error("Trigger " + t.getTriggerId() + " monitors invalid execution "
+          + execId);
+      return null;
+    }
+  }
+
+  private static class ScheduledTrigger implements
+      Comparable<ScheduledTrigger> {
+    private final Trigger trigger;
+    private final long dueTime;
+    // keeps triggers due at the same time apart, in the order they came
+    private final long sequence;
+
+    private ScheduledTrigger(Trigger trigger, long dueTime, long sequence) {
+      this.trigger = trigger;
+      this.dueTime = dueTime;
+      this.sequence = sequence;
+    }
+
+    @Override
+    public int compareTo(ScheduledTrigger other) {
+      if (dueTime != other.dueTime) {
+        return dueTime < other.dueTime ? -1 : 1;
+      }
+      return Long.compare(sequence, other.sequence);
+    }
+  }
+
   public Trigger getTrigger(int triggerId) {
     synchronized (syncObj) {
       return triggerIdMap.get(triggerId);
@@ -430,7 +974,23 @@ public class TriggerManager extends EventHandler implements
 
   @Override
   public void shutdown() {
+    if (loaderThread != null) {
+      loaderThread.shutdown();
+    }
+    if (shardManager != null) {
+      shardManager.shutdown();
+    }
     runnerThread.shutdown();
+    actionRunner.shutdown();
+    // after a scan that may still be running
+    synchronized (syncObj) {
+      try {
+        triggerLoader.flush();
+      } catch (TriggerLoaderException e) {
+        logger.error("Failed to write the trigger states on shutdown.", e);
+      }
+    }
+    triggerLoader.shutdown();
   }
 
   @Override
@@ -452,7 +1012,7 @@ public class TriggerManager extends EventHandler implements
 
     @Override
     public String getPrimaryServerHost() {
-      return "local";
+      return shardManager == null ? "local" : shardManager.getOwner();
     }
 
     @Override
@@ -489,6 +1049,24 @@ public class TriggerManager extends EventHandler implements
       return scannerStage;
     }
 
+    @Override
+    public long getLoadTimeMs() {
+      return loadTimeMs;
+    }
+
+    @Override
+    public String getOwnedShards() {
+      if (shardManager == null) {
+        return "all";
+      }
+      return new TreeSet<Integer>(shardManager.getOwnedShards()).toString();
+    }
+
+    @Override
+    public int getNumLiveServers() {
+      return shardManager == null ? 1 : shardManager.getNumLiveOwners();
+    }
+
   }
 
   @Override
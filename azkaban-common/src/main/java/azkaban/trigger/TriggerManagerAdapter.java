@@ -39,6 +39,12 @@ public interface TriggerManagerAdapter {
 
   public void start() throws TriggerManagerException;
 
+  /**
+   * False while triggers are still being admitted after start, when the
+   * trigger updates may miss triggers that haven't been admitted yet.
+   */
+  public boolean isTriggersLoaded();
+
   public void shutdown();
 
   public void registerCheckerType(String name,
@@ -67,6 +73,12 @@ public interface TriggerManagerAdapter {
     public Map<String, Object> getAllJMXMbeans();
 
     public String getScannerThreadStage();
+
+    public long getLoadTimeMs();
+
+    public String getOwnedShards();
+
+    public int getNumLiveServers();
   }
 
 }
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Splits the triggers between the web servers sharing them.
+ *
+ * Triggers are split into shards by id, and a server only checks the
+ * triggers of the shards it holds the lease of. Servers send heartbeats, and
+ * each shard goes to one of the servers alive by rendezvous hashing, so when
+ * a server joins or leaves only the shards going to or coming from it move.
+ * A server gives up the leases of the shards that go to someone else, and
+ * the leases of a server that stops are taken over once they expire.
+ *
+ * A server stops checking a shard a renew interval before its lease expires,
+ * which covers clock differences between the servers up to that interval.
+ */
+public class TriggerShardManager extends Thread {
+  private static final Logger logger = Logger
+      .getLogger(TriggerShardManager.class);
+
+  // 0 doesn't split the triggers, this server checks all of them
+  public static final String SHARD_COUNT = "trigger.shard.count";
+  public static final String LEASE_DURATION_MS = "trigger.lease.duration.ms";
+  public static final String LEASE_RENEW_INTERVAL_MS =
+      "trigger.lease.renew.interval.ms";
+  // unique name of this server, host:port by default
+  public static final String OWNER = "trigger.shard.owner";
+
+  static final long DEFAULT_LEASE_DURATION_MS = 30000;
+  static final long DEFAULT_LEASE_RENEW_INTERVAL_MS = 10000;
+
+  public interface ShardListener {
+    /**
+     * Called once this server holds the shards, before it checks their
+     * triggers
+     */
+    public void shardsAcquired(Set<Integer> shards);
+
+    /**
+     * Called once this server stopped checking the shards, before it gives
+     * them up
+     */
+    public void shardsReleasing(Set<Integer> shards);
+
+    /**
+     * Called after every renewal
+     */
+    public void leasesRenewed();
+  }
+
+  private final TriggerLeaseLoader loader;
+  private final ShardListener listener;
+  private final int numShards;
+  private final String owner;
+  private final long leaseDurationMs;
+  private final long renewIntervalMs;
+
+  // shard to the time this server stops checking it
+  private volatile Map<Integer, Long> ownedUntil = Collections.emptyMap();
+  private volatile int numLiveOwners = 0;
+  private volatile long lastRenewTime = -1;
+  private boolean shutdown = false;
+
+  public TriggerShardManager(TriggerLeaseLoader loader, ShardListener listener,
+      int numShards, String owner, long leaseDurationMs, long renewIntervalMs) {
+    this.loader = loader;
+    this.listener = listener;
+    this.numShards = numShards;
+    this.owner = owner;
+    this.leaseDurationMs = leaseDurationMs;
+    this.renewIntervalMs = renewIntervalMs;
+    this.setName("TriggerRunnerManager-Trigger-Shard-Thread");
+    this.setDaemon(true);
+  }
+
+  public int getShard(int triggerId) {
+    return Math.floorMod(triggerId, numShards);
+  }
+
+  /**
+   * Whether this server should check the trigger
+   */
+  public boolean owns(int triggerId) {
+    Long until = ownedUntil.get(getShard(triggerId));
+    return until != null && until > System.currentTimeMillis();
+  }
+
+  public Set<Integer> getOwnedShards() {
+    return new HashSet<Integer>(ownedUntil.keySet());
+  }
+
+  public int getNumShards() {
+    return numShards;
+  }
+
+  public String getOwner() {
+    return owner;
+  }
+
+  public int getNumLiveOwners() {
+    return numLiveOwners;
+  }
+
+  public long getRenewIntervalMs() {
+    return renewIntervalMs;
+  }
+
+  public long getLastRenewTime() {
+    return lastRenewTime;
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+    this.notifyAll();
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      synchronized (this) {
+        if (shutdown) {
+          break;
+        }
+      }
+
+      try {
+        renewLeases();
+      } catch (Throwable t) {
+        logger.error("Failed to renew trigger leases of " + owner, t);
+      }
+
+      synchronized (this) {
+        try {
+          if (!shutdown) {
+            this.wait(renewIntervalMs);
+          }
+        } catch (InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        }
+      }
+    }
+    releaseAll();
+  }
+
+  /**
+   * Sends a heartbeat, takes the leases of the shards that go to this server
+   * and gives up the ones that don't.
+   */
+  void renewLeases() throws TriggerLoaderException {
+    long now = System.currentTimeMillis();
+    loader.heartbeat(owner, now);
+    List<String> owners =
+        new ArrayList<String>(loader.fetchLiveOwners(now - leaseDurationMs));
+    if (!owners.contains(owner)) {
+      owners.add(owner);
+    }
+    numLiveOwners = owners.size();
+
+    Map<Integer, Long> previous = ownedUntil;
+    Map<Integer, Long> renewed = new HashMap<Integer, Long>();
+    Set<Integer> acquired = new HashSet<Integer>();
+    Set<Integer> released = new HashSet<Integer>();
+    for (int shard = 0; shard < numShards; shard++) {
+      if (owner.equals(getTargetOwner(owners, shard))) {
+        if (loader.acquireLease(shard, owner, now, now + leaseDurationMs)) {
+          long until = now + leaseDurationMs - renewIntervalMs;
+          if (previous.containsKey(shard)) {
+            renewed.put(shard, until);
+          } else {
+            acquired.add(shard);
+          }
+        } else if (previous.containsKey(shard)) {
+          logger.warn(owner + " lost the lease of trigger shard " + shard);
+        }
+      } else if (previous.containsKey(shard)) {
+        released.add(shard);
+      }
+    }
+
+    // stop checking the released shards before someone else can take them,
+    // and load the acquired ones before checking them
+    ownedUntil = Collections.unmodifiableMap(new HashMap<Integer, Long>(renewed));
+    if (!released.isEmpty()) {
+      logger.info(owner + " releasing trigger shards " + released);
+      listener.shardsReleasing(released);
+      for (int shard : released) {
+        loader.releaseLease(shard, owner);
+      }
+    }
+    if (!acquired.isEmpty()) {
+      logger.info(owner + " acquired trigger shards " + acquired);
+      listener.shardsAcquired(acquired);
+      for (int shard : acquired) {
+        renewed.put(shard, now + leaseDurationMs - renewIntervalMs);
+      }
+      ownedUntil = Collections.unmodifiableMap(renewed);
+    }
+
+    lastRenewTime = now;
+    listener.leasesRenewed();
+  }
+
+  private void releaseAll() {
+    Set<Integer> shards = ownedUntil.keySet();
+    ownedUntil = Collections.emptyMap();
+    if (shards.isEmpty()) {
+      return;
+    }
+    listener.shardsReleasing(shards);
+    for (int shard : shards) {
+      try {
+        loader.releaseLease(shard, owner);
+      } catch (TriggerLoaderException e) {
+        logger.error("Failed to release trigger shard " + shard, e);
+      }
+    }
+  }
+
+  /*
+   * The live owner with the highest weight for the shard, which every server
+   * seeing the same owners agrees on.
+   */
+  static String getTargetOwner(List<String> owners, int shard) {
+    String target = null;
+    long maxWeight = Long.MIN_VALUE;
+    for (String candidate : owners) {
+      long weight = mix(((long) candidate.hashCode() << 32) ^ shard);
+      if (target == null || weight > maxWeight
+          || (weight == maxWeight && candidate.compareTo(target) < 0)) {
+        target = candidate;
+        maxWeight = weight;
+      }
+    }
+    return target;
+  }
+
+  private static long mix(long h) {
+    h ^= h >>> 33;
+    h *= 0xff51afd7ed558ccdL;
+    h ^= h >>> 33;
+    h *= 0xc4ceb9fe1a85ec53L;
+    h ^= h >>> 33;
+    return h;
+  }
+}
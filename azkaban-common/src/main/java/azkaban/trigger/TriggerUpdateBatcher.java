@@ -0,0 +1,270 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Writes the states triggers are left in after their checks behind, in
+ * batches.
+ *
+ * Updates of the same trigger that haven't been written yet are coalesced,
+ * only its latest state is written. Pending states are written every flush
+ * interval, or as soon as a batch is full. A state is durable only once a
+ * flush that took it returns, so states queued in the last flush interval
+ * are lost if the server dies, and their triggers are checked again from the
+ * state written before. Failed writes are queued again, unless the trigger
+ * got a newer state meanwhile.
+ */
+public class TriggerUpdateBatcher extends Thread {
+  private static final Logger logger = Logger
+      .getLogger(TriggerUpdateBatcher.class);
+
+  public interface StateWriter {
+    public void write(List<TriggerState> states) throws TriggerLoaderException;
+  }
+
+  private final StateWriter writer;
+  private final long flushIntervalMs;
+  private final int maxBatchSize;
+
+  // guarded by this, in the order the triggers were first queued
+  private LinkedHashMap<Integer, TriggerState> pending =
+      new LinkedHashMap<Integer, TriggerState>();
+  private boolean shutdown = false;
+  // one flush at a time, so an older state isn't written after a newer one
+  private final Object flushLock = new Object();
+
+  private long numUpdates = 0;
+  private long numCoalesced = 0;
+  private long numWritten = 0;
+  private long numFlushes = 0;
+  private long numFailedFlushes = 0;
+  private long totalFlushTimeMs = 0;
+  private long lastFlushTimeMs = -1;
+
+  public TriggerUpdateBatcher(StateWriter writer, long flushIntervalMs,
+      int maxBatchSize) {
+    this.writer = writer;
+    this.flushIntervalMs = flushIntervalMs;
+    this.maxBatchSize = maxBatchSize;
+    this.setName("TriggerRunnerManager-Trigger-Update-Thread");
+    this.setDaemon(true);
+  }
+
+  /**
+   * Queues the trigger's current state to be written
+   */
+  public synchronized void add(Trigger t) {
+    TriggerState state = new TriggerState(t);
+    TriggerState previous = pending.get(t.getTriggerId());
+    if (previous != null) {
+      state.queueTime = previous.queueTime;
+      numCoalesced++;
+    }
+    pending.put(t.getTriggerId(), state);
+    numUpdates++;
+    if (pending.size() >= maxBatchSize) {
+      this.notifyAll();
+    }
+  }
+
+  /**
+   * Drops the trigger's pending state, when it's removed or written right
+   * away
+   */
+  public synchronized void discard(int triggerId) {
+    pending.remove(triggerId);
+  }
+
+  /**
+   * Writes every state queued so far
+   */
+  public void flush() throws TriggerLoaderException {
+    synchronized (flushLock) {
+      List<TriggerState> states;
+      synchronized (this) {
+        if (pending.isEmpty()) {
+          return;
+        }
+        states = new ArrayList<TriggerState>(pending.values());
+        pending = new LinkedHashMap<Integer, TriggerState>();
+      }
+
+      long startTime = System.currentTimeMillis();
+      for (int from = 0; from < states.size(); from += maxBatchSize) {
+        List<TriggerState> batch =
+            states.subList(from, Math.min(states.size(), from + maxBatchSize));
+        try {
+          writer.write(batch);
+        } catch (TriggerLoaderException e) {
+          requeue(states.subList(from, states.size()));
+          throw e;
+        }
+        synchronized (this) {
+          numWritten += batch.size();
+        }
+      }
+
+      long flushTime = System.currentTimeMillis() - startTime;
+      synchronized (this) {
+        numFlushes++;
+        totalFlushTimeMs += flushTime;
+        lastFlushTimeMs = flushTime;
+      }
+    }
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+    this.notifyAll();
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      synchronized (this) {
+        try {
+          if (!shutdown && pending.size() < maxBatchSize) {
+            this.wait(flushIntervalMs);
+          }
+        } catch (InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        }
+      }
+
+      try {
+        flush();
+      } catch (Throwable t) {
+        logger.error("Failed to write trigger states, retrying.", t);
+      }
+
+      synchronized (this) {
+        if (shutdown) {
+          break;
+        }
+      }
+    }
+
+    if (getNumPending() > 0) {
+      logger.error(getNumPending() + " trigger states weren't written.");
+    }
+  }
+
+  public synchronized int getNumPending() {
+    return pending.size();
+  }
+
+  /**
+   * How long the oldest pending state has been waiting to be written
+   */
+  public synchronized long getOldestPendingAgeMs() {
+    Iterator<TriggerState> states = pending.values().iterator();
+    return states.hasNext() ? System.currentTimeMillis()
+        - states.next().queueTime : 0;
+  }
+
+  public synchronized long getNumUpdates() {
+    return numUpdates;
+  }
+
+  public synchronized long getNumCoalesced() {
+    return numCoalesced;
+  }
+
+  public synchronized long getNumWritten() {
+    return numWritten;
+  }
+
+  public synchronized long getNumFailedFlushes() {
+    return numFailedFlushes;
+  }
+
+  public synchronized long getAverageFlushTimeMs() {
+    return numFlushes == 0 ? 0 : totalFlushTimeMs / numFlushes;
+  }
+
+  public synchronized long getLastFlushTimeMs() {
+    return lastFlushTimeMs;
+  }
+
+  private synchronized void requeue(List<TriggerState> states) {
+    numFailedFlushes++;
+    LinkedHashMap<Integer, TriggerState> requeued =
+        new LinkedHashMap<Integer, TriggerState>();
+    for (TriggerState state : states) {
+      if (!pending.containsKey(state.getTriggerId())) {
+        requeued.put(state.getTriggerId(), state);
+      }
+    }
+    // they were queued before the ones added meanwhile
+    requeued.putAll(pending);
+    pending = requeued;
+  }
+
+  /**
+   * A trigger as it was when it was queued
+   */
+  public static class TriggerState {
+    private final int triggerId;
+    private final String source;
+    private final long modifyTime;
+    private final Map<String, Object> json;
+    private long queueTime;
+
+    @SuppressWarnings("unchecked")
+    private TriggerState(Trigger t) {
+      this.triggerId = t.getTriggerId();
+      this.source = t.getSource();
+      this.modifyTime = t.getLastModifyTime();
+      this.json = t.toJson();
+      // these are the trigger's own maps, it may change them before the
+      // state is written
+      for (String key : new String[] { "info", "context" }) {
+        Object value = json.get(key);
+        if (value instanceof Map) {
+          json.put(key, new HashMap<String, Object>((Map<String, Object>) value));
+        }
+      }
+      this.queueTime = System.currentTimeMillis();
+    }
+
+    public int getTriggerId() {
+      return triggerId;
+    }
+
+    public String getSource() {
+      return source;
+    }
+
+    public long getModifyTime() {
+      return modifyTime;
+    }
+
+    public Map<String, Object> getJson() {
+      return json;
+    }
+  }
+}
@@ -33,6 +33,7 @@ import azkaban.project.ProjectManager;
 import azkaban.sla.SlaOption;
 import azkaban.trigger.Condition;
 import azkaban.trigger.ConditionChecker;
+import azkaban.trigger.RetryableActionException;
 import azkaban.trigger.Trigger;
 import azkaban.trigger.TriggerAction;
 import azkaban.trigger.TriggerManager;
@@ -205,22 +206,25 @@ public class ExecuteFlowAction implements TriggerAction {
 
   @Override
   public void doAction() throws Exception {
+    // nothing is submitted before the flow is found, so failing to find it
+    // can be tried again
     if (projectManager == null || executorManager == null) {
-      throw new Exception("ExecuteFlowAction not properly initialized!");
+      throw new RetryableActionException(
+          "ExecuteFlowAction not properly initialized!");
     }
 
     Project project = projectManager.getProject(projectId);
     if (project == null) {
       logger.error("Project to execute " + projectId + " does not exist!");
-      throw new RuntimeException("Error finding the project to execute "
-          + projectId);
+      throw new RetryableActionException(
+          "Error finding the project to execute " + projectId);
     }
 
     Flow flow = project.getFlow(flowName);
     if (flow == null) {
       logger.error("Flow " + flowName + " cannot be found in project "
           + project.getName());
-      throw new RuntimeException("Error finding the flow to execute "
+      throw new RetryableActionException("Error finding the flow to execute "
           + flowName);
     }
 
@@ -285,7 +289,7 @@ public class ExecuteFlowAction implements TriggerAction {
         Trigger slaTrigger =
             new Trigger("azkaban_sla", "azkaban", triggerCond, expireCond,
                 actions);
-        slaTrigger.getInfo().put("monitored.finished.execution",
+        slaTrigger.getInfo().put(TriggerManager.MONITORED_EXECUTION,
             String.valueOf(execId));
         slaTrigger.setResetOnTrigger(false);
         slaTrigger.setResetOnExpire(false);
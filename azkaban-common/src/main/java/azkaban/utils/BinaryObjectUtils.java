@@ -0,0 +1,336 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary form of the generic objects (maps, lists, strings, numbers,
+ * booleans and null) that get written out as JSON, such as
+ * ExecutableFlow.toObject().
+ *
+ * Every distinct string is written once. Later occurrences refer to the first
+ * one by index, so map keys and job ids that repeat throughout a flow cost a
+ * byte or two each. Numbers are written as variable length integers. Decoding
+ * gives back maps, lists and values like JSONUtils.parseJSONFromString does,
+ * except that longs stay longs.
+ */
+public class BinaryObjectUtils {
+  private static final int FORMAT_VERSION = 1;
+  private static final int BUFFER_SIZE = 8192;
+
+  private static final int NULL = 0;
+  private static final int TRUE = 1;
+  private static final int FALSE = 2;
+  private static final int INT = 3;
+  private static final int LONG = 4;
+  private static final int DOUBLE = 5;
+  private static final int NEW_STRING = 6;
+  private static final int STRING_REF = 7;
+  private static final int LIST = 8;
+  private static final int MAP = 9;
+
+  private BinaryObjectUtils() {
+  }
+
+  public static byte[] toBinary(Object obj) throws IOException {
+    Writer writer = new Writer();
+    writer.writeObject(obj);
+    return Arrays.copyOf(writer.buffer, writer.length);
+  }
+
+  public static Object fromBinary(byte[] data) throws IOException {
+    return new Reader(data, data.length).readObject();
+  }
+
+  /**
+   * Binary form compressed with deflate at its fastest level, which is a lot
+   * cheaper than gzip's default level and still shrinks the already compact
+   * encoding well.
+   */
+  public static byte[] toCompressedBinary(Object obj) throws IOException {
+    Writer writer = new Writer();
+    writer.writeObject(obj);
+
+    ByteArrayOutputStream bytes =
+        new ByteArrayOutputStream(Math.max(64, writer.length / 4));
+    byte[] buffer = new byte[BUFFER_SIZE];
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(writer.buffer, 0, writer.length);
+      deflater.finish();
+      while (!deflater.finished()) {
+        int num = deflater.deflate(buffer);
+        bytes.write(buffer, 0, num);
+      }
+    } finally {
+      deflater.end();
+    }
+    return bytes.toByteArray();
+  }
+
+  public static Object fromCompressedBinary(byte[] data) throws IOException {
+    byte[] buffer = new byte[Math.max(BUFFER_SIZE, data.length * 4)];
+    int length = 0;
+    Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(data);
+      while (!inflater.finished()) {
+        if (length == buffer.length) {
+          buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        int num = inflater.inflate(buffer, length, buffer.length - length);
+        if (num == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw new IOException("Truncated compressed data");
+        }
+        length += num;
+      }
+    } catch (DataFormatException e) {
+      throw new IOException("Invalid compressed data", e);
+    } finally {
+      inflater.end();
+    }
+    return new Reader(buffer, length).readObject();
+  }
+
+  private static class Writer {
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private byte[] buffer = new byte[BUFFER_SIZE];
+    private int length = 0;
+
+    private void writeObject(Object obj) {
+      writeByte(FORMAT_VERSION);
+      writeValue(obj);
+    }
+
+    private void writeValue(Object obj) {
+      if (obj == null) {
+        writeByte(NULL);
+      } else if (obj instanceof String) {
+        writeString((String) obj);
+      } else if (obj instanceof Boolean) {
+        writeByte((Boolean) obj ? TRUE : FALSE);
+      } else if (obj instanceof Integer || obj instanceof Short
+          || obj instanceof Byte) {
+        writeByte(INT);
+        writeVarLong(((Number) obj).intValue());
+      } else if (obj instanceof Long) {
+        writeByte(LONG);
+        writeVarLong((Long) obj);
+      } else if (obj instanceof Number) {
+        writeByte(DOUBLE);
+        long bits = Double.doubleToLongBits(((Number) obj).doubleValue());
+        for (int shift = 56; shift >= 0; shift -= 8) {
+          writeByte((int) (bits >>> shift));
+        }
+      } else if (obj instanceof Map) {
+        Map<?, ?> map = (Map<?, ?>) obj;
+        writeByte(MAP);
+        writeVarLong(map.size());
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+          writeString(String.valueOf(entry.getKey()));
+          writeValue(entry.getValue());
+        }
+      } else if (obj instanceof Collection) {
+        Collection<?> list = (Collection<?>) obj;
+        writeByte(LIST);
+        writeVarLong(list.size());
+        for (Object item : list) {
+          writeValue(item);
+        }
+      } else if (obj instanceof Object[]) {
+        Object[] array = (Object[]) obj;
+        writeByte(LIST);
+        writeVarLong(array.length);
+        for (Object item : array) {
+          writeValue(item);
+        }
+      } else {
+        // enums and the like, the way JSON would write them
+        writeString(obj.toString());
+      }
+    }
+
+    private void writeString(String str) {
+      Integer index = strings.get(str);
+      if (index != null) {
+        writeByte(STRING_REF);
+        writeVarLong(index);
+        return;
+      }
+
+      strings.put(str, strings.size());
+      byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+      writeByte(NEW_STRING);
+      writeVarLong(bytes.length);
+      ensureCapacity(bytes.length);
+      System.arraycopy(bytes, 0, buffer, length, bytes.length);
+      length += bytes.length;
+    }
+
+    /*
+     * Zig zag encoded so small negative numbers like -1 stay short, 7 bits per
+     * byte with the high bit set on all but the last byte.
+     */
+    private void writeVarLong(long value) {
+      long zigZag = (value << 1) ^ (value >> 63);
+      while ((zigZag & ~0x7FL) != 0) {
+        writeByte((int) ((zigZag & 0x7F) | 0x80));
+        zigZag >>>= 7;
+      }
+      writeByte((int) zigZag);
+    }
+
+    private void writeByte(int b) {
+      ensureCapacity(1);
+      buffer[length++] = (byte) b;
+    }
+
+    private void ensureCapacity(int extra) {
+      if (length + extra > buffer.length) {
+        buffer =
+            Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+      }
+    }
+  }
+
+  private static class Reader {
+    private final List<String> strings = new ArrayList<String>();
+    private final byte[] buffer;
+    private final int length;
+    private int position = 0;
+
+    private Reader(byte[] buffer, int length) {
+      this.buffer = buffer;
+      this.length = length;
+    }
+
+    private Object readObject() throws IOException {
+      int version = readByte();
+      if (version != FORMAT_VERSION) {
+        throw new IOException("Unknown binary format version " + version);
+      }
+      return readValue();
+    }
+
+    private Object readValue() throws IOException {
+      int type = readByte();
+      switch (type) {
+      case NULL:
+        return null;
+      case TRUE:
+        return Boolean.TRUE;
+      case FALSE:
+        return Boolean.FALSE;
+      case INT:
+        return (int) readVarLong();
+      case LONG:
+        return readVarLong();
+      case DOUBLE: {
+        long bits = 0;
+        for (int i = 0; i < 8; i++) {
+          bits = (bits << 8) | readByte();
+        }
+        return Double.longBitsToDouble(bits);
+      }
+      case NEW_STRING:
+      case STRING_REF:
+        return readString(type);
+      case LIST: {
+        int size = readSize();
+        List<Object> list = new ArrayList<Object>(Math.min(size, length));
+        for (int i = 0; i < size; i++) {
+          list.add(readValue());
+        }
+        return list;
+      }
+      case MAP: {
+        int size = readSize();
+        Map<String, Object> map =
+            new LinkedHashMap<String, Object>(Math.min(size, length) * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+          String key = readString(readByte());
+          map.put(key, readValue());
+        }
+        return map;
+      }
+      default:
+        throw new IOException("Unknown value type " + type);
+      }
+    }
+
+    private String readString(int type) throws IOException {
+      if (type == STRING_REF) {
+        int index = readSize();
+        if (index >= strings.size()) {
+          throw new IOException("Unknown string reference " + index);
+        }
+        return strings.get(index);
+      } else if (type != NEW_STRING) {
+        throw new IOException("Expected a string but found type " + type);
+      }
+
+      int size = readSize();
+      if (size > length - position) {
+        throw new IOException("Unexpected end of data");
+      }
+      String str = new String(buffer, position, size, StandardCharsets.UTF_8);
+      position += size;
+      strings.add(str);
+      return str;
+    }
+
+    private int readSize() throws IOException {
+      long size = readVarLong();
+      if (size < 0 || size > Integer.MAX_VALUE) {
+        throw new IOException("Invalid size " + size);
+      }
+      return (int) size;
+    }
+
+    private long readVarLong() throws IOException {
+      long zigZag = 0;
+      for (int shift = 0; shift < 64; shift += 7) {
+        int b = readByte();
+        zigZag |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return (zigZag >>> 1) ^ -(zigZag & 1);
+        }
+      }
+      throw new IOException("Malformed variable length number");
+    }
+
+    private int readByte() throws IOException {
+      if (position >= length) {
+        throw new IOException("Unexpected end of data");
+      }
+      return buffer[position++] & 0xFF;
+    }
+  }
+}
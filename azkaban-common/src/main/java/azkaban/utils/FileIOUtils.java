@@ -17,19 +17,24 @@
 package azkaban.utils;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystemException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.stream.Stream;
 
 import org.apache.commons.io.IOUtils;
 
@@ -38,6 +43,8 @@ import org.apache.commons.io.IOUtils;
  * future.
  */
 public class FileIOUtils {
+  // below this many files, linking them in parallel isn't worth it
+  private static final int PARALLEL_LINK_THRESHOLD = 256;
 
   public static class PrefixSuffixFileFilter implements FileFilter {
     private String prefix;
@@ -84,10 +91,26 @@ public class FileIOUtils {
   }
 
   /**
-   * Run a unix command that will symlink files, and recurse into directories.
+   * Recreates the directories of sourceDir in destDir and symlinks every file
+   * in them to the file in sourceDir.
    */
   public static void createDeepSymlink(File sourceDir, File destDir)
       throws IOException {
+    createDeepLinks(sourceDir, destDir, false);
+  }
+
+  /**
+   * Same as createDeepSymlink, but with hard links, so the files stay around
+   * when sourceDir is deleted. Files that can't be hard linked, for instance
+   * because destDir is on another file system, are symlinked.
+   */
+  public static void createDeepHardlink(File sourceDir, File destDir)
+      throws IOException {
+    createDeepLinks(sourceDir, destDir, true);
+  }
+
+  private static void createDeepLinks(File sourceDir, File destDir,
+      final boolean hardLinks) throws IOException {
     if (!sourceDir.exists()) {
       throw new IOException("Source directory " + sourceDir.getPath()
           + " doesn't exist");
@@ -98,103 +121,55 @@ public class FileIOUtils {
       throw new IOException("Source or Destination is not a directory.");
     }
 
-    Set<String> paths = new HashSet<String>();
-    createDirsFindFiles(sourceDir, sourceDir, destDir, paths);
-
-    StringBuffer buffer = new StringBuffer();
-    for (String path : paths) {
-      File sourceLink = new File(sourceDir, path);
-      path = "." + path;
+    final Path sourcePath = sourceDir.toPath().toAbsolutePath();
+    final Path destPath = destDir.toPath().toAbsolutePath();
 
-      buffer.append("ln -s ").append(sourceLink.getAbsolutePath()).append("/*")
-          .append(" ").append(path).append(";");
-    }
+    // Directories have to exist before anything is linked in them, so they're
+    // created while walking the tree and the files are linked afterwards.
+    final List<Path> files = new ArrayList<Path>();
+    Files.walkFileTree(sourcePath, new SimpleFileVisitor<Path>() {
+      @Override
+      public FileVisitResult preVisitDirectory(Path dir,
+          BasicFileAttributes attrs) throws IOException {
+        Files.createDirectories(destPath.resolve(sourcePath.relativize(dir)));
+        return FileVisitResult.CONTINUE;
+      }
 
-    String command = buffer.toString();
-    ProcessBuilder builder = new ProcessBuilder().command("sh", "-c", command);
-    builder.directory(destDir);
+      @Override
+      public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+        files.add(file);
+        return FileVisitResult.CONTINUE;
+      }
+    });
 
-    // XXX what about stopping threads ??
-    Process process = builder.start();
+    Stream<Path> stream =
+        files.size() < PARALLEL_LINK_THRESHOLD ? files.stream() : files
+            .parallelStream();
     try {
-      NullLogger errorLogger = new NullLogger(process.getErrorStream());
-      NullLogger inputLogger = new NullLogger(process.getInputStream());
-      errorLogger.start();
-      inputLogger.start();
-
-      try {
-        if (process.waitFor() < 0) {
-          // Assume that the error will be in standard out. Otherwise it'll be
-          // in standard in.
-          String errorMessage = errorLogger.getLastMessages();
-          if (errorMessage.isEmpty()) {
-            errorMessage = inputLogger.getLastMessages();
-          }
-
-          throw new IOException(errorMessage);
+      stream.forEach(file -> {
+        Path link = destPath.resolve(sourcePath.relativize(file));
+        try {
+          createLink(link, file, hardLinks);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
         }
-
-        // System.out.println(errorLogger.getLastMessages());
-      } catch (InterruptedException e) {
-        e.printStackTrace();
-      }
-    } finally {
-      IOUtils.closeQuietly(process.getInputStream());
-      IOUtils.closeQuietly(process.getOutputStream());
-      IOUtils.closeQuietly(process.getErrorStream());
+      });
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
     }
   }
 
-  private static void createDirsFindFiles(File baseDir, File sourceDir,
-      File destDir, Set<String> paths) {
-    File[] srcList = sourceDir.listFiles();
-    String path = getRelativePath(baseDir, sourceDir);
-    paths.add(path);
-
-    for (File file : srcList) {
-      if (file.isDirectory()) {
-        File newDestDir = new File(destDir, file.getName());
-        newDestDir.mkdirs();
-        createDirsFindFiles(baseDir, file, newDestDir, paths);
-      }
-    }
-  }
-
-  private static String getRelativePath(File basePath, File sourceDir) {
-    return sourceDir.getPath().substring(basePath.getPath().length());
-  }
-
-  private static class NullLogger extends Thread {
-    private final BufferedReader inputReader;
-    private CircularBuffer<String> buffer = new CircularBuffer<String>(5);
-
-    public NullLogger(InputStream stream) {
-      inputReader = new BufferedReader(new InputStreamReader(stream));
-    }
-
-    public void run() {
+  private static void createLink(Path link, Path target, boolean hardLink)
+      throws IOException {
+    if (hardLink && !Files.isSymbolicLink(target)) {
       try {
-        while (!Thread.currentThread().isInterrupted()) {
-          String line = inputReader.readLine();
-          if (line == null) {
-            return;
-          }
-          buffer.append(line);
-        }
-      } catch (IOException e) {
-        e.printStackTrace();
+        Files.createLink(link, target);
+        return;
+      } catch (FileSystemException | UnsupportedOperationException e) {
+        // fall back to a symlink below
       }
     }
-
-    public String getLastMessages() {
-      StringBuffer messageBuffer = new StringBuffer();
-      for (String message : buffer) {
-        messageBuffer.append(message);
-        messageBuffer.append("\n");
-      }
-
-      return messageBuffer.toString();
-    }
+    Files.createSymbolicLink(link, target);
   }
 
   public static Pair<Integer, Integer> readUtf8File(File file, int offset,
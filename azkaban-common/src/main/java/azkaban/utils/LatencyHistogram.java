@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A thread safe histogram of latencies in milliseconds, kept in fixed buckets
+ * so recording is constant time and memory doesn't grow with the number of
+ * samples. Percentiles are approximated by the upper bound of the bucket the
+ * percentile falls into.
+ */
+public class LatencyHistogram {
+  private static final long[] BUCKET_UPPER_BOUNDS_MS = { 5, 10, 25, 50, 100,
+      250, 500, 1000, 2500, 5000, 10000, 30000, Long.MAX_VALUE };
+
+  private final AtomicLongArray buckets = new AtomicLongArray(
+      BUCKET_UPPER_BOUNDS_MS.length);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong totalMs = new AtomicLong();
+  private final AtomicLong maxMs = new AtomicLong();
+
+  public void record(long latencyMs) {
+    if (latencyMs < 0) {
+      latencyMs = 0;
+    }
+
+    int index = 0;
+    while (latencyMs > BUCKET_UPPER_BOUNDS_MS[index]) {
+      index++;
+    }
+    buckets.incrementAndGet(index);
+    count.incrementAndGet();
+    totalMs.addAndGet(latencyMs);
+
+    long max = maxMs.get();
+    while (latencyMs > max && !maxMs.compareAndSet(max, latencyMs)) {
+      max = maxMs.get();
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return maxMs.get();
+  }
+
+  public long getMean() {
+    long samples = count.get();
+    return samples == 0 ? 0 : totalMs.get() / samples;
+  }
+
+  /**
+   * @param percentile between 0 and 100
+   * @return the upper bound of the bucket holding the percentile, capped at
+   *         the largest latency recorded, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long samples = count.get();
+    if (samples == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(samples * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKET_UPPER_BOUNDS_MS.length; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(BUCKET_UPPER_BOUNDS_MS[i], maxMs.get());
+      }
+    }
+    return maxMs.get();
+  }
+
+  @Override
+  public String toString() {
+    return String.format("count=%d mean=%dms p50=%dms p90=%dms p99=%dms max=%dms",
+        getCount(), getMean(), getPercentile(50), getPercentile(90),
+        getPercentile(99), getMax());
+  }
+}
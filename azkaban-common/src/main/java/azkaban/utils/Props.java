@@ -41,9 +41,15 @@ import org.apache.log4j.Logger;
 /**
  * Hashmap implementation of a hierarchitical properties with helpful converter
  * functions and Exception throwing. This class is not threadsafe.
+ *
+ * Clones share the local values of each level with the Props they were cloned
+ * from, and whichever of them changes a level first copies it.
  */
 public class Props {
-  private final Map<String, String> _current;
+  private Map<String, String> _current;
+  // _current is shared with a clone and has to be copied before it changes.
+  // Volatile so props cloned on another thread are copied before a write.
+  private volatile boolean _shared = false;
   private Props _parent;
   private String source = null;
 
@@ -64,6 +70,23 @@ public class Props {
     this._parent = parent;
   }
 
+  private Props(Props parent, Map<String, String> current, boolean shared) {
+    this._current = current;
+    this._shared = shared;
+    this._parent = parent;
+  }
+
+  /*
+   * The local values, copied first if they're shared
+   */
+  private Map<String, String> writable() {
+    if (_shared) {
+      _current = new HashMap<String, String>(_current);
+      _shared = false;
+    }
+    return _current;
+  }
+
   /**
    * Load props from a file.
    *
@@ -208,7 +231,12 @@ public class Props {
    * Clear the current Props, but leaves the parent untouched.
    */
   public void clearLocal() {
-    _current.clear();
+    if (_shared) {
+      _current = new HashMap<String, String>();
+      _shared = false;
+    } else {
+      _current.clear();
+    }
   }
 
   /**
@@ -240,8 +268,9 @@ public class Props {
    * @return
    */
   public String get(Object key) {
-    if (_current.containsKey(key)) {
-      return _current.get(key);
+    String value = _current.get(key);
+    if (value != null || _current.containsKey(key)) {
+      return value;
     } else if (_parent != null) {
       return _parent.get(key);
     } else {
@@ -255,7 +284,7 @@ public class Props {
    * @return
    */
   public Set<String> localKeySet() {
-    return _current.keySet();
+    return Collections.unmodifiableSet(_current.keySet());
   }
 
   /**
@@ -279,7 +308,7 @@ public class Props {
    *           not a valid key in this Props.
    */
   public String put(String key, String value) {
-    return _current.put(key, value);
+    return writable().put(key, value);
   }
 
   /**
@@ -294,8 +323,9 @@ public class Props {
    *           not a valid key in this Props.
    */
   public void put(Properties properties) {
+    Map<String, String> current = writable();
     for (String propName : properties.stringPropertyNames()) {
-      _current.put(propName, properties.getProperty(propName));
+      current.put(propName, properties.getProperty(propName));
     }
   }
 
@@ -307,7 +337,7 @@ public class Props {
    * @return
    */
   public String put(String key, Integer value) {
-    return _current.put(key, value.toString());
+    return writable().put(key, value.toString());
   }
 
   /**
@@ -318,7 +348,7 @@ public class Props {
    * @return
    */
   public String put(String key, Long value) {
-    return _current.put(key, value.toString());
+    return writable().put(key, value.toString());
   }
 
   /**
@@ -329,7 +359,7 @@ public class Props {
    * @return
    */
   public String put(String key, Double value) {
-    return _current.put(key, value.toString());
+    return writable().put(key, value.toString());
   }
 
   /**
@@ -380,7 +410,7 @@ public class Props {
    * @return
    */
   public String removeLocal(Object s) {
-    return _current.remove(s);
+    return writable().remove(s);
   }
 
   /**
@@ -874,7 +904,10 @@ public class Props {
   }
 
   /**
-   * Clones the Props p object and all of its parents.
+   * Clones the Props p object and all of its parents. The values aren't
+   * copied until either side changes them, so a clone only takes one object
+   * per level. Like any other read, cloning must not run while p or its
+   * parents are being changed.
    *
    * @param p
    * @return
@@ -893,12 +926,8 @@ public class Props {
     if (source.getParent() != null) {
       priorNodeCopy = copyNext(source.getParent());
     }
-    Props dest = new Props(priorNodeCopy);
-    for (String key : source.localKeySet()) {
-      dest.put(key, source.get(key));
-    }
-
-    return dest;
+    source._shared = true;
+    return new Props(priorNodeCopy, source._current, true);
   }
 
   /**
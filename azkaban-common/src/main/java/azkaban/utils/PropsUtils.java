@@ -18,8 +18,11 @@ package azkaban.utils;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -147,79 +150,157 @@ public class PropsUtils {
     return matcher.matches();
   }
 
+  // expressions are parsed once and the engine's introspection is shared by
+  // every resolution, the engine is thread safe once set up
+  private static final int EXPRESSION_CACHE_SIZE = 1024;
+  private static final JexlEngine jexl = new JexlEngine();
+  static {
+    jexl.setCache(EXPRESSION_CACHE_SIZE);
+  }
+
+  // raw values to their parsed ${var} references. Jobs of a flow mostly share
+  // their property values, so the same values are resolved over and over.
+  private static final int TEMPLATE_CACHE_SIZE = 4096;
+  private static final int MAX_CACHED_TEMPLATE_LENGTH = 4096;
+  private static final Map<String, Template> templates = Collections
+      .synchronizedMap(new LinkedHashMap<String, Template>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Template> eldest) {
+          return size() > TEMPLATE_CACHE_SIZE;
+        }
+      });
+
+  /**
+   * Resolves the ${var} references and then the $(...) expressions of all
+   * the properties of props and its parents. Each variable is resolved once
+   * per call, however many values refer to it.
+   */
   public static Props resolveProps(Props props) {
     if (props == null)
       return null;
 
-    Props resolvedProps = new Props();
+    // one lookup per key instead of walking the parents for every reference
+    Map<String, String> values = props.getMapByPrefix("");
+    Map<String, String> resolved = new HashMap<String, String>(values.size());
 
     LinkedHashSet<String> visitedVariables = new LinkedHashSet<String>();
-    for (String key : props.getKeySet()) {
-      String value = props.get(key);
-
+    for (String key : values.keySet()) {
+      if (resolved.containsKey(key)) {
+        continue;
+      }
       visitedVariables.add(key);
       String replacedValue =
-          resolveVariableReplacement(value, props, visitedVariables);
+          resolveVariableReplacement(values.get(key), values, resolved,
+              visitedVariables);
       visitedVariables.clear();
-
-      resolvedProps.put(key, replacedValue);
+      resolved.put(key, replacedValue);
     }
 
-    for (String key : resolvedProps.getKeySet()) {
-      String value = resolvedProps.get(key);
-      String expressedValue = resolveVariableExpression(value);
-      resolvedProps.put(key, expressedValue);
+    Props resolvedProps = new Props();
+    for (Map.Entry<String, String> entry : resolved.entrySet()) {
+      resolvedProps.put(entry.getKey(),
+          resolveVariableExpression(entry.getValue()));
     }
 
     return resolvedProps;
   };
 
-  private static String resolveVariableReplacement(String value, Props props,
+  /*
+   * resolved holds the variables resolved so far, which can't be part of a
+   * cycle.
+   */
+  private static String resolveVariableReplacement(String value,
+      Map<String, String> values, Map<String, String> resolved,
       LinkedHashSet<String> visitedVariables) {
-    StringBuffer buffer = new StringBuffer();
-    int startIndex = 0;
-
-    Matcher matcher = VARIABLE_REPLACEMENT_PATTERN.matcher(value);
-    while (matcher.find(startIndex)) {
-      if (startIndex < matcher.start()) {
-        // Copy everything up front to the buffer
-        buffer.append(value.substring(startIndex, matcher.start()));
-      }
+    if (value.indexOf("${") == -1) {
+      return value;
+    }
+
+    Template template = getTemplate(value);
+    if (template.variables.length == 0) {
+      return value;
+    }
+
+    StringBuilder buffer = new StringBuilder();
+    for (int i = 0; i < template.variables.length; i++) {
+      buffer.append(template.literals[i]);
+
+      String subVariable = template.variables[i];
+      String replacement = resolved.get(subVariable);
+      if (replacement == null) {
+        // Detected a cycle
+        if (visitedVariables.contains(subVariable)) {
+          throw new IllegalArgumentException(String.format(
+              "Circular variable substitution found: [%s] -> [%s]",
+              StringUtils.join(visitedVariables, "->"), subVariable));
+        }
 
-      String subVariable = matcher.group(1);
-      // Detected a cycle
-      if (visitedVariables.contains(subVariable)) {
-        throw new IllegalArgumentException(String.format(
-            "Circular variable substitution found: [%s] -> [%s]",
-            StringUtils.join(visitedVariables, "->"), subVariable));
-      } else {
         // Add substitute variable and recurse.
-        String replacement = props.get(subVariable);
+        String subValue = values.get(subVariable);
         visitedVariables.add(subVariable);
 
-        if (replacement == null) {
+        if (subValue == null) {
           throw new UndefinedPropertyException(String.format(
               "Could not find variable substitution for variable(s) [%s]",
               StringUtils.join(visitedVariables, "->")));
         }
 
-        buffer.append(resolveVariableReplacement(replacement, props,
-            visitedVariables));
+        replacement =
+            resolveVariableReplacement(subValue, values, resolved,
+                visitedVariables);
         visitedVariables.remove(subVariable);
+        resolved.put(subVariable, replacement);
       }
-
-      startIndex = matcher.end();
+      buffer.append(replacement);
     }
+    buffer.append(template.literals[template.variables.length]);
 
-    if (startIndex < value.length()) {
-      buffer.append(value.substring(startIndex));
+    return buffer.toString();
+  }
+
+  private static Template getTemplate(String value) {
+    if (value.length() > MAX_CACHED_TEMPLATE_LENGTH) {
+      return new Template(value);
     }
+    Template template = templates.get(value);
+    if (template == null) {
+      template = new Template(value);
+      templates.put(value, template);
+    }
+    return template;
+  }
 
-    return buffer.toString();
+  /**
+   * A value split around its ${var} references, literals has one more
+   * element than variables.
+   */
+  private static class Template {
+    private final String[] literals;
+    private final String[] variables;
+
+    private Template(String value) {
+      List<String> literals = new ArrayList<String>();
+      List<String> variables = new ArrayList<String>();
+      int startIndex = 0;
+      Matcher matcher = VARIABLE_REPLACEMENT_PATTERN.matcher(value);
+      while (matcher.find(startIndex)) {
+        literals.add(value.substring(startIndex, matcher.start()));
+        variables.add(matcher.group(1));
+        startIndex = matcher.end();
+      }
+      literals.add(value.substring(startIndex));
+
+      this.literals = literals.toArray(new String[literals.size()]);
+      this.variables = variables.toArray(new String[variables.size()]);
+    }
   }
 
   private static String resolveVariableExpression(String value) {
-    JexlEngine jexl = new JexlEngine();
+    if (value.indexOf("$(") == -1) {
+      return value;
+    }
     return resolveVariableExpression(value, value.length(), jexl);
   }
 
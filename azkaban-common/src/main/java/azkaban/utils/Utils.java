@@ -32,6 +32,7 @@ import java.util.Enumeration;
 import java.util.Random;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
 import org.apache.commons.io.IOUtils;
@@ -215,6 +216,30 @@ public class Utils {
     }
   }
 
+  /**
+   * Unzips the entries of a zip stream as they arrive, without waiting for the
+   * whole file. The stream isn't read past the last entry.
+   */
+  public static void unzip(ZipInputStream source, File dest) throws IOException {
+    ZipEntry entry = null;
+    while ((entry = source.getNextEntry()) != null) {
+      File newFile = new File(dest, entry.getName());
+      if (entry.isDirectory()) {
+        newFile.mkdirs();
+      } else {
+        newFile.getParentFile().mkdirs();
+        OutputStream output =
+            new BufferedOutputStream(new FileOutputStream(newFile));
+        try {
+          IOUtils.copy(source, output);
+        } finally {
+          output.close();
+        }
+      }
+      source.closeEntry();
+    }
+  }
+
   public static String flattenToString(Collection<?> collection,
       String delimiter) {
     StringBuffer buffer = new StringBuffer();
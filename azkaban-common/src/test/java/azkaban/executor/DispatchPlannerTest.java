@@ -0,0 +1,145 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.executor.selector.ExecutorSelector;
+
+public class DispatchPlannerTest {
+  private List<Executor> executors;
+  private DispatchPlanner planner;
+
+  @Before
+  public void setUp() throws Exception {
+    executors = new ArrayList<Executor>();
+    for (int i = 1; i <= 3; i++) {
+      Executor executor = new Executor(i, "host" + i, 12345, true);
+      // 8G of 16G and 3 flow slots left
+      executor.setExecutorInfo(new ExecutorInfo(50, 8 * 1024, 3, 0, 10, 0));
+      executors.add(executor);
+    }
+    planner =
+      new DispatchPlanner(new ExecutorSelector(Arrays.asList(
+        "StaticRemainingFlowSize", "MinimumFreeMemory"),
+        Collections.singletonMap("NumberOfAssignedFlowComparator", 1)),
+        512, 5);
+  }
+
+  @Test
+  public void testFillsExecutors() throws Exception {
+    // the memory filter leaves room for 3 flows of 512M on each executor
+    int[] placed = new int[4];
+    for (int i = 0; i < 9; i++) {
+      Executor executor = planner.select(new ExecutableFlow(), executors);
+      Assert.assertNotNull(executor);
+      placed[executor.getId()]++;
+    }
+    Assert.assertNull(planner.select(new ExecutableFlow(), executors));
+
+    for (Executor executor : executors) {
+      Assert.assertEquals(3, placed[executor.getId()]);
+      ExecutorInfo info = executor.getExecutorInfo();
+      Assert.assertEquals(0, info.getRemainingFlowCapacity());
+      Assert.assertEquals(3, info.getNumberOfAssignedFlows());
+      Assert.assertEquals(8 * 1024 - 3 * 512, info.getRemainingMemoryInMB());
+      Assert.assertEquals(40.625, info.getRemainingMemoryPercent(), 0.001);
+      Assert.assertEquals(25, info.getCpuUsage(), 0.001);
+    }
+  }
+
+  @Test
+  public void testReleaseGivesBackCapacity() throws Exception {
+    ExecutableFlow flow = new ExecutableFlow();
+    Executor executor = executors.get(0);
+    planner.reserve(executor, flow);
+    planner.reserve(executor, flow);
+    planner.reserve(executor, flow);
+    Assert.assertNotSame(executor, planner.select(flow, executors));
+
+    planner.release(executor, flow);
+    ExecutorInfo info = executor.getExecutorInfo();
+    Assert.assertEquals(1, info.getRemainingFlowCapacity());
+    Assert.assertEquals(8 * 1024 - 2 * 512, info.getRemainingMemoryInMB());
+    Assert.assertEquals(43.75, info.getRemainingMemoryPercent(), 0.001);
+    Assert.assertEquals(20, info.getCpuUsage(), 0.001);
+  }
+
+  @Test
+  public void testPlacesByFootprint() throws Exception {
+    FlowFootprints footprints = new FlowFootprints(0.5);
+    planner =
+      new DispatchPlanner(new ExecutorSelector(null,
+        Collections.singletonMap("Memory", 1)), 512, 5, footprints);
+    ExecutableFlow flow = FlowFootprintsTest.createFlow(1000, 11000);
+    flow.setPeakMemoryInMB(3000);
+    flow.setCpuSeconds(20);
+    footprints.record(flow);
+    Assert.assertEquals(3000, planner.getMemoryInMB(flow));
+    Assert.assertEquals(2, planner.getCpuUsage(flow), 0.001);
+    // flows that never ran take the defaults
+    Assert.assertEquals(512, planner.getMemoryInMB(new ExecutableFlow()));
+
+    // each executor has room for two of them
+    for (int i = 0; i < 6; i++) {
+      Assert.assertNotNull(planner.select(flow, executors));
+    }
+    for (Executor executor : executors) {
+      Assert.assertEquals(8 * 1024 - 6000, executor.getExecutorInfo()
+        .getRemainingMemoryInMB());
+    }
+    Assert.assertNull(planner.select(flow, executors));
+    Assert.assertNotNull(planner.select(new ExecutableFlow(), executors));
+
+    // a flow bigger than any executor still goes somewhere
+    flow.setPeakMemoryInMB(64 * 1024);
+    footprints.record(flow);
+    Assert.assertNotNull(planner.select(flow, executors));
+  }
+
+  @Test
+  public void testSmallMeasurementTakesDefault() throws Exception {
+    FlowFootprints footprints = new FlowFootprints(0.5);
+    planner =
+      new DispatchPlanner(new ExecutorSelector(null,
+        Collections.singletonMap("Memory", 1)), 512, 5, footprints);
+    // only the shell of the jobs may have been seen
+    ExecutableFlow flow = FlowFootprintsTest.createFlow(1000, 11000);
+    flow.setPeakMemoryInMB(3);
+    footprints.record(flow);
+    Assert.assertEquals(512, planner.getMemoryInMB(flow));
+    Assert.assertFalse(planner.isSizedByFootprint(flow));
+  }
+
+  @Test
+  public void testExecutorsWithoutInfo() throws Exception {
+    for (Executor executor : executors) {
+      executor.setExecutorInfo(null);
+    }
+    Assert.assertNull(planner.select(new ExecutableFlow(), executors));
+    // flows can still go where users ask for
+    planner.reserve(executors.get(0), new ExecutableFlow());
+    Assert.assertNull(executors.get(0).getExecutorInfo());
+  }
+}
@@ -35,6 +35,7 @@ import azkaban.flow.Flow;
 import azkaban.project.DirectoryFlowLoader;
 import azkaban.project.Project;
 import azkaban.test.executions.TestExecutions;
+import azkaban.utils.BinaryObjectUtils;
 import azkaban.utils.JSONUtils;
 import azkaban.utils.Props;
 
@@ -115,6 +116,22 @@ public class ExecutableFlowTest {
     testEquals(exFlow, parsedExFlow);
   }
 
+  @Test
+  public void testExecutorFlowBinary() throws Exception {
+    Flow flow = project.getFlow("jobe");
+    Assert.assertNotNull(flow);
+
+    ExecutableFlow exFlow = new ExecutableFlow(project, flow);
+    exFlow.setExecutionId(101);
+    exFlow.getExecutableNode("joba").setStatus(Status.SUCCEEDED);
+
+    byte[] data = BinaryObjectUtils.toCompressedBinary(exFlow.toObject());
+    ExecutableFlow parsedExFlow =
+        ExecutableFlow.createExecutableFlowFromObject(BinaryObjectUtils
+            .fromCompressedBinary(data));
+    testEquals(exFlow, parsedExFlow);
+  }
+
   @Test
   public void testExecutorFlowJson2() throws Exception {
     Flow flow = project.getFlow("jobe");
@@ -245,6 +262,27 @@ public class ExecutableFlowTest {
     Assert.assertNull(updateObject.get("nodes"));
   }
 
+  @Test
+  public void testExecutorFlowResourceUsage() throws Exception {
+    Flow flow = project.getFlow("jobe");
+    ExecutableFlow exFlow = new ExecutableFlow(project, flow);
+    exFlow.setExecutionId(101);
+    ExecutableFlow copyFlow =
+        ExecutableFlow.createExecutableFlowFromObject(exFlow.toObject());
+    Assert.assertEquals(-1, copyFlow.getPeakMemoryInMB());
+    Assert.assertEquals(-1, copyFlow.getCpuSeconds());
+
+    exFlow.setPeakMemoryInMB(1200);
+    exFlow.setCpuSeconds(35);
+    copyFlow.applyUpdateObject(exFlow.toUpdateObject(0));
+    Assert.assertEquals(1200, copyFlow.getPeakMemoryInMB());
+    Assert.assertEquals(35, copyFlow.getCpuSeconds());
+
+    copyFlow = ExecutableFlow.createExecutableFlowFromObject(exFlow.toObject());
+    Assert.assertEquals(1200, copyFlow.getPeakMemoryInMB());
+    Assert.assertEquals(35, copyFlow.getCpuSeconds());
+  }
+
   private void assertNotNull(ExecutableNode... nodes) {
     for (ExecutableNode node : nodes) {
       Assert.assertNotNull(node);
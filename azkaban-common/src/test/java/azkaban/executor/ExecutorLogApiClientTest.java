@@ -0,0 +1,63 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.utils.FileIOUtils.LogData;
+
+public class ExecutorLogApiClientTest {
+
+  @Test
+  public void testReadsRawLog() throws Exception {
+    HttpResponse response = createResponse("log line\n");
+    response.setHeader(ConnectorParams.LOG_OFFSET_HEADER, "100");
+    response.setHeader(ConnectorParams.LOG_LENGTH_HEADER, "9");
+
+    LogData data = ExecutorLogApiClient.getInstance().parseResponse(response);
+    Assert.assertEquals(100, data.getOffset());
+    Assert.assertEquals(9, data.getLength());
+    Assert.assertEquals("log line\n", data.getData());
+  }
+
+  @Test
+  public void testFallsBackToJsonLog() throws Exception {
+    // executors that don't know raw requests
+    HttpResponse response =
+        createResponse("{\"offset\":100,\"length\":9,\"data\":\"log line\\n\"}");
+
+    LogData data = ExecutorLogApiClient.getInstance().parseResponse(response);
+    Assert.assertEquals(100, data.getOffset());
+    Assert.assertEquals(9, data.getLength());
+    Assert.assertEquals("log line\n", data.getData());
+  }
+
+  private static HttpResponse createResponse(String body) {
+    HttpResponse response =
+        new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+    response.setEntity(new ByteArrayEntity(body
+        .getBytes(StandardCharsets.UTF_8)));
+    return response;
+  }
+}
@@ -18,10 +18,14 @@ package azkaban.executor;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.junit.Assert;
@@ -35,6 +39,7 @@ import azkaban.utils.JSONUtils;
 import azkaban.utils.Pair;
 import azkaban.utils.Props;
 import azkaban.utils.TestUtils;
+import azkaban.utils.Triple;
 
 /**
  * Test class for executor manager
@@ -222,6 +227,65 @@ public class ExecutorManagerTest {
     Assert.assertEquals("[1, 2]", manager.getQueuedFlowIds());
   }
 
+  /* Test looking up active flows by flow and user */
+  @Test
+  public void testRunningFlowLookups() throws Exception {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    // two executions of the same flow
+    ExecutableFlow flow1 = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow1.setExecutionId(1);
+    ExecutableFlow flow2 = TestUtils.createExecutableFlow("exectest1", "exec2");
+    flow2.setExecutionId(2);
+    int projectId = flow1.getProjectId();
+    String flowId = flow1.getFlowId();
+    Assert.assertFalse(manager.isFlowRunning(projectId, flowId));
+
+    User testUser = TestUtils.getTestUser();
+    manager.submitExecutableFlow(flow1, testUser.getUserId());
+    manager.submitExecutableFlow(flow2, "otherUser");
+    Assert.assertTrue(manager.isFlowRunning(projectId, flowId));
+    Assert.assertFalse(manager.isFlowRunning(projectId + 1, flowId));
+    Assert.assertEquals(Arrays.asList(1, 2),
+      manager.getRunningFlows(projectId, flowId));
+    Assert.assertEquals(Arrays.asList(1),
+      manager.getRunningFlowsOfUser(testUser.getUserId()));
+
+    // cancelling a queued flow finishes it
+    manager.cancelFlow(flow1, testUser.getUserId());
+    Assert.assertEquals(Arrays.asList(2),
+      manager.getRunningFlows(projectId, flowId));
+    Assert.assertTrue(manager.getRunningFlowsOfUser(testUser.getUserId())
+      .isEmpty());
+    Assert.assertEquals(Arrays.asList(2),
+      manager.getRunningFlowsOfUser("otherUser"));
+  }
+
+  /* Test a flow whose submission failed isn't left registered as running */
+  @Test
+  public void testFailedSubmitIsNotRunning() throws Exception {
+    ExecutorLoader loader = new MockExecutorLoader() {
+      @Override
+      public void addActiveExecutableReference(ExecutionReference ref)
+        throws ExecutorManagerException {
+        throw new ExecutorManagerException("db is down");
+      }
+    };
+    ExecutorManager manager = createMultiExecutorManagerInstance(loader);
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    User testUser = TestUtils.getTestUser();
+    try {
+      manager.submitExecutableFlow(flow, testUser.getUserId());
+      Assert.fail("Submitted without an active reference");
+    } catch (ExecutorManagerException e) {
+    }
+
+    Assert.assertFalse(manager.isFlowRunning(flow.getProjectId(),
+      flow.getFlowId()));
+    Assert.assertTrue(manager.getRunningFlowsOfUser(testUser.getUserId())
+      .isEmpty());
+  }
+
   /* Test submit duplicate flow when previous instance is not dispatched */
   @Test(expected = ExecutorManagerException.class)
   public void testDuplicateQueuedFlows() throws ExecutorManagerException,
@@ -255,4 +319,393 @@ public class ExecutorManagerTest {
 
     Assert.assertFalse(manager.getRunningFlows().contains(flow1));
   }
+
+  /* Test updates pushed by an executor that isn't registered */
+  @Test(expected = ExecutorManagerException.class)
+  public void testPushedUpdatesFromUnknownExecutor()
+    throws ExecutorManagerException {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    manager.handlePushedUpdates("unknownhost", 12345,
+      new LinkedList<Map<String, Object>>());
+  }
+
+  /* Test pushed updates for executions that aren't running are reported back */
+  @Test
+  public void testPushedUpdatesForUnknownExecution()
+    throws ExecutorManagerException {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    Map<String, Object> update = new HashMap<String, Object>();
+    update.put(ConnectorParams.UPDATE_MAP_EXEC_ID, 42);
+    update.put(ConnectorParams.UPDATE_MAP_STATUS, Status.RUNNING.getNumVal());
+    List<Map<String, Object>> updates = new LinkedList<Map<String, Object>>();
+    updates.add(update);
+
+    List<Integer> notFound =
+      manager.handlePushedUpdates("localhost", 12345, updates);
+    Assert.assertEquals(1, notFound.size());
+    Assert.assertEquals(42, notFound.get(0).intValue());
+  }
+
+  /* Test pushes are only taken with the shared secret, or from the executor */
+  @Test
+  public void testPushAuthorization() throws Exception {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    manager.authorizePush("localhost", null, "127.0.0.1");
+    try {
+      manager.authorizePush("localhost", null, "10.1.2.3");
+      Assert.fail("Push from another host was authorized");
+    } catch (ExecutorManagerException e) {
+    }
+
+    Props props = new Props();
+    props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+    props.put(ExecutorManager.AZKABAN_QUEUEPROCESSING_ENABLED, "false");
+    props.put("azkaban.executor.push.secret", "secret");
+    ExecutorLoader loader = new MockExecutorLoader();
+    loader.addExecutor("localhost", 12345);
+    manager =
+      new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+    manager.authorizePush("localhost", "secret", "10.1.2.3");
+    for (String secret : Arrays.asList(null, "", "wrong")) {
+      try {
+        manager.authorizePush("localhost", secret, "127.0.0.1");
+        Assert.fail("Push with secret " + secret + " was authorized");
+      } catch (ExecutorManagerException e) {
+      }
+    }
+  }
+
+  /* Test updates pushed by an executor not running the flow are dropped */
+  @Test
+  public void testPushedUpdatesFromOtherExecutor() throws Exception {
+    MockExecutorLoader loader = new MockExecutorLoader();
+    loader.addExecutor("localhost", 12345);
+    Executor executor = loader.addExecutor("localhost", 12346);
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(1);
+    ExecutionReference ref = new ExecutionReference(1, executor);
+    loader.activeFlows.put(1,
+      new Pair<ExecutionReference, ExecutableFlow>(ref, flow));
+    Props props = new Props();
+    props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+    props.put(ExecutorManager.AZKABAN_QUEUEPROCESSING_ENABLED, "false");
+    ExecutorManager manager =
+      new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+    ExecutableFlow pushed = TestUtils.createExecutableFlow("exectest1", "exec1");
+    pushed.setExecutionId(1);
+    pushed.setStatus(Status.RUNNING);
+    pushed.setUpdateTime(100);
+    List<Map<String, Object>> updates = new LinkedList<Map<String, Object>>();
+    updates.add(pushed.toUpdateObject(0));
+
+    Assert.assertTrue(manager.handlePushedUpdates("localhost", 12345, updates)
+      .isEmpty());
+    Assert.assertNotEquals(Status.RUNNING, flow.getStatus());
+    manager.handlePushedUpdates("localhost", 12346, updates);
+    Assert.assertEquals(Status.RUNNING, flow.getStatus());
+  }
+
+  /* Test statistics pushed along with updates are used instead of polling */
+  @Test
+  public void testPushedExecutorInfo() throws Exception {
+    ExecutorLoader loader = new MockExecutorLoader();
+    ExecutorManager manager = createMultiExecutorManagerInstance(loader);
+    Executor executor = loader.fetchExecutor("localhost", 12345);
+    Assert.assertNull(manager.getPushedExecutorInfo(executor));
+
+    ExecutorInfo info = new ExecutorInfo(50.5, 8192, 3, 1000, 1.5, 7);
+    // the way the update servlet reads it
+    ExecutorInfo pushed =
+      ExecutorInfo.fromJSONString(JSONUtils.toJSON(JSONUtils
+        .parseJSONFromString(JSONUtils.toJSON(info))));
+    Assert.assertEquals(info, pushed);
+    manager.handlePushedUpdates("localhost", 12345,
+      new LinkedList<Map<String, Object>>(), pushed);
+
+    ExecutorInfo snapshot = manager.getPushedExecutorInfo(executor);
+    Assert.assertEquals(info, snapshot);
+    Assert.assertNotSame(pushed, snapshot);
+    Assert.assertNull(manager.getPushedExecutorInfo(loader.fetchExecutor(
+      "localhost", 12346)));
+  }
+
+  /* Test pushed statistics don't count flows placed after they were sampled */
+  @Test
+  public void testPushedExecutorInfoPredatesReservations() throws Exception {
+    ExecutorLoader loader = new MockExecutorLoader();
+    ExecutorManager manager = createMultiExecutorManagerInstance(loader);
+    Executor executor = null;
+    for (Executor active : manager.getAllActiveExecutors()) {
+      if (active.getPort() == 12345) {
+        executor = active;
+      }
+    }
+    executor.setExecutorInfo(new ExecutorInfo(50, 8192, 3, 0, 1, 0));
+    manager.handlePushedUpdates("localhost", 12345,
+      new LinkedList<Map<String, Object>>(), new ExecutorInfo(50, 8192, 3, 0,
+        1, 0));
+    Assert.assertFalse(manager.pushedInfoPredatesReservations(executor));
+
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    manager.submitExecutableFlow(flow, TestUtils.getTestUser().getUserId());
+    Assert.assertEquals(1, manager.placeFlows(manager.queuedFlows.fetchHeads(1),
+      Collections.singleton(executor)).size());
+    Assert.assertTrue(manager.pushedInfoPredatesReservations(executor));
+  }
+
+  /* Test a flow too big for now doesn't hold up smaller flows behind it */
+  @Test
+  public void testBigFlowDoesNotBlockRound() throws Exception {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    Set<Executor> executors =
+      new HashSet<Executor>(manager.getAllActiveExecutors());
+    for (Executor executor : executors) {
+      // 4G of 8G left
+      executor.setExecutorInfo(new ExecutorInfo(50, 4096, 3, 0, 1, 0));
+    }
+    ExecutableFlow finished = FlowFootprintsTest.createFlow(1000, 11000);
+    finished.setPeakMemoryInMB(6000);
+    manager.getFlowFootprints().record(finished);
+
+    User testUser = TestUtils.getTestUser();
+    ExecutableFlow big = FlowFootprintsTest.createFlow(-1, -1);
+    big.setExecutionId(1);
+    manager.submitExecutableFlow(big, testUser.getUserId());
+    ExecutableFlow small1 = TestUtils.createExecutableFlow("exectest1", "exec1");
+    small1.setExecutionId(2);
+    manager.submitExecutableFlow(small1, testUser.getUserId());
+    ExecutableFlow small2 = TestUtils.createExecutableFlow("exectest1", "exec2");
+    small2.setExecutionId(3);
+    manager.submitExecutableFlow(small2, testUser.getUserId());
+
+    List<Pair<ExecutionReference, ExecutableFlow>> candidates =
+      manager.queuedFlows.fetchHeads(10);
+    Assert.assertEquals(big, candidates.get(0).getSecond());
+    List<Integer> placed = new ArrayList<Integer>();
+    for (Triple<ExecutionReference, ExecutableFlow, Executor> placement : manager
+      .placeFlows(candidates, executors)) {
+      placed.add(placement.getSecond().getExecutionId());
+    }
+    Assert.assertEquals(Arrays.asList(2, 3), placed);
+    Assert.assertTrue(manager.queuedFlows.hasExecution(1));
+  }
+
+  /* Test flows are only moved between executors when one of them is idle */
+  @Test
+  public void testRebalanceNeedsIdleExecutor() throws Exception {
+    ExecutorManager manager = createMultiExecutorManagerInstance();
+    List<Executor> executors =
+      new ArrayList<Executor>(manager.getAllActiveExecutors());
+    // two flows wait on the first one, the second one is full
+    executors.get(0).setExecutorInfo(new ExecutorInfo(50, 8192, -2, 0, 1, 12));
+    executors.get(1).setExecutorInfo(new ExecutorInfo(50, 8192, 0, 0, 1, 10));
+    Assert.assertEquals(0, manager.rebalanceQueuedFlows(10));
+
+    // flows queued here go to the idle executor first
+    executors.get(1).setExecutorInfo(new ExecutorInfo(50, 8192, 3, 0, 1, 7));
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    manager.submitExecutableFlow(flow, TestUtils.getTestUser().getUserId());
+    Assert.assertEquals(0, manager.rebalanceQueuedFlows(10));
+    Assert.assertEquals(0, manager.getNumRebalancedFlows());
+  }
+
+  /* Test a flow waiting on a busy executor is moved to an idle one */
+  @Test
+  public void testRebalanceMovesWaitingFlow() throws Exception {
+    MockExecutorServer busyServer = new MockExecutorServer();
+    MockExecutorServer idleServer = new MockExecutorServer();
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      ExecutorManager manager =
+        createRebalanceInstance(loader, busyServer, idleServer);
+      idleServer.respond(ConnectorParams.EXECUTE_ACTION, "{}");
+
+      Assert.assertEquals(1, manager.rebalanceQueuedFlows(10));
+      Assert.assertEquals(1, manager.getNumRebalancedFlows());
+      Assert.assertEquals(idleServer.getPort(), loader.refs.get(1)
+        .getExecutor().getPort());
+      Assert.assertEquals(loader.refs.get(1).getExecutor().getId(),
+        (int) loader.executionExecutorMapping.get(1));
+      Assert.assertFalse(manager.queuedFlows.hasExecution(1));
+      manager.shutdown();
+    } finally {
+      busyServer.stop();
+      idleServer.stop();
+    }
+  }
+
+  /* Test a flow is queued here when it can't be dispatched to the idle one */
+  @Test
+  public void testRebalanceQueuesFailedMove() throws Exception {
+    MockExecutorServer busyServer = new MockExecutorServer();
+    MockExecutorServer idleServer = new MockExecutorServer();
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      ExecutorManager manager =
+        createRebalanceInstance(loader, busyServer, idleServer);
+      idleServer.respond(ConnectorParams.EXECUTE_ACTION,
+        "{\"error\":\"executor is shutting down\"}");
+
+      Assert.assertEquals(0, manager.rebalanceQueuedFlows(10));
+      Assert.assertEquals(0, manager.getNumRebalancedFlows());
+      Assert.assertFalse(loader.executionExecutorMapping.containsKey(1));
+      Assert.assertTrue(manager.queuedFlows.hasExecution(1));
+      manager.shutdown();
+    } finally {
+      busyServer.stop();
+      idleServer.stop();
+    }
+  }
+
+  /* Test the queue processor moves waiting flows once its queue is empty */
+  @Test
+  public void testQueueProcessorRebalances() throws Exception {
+    MockExecutorServer busyServer = new MockExecutorServer();
+    MockExecutorServer idleServer = new MockExecutorServer();
+    try {
+      MockExecutorLoader loader = new MockExecutorLoader();
+      Executor busy = loader.addExecutor("localhost", busyServer.getPort());
+      Executor idle = loader.addExecutor("localhost", idleServer.getPort());
+      addRunningFlow(loader, busy, 1);
+      busyServer.respondStatistics(JSONUtils.toJSON(new ExecutorInfo(50, 8192,
+        -1, 0, 1, 4)));
+      busyServer.respond(ConnectorParams.QUEUED_FLOWS_ACTION,
+        "{\"queued\":[1]}");
+      busyServer.respond(ConnectorParams.REVOKE_ACTION, "{}");
+      idleServer.respondStatistics(JSONUtils.toJSON(new ExecutorInfo(50, 8192,
+        3, 0, 1, 0)));
+      idleServer.respond(ConnectorParams.EXECUTE_ACTION, "{}");
+
+      Props props = new Props();
+      props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+      props.put("azkaban.dispatch.rebalance.interval.ms", 100);
+      ExecutorManager manager =
+        new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+      long deadline = System.currentTimeMillis() + 10000;
+      while (manager.getNumRebalancedFlows() == 0) {
+        Assert.assertTrue("Waiting flow wasn't moved",
+          System.currentTimeMillis() < deadline);
+        Thread.sleep(50);
+      }
+      Assert.assertEquals(idle.getId(),
+        (int) loader.executionExecutorMapping.get(1));
+      manager.shutdown();
+    } finally {
+      busyServer.stop();
+      idleServer.stop();
+    }
+  }
+
+  /*
+   * Helper method to create an ExecutorManager with exec 1 waiting on the busy
+   * executor server and the idle one having free flow slots
+   */
+  private ExecutorManager createRebalanceInstance(MockExecutorLoader loader,
+    MockExecutorServer busyServer, MockExecutorServer idleServer)
+    throws Exception {
+    Props props = new Props();
+    props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+    props.put(ExecutorManager.AZKABAN_QUEUEPROCESSING_ENABLED, "false");
+    Executor busy = loader.addExecutor("localhost", busyServer.getPort());
+    Executor idle = loader.addExecutor("localhost", idleServer.getPort());
+
+    addRunningFlow(loader, busy, 1);
+    busyServer.respond(ConnectorParams.QUEUED_FLOWS_ACTION,
+      "{\"queued\":[1]}");
+    busyServer.respond(ConnectorParams.REVOKE_ACTION, "{}");
+
+    ExecutorManager manager =
+      new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+    for (Executor executor : manager.getAllActiveExecutors()) {
+      if (executor.getId() == busy.getId()) {
+        executor.setExecutorInfo(new ExecutorInfo(50, 8192, -1, 0, 1, 4));
+      } else if (executor.getId() == idle.getId()) {
+        executor.setExecutorInfo(new ExecutorInfo(50, 8192, 3, 0, 1, 0));
+      }
+    }
+    return manager;
+  }
+
+  /* Test flows of a hung executor are evicted while the others are updated */
+  @Test
+  public void testHungExecutorFlowsAreEvicted() throws Exception {
+    MockExecutorServer hungServer = new MockExecutorServer();
+    MockExecutorServer server = new MockExecutorServer();
+    try {
+      hungServer.hang(ConnectorParams.UPDATE_ACTION);
+      server.respond(ConnectorParams.UPDATE_ACTION, "{\"updated\":[]}");
+      MockExecutorLoader loader = new MockExecutorLoader();
+      addRunningFlow(loader,
+        loader.addExecutor("localhost", hungServer.getPort()), 1);
+      addRunningFlow(loader, loader.addExecutor("localhost", server.getPort()),
+        2);
+
+      Props props = new Props();
+      props.put(ExecutorManager.AZKABAN_USE_MULTIPLE_EXECUTORS, "true");
+      props.put(ExecutorManager.AZKABAN_QUEUEPROCESSING_ENABLED, "false");
+      props.put("azkaban.executor.update.timeout.ms", 2000);
+      props.put("azkaban.executor.update.error.interval.ms", 100);
+      props.put("azkaban.executor.update.max.errors", 3);
+      ExecutorManager manager =
+        new ExecutorManager(props, loader, new HashMap<String, Alerter>());
+
+      // the first call times out, the executor is skipped after that
+      long deadline = System.currentTimeMillis() + 10000;
+      while (loader.hasActiveExecutableReference(1)) {
+        Assert.assertTrue("Flow of the hung executor wasn't evicted",
+          System.currentTimeMillis() < deadline);
+        Thread.sleep(50);
+      }
+      Assert.assertEquals(Status.FAILED, loader.flows.get(1).getStatus());
+      Assert.assertTrue(loader.hasActiveExecutableReference(2));
+      manager.shutdown();
+    } finally {
+      hungServer.stop();
+      server.stop();
+    }
+  }
+
+  /* Test history pages go back from the given execution id */
+  @Test
+  public void testExecutableFlowsBefore() throws Exception {
+    MockExecutorLoader loader = new MockExecutorLoader();
+    ExecutorManager manager = createMultiExecutorManagerInstance(loader);
+    for (int execId = 1; execId <= 4; execId++) {
+      ExecutableFlow flow =
+        TestUtils.createExecutableFlow("exectest1", "exec1");
+      flow.setExecutionId(execId);
+      flow.setStatus(execId == 2 ? Status.FAILED : Status.SUCCEEDED);
+      loader.uploadExecutableFlow(flow);
+    }
+
+    List<Integer> execIds = new ArrayList<Integer>();
+    for (ExecutableFlow flow : manager.getExecutableFlowsBefore(null, null,
+      null, 0, -1, -1, -1, 2)) {
+      execIds.add(flow.getExecutionId());
+    }
+    Assert.assertEquals(Arrays.asList(4, 3), execIds);
+
+    execIds.clear();
+    for (ExecutableFlow flow : manager.getExecutableFlowsBefore(null, null,
+      null, Status.SUCCEEDED.getNumVal(), -1, -1, 3, 2)) {
+      execIds.add(flow.getExecutionId());
+    }
+    Assert.assertEquals(Arrays.asList(1), execIds);
+    manager.shutdown();
+  }
+
+  /* Helper method to add a flow running on the given executor to the loader */
+  private void addRunningFlow(MockExecutorLoader loader, Executor executor,
+    int execId) throws Exception {
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    flow.setExecutionId(execId);
+    loader.uploadExecutableFlow(flow);
+    ExecutionReference ref = new ExecutionReference(execId);
+    loader.addActiveExecutableReference(ref);
+    loader.assignExecutor(executor.getId(), execId);
+    loader.activeFlows.put(execId,
+      new Pair<ExecutionReference, ExecutableFlow>(ref, flow));
+  }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.database.AbstractJdbcLoader.EncodingType;
+import azkaban.flow.Edge;
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+import azkaban.project.Project;
+
+/**
+ * Tests the encodings of execution_flows.flow_data, and compares the size and
+ * encode / decode cost of each on large flows.
+ */
+public class FlowDataEncodingTest {
+  private static final Logger logger = Logger
+      .getLogger(FlowDataEncodingTest.class);
+
+  @Test
+  public void testRoundTripAllEncodings() throws Exception {
+    ExecutableFlow exFlow = createFlow(50, 4);
+    exFlow.getExecutableNode("job0_0").setStatus(Status.SUCCEEDED);
+    exFlow.getExecutableNode("job0_0").setStartTime(1490000000000L);
+
+    for (EncodingType encType : EncodingType.values()) {
+      byte[] data = JdbcExecutorLoader.encodeFlowData(exFlow.toObject(), encType);
+      ExecutableFlow decoded =
+          ExecutableFlow.createExecutableFlowFromObject(JdbcExecutorLoader
+              .decodeFlowData(data, encType));
+
+      Assert.assertEquals(exFlow.getExecutableNodes().size(), decoded
+          .getExecutableNodes().size());
+      ExecutableNode node = decoded.getExecutableNode("job0_0");
+      Assert.assertEquals(Status.SUCCEEDED, node.getStatus());
+      Assert.assertEquals(1490000000000L, node.getStartTime());
+      Assert.assertEquals(exFlow.getExecutableNode("job3_10").getInNodes(),
+          decoded.getExecutableNode("job3_10").getInNodes());
+    }
+  }
+
+  /**
+   * Encodes and decodes flows of a wide and a layered shape with 2000 jobs,
+   * logging the size and the average time of each encoding.
+   */
+  @Test
+  public void testEncodingCostOnLargeFlows() throws Exception {
+    ExecutableFlow[] flows =
+        new ExecutableFlow[] { createFlow(2000, 1), createFlow(200, 10) };
+    for (ExecutableFlow exFlow : flows) {
+      Object flowObj = exFlow.toObject();
+      for (EncodingType encType : new EncodingType[] { EncodingType.GZIP,
+          EncodingType.BINARY }) {
+        // warm up
+        for (int i = 0; i < 20; i++) {
+          JdbcExecutorLoader.decodeFlowData(
+              JdbcExecutorLoader.encodeFlowData(flowObj, encType), encType);
+        }
+
+        int iterations = 20;
+        byte[] data = null;
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          data = JdbcExecutorLoader.encodeFlowData(flowObj, encType);
+        }
+        long encodeUs = (System.nanoTime() - start) / iterations / 1000;
+
+        start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+          ExecutableFlow.createExecutableFlowFromObject(JdbcExecutorLoader
+              .decodeFlowData(data, encType));
+        }
+        long decodeUs = (System.nanoTime() - start) / iterations / 1000;
+
+        logger.info(String.format(
+            "%s flow, %s: %d bytes, encode %d us, decode %d us",
+            exFlow.getFlowId(), encType, data.length, encodeUs, decodeUs));
+      }
+    }
+  }
+
+  /*
+   * Flow of the given number of layers, where every job depends on two jobs
+   * of the layer before it.
+   */
+  private ExecutableFlow createFlow(int width, int layers) {
+    Flow flow = new Flow("flow" + width + "x" + layers);
+    for (int layer = 0; layer < layers; layer++) {
+      for (int i = 0; i < width; i++) {
+        Node node = new Node("job" + layer + "_" + i);
+        node.setType("command");
+        node.setJobSource("jobs/job" + layer + "_" + i + ".job");
+        flow.addNode(node);
+        if (layer > 0) {
+          flow.addEdge(new Edge("job" + (layer - 1) + "_" + i, node.getId()));
+          flow.addEdge(new Edge("job" + (layer - 1) + "_" + ((i + 1) % width),
+              node.getId()));
+        }
+      }
+    }
+    flow.initialize();
+
+    ExecutableFlow exFlow = new ExecutableFlow(new Project(1, "test"), flow);
+    exFlow.setExecutionId(1);
+    exFlow.setSubmitUser("azkaban");
+    return exFlow;
+  }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+import azkaban.project.Project;
+
+public class FlowFootprintsTest {
+
+  @Test
+  public void testParallelism() throws Exception {
+    ExecutableFlow flow = createFlow(0, 100);
+    // a: 0-40, b: 10-50, c: 40-60, d never ran
+    setTimes(flow.getExecutableNode("a"), 0, 40);
+    setTimes(flow.getExecutableNode("b"), 10, 50);
+    setTimes(flow.getExecutableNode("c"), 40, 60);
+    // c starts when a ends
+    Assert.assertEquals(2, FlowFootprints.getParallelism(flow));
+
+    setTimes(flow.getExecutableNode("d"), 45, 46);
+    Assert.assertEquals(3, FlowFootprints.getParallelism(flow));
+  }
+
+  @Test
+  public void testPeakMemoryDecays() throws Exception {
+    FlowFootprints footprints = new FlowFootprints(0.5);
+    ExecutableFlow flow = createFlow(1000, 11000);
+    Assert.assertNull(footprints.get(flow));
+
+    flow.setPeakMemoryInMB(1000);
+    footprints.record(flow);
+    flow.setPeakMemoryInMB(200);
+    footprints.record(flow);
+    Assert.assertEquals(600, footprints.get(flow).getPeakMemoryInMB());
+
+    // a higher peak is taken as is
+    flow.setPeakMemoryInMB(2000);
+    footprints.record(flow);
+    Assert.assertEquals(2000, footprints.get(flow).getPeakMemoryInMB());
+
+    // executions without measurements leave it alone
+    flow.setPeakMemoryInMB(-1);
+    footprints.record(flow);
+    Assert.assertEquals(2000, footprints.get(flow).getPeakMemoryInMB());
+    Assert.assertEquals(4, footprints.get(flow).getNumExecutions());
+    Assert.assertEquals(1, footprints.size());
+  }
+
+  @Test
+  public void testAveragesCpuAndDuration() throws Exception {
+    FlowFootprints footprints = new FlowFootprints(0.25);
+    ExecutableFlow flow = createFlow(1000, 11000);
+    footprints.record(flow);
+    Assert.assertEquals(-1, footprints.get(flow).getPeakMemoryInMB());
+    Assert.assertEquals(-1, footprints.get(flow).getCpuLoad(), 0.001);
+
+    flow.setCpuSeconds(10);
+    footprints.record(flow);
+    flow.setCpuSeconds(50);
+    flow.setEndTime(31000);
+    footprints.record(flow);
+
+    FlowFootprints.Footprint footprint = footprints.get(flow);
+    Assert.assertEquals(20, footprint.getCpuSeconds(), 0.001);
+    Assert.assertEquals(15, footprint.getDurationSeconds(), 0.001);
+    Assert.assertEquals(20.0 / 15, footprint.getCpuLoad(), 0.001);
+  }
+
+  @Test
+  public void testSkipsUnfinishedFlows() throws Exception {
+    FlowFootprints footprints = new FlowFootprints(0.5);
+    ExecutableFlow flow = createFlow(0, -1);
+    footprints.record(flow);
+    Assert.assertNull(footprints.get(flow));
+    Assert.assertEquals(0, footprints.size());
+  }
+
+  static ExecutableFlow createFlow(long startTime, long endTime) {
+    Project project = new Project(1, "project");
+    Flow flow = new Flow("flow");
+    for (String id : new String[] { "a", "b", "c", "d" }) {
+      Node node = new Node(id);
+      node.setType("command");
+      flow.addNode(node);
+    }
+    ExecutableFlow exflow = new ExecutableFlow(project, flow);
+    exflow.setStartTime(startTime);
+    exflow.setEndTime(endTime);
+    return exflow;
+  }
+
+  private static void setTimes(ExecutableNode node, long startTime,
+      long endTime) {
+    node.setStartTime(startTime);
+    node.setEndTime(endTime);
+  }
+}
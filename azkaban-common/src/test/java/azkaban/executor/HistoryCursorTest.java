@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HistoryCursorTest {
+
+  @Test
+  public void testTokenRoundTrip() {
+    HistoryCursor cursor = new HistoryCursor(123456, 2);
+    String token = cursor.toToken();
+    // safe to put in a url as is
+    Assert.assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    Assert.assertEquals(cursor, HistoryCursor.fromToken(token));
+
+    HistoryCursor flowCursor = HistoryCursor.fromToken(new HistoryCursor(7)
+        .toToken());
+    Assert.assertEquals(7, flowCursor.getExecId());
+    Assert.assertEquals(0, flowCursor.getAttempt());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidToken() {
+    HistoryCursor.fromToken("not a cursor");
+  }
+}
@@ -18,6 +18,7 @@ package azkaban.executor;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -33,6 +34,8 @@ import javax.sql.DataSource;
 import org.apache.commons.dbutils.DbUtils;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.ResultSetHandler;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.joda.time.DateTime;
 import org.junit.After;
 import org.junit.Assert;
@@ -123,6 +126,16 @@ public class JdbcExecutorLoaderTest {
       return;
     }
 
+    try {
+      runner.query(connection, "SELECT COUNT(1) FROM execution_flow_updates",
+          countHandler);
+    } catch (SQLException e) {
+      e.printStackTrace();
+      testDBExists = false;
+      DbUtils.closeQuietly(connection);
+      return;
+    }
+
     try {
       runner.query(connection, "SELECT COUNT(1) FROM executors",
           countHandler);
@@ -203,6 +216,15 @@ public class JdbcExecutorLoaderTest {
       return;
     }
 
+    try {
+      runner.update(connection, "DELETE FROM execution_flow_updates");
+    } catch (SQLException e) {
+      e.printStackTrace();
+      testDBExists = false;
+      DbUtils.closeQuietly(connection);
+      return;
+    }
+
     try {
       runner.update(connection, "DELETE FROM executors");
     } catch (SQLException e) {
@@ -288,6 +310,137 @@ public class JdbcExecutorLoaderTest {
         new HashSet<String>(fetchFlow.getEndNodes()));
   }
 
+  @Test
+  public void testAppendExecutionFlowUpdates() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    ExecutableFlow flow = TestUtils.createExecutableFlow("exectest1", "exec1");
+    loader.uploadExecutableFlow(flow);
+    long lastUpdateTime = flow.getUpdateTime();
+
+    ExecutableNode node = flow.getExecutableNodes().get(0);
+    node.setStatus(Status.RUNNING);
+    node.setStartTime(lastUpdateTime + 1);
+    node.setUpdateTime(lastUpdateTime + 1);
+    flow.setStatus(Status.RUNNING);
+    flow.setUpdateTime(lastUpdateTime + 1);
+    loader.appendExecutableFlowUpdate(flow, lastUpdateTime);
+
+    node.setStatus(Status.SUCCEEDED);
+    node.setEndTime(lastUpdateTime + 2);
+    node.setUpdateTime(lastUpdateTime + 2);
+    flow.setUpdateTime(lastUpdateTime + 2);
+    loader.appendExecutableFlowUpdate(flow, lastUpdateTime + 1);
+
+    ExecutableFlow fetchFlow =
+        loader.fetchExecutableFlow(flow.getExecutionId());
+    ExecutableNode fetchNode = fetchFlow.getExecutableNode(node.getId());
+    Assert.assertEquals(Status.RUNNING, fetchFlow.getStatus());
+    Assert.assertEquals(Status.SUCCEEDED, fetchNode.getStatus());
+    Assert.assertEquals(lastUpdateTime + 1, fetchNode.getStartTime());
+    Assert.assertEquals(lastUpdateTime + 2, fetchNode.getEndTime());
+
+    // A full update replaces the logged ones
+    flow.setStatus(Status.SUCCEEDED);
+    loader.updateExecutableFlow(flow);
+    fetchFlow = loader.fetchExecutableFlow(flow.getExecutionId());
+    Assert.assertEquals(Status.SUCCEEDED, fetchFlow.getStatus());
+    Assert.assertEquals(Status.SUCCEEDED,
+        fetchFlow.getExecutableNode(node.getId()).getStatus());
+  }
+
+  @Test
+  public void testFetchFlowHistorySummaries() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    List<ExecutableFlow> flows = new ArrayList<ExecutableFlow>();
+    for (int i = 0; i < 5; i++) {
+      ExecutableFlow flow =
+          TestUtils.createExecutableFlow("exectest1", "exec1");
+      flow.setSubmitUser("user" + (i % 2));
+      flow.setScheduleId(i);
+      loader.uploadExecutableFlow(flow);
+      flows.add(flow);
+    }
+
+    List<ExecutableFlow> history = loader.fetchFlowHistory(0, 2);
+    Assert.assertEquals(2, history.size());
+    ExecutableFlow newest = flows.get(4);
+    ExecutableFlow summary = history.get(0);
+    Assert.assertEquals(newest.getExecutionId(), summary.getExecutionId());
+    Assert.assertEquals(newest.getFlowId(), summary.getFlowId());
+    Assert.assertEquals(newest.getProjectId(), summary.getProjectId());
+    Assert.assertEquals(newest.getSubmitUser(), summary.getSubmitUser());
+    Assert.assertEquals(4, summary.getScheduleId());
+    Assert.assertEquals(Status.PREPARING, summary.getStatus());
+    // nodes only come with the flow data
+    Assert.assertTrue(summary.getExecutableNodes().isEmpty());
+
+    // keyset pages line up with offset pages
+    List<ExecutableFlow> nextPage =
+        loader.fetchFlowHistoryBefore(null, null, null, 0, -1, -1, history
+            .get(1).getExecutionId(), 2);
+    List<ExecutableFlow> offsetPage = loader.fetchFlowHistory(2, 2);
+    Assert.assertEquals(2, nextPage.size());
+    for (int i = 0; i < nextPage.size(); i++) {
+      Assert.assertEquals(offsetPage.get(i).getExecutionId(), nextPage.get(i)
+          .getExecutionId());
+    }
+
+    List<ExecutableFlow> userPage =
+        loader.fetchFlowHistoryBefore(null, null, "user1", 0, -1, -1, -1, 10);
+    Assert.assertEquals(2, userPage.size());
+    Assert.assertEquals(flows.get(3).getExecutionId(), userPage.get(0)
+        .getExecutionId());
+  }
+
+  @Test
+  public void testWriteFlowHistory() throws Exception {
+    if (!isTestSetup()) {
+      return;
+    }
+
+    ExecutorLoader loader = createLoader();
+    for (int i = 0; i < 5; i++) {
+      loader.uploadExecutableFlow(TestUtils.createExecutableFlow("exectest1",
+          "exec1"));
+    }
+    List<ExecutableFlow> expected = loader.fetchFlowHistory(0, 5);
+
+    // page through with cursors, 2 at a time
+    List<Object> written = new ArrayList<Object>();
+    HistoryCursor cursor = null;
+    int pages = 0;
+    do {
+      StringWriter writer = new StringWriter();
+      JsonGenerator generator = new JsonFactory().createJsonGenerator(writer);
+      generator.writeStartArray();
+      cursor =
+          loader.writeFlowHistory(generator, null, null, null, 0, -1, -1,
+              cursor, 2);
+      generator.writeEndArray();
+      generator.close();
+      written.addAll((List<?>) JSONUtils.parseJSONFromString(writer
+          .toString()));
+      pages++;
+    } while (cursor != null);
+
+    Assert.assertEquals(3, pages);
+    Assert.assertEquals(5, written.size());
+    for (int i = 0; i < 5; i++) {
+      Map<?, ?> row = (Map<?, ?>) written.get(i);
+      Assert.assertEquals(expected.get(i).getExecutionId(),
+          ((Number) row.get("execId")).intValue());
+      Assert.assertEquals("exec1", row.get("flowId"));
+    }
+  }
+
   @Test
   public void testUploadExecutableNode() throws Exception {
     if (!isTestSetup()) {
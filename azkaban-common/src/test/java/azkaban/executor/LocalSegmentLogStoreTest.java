@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.utils.FileIOUtils.LogData;
+
+public class LocalSegmentLogStoreTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testAppendAcrossSegments() throws Exception {
+    LocalSegmentLogStore store =
+        new LocalSegmentLogStore(temp.newFolder("logs"), 10);
+    append(store, 0, "0123456");
+    append(store, 7, "789abcdefghijklmnopq");
+
+    LogData data = store.fetchLogs(1, "job", 1, 0, 100);
+    Assert.assertEquals("0123456789abcdefghijklmnopq", data.getData());
+    Assert.assertEquals(0, data.getOffset());
+    Assert.assertEquals(27, data.getLength());
+
+    data = store.fetchLogs(1, "job", 1, 8, 5);
+    Assert.assertEquals("89abc", data.getData());
+    Assert.assertEquals(8, data.getOffset());
+
+    data = store.fetchLogs(1, "job", 1, 25, 100);
+    Assert.assertEquals("pq", data.getData());
+
+    Assert.assertNull(store.fetchLogs(1, "job", 1, 27, 100));
+    Assert.assertNull(store.fetchLogs(1, "job", 2, 0, 100));
+    Assert.assertNull(store.fetchLogs(1, "", 1, 0, 100));
+  }
+
+  @Test
+  public void testAppendReplacesRange() throws Exception {
+    LocalSegmentLogStore store =
+        new LocalSegmentLogStore(temp.newFolder("logs"), 10);
+    append(store, 0, "0123456789abc");
+    // a retried append writes the same range again
+    append(store, 5, "56789abc");
+
+    Assert.assertEquals("0123456789abc",
+        store.fetchLogs(1, "job", 1, 0, 100).getData());
+  }
+
+  @Test
+  public void testFetchTrimsToWholeCharacters() throws Exception {
+    LocalSegmentLogStore store =
+        new LocalSegmentLogStore(temp.newFolder("logs"), 4);
+    // three bytes each
+    append(store, 0, "\u20ac\u20ac\u20ac");
+
+    LogData data = store.fetchLogs(1, "job", 1, 1, 7);
+    Assert.assertEquals("\u20ac", data.getData());
+    Assert.assertEquals(3, data.getOffset());
+    Assert.assertEquals(3, data.getLength());
+  }
+
+  @Test
+  public void testRemoveLogsByTime() throws Exception {
+    File dir = temp.newFolder("logs");
+    LocalSegmentLogStore store = new LocalSegmentLogStore(dir, 10);
+    append(store, 0, "0123456789abc");
+    store.appendLog(2, "", 1, 0, "flow".getBytes(StandardCharsets.UTF_8), 4);
+
+    long now = System.currentTimeMillis();
+    for (File segment : new File(new File(dir, "1"), "job-job.1").listFiles()) {
+      segment.setLastModified(now - 60 * 1000);
+    }
+
+    Assert.assertEquals(2, store.removeLogsByTime(now - 30 * 1000));
+    Assert.assertNull(store.fetchLogs(1, "job", 1, 0, 100));
+    Assert.assertFalse(new File(dir, "1").exists());
+    Assert.assertEquals("flow", store.fetchLogs(2, "", 1, 0, 100).getData());
+  }
+
+  private void append(LocalSegmentLogStore store, int startByte, String log)
+      throws ExecutorManagerException {
+    byte[] data = log.getBytes(StandardCharsets.UTF_8);
+    store.appendLog(1, "job", 1, startByte, data, data.length);
+  }
+}
@@ -18,11 +18,15 @@ package azkaban.executor;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.codehaus.jackson.JsonGenerator;
+
 import azkaban.executor.ExecutorLogEvent.EventType;
 import azkaban.utils.FileIOUtils.LogData;
 import azkaban.utils.Pair;
@@ -45,6 +49,7 @@ public class MockExecutorLoader implements ExecutorLoader {
   int executorIdCounter = 0;
   Map<Integer, ArrayList<ExecutorLogEvent>> executorEvents =
     new HashMap<Integer, ArrayList<ExecutorLogEvent>>();
+  Map<String, byte[]> logs = new HashMap<String, byte[]>();
 
   @Override
   public void uploadExecutableFlow(ExecutableFlow flow)
@@ -94,6 +99,27 @@ public class MockExecutorLoader implements ExecutorLoader {
 
   }
 
+  @Override
+  public synchronized void appendLog(int execId, String name, int attempt,
+      int startByte, byte[] data, int length) throws ExecutorManagerException {
+    String key = execId + "." + name + "." + attempt;
+    byte[] log = logs.get(key);
+    if (log == null) {
+      log = new byte[0];
+    }
+    if (startByte > log.length) {
+      throw new ExecutorManagerException("Gap in log " + key + " at "
+          + log.length);
+    }
+    log = Arrays.copyOf(log, Math.max(log.length, startByte + length));
+    System.arraycopy(data, 0, log, startByte, length);
+    logs.put(key, log);
+  }
+
+  public synchronized byte[] getLog(int execId, String name, int attempt) {
+    return logs.get(execId + "." + name + "." + attempt);
+  }
+
   @Override
   public void updateExecutableFlow(ExecutableFlow flow)
       throws ExecutorManagerException {
@@ -103,6 +129,16 @@ public class MockExecutorLoader implements ExecutorLoader {
     flowUpdateCount++;
   }
 
+  @Override
+  public void appendExecutableFlowUpdate(ExecutableFlow flow,
+      long lastUpdateTime) throws ExecutorManagerException {
+    ExecutableFlow toUpdate = flows.get(flow.getExecutionId());
+
+    toUpdate.applyUpdateObject((Map<String, Object>) flow
+        .toUpdateObject(lastUpdateTime));
+    flowUpdateCount++;
+  }
+
   @Override
   public void uploadExecutableNode(ExecutableNode node, Props inputParams)
       throws ExecutorManagerException {
@@ -188,6 +224,53 @@ public class MockExecutorLoader implements ExecutorLoader {
     return null;
   }
 
+  @Override
+  public List<ExecutableFlow> fetchFlowHistoryBefore(String projContain,
+      String flowContains, String userNameContains, int status, long startData,
+      long endData, int beforeExecId, int num) throws ExecutorManagerException {
+    List<Integer> execIds = new ArrayList<Integer>(flows.keySet());
+    Collections.sort(execIds, Collections.reverseOrder());
+    List<ExecutableFlow> history = new ArrayList<ExecutableFlow>();
+    for (int execId : execIds) {
+      if (history.size() >= num) {
+        break;
+      }
+      ExecutableFlow flow = flows.get(execId);
+      if ((beforeExecId <= 0 || execId < beforeExecId)
+          && contains(flow.getProjectName(), projContain)
+          && contains(flow.getFlowId(), flowContains)
+          && contains(flow.getSubmitUser(), userNameContains)
+          && (status == 0 || flow.getStatus().getNumVal() == status)
+          && (startData <= 0 || flow.getStartTime() > startData)
+          && (endData <= 0 || flow.getEndTime() < endData)) {
+        history.add(flow);
+      }
+    }
+    return history;
+  }
+
+  private static boolean contains(String value, String part) {
+    return part == null || part.isEmpty()
+        || (value != null && value.contains(part));
+  }
+
+  @Override
+  public HistoryCursor writeFlowHistory(JsonGenerator generator,
+      String projContain, String flowContains, String userNameContains,
+      int status, long startData, long endData, HistoryCursor cursor, int num)
+      throws ExecutorManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
+  @Override
+  public HistoryCursor writeJobHistory(JsonGenerator generator, int projectId,
+      String jobId, HistoryCursor cursor, int num)
+      throws ExecutorManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
   @Override
   public List<ExecutableJobInfo> fetchJobHistory(int projectId, String jobId,
       int skip, int size) throws ExecutorManagerException {
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Executor server stand-in answering /executor calls with canned json
+ * responses per action, or not at all for hung actions, and statistics calls
+ * with canned executor info
+ */
+public class MockExecutorServer {
+  private final HttpServer server;
+  private final Map<String, String> responses =
+      new ConcurrentHashMap<String, String>();
+  private final Set<String> hungActions =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private volatile String statistics;
+  private final CountDownLatch stopped = new CountDownLatch(1);
+  private final ExecutorService threads = Executors.newCachedThreadPool();
+
+  public MockExecutorServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+    server.createContext("/executor", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        String action = getAction(exchange);
+        if (action != null && hungActions.contains(action)) {
+          try {
+            stopped.await();
+          } catch (InterruptedException e) {
+          }
+          exchange.close();
+          return;
+        }
+        send(exchange, responses.get(action));
+      }
+    });
+    server.createContext("/serverStatistics", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        send(exchange, statistics);
+      }
+    });
+    server.setExecutor(threads);
+    server.start();
+  }
+
+  public int getPort() {
+    return server.getAddress().getPort();
+  }
+
+  /* Answers calls of the given action with the given json */
+  public void respond(String action, String json) {
+    responses.put(action, json);
+  }
+
+  /* Answers statistics calls with the given executor info json */
+  public void respondStatistics(String json) {
+    statistics = json;
+  }
+
+  /* Leaves calls of the given action hanging until the server stops */
+  public void hang(String action) {
+    hungActions.add(action);
+  }
+
+  public void stop() {
+    stopped.countDown();
+    server.stop(0);
+    threads.shutdownNow();
+  }
+
+  private static void send(HttpExchange exchange, String response)
+      throws IOException {
+    byte[] body =
+        (response == null ? "{}" : response).getBytes(StandardCharsets.UTF_8);
+    exchange.sendResponseHeaders(200, body.length);
+    try (OutputStream out = exchange.getResponseBody()) {
+      out.write(body);
+    }
+  }
+
+  private static String getAction(HttpExchange exchange) throws IOException {
+    String query = exchange.getRequestURI().getRawQuery();
+    if (query != null) {
+      for (String param : query.split("&")) {
+        String[] pair = param.split("=", 2);
+        if (pair.length == 2 && pair[0].equals(ConnectorParams.ACTION_PARAM)) {
+          return URLDecoder.decode(pair[1], "UTF-8");
+        }
+      }
+    }
+    return null;
+  }
+}
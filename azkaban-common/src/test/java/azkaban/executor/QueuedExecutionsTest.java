@@ -153,6 +153,32 @@ public class QueuedExecutionsTest {
     Assert.assertEquals(queue.fetchHead(), dataList.get(1));
   }
 
+  /* Test fetchHeads method */
+  @Test
+  public void testFetchHeads() throws IOException, ExecutorManagerException,
+    InterruptedException {
+    QueuedExecutions queue = new QueuedExecutions(5);
+    List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    queue.enqueueAll(dataList);
+    Assert.assertEquals(dataList.subList(0, 1), queue.fetchHeads(1));
+    Assert.assertFalse(queue.hasExecution(1));
+    Assert.assertEquals(dataList.subList(1, 2), queue.fetchHeads(10));
+    Assert.assertTrue(queue.isEmpty());
+  }
+
+  /* Test fetchHeads method with a timeout */
+  @Test
+  public void testFetchHeadsTimeout() throws IOException,
+    ExecutorManagerException, InterruptedException {
+    QueuedExecutions queue = new QueuedExecutions(5);
+    Assert.assertTrue(queue.fetchHeads(10, 10).isEmpty());
+    List<Pair<ExecutionReference, ExecutableFlow>> dataList = getDummyData();
+    queue.enqueueAll(dataList);
+    Assert.assertEquals(dataList, queue.fetchHeads(10, 10));
+    Assert.assertTrue(queue.isEmpty());
+    Assert.assertFalse(queue.hasExecution(1));
+  }
+
   /* Test isFull method */
   @Test
   public void testIsFull() throws IOException, ExecutorManagerException,
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.executor;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.flow.Flow;
+import azkaban.project.Project;
+
+public class RunningFlowRegistryTest {
+
+  @Test
+  public void testIndexes() throws Exception {
+    RunningFlowRegistry registry = new RunningFlowRegistry();
+    Executor executor = new Executor(1, "host1", 12345, true);
+    ExecutableFlow flow1 = createFlow("exec1", 11, "alice");
+    ExecutableFlow flow2 = createFlow("exec1", 12, "bob");
+    ExecutableFlow flow3 = createFlow("exec2", 13, "alice");
+    int projectId = flow1.getProjectId();
+
+    registry.add(flow2, null);
+    registry.add(flow1, null);
+    registry.add(flow3, executor);
+    Assert.assertEquals(3, registry.size());
+    Assert.assertTrue(registry.hasFlow(projectId, "exec1"));
+    Assert.assertFalse(registry.hasFlow(projectId + 1, "exec1"));
+    Assert.assertEquals(Arrays.asList(11, 12),
+        registry.getExecutionIds(projectId, "exec1"));
+    Assert.assertEquals(Arrays.asList(11, 13),
+        registry.getExecutionIdsOfUser("alice"));
+    Assert.assertEquals(Collections.singletonList(13),
+        registry.getExecutionIdsOfExecutor(1));
+
+    // dispatched, then back in the queue
+    registry.setExecutor(11, executor);
+    Assert.assertEquals(Arrays.asList(11, 13),
+        registry.getExecutionIdsOfExecutor(1));
+    registry.setExecutor(11, null);
+    Assert.assertEquals(Collections.singletonList(13),
+        registry.getExecutionIdsOfExecutor(1));
+
+    registry.remove(11);
+    registry.remove(12);
+    Assert.assertFalse(registry.hasFlow(projectId, "exec1"));
+    Assert.assertTrue(registry.getExecutionIds(projectId, "exec1").isEmpty());
+    Assert.assertEquals(Collections.singletonList(13),
+        registry.getExecutionIdsOfUser("alice"));
+    Assert.assertTrue(registry.getExecutionIdsOfUser("bob").isEmpty());
+    Assert.assertFalse(registry.contains(11));
+
+    // executions that aren't registered are left alone
+    registry.setExecutor(11, executor);
+    registry.remove(11);
+    Assert.assertEquals(1, registry.size());
+  }
+
+  @Test
+  public void testConcurrentAddAndRemove() throws Exception {
+    final RunningFlowRegistry registry = new RunningFlowRegistry();
+    final ExecutableFlow template = createFlow("exec1", 0, "alice");
+    ExecutorService service = Executors.newFixedThreadPool(4);
+    for (int thread = 0; thread < 4; thread++) {
+      final int offset = thread * 1000;
+      service.submit(() -> {
+        for (int i = 0; i < 1000; i++) {
+          ExecutableFlow flow = createFlow("exec1", offset + i, "alice");
+          registry.add(flow, null);
+          // keep every other one
+          if (i % 2 == 1) {
+            registry.remove(offset + i);
+          }
+        }
+        return null;
+      });
+    }
+    service.shutdown();
+    Assert.assertTrue(service.awaitTermination(30, TimeUnit.SECONDS));
+
+    Assert.assertEquals(2000, registry.size());
+    Assert.assertEquals(2000,
+        registry.getExecutionIds(template.getProjectId(), "exec1").size());
+    Assert.assertEquals(2000, registry.getExecutionIdsOfUser("alice").size());
+  }
+
+  private static ExecutableFlow createFlow(String flowId, int execId,
+      String user) {
+    ExecutableFlow flow =
+        new ExecutableFlow(new Project(1, "project"), new Flow(flowId));
+    flow.setExecutionId(execId);
+    flow.setSubmitUser(user);
+    return flow;
+  }
+}
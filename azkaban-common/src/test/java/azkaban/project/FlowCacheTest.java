@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.project;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+
+public class FlowCacheTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private List<String> fetches;
+  private ProjectLoader loader;
+
+  @Before
+  public void setUp() throws Exception {
+    fetches = new ArrayList<String>();
+    loader = new MockProjectLoader(temp.newFolder("projects")) {
+      @Override
+      public List<Flow> fetchAllProjectFlows(Project project) {
+        fetches.add(project.getId() + "." + project.getVersion());
+        // project id + 1 flows of one node each
+        List<Flow> flows = new ArrayList<Flow>();
+        for (int i = 0; i <= project.getId(); i++) {
+          Flow flow = new Flow("flow" + i);
+          flow.addNode(new Node("job"));
+          flows.add(flow);
+        }
+        return flows;
+      }
+    };
+  }
+
+  @Test
+  public void testLoadsOnFirstUse() throws Exception {
+    FlowCache cache = new FlowCache(loader, 100);
+    Project project = createProject(1, 1);
+    project.setFlowCache(cache);
+    Assert.assertTrue(fetches.isEmpty());
+
+    Flow flow = project.getFlow("flow1");
+    Assert.assertNotNull(flow);
+    Assert.assertSame(flow, project.getFlow("flow1"));
+    Assert.assertEquals(2, project.getFlows().size());
+    Assert.assertEquals(Collections.singletonList("1.1"), fetches);
+    Assert.assertEquals(1, cache.getMisses());
+    Assert.assertEquals(2, cache.getHits());
+    Assert.assertEquals(4, cache.getSize());
+
+    // a new version has flows of its own
+    project.setVersion(2);
+    project.getFlow("flow1");
+    Assert.assertEquals(2, fetches.size());
+    Assert.assertEquals(2, cache.getNumProjectVersions());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    // two flows of one node take 4
+    FlowCache cache = new FlowCache(loader, 8);
+    Project first = createProject(1, 1);
+    Project second = createProject(1, 2);
+    Project third = createProject(1, 3);
+    cache.getFlows(first);
+    cache.getFlows(second);
+    cache.getFlows(first);
+    cache.getFlows(third);
+
+    Assert.assertEquals(1, cache.getEvictions());
+    Assert.assertEquals(8, cache.getSize());
+    cache.getFlows(first);
+    Assert.assertEquals(3, fetches.size());
+    cache.getFlows(second);
+    Assert.assertEquals(4, fetches.size());
+  }
+
+  @Test
+  public void testKeepsFlowsLargerThanCache() throws Exception {
+    FlowCache cache = new FlowCache(loader, 2);
+    Project project = createProject(5, 1);
+    Map<String, Flow> flows = cache.getFlows(project);
+    Assert.assertSame(flows, cache.getFlows(project));
+    Assert.assertEquals(12, cache.getSize());
+    Assert.assertEquals(0, cache.getEvictions());
+  }
+
+  @Test
+  public void testSetFlowsGoesToCache() throws Exception {
+    FlowCache cache = new FlowCache(loader, 100);
+    Project project = createProject(1, 1);
+    project.setFlowCache(cache);
+
+    Flow flow = new Flow("uploaded");
+    project.setFlows(Collections.singletonMap(flow.getId(), flow));
+    Assert.assertSame(flow, project.getFlow("uploaded"));
+    Assert.assertNull(project.getFlow("flow0"));
+    Assert.assertTrue(fetches.isEmpty());
+  }
+
+  private Project createProject(int id, int version) {
+    Project project = new Project(id, "project" + id);
+    project.setVersion(version);
+    return project;
+  }
+}
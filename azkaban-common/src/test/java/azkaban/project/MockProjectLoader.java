@@ -18,6 +18,8 @@ package azkaban.project;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
@@ -43,6 +45,12 @@ public class MockProjectLoader implements ProjectLoader {
     return null;
   }
 
+  @Override
+  public List<Project> fetchActiveProjects(int afterId, int num)
+      throws ProjectManagerException {
+    return new ArrayList<Project>();
+  }
+
   @Override
   public Project fetchProjectById(int id) throws ProjectManagerException {
     // TODO Auto-generated method stub
@@ -113,6 +121,20 @@ public class MockProjectLoader implements ProjectLoader {
     return null;
   }
 
+  @Override
+  public ProjectFileHandler fetchProjectFileInfo(int projectId, int version)
+      throws ProjectManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
+  @Override
+  public InputStream getUploadedFileStream(ProjectFileHandler handler)
+      throws ProjectManagerException {
+    // TODO Auto-generated method stub
+    return null;
+  }
+
   @Override
   public void changeProjectVersion(Project project, int version, String user)
       throws ProjectManagerException {
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.project;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.utils.Md5Hasher;
+
+public class ProjectFileChunkInputStreamTest {
+  private static final int CHUNK_SIZE = 100;
+
+  private ExecutorService fetcherService;
+
+  @Before
+  public void setUp() {
+    fetcherService = Executors.newFixedThreadPool(4);
+  }
+
+  @After
+  public void tearDown() {
+    fetcherService.shutdownNow();
+  }
+
+  @Test
+  public void testReadsChunksInOrder() throws Exception {
+    byte[] content = createContent(1050);
+    TestFetcher fetcher = new TestFetcher(content);
+    ProjectFileChunkInputStream in =
+        new ProjectFileChunkInputStream(fetcher, fetcherService,
+            fetcher.numChunks, 3, md5(content));
+
+    Assert.assertArrayEquals(content, IOUtils.toByteArray(in));
+    Assert.assertEquals(fetcher.numChunks, fetcher.fetched.get());
+    Assert.assertTrue(fetcher.maxAhead <= 3);
+    in.close();
+  }
+
+  @Test
+  public void testEmptyFile() throws Exception {
+    byte[] content = new byte[0];
+    ProjectFileChunkInputStream in =
+        new ProjectFileChunkInputStream(new TestFetcher(content),
+            fetcherService, 0, 3, md5(content));
+    Assert.assertEquals(-1, in.read());
+  }
+
+  @Test(expected = IOException.class)
+  public void testMd5Mismatch() throws Exception {
+    byte[] content = createContent(250);
+    TestFetcher fetcher = new TestFetcher(content);
+    ProjectFileChunkInputStream in =
+        new ProjectFileChunkInputStream(fetcher, fetcherService,
+            fetcher.numChunks, 2, md5(createContent(10)));
+    IOUtils.toByteArray(in);
+  }
+
+  @Test(expected = IOException.class)
+  public void testFetchFailure() throws Exception {
+    ProjectFileChunkInputStream in =
+        new ProjectFileChunkInputStream(
+            new ProjectFileChunkInputStream.ChunkFetcher() {
+              @Override
+              public List<byte[]> fetchChunks(int fromChunk, int toChunk)
+                  throws ProjectManagerException {
+                throw new ProjectManagerException("broken");
+              }
+            }, fetcherService, 5, 2, new byte[16]);
+    in.read();
+  }
+
+  private static byte[] createContent(int length) {
+    byte[] content = new byte[length];
+    for (int i = 0; i < length; i++) {
+      content[i] = (byte) (i * 31);
+    }
+    return content;
+  }
+
+  private static byte[] md5(byte[] content) {
+    MessageDigest digest = Md5Hasher.getMd5Digest();
+    digest.update(content);
+    return digest.digest();
+  }
+
+  /*
+   * Serves chunks of the content, out of order and tracking how many are
+   * in flight at once.
+   */
+  private static class TestFetcher implements
+      ProjectFileChunkInputStream.ChunkFetcher {
+    private final byte[] content;
+    private final int numChunks;
+    private final AtomicInteger fetched = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile int maxAhead = 0;
+
+    private TestFetcher(byte[] content) {
+      this.content = content;
+      this.numChunks = (content.length + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    @Override
+    public List<byte[]> fetchChunks(int fromChunk, int toChunk)
+        throws ProjectManagerException {
+      maxAhead = Math.max(maxAhead, inFlight.incrementAndGet());
+      try {
+        // later chunks come back first
+        Thread.sleep((numChunks - fromChunk) % 3);
+      } catch (InterruptedException e) {
+        throw new ProjectManagerException("interrupted", e);
+      } finally {
+        inFlight.decrementAndGet();
+      }
+
+      List<byte[]> chunks = new ArrayList<byte[]>();
+      for (int i = fromChunk; i < toChunk; i++) {
+        chunks.add(Arrays.copyOfRange(content, i * CHUNK_SIZE,
+            Math.min(content.length, (i + 1) * CHUNK_SIZE)));
+      }
+      fetched.addAndGet(toChunk - fromChunk);
+      return chunks;
+    }
+  }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class MockTriggerLoader implements TriggerLoader {
 
@@ -47,12 +48,47 @@ public class MockTriggerLoader implements TriggerLoader {
     triggers.put(t.getTriggerId(), t);
   }
 
+  @Override
+  public synchronized void updateTriggers(List<Trigger> triggers)
+      throws TriggerLoaderException {
+    for (Trigger t : triggers) {
+      updateTrigger(t);
+    }
+  }
+
+  @Override
+  public void updateTriggerState(Trigger t) throws TriggerLoaderException {
+    updateTrigger(t);
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void shutdown() {
+  }
+
   @Override
   public synchronized List<Trigger> loadTriggers()
       throws TriggerLoaderException {
     return new ArrayList<Trigger>(triggers.values());
   }
 
+  @Override
+  public synchronized List<Trigger> loadTriggers(int afterId, int num)
+      throws TriggerLoaderException {
+    List<Trigger> page = new ArrayList<Trigger>();
+    for (Trigger t : new TreeMap<Integer, Trigger>(triggers).tailMap(afterId,
+        false).values()) {
+      if (page.size() == num) {
+        break;
+      }
+      page.add(t);
+    }
+    return page;
+  }
+
   @Override
   public synchronized Trigger loadTrigger(int triggerId)
       throws TriggerLoaderException {
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TriggerActionRunnerTest {
+  private TriggerActionRunner runner;
+
+  @After
+  public void tearDown() {
+    runner.shutdown();
+  }
+
+  @Test
+  public void testRunsTriggersInParallel() throws Exception {
+    runner = new TriggerActionRunner(4, 10000, 0, 0);
+    // every action waits for all of them to have started
+    final CountDownLatch started = new CountDownLatch(4);
+    final CountDownLatch done = new CountDownLatch(4);
+    for (int i = 0; i < 4; i++) {
+      runner.run(createTrigger(i), Collections.<TriggerAction> singletonList(
+          new TestAction() {
+            @Override
+            public void doAction() throws Exception {
+              started.countDown();
+              started.await();
+              done.countDown();
+            }
+          }), "trigger");
+    }
+    Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+    waitForPending(0);
+    Assert.assertEquals(4, runner.getNumSucceeded());
+  }
+
+  @Test
+  public void testKeepsOrderOfTrigger() throws Exception {
+    runner = new TriggerActionRunner(4, 10000, 0, 0);
+    final List<Integer> order =
+        Collections.synchronizedList(new ArrayList<Integer>());
+    Trigger t = createTrigger(1);
+    for (int i = 0; i < 20; i++) {
+      final int num = i;
+      runner.run(t, Arrays.<TriggerAction> asList(new TestAction() {
+        @Override
+        public void doAction() throws Exception {
+          order.add(2 * num);
+        }
+      }, new TestAction() {
+        @Override
+        public void doAction() throws Exception {
+          Thread.sleep(1);
+          order.add(2 * num + 1);
+        }
+      }), "trigger");
+    }
+    waitForPending(0);
+
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < 40; i++) {
+      expected.add(i);
+    }
+    Assert.assertEquals(expected, order);
+  }
+
+  @Test
+  public void testRetriesFailedActions() throws Exception {
+    runner = new TriggerActionRunner(2, 10000, 2, 10);
+    final int[] attempts = new int[3];
+    runner.run(createTrigger(1), Arrays.<TriggerAction> asList(
+        new TestAction() {
+          @Override
+          public void doAction() throws Exception {
+            if (++attempts[0] < 2) {
+              throw new RetryableActionException("fails once");
+            }
+          }
+        }, new TestAction() {
+          @Override
+          public void doAction() throws Exception {
+            attempts[1]++;
+            throw new RetryableActionException("always fails");
+          }
+        }, new TestAction() {
+          @Override
+          public void doAction() throws Exception {
+            attempts[2]++;
+            throw new Exception("may have done something");
+          }
+        }), "trigger");
+    waitForPending(0);
+
+    Assert.assertEquals(2, attempts[0]);
+    Assert.assertEquals(3, attempts[1]);
+    // only failures before the action did anything are tried again
+    Assert.assertEquals(1, attempts[2]);
+    Assert.assertEquals(1, runner.getNumSucceeded());
+    Assert.assertEquals(2, runner.getNumFailed());
+    Assert.assertEquals(3, runner.getNumRetried());
+  }
+
+  @Test
+  public void testTimesOutActions() throws Exception {
+    runner = new TriggerActionRunner(1, 100, 2, 0);
+    final int[] attempts = new int[1];
+    runner.run(createTrigger(1), Arrays.<TriggerAction> asList(
+        new TestAction() {
+          @Override
+          public void doAction() throws Exception {
+            attempts[0]++;
+            Thread.sleep(60000);
+          }
+        }, new TestAction()), "trigger");
+    waitForPending(0);
+
+    // timed out actions aren't tried again, the next action still runs
+    Assert.assertEquals(1, attempts[0]);
+    Assert.assertEquals(1, runner.getNumTimedOut());
+    Assert.assertEquals(1, runner.getNumSucceeded());
+  }
+
+  @Test
+  public void testRunsInlineWithoutThreads() throws Exception {
+    runner = new TriggerActionRunner(0, 100, 2, 0);
+    final Thread caller = Thread.currentThread();
+    final Thread[] ranOn = new Thread[1];
+    runner.run(createTrigger(1), Collections.<TriggerAction> singletonList(
+        new TestAction() {
+          @Override
+          public void doAction() throws Exception {
+            ranOn[0] = Thread.currentThread();
+          }
+        }), "trigger");
+    Assert.assertSame(caller, ranOn[0]);
+    Assert.assertEquals(0, runner.getNumPending());
+  }
+
+  private void waitForPending(int num) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (runner.getNumPending() > num
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(num, runner.getNumPending());
+  }
+
+  private Trigger createTrigger(int id) {
+    Map<String, ConditionChecker> checkers =
+        new HashMap<String, ConditionChecker>();
+    Trigger t =
+        new Trigger("azkaban", "azkabanTest", new Condition(checkers, "true"),
+            new Condition(checkers, "false"), new ArrayList<TriggerAction>());
+    t.setTriggerId(id);
+    return t;
+  }
+
+  private static class TestAction implements TriggerAction {
+    @Override
+    public String getId() {
+      return "test";
+    }
+
+    @Override
+    public String getType() {
+      return "TestAction";
+    }
+
+    @Override
+    public TriggerAction fromJson(Object obj) throws Exception {
+      return null;
+    }
+
+    @Override
+    public Object toJson() {
+      return null;
+    }
+
+    @Override
+    public void doAction() throws Exception {
+    }
+
+    @Override
+    public void setContext(Map<String, Object> context) {
+    }
+
+    @Override
+    public String getDescription() {
+      return "test action";
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.alert.Alerter;
+import azkaban.executor.ExecutorManager;
+import azkaban.executor.MockExecutorLoader;
+import azkaban.utils.Props;
+
+public class TriggerManagerBackgroundLoadTest {
+  private static final int PAGE_SIZE = 10;
+
+  private CountDownLatch lastPage;
+  private MockTriggerLoader loader;
+  private TriggerManager triggerManager;
+
+  @Before
+  public void setUp() throws Exception {
+    lastPage = new CountDownLatch(1);
+    // holds back the last page until the test lets it through
+    loader = new MockTriggerLoader() {
+      @Override
+      public List<Trigger> loadTriggers(int afterId, int num)
+          throws TriggerLoaderException {
+        if (afterId >= 2 * PAGE_SIZE - 1) {
+          try {
+            lastPage.await();
+          } catch (InterruptedException e) {
+            throw new TriggerLoaderException(e);
+          }
+        }
+        return super.loadTriggers(afterId, num);
+      }
+    };
+    for (int i = 0; i < 25; i++) {
+      loader.addTrigger(createTrigger());
+    }
+
+    Props props = new Props();
+    props.put("executor.port", 12321);
+    props.put(TriggerManager.LOAD_IN_BACKGROUND, "true");
+    props.put(TriggerManager.LOAD_PAGE_SIZE, PAGE_SIZE);
+    ExecutorManager executorManager =
+        new ExecutorManager(props, new MockExecutorLoader(),
+            new HashMap<String, Alerter>());
+    triggerManager = new TriggerManager(props, loader, executorManager);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    lastPage.countDown();
+    for (Trigger t : triggerManager.getTriggers()) {
+      triggerManager.removeTrigger(t);
+    }
+    triggerManager.shutdown();
+  }
+
+  @Test
+  public void testAdmitsTriggersInPages() throws Exception {
+    triggerManager.start();
+    waitFor(2 * PAGE_SIZE);
+    Assert.assertFalse(triggerManager.isTriggersLoaded());
+    Assert.assertEquals(-1, triggerManager.getLoadTimeMs());
+
+    // changes made before the loader gets to the triggers stay
+    triggerManager.removeTrigger(22);
+    Trigger inserted = createTrigger();
+    triggerManager.insertTrigger(inserted);
+
+    lastPage.countDown();
+    long deadline = System.currentTimeMillis() + 10000;
+    while (!triggerManager.isTriggersLoaded()
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(triggerManager.isTriggersLoaded());
+    Assert.assertTrue(triggerManager.getLoadTimeMs() >= 0);
+
+    Set<Integer> ids = new HashSet<Integer>();
+    for (Trigger t : triggerManager.getTriggers()) {
+      ids.add(t.getTriggerId());
+    }
+    Assert.assertEquals(25, ids.size());
+    Assert.assertFalse(ids.contains(22));
+    Assert.assertTrue(ids.contains(inserted.getTriggerId()));
+  }
+
+  private void waitFor(int numTriggers) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (triggerManager.getTriggers().size() < numTriggers
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(numTriggers, triggerManager.getTriggers().size());
+  }
+
+  private Trigger createTrigger() {
+    // never met
+    ConditionChecker checker = new ThresholdChecker("never", Integer.MAX_VALUE);
+    Map<String, ConditionChecker> checkers =
+        new HashMap<String, ConditionChecker>();
+    checkers.put(checker.getId(), checker);
+    Condition triggerCond = new Condition(checkers, checker.getId() + ".eval()");
+    Condition expireCond = new Condition(checkers, checker.getId() + ".eval()");
+    return new Trigger("azkaban", "azkabanTest", triggerCond, expireCond,
+        new ArrayList<TriggerAction>());
+  }
+}
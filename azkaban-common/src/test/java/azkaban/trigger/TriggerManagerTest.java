@@ -144,11 +144,43 @@ public class TriggerManagerTest {
       triggers.put(t.getTriggerId(), t);
     }
 
+    @Override
+    public void updateTriggers(List<Trigger> triggers)
+        throws TriggerLoaderException {
+      for (Trigger t : triggers) {
+        updateTrigger(t);
+      }
+    }
+
+    @Override
+    public void updateTriggerState(Trigger t) throws TriggerLoaderException {
+      updateTrigger(t);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
     @Override
     public List<Trigger> loadTriggers() {
       return new ArrayList<Trigger>(triggers.values());
     }
 
+    @Override
+    public List<Trigger> loadTriggers(int afterId, int num) {
+      List<Trigger> page = new ArrayList<Trigger>();
+      for (int id = afterId + 1; id < idIndex && page.size() < num; id++) {
+        if (triggers.containsKey(id)) {
+          page.add(triggers.get(id));
+        }
+      }
+      return page;
+    }
+
     @Override
     public Trigger loadTrigger(int triggerId) throws TriggerLoaderException {
       // TODO Auto-generated method stub
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.alert.Alerter;
+import azkaban.event.Event;
+import azkaban.event.Event.Type;
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutorManager;
+import azkaban.executor.MockExecutorLoader;
+import azkaban.utils.Props;
+
+public class TriggerScannerTest {
+  private static final long HOUR_MS = 60 * 60 * 1000;
+
+  private AtomicInteger evals;
+  private AtomicInteger actions;
+  private ExecutorManager executorManager;
+  private TriggerManager triggerManager;
+
+  @Before
+  public void setUp() throws Exception {
+    evals = new AtomicInteger();
+    actions = new AtomicInteger();
+    Props props = new Props();
+    props.put("executor.port", 12321);
+    // long enough that nothing fires on a regular scan
+    props.put("trigger.scan.interval", HOUR_MS);
+    executorManager =
+        new ExecutorManager(props, new MockExecutorLoader(),
+            new HashMap<String, Alerter>());
+    triggerManager =
+        new TriggerManager(props, new MockTriggerLoader(), executorManager);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    for (Trigger t : triggerManager.getTriggers()) {
+      triggerManager.removeTrigger(t);
+    }
+    triggerManager.shutdown();
+  }
+
+  @Test
+  public void testChecksOnlyDueTriggers() throws Exception {
+    for (int i = 0; i < 1000; i++) {
+      triggerManager.insertTrigger(createTrigger(System.currentTimeMillis()
+          + HOUR_MS));
+    }
+    triggerManager.start();
+    waitForScanner();
+    evals.set(0);
+
+    // the due trigger fires when it's due, not at the next scan interval
+    triggerManager.insertTrigger(createTrigger(System.currentTimeMillis() + 200));
+    waitForActions(1);
+    Assert.assertTrue("Only the due trigger is checked, was " + evals.get(),
+        evals.get() <= 2);
+  }
+
+  @Test
+  public void testChecksMonitoringTriggersWhenExecutionFinishes()
+      throws Exception {
+    Trigger monitoring = createTrigger(System.currentTimeMillis() + HOUR_MS);
+    monitoring.getInfo().put(TriggerManager.MONITORED_EXECUTION, "42");
+    triggerManager.insertTrigger(monitoring);
+    triggerManager.start();
+    waitForScanner();
+    evals.set(0);
+
+    ExecutableFlow flow = new ExecutableFlow();
+    flow.setExecutionId(42);
+    executorManager.fireEventListeners(Event.create(flow, Type.FLOW_FINISHED));
+    long deadline = System.currentTimeMillis() + 10000;
+    while (evals.get() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertTrue(evals.get() > 0);
+    Assert.assertEquals(0, actions.get());
+  }
+
+  @Test
+  public void testWritesFiredStateBeforeActions() throws Exception {
+    final AtomicInteger actionsAtWrite = new AtomicInteger(-1);
+    MockTriggerLoader loader = new MockTriggerLoader() {
+      @Override
+      public synchronized void updateTrigger(Trigger t)
+          throws TriggerLoaderException {
+        if (t.getStatus() == TriggerStatus.EXPIRED) {
+          actionsAtWrite.set(actions.get());
+        }
+        super.updateTrigger(t);
+      }
+    };
+    Props props = new Props();
+    props.put("trigger.scan.interval", HOUR_MS);
+    props.put(TriggerManager.ACTION_THREADS, 0);
+    triggerManager.shutdown();
+    triggerManager = new TriggerManager(props, loader, executorManager);
+    triggerManager.insertTrigger(createTrigger(System.currentTimeMillis() + 200));
+    triggerManager.start();
+    waitForActions(1);
+
+    // written through before the action ran
+    Assert.assertEquals(0, actionsAtWrite.get());
+  }
+
+  @Test
+  public void testWritesTriggersFiredTogetherInOneBatch() throws Exception {
+    final List<Integer> batchSizes = new ArrayList<Integer>();
+    final AtomicInteger actionsAtWrite = new AtomicInteger(-1);
+    MockTriggerLoader loader = new MockTriggerLoader() {
+      @Override
+      public synchronized void updateTriggers(List<Trigger> triggers)
+          throws TriggerLoaderException {
+        batchSizes.add(triggers.size());
+        actionsAtWrite.set(actions.get());
+        super.updateTriggers(triggers);
+      }
+    };
+    Props props = new Props();
+    props.put("trigger.scan.interval", HOUR_MS);
+    props.put(TriggerManager.ACTION_THREADS, 0);
+    triggerManager.shutdown();
+    triggerManager = new TriggerManager(props, loader, executorManager);
+    long checkTime = System.currentTimeMillis() + 200;
+    triggerManager.insertTrigger(createTrigger(checkTime));
+    triggerManager.insertTrigger(createTrigger(checkTime));
+    triggerManager.start();
+    waitForActions(2);
+
+    Assert.assertEquals(Arrays.asList(2), batchSizes);
+    Assert.assertEquals(0, actionsAtWrite.get());
+  }
+
+  private void waitForScanner() throws InterruptedException {
+    Thread.sleep(100);
+  }
+
+  private void waitForActions(int num) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (actions.get() < num && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(num, actions.get());
+  }
+
+  private Trigger createTrigger(long checkTime) {
+    TimeChecker checker = new TimeChecker("time", checkTime, evals);
+    Condition triggerCond =
+        new Condition(Collections.<String, ConditionChecker> singletonMap(
+            checker.getId(), checker), checker.getId() + ".eval()");
+    TimeChecker never = new TimeChecker("never", Long.MAX_VALUE - 1, evals);
+    Condition expireCond =
+        new Condition(Collections.<String, ConditionChecker> singletonMap(
+            never.getId(), never), never.getId() + ".eval()");
+    List<TriggerAction> triggerActions = new ArrayList<TriggerAction>();
+    triggerActions.add(new CountingAction(actions));
+    Trigger t =
+        new Trigger("azkaban", "azkabanTest", triggerCond, expireCond,
+            triggerActions);
+    t.setResetOnTrigger(false);
+    return t;
+  }
+
+  /**
+   * Met once its time has passed, counting how often it's looked at
+   */
+  public static class TimeChecker implements ConditionChecker {
+    private final String id;
+    private final long checkTime;
+    private final AtomicInteger evals;
+
+    public TimeChecker(String id, long checkTime, AtomicInteger evals) {
+      this.id = id;
+      this.checkTime = checkTime;
+      this.evals = evals;
+    }
+
+    @Override
+    public Object eval() {
+      evals.incrementAndGet();
+      return checkTime < System.currentTimeMillis();
+    }
+
+    @Override
+    public Object getNum() {
+      return null;
+    }
+
+    @Override
+    public void reset() {
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public String getType() {
+      return "TimeChecker";
+    }
+
+    @Override
+    public ConditionChecker fromJson(Object obj) throws Exception {
+      return null;
+    }
+
+    @Override
+    public Object toJson() {
+      return null;
+    }
+
+    @Override
+    public void stopChecker() {
+    }
+
+    @Override
+    public void setContext(Map<String, Object> context) {
+    }
+
+    @Override
+    public long getNextCheckTime() {
+      return checkTime;
+    }
+  }
+
+  public static class CountingAction implements TriggerAction {
+    private final AtomicInteger count;
+
+    public CountingAction(AtomicInteger count) {
+      this.count = count;
+    }
+
+    @Override
+    public String getId() {
+      return "count";
+    }
+
+    @Override
+    public String getType() {
+      return "CountingAction";
+    }
+
+    @Override
+    public TriggerAction fromJson(Object obj) throws Exception {
+      return null;
+    }
+
+    @Override
+    public Object toJson() {
+      return null;
+    }
+
+    @Override
+    public void doAction() throws Exception {
+      count.incrementAndGet();
+    }
+
+    @Override
+    public void setContext(Map<String, Object> context) {
+    }
+
+    @Override
+    public String getDescription() {
+      return "counts";
+    }
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.utils.Pair;
+
+public class TriggerShardManagerTest {
+  private static final int NUM_SHARDS = 16;
+
+  private LeaseLoader loader;
+
+  @Before
+  public void setUp() {
+    loader = new LeaseLoader();
+  }
+
+  @Test
+  public void testSingleServerOwnsAllShards() throws Exception {
+    RecordingListener listener = new RecordingListener();
+    TriggerShardManager manager = createManager("a", listener, 30000, 10000);
+    manager.renewLeases();
+
+    Assert.assertEquals(allShards(), manager.getOwnedShards());
+    Assert.assertEquals(allShards(), listener.acquired);
+    Assert.assertTrue(listener.released.isEmpty());
+    Assert.assertEquals(1, listener.renewals);
+    for (int id = -20; id < 20; id++) {
+      Assert.assertTrue(manager.owns(id));
+    }
+
+    // renewing keeps them without loading them again
+    listener.acquired.clear();
+    manager.renewLeases();
+    Assert.assertEquals(allShards(), manager.getOwnedShards());
+    Assert.assertTrue(listener.acquired.isEmpty());
+  }
+
+  @Test
+  public void testServersSplitShards() throws Exception {
+    RecordingListener listenerA = new RecordingListener();
+    RecordingListener listenerB = new RecordingListener();
+    TriggerShardManager a = createManager("a", listenerA, 30000, 10000);
+    TriggerShardManager b = createManager("b", listenerB, 30000, 10000);
+
+    a.renewLeases();
+    // a still holds the leases of the shards going to b
+    b.renewLeases();
+    Assert.assertTrue(b.getOwnedShards().isEmpty());
+    Assert.assertEquals(2, b.getNumLiveOwners());
+
+    a.renewLeases();
+    b.renewLeases();
+    Set<Integer> ownedA = a.getOwnedShards();
+    Set<Integer> ownedB = b.getOwnedShards();
+    Assert.assertFalse(ownedA.isEmpty());
+    Assert.assertFalse(ownedB.isEmpty());
+    Assert.assertEquals(listenerA.released, ownedB);
+    Assert.assertEquals(listenerB.acquired, ownedB);
+
+    Set<Integer> all = new HashSet<Integer>(ownedA);
+    all.addAll(ownedB);
+    Assert.assertEquals(allShards(), all);
+    Assert.assertEquals(NUM_SHARDS, ownedA.size() + ownedB.size());
+    for (int shard : ownedB) {
+      Assert.assertEquals("b", loader.leases.get(shard).getFirst());
+    }
+  }
+
+  @Test
+  public void testTakesOverShardsOfStoppedServer() throws Exception {
+    RecordingListener listenerA = new RecordingListener();
+    TriggerShardManager a = createManager("a", listenerA, 200, 50);
+    TriggerShardManager b =
+        createManager("b", new RecordingListener(), 200, 50);
+    a.renewLeases();
+    b.renewLeases();
+    a.renewLeases();
+    b.renewLeases();
+    Set<Integer> ownedB = b.getOwnedShards();
+    Assert.assertFalse(ownedB.isEmpty());
+
+    // b stops without giving up its leases
+    Thread.sleep(300);
+    for (int shard : ownedB) {
+      Assert.assertFalse(b.owns(shard));
+    }
+    listenerA.acquired.clear();
+    a.renewLeases();
+    Assert.assertEquals(allShards(), a.getOwnedShards());
+    Assert.assertEquals(ownedB, listenerA.acquired);
+    Assert.assertEquals(1, a.getNumLiveOwners());
+  }
+
+  @Test
+  public void testTargetOwnerIsStable() throws Exception {
+    List<String> owners = Arrays.asList("a", "b", "c");
+    List<String> reversed = Arrays.asList("c", "b", "a");
+    List<String> withoutC = Arrays.asList("a", "b");
+    int moved = 0;
+    for (int shard = 0; shard < 100; shard++) {
+      String target = TriggerShardManager.getTargetOwner(owners, shard);
+      Assert.assertEquals(target,
+          TriggerShardManager.getTargetOwner(reversed, shard));
+      // only the shards of the server leaving move
+      if (!target.equals("c")) {
+        Assert.assertEquals(target,
+            TriggerShardManager.getTargetOwner(withoutC, shard));
+      } else {
+        moved++;
+      }
+    }
+    Assert.assertTrue(moved > 0 && moved < 100);
+  }
+
+  private TriggerShardManager createManager(String owner,
+      RecordingListener listener, long leaseDurationMs, long renewIntervalMs) {
+    return new TriggerShardManager(loader, listener, NUM_SHARDS, owner,
+        leaseDurationMs, renewIntervalMs);
+  }
+
+  private static Set<Integer> allShards() {
+    Set<Integer> shards = new HashSet<Integer>();
+    for (int shard = 0; shard < NUM_SHARDS; shard++) {
+      shards.add(shard);
+    }
+    return shards;
+  }
+
+  private static class RecordingListener implements
+      TriggerShardManager.ShardListener {
+    private final Set<Integer> acquired = new HashSet<Integer>();
+    private final Set<Integer> released = new HashSet<Integer>();
+    private int renewals = 0;
+
+    @Override
+    public void shardsAcquired(Set<Integer> shards) {
+      acquired.addAll(shards);
+    }
+
+    @Override
+    public void shardsReleasing(Set<Integer> shards) {
+      released.addAll(shards);
+    }
+
+    @Override
+    public void leasesRenewed() {
+      renewals++;
+    }
+  }
+
+  private static class LeaseLoader implements TriggerLeaseLoader {
+    private final Map<String, Long> heartbeats = new HashMap<String, Long>();
+    private final Map<Integer, Pair<String, Long>> leases =
+        new HashMap<Integer, Pair<String, Long>>();
+
+    @Override
+    public void heartbeat(String owner, long time) {
+      heartbeats.put(owner, time);
+    }
+
+    @Override
+    public List<String> fetchLiveOwners(long since) {
+      List<String> owners = new ArrayList<String>();
+      for (Map.Entry<String, Long> entry : heartbeats.entrySet()) {
+        if (entry.getValue() > since) {
+          owners.add(entry.getKey());
+        }
+      }
+      return owners;
+    }
+
+    @Override
+    public boolean acquireLease(int shard, String owner, long now,
+        long expireTime) {
+      Pair<String, Long> lease = leases.get(shard);
+      if (lease != null && !lease.getFirst().equals(owner)
+          && lease.getSecond() > now) {
+        return false;
+      }
+      leases.put(shard, new Pair<String, Long>(owner, expireTime));
+      return true;
+    }
+
+    @Override
+    public void releaseLease(int shard, String owner) {
+      Pair<String, Long> lease = leases.get(shard);
+      if (lease != null && lease.getFirst().equals(owner)) {
+        leases.remove(shard);
+      }
+    }
+
+    @Override
+    public Map<Integer, Long> fetchTriggerModifyTimes(long modifiedAfter) {
+      return new HashMap<Integer, Long>();
+    }
+
+    @Override
+    public List<Trigger> loadTriggers(int numShards,
+        Collection<Integer> shards) {
+      return new ArrayList<Trigger>();
+    }
+  }
+}
@@ -0,0 +1,169 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.trigger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class TriggerUpdateBatcherTest {
+  private RecordingWriter writer;
+
+  @Before
+  public void setUp() {
+    writer = new RecordingWriter();
+  }
+
+  @Test
+  public void testCoalescesUpdates() throws Exception {
+    TriggerUpdateBatcher batcher = new TriggerUpdateBatcher(writer, 60000, 100);
+    Trigger t1 = createTrigger(1);
+    Trigger t2 = createTrigger(2);
+    batcher.add(t1);
+    batcher.add(t2);
+    t1.setLastModifyTime(100);
+    t1.getInfo().put("key", "value");
+    batcher.add(t1);
+    Assert.assertEquals(2, batcher.getNumPending());
+
+    // the state is the one the trigger had when it was queued
+    t1.getInfo().put("key", "changed");
+    batcher.flush();
+    Assert.assertEquals(1, writer.batches.size());
+    List<TriggerUpdateBatcher.TriggerState> batch = writer.batches.get(0);
+    Assert.assertEquals(2, batch.size());
+    Assert.assertEquals(1, batch.get(0).getTriggerId());
+    Assert.assertEquals(100, batch.get(0).getModifyTime());
+    Assert.assertEquals("value",
+        ((Map<?, ?>) batch.get(0).getJson().get("info")).get("key"));
+    Assert.assertEquals(2, batch.get(1).getTriggerId());
+
+    Assert.assertEquals(0, batcher.getNumPending());
+    Assert.assertEquals(3, batcher.getNumUpdates());
+    Assert.assertEquals(1, batcher.getNumCoalesced());
+    Assert.assertEquals(2, batcher.getNumWritten());
+
+    batcher.flush();
+    Assert.assertEquals(1, writer.batches.size());
+  }
+
+  @Test
+  public void testSplitsBatches() throws Exception {
+    TriggerUpdateBatcher batcher = new TriggerUpdateBatcher(writer, 60000, 3);
+    for (int id = 0; id < 7; id++) {
+      batcher.add(createTrigger(id));
+    }
+    batcher.discard(6);
+    batcher.flush();
+    Assert.assertEquals(2, writer.batches.size());
+    Assert.assertEquals(3, writer.batches.get(0).size());
+    Assert.assertEquals(3, writer.batches.get(1).size());
+    Assert.assertEquals(6, batcher.getNumWritten());
+  }
+
+  @Test
+  public void testRequeuesFailedStates() throws Exception {
+    TriggerUpdateBatcher batcher = new TriggerUpdateBatcher(writer, 60000, 2);
+    for (int id = 0; id < 4; id++) {
+      batcher.add(createTrigger(id));
+    }
+    writer.failAfter = 1;
+    try {
+      batcher.flush();
+      Assert.fail("Flush should have failed");
+    } catch (TriggerLoaderException e) {
+      // expected
+    }
+    Assert.assertEquals(1, batcher.getNumFailedFlushes());
+    Assert.assertEquals(2, batcher.getNumWritten());
+    Assert.assertEquals(2, batcher.getNumPending());
+
+    // a newer state queued meanwhile wins over the failed one
+    Trigger t3 = createTrigger(3);
+    t3.setLastModifyTime(200);
+    batcher.add(t3);
+    writer.failAfter = -1;
+    batcher.flush();
+    List<TriggerUpdateBatcher.TriggerState> batch =
+        writer.batches.get(writer.batches.size() - 1);
+    Assert.assertEquals(2, batch.get(0).getTriggerId());
+    Assert.assertEquals(3, batch.get(1).getTriggerId());
+    Assert.assertEquals(200, batch.get(1).getModifyTime());
+    Assert.assertEquals(0, batcher.getNumPending());
+  }
+
+  @Test
+  public void testFlushesInBackground() throws Exception {
+    TriggerUpdateBatcher batcher = new TriggerUpdateBatcher(writer, 50, 100);
+    batcher.start();
+    batcher.add(createTrigger(1));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (batcher.getNumWritten() == 0
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(1, batcher.getNumWritten());
+
+    // what's left is written on shutdown
+    TriggerUpdateBatcher stopped =
+        new TriggerUpdateBatcher(writer, 60000, 100);
+    stopped.add(createTrigger(2));
+    stopped.start();
+    stopped.shutdown();
+    stopped.join(5000);
+    Assert.assertEquals(1, stopped.getNumWritten());
+    batcher.shutdown();
+    batcher.join(5000);
+  }
+
+  private Trigger createTrigger(int id) {
+    Map<String, ConditionChecker> checkers =
+        new HashMap<String, ConditionChecker>();
+    Trigger t =
+        new Trigger("azkaban", "azkabanTest", new Condition(checkers, "true"),
+            new Condition(checkers, "false"), new ArrayList<TriggerAction>());
+    t.setTriggerId(id);
+    t.setInfo(new HashMap<String, Object>());
+    return t;
+  }
+
+  private static class RecordingWriter implements
+      TriggerUpdateBatcher.StateWriter {
+    private final List<List<TriggerUpdateBatcher.TriggerState>> batches =
+        new ArrayList<List<TriggerUpdateBatcher.TriggerState>>();
+    // batches written before failing, -1 never fails
+    private int failAfter = -1;
+
+    @Override
+    public synchronized void write(List<TriggerUpdateBatcher.TriggerState> states)
+        throws TriggerLoaderException {
+      if (failAfter == 0) {
+        throw new TriggerLoaderException("Failed to write");
+      }
+      if (failAfter > 0) {
+        failAfter--;
+      }
+      batches.add(new ArrayList<TriggerUpdateBatcher.TriggerState>(states));
+    }
+  }
+}
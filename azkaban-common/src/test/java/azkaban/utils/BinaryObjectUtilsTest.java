@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.utils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryObjectUtilsTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    Map<String, Object> nested = new LinkedHashMap<String, Object>();
+    nested.put("id", "job1");
+    nested.put("empty", "");
+    nested.put("unicode", "été 東京");
+
+    Map<String, Object> obj = new LinkedHashMap<String, Object>();
+    obj.put("int", 42);
+    obj.put("negative", -1);
+    obj.put("minInt", Integer.MIN_VALUE);
+    obj.put("long", 1490000000000L);
+    obj.put("maxLong", Long.MAX_VALUE);
+    obj.put("double", 0.25);
+    obj.put("true", true);
+    obj.put("false", false);
+    obj.put("null", null);
+    obj.put("list", Arrays.<Object> asList("job1", 3, null, nested));
+    obj.put("nested", nested);
+
+    Assert.assertEquals(obj, BinaryObjectUtils.fromBinary(BinaryObjectUtils
+        .toBinary(obj)));
+    Assert.assertEquals(obj, BinaryObjectUtils
+        .fromCompressedBinary(BinaryObjectUtils.toCompressedBinary(obj)));
+  }
+
+  @Test
+  public void testKeepsMapOrder() throws Exception {
+    Map<String, Object> obj = new LinkedHashMap<String, Object>();
+    obj.put("b", 1);
+    obj.put("a", 2);
+    obj.put("c", 3);
+
+    @SuppressWarnings("unchecked")
+    Map<String, Object> decoded =
+        (Map<String, Object>) BinaryObjectUtils.fromBinary(BinaryObjectUtils
+            .toBinary(obj));
+    Assert.assertEquals(Arrays.asList("b", "a", "c"),
+        new ArrayList<String>(decoded.keySet()));
+  }
+
+  /* Repeated keys and values are written once */
+  @Test
+  public void testRepeatedStringsAreInterned() throws Exception {
+    List<Object> nodes = new ArrayList<Object>();
+    for (int i = 0; i < 100; i++) {
+      Map<String, Object> node = new HashMap<String, Object>();
+      node.put("status", "SUCCEEDED");
+      node.put("type", "command");
+      nodes.add(node);
+    }
+
+    byte[] data = BinaryObjectUtils.toBinary(nodes);
+    String json = JSONUtils.toJSON(nodes);
+    Assert.assertTrue(data.length < 100 * 12);
+    Assert.assertTrue(data.length * 3 < json.length());
+  }
+
+  @Test(expected = IOException.class)
+  public void testUnknownVersion() throws Exception {
+    BinaryObjectUtils.fromBinary(new byte[] { 99, 0 });
+  }
+
+  @Test(expected = IOException.class)
+  public void testTruncatedData() throws Exception {
+    byte[] data = BinaryObjectUtils.toBinary(Arrays.asList("abc", "def"));
+    BinaryObjectUtils.fromBinary(Arrays.copyOf(data, data.length - 2));
+  }
+}
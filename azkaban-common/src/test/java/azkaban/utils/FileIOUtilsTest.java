@@ -22,6 +22,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URL;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.filefilter.FalseFileFilter;
+import org.apache.commons.io.filefilter.TrueFileFilter;
+import org.apache.commons.io.output.NullOutputStream;
 
 import org.junit.After;
 import org.junit.Before;
@@ -31,6 +38,7 @@ import org.junit.Rule;
 import org.junit.rules.TemporaryFolder;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertNotNull;
 
@@ -62,6 +70,82 @@ public class FileIOUtilsTest {
   @Test
   public void testSymlinkCopy() throws IOException {
     FileIOUtils.createDeepSymlink(sourceDir, destDir);
+
+    File link = new File(destDir, "expanded/test-job.job");
+    assertTrue(new File(destDir, "expanded").isDirectory());
+    assertTrue(Files.isSymbolicLink(link.toPath()));
+    assertEquals(new File(sourceDir, "expanded/test-job.job").getAbsoluteFile()
+        .toPath(), Files.readSymbolicLink(link.toPath()));
+    assertTrue(Files.isSymbolicLink(new File(destDir, "testjob.zip").toPath()));
+  }
+
+  @Test
+  public void testHardlinkCopy() throws IOException {
+    File source = temp.newFolder("hardlinksource");
+    FileUtils.writeStringToFile(new File(source, "a/b/c.job"), "c");
+    FileUtils.writeStringToFile(new File(source, ".hidden"), "hidden");
+
+    FileIOUtils.createDeepHardlink(source, destDir);
+    FileUtils.deleteDirectory(source);
+
+    File link = new File(destDir, "a/b/c.job");
+    assertFalse(Files.isSymbolicLink(link.toPath()));
+    assertEquals("c", FileUtils.readFileToString(link));
+    assertEquals("hidden",
+        FileUtils.readFileToString(new File(destDir, ".hidden")));
+  }
+
+  /**
+   * Links a project of 10000 files in 1000 directories with the old shell
+   * command and with createDeepSymlink, logging how long each takes.
+   */
+  @Test
+  public void testDeepSymlinkCost() throws Exception {
+    File source = temp.newFolder("largeproject");
+    for (int dir = 0; dir < 1000; dir++) {
+      File subDir = new File(source, "dir" + dir / 100 + "/dir" + dir);
+      subDir.mkdirs();
+      for (int file = 0; file < 10; file++) {
+        new File(subDir, "job" + file + ".job").createNewFile();
+      }
+    }
+
+    File shellDest = temp.newFolder("shelllinks");
+    long start = System.currentTimeMillis();
+    createDeepSymlinkWithShell(source, shellDest);
+    long shellMs = System.currentTimeMillis() - start;
+
+    File nioDest = temp.newFolder("niolinks");
+    start = System.currentTimeMillis();
+    FileIOUtils.createDeepSymlink(source, nioDest);
+    long nioMs = System.currentTimeMillis() - start;
+
+    System.out.println("Linked 10000 files: shell " + shellMs + " ms, nio "
+        + nioMs + " ms");
+    assertTrue(Files.isSymbolicLink(new File(nioDest,
+        "dir9/dir999/job9.job").toPath()));
+  }
+
+  /*
+   * What createDeepSymlink used to do: one ln -s per directory, all in one
+   * forked shell.
+   */
+  private void createDeepSymlinkWithShell(File source, File dest)
+      throws Exception {
+    StringBuilder command = new StringBuilder();
+    for (File dir : FileUtils.listFilesAndDirs(source,
+        FalseFileFilter.INSTANCE, TrueFileFilter.INSTANCE)) {
+      String path = dir.getPath().substring(source.getPath().length());
+      new File(dest, path).mkdirs();
+      command.append("ln -s ").append(dir.getAbsolutePath()).append("/* .")
+          .append(path).append(";");
+    }
+
+    Process process =
+        new ProcessBuilder("sh", "-c", command.toString()).directory(dest)
+            .redirectErrorStream(true).start();
+    IOUtils.copy(process.getInputStream(), NullOutputStream.NULL_OUTPUT_STREAM);
+    process.waitFor();
   }
 
   @Test
@@ -0,0 +1,45 @@
+package azkaban.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+  @Test
+  public void emptyHistogram() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    Assert.assertEquals(0, histogram.getCount());
+    Assert.assertEquals(0, histogram.getMean());
+    Assert.assertEquals(0, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void percentiles() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    for (int i = 0; i < 90; i++) {
+      histogram.record(8);
+    }
+    for (int i = 0; i < 10; i++) {
+      histogram.record(700);
+    }
+
+    Assert.assertEquals(100, histogram.getCount());
+    Assert.assertEquals(700, histogram.getMax());
+    Assert.assertEquals(77, histogram.getMean());
+    Assert.assertEquals(10, histogram.getPercentile(50));
+    Assert.assertEquals(10, histogram.getPercentile(90));
+    // capped at the largest recorded latency instead of the bucket bound
+    Assert.assertEquals(700, histogram.getPercentile(99));
+  }
+
+  @Test
+  public void outliers() throws Exception {
+    LatencyHistogram histogram = new LatencyHistogram();
+    histogram.record(-5);
+    histogram.record(Long.MAX_VALUE / 2);
+
+    Assert.assertEquals(2, histogram.getCount());
+    Assert.assertEquals(5, histogram.getPercentile(50));
+    Assert.assertEquals(Long.MAX_VALUE / 2, histogram.getPercentile(100));
+  }
+}
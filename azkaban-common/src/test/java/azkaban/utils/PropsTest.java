@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package azkaban.utils;
+
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PropsTest {
+  @Test
+  public void testCloneIsIndependent() throws Exception {
+    Props parent = Props.of("a", "1", "b", "2");
+    Props props = new Props(parent);
+    props.put("c", "3");
+
+    Props clone = Props.clone(props);
+    Assert.assertEquals("3", clone.get("c"));
+    Assert.assertEquals("1", clone.get("a"));
+    Assert.assertNotSame(parent, clone.getParent());
+    Assert.assertTrue(props.equalsProps(clone));
+
+    // changes on either side stay on that side
+    clone.put("c", "clone");
+    clone.getParent().put("a", "clone");
+    Assert.assertEquals("3", props.get("c"));
+    Assert.assertEquals("1", parent.get("a"));
+
+    parent.put("b", "parent");
+    props.removeLocal("c");
+    Assert.assertEquals("2", clone.get("b"));
+    Assert.assertEquals("clone", clone.get("c"));
+
+    // the clone's parent can be changed without touching the original
+    Props newRoot = Props.of("d", "4");
+    clone.setEarliestAncestor(newRoot);
+    Assert.assertEquals("4", clone.get("d"));
+    Assert.assertNull(props.get("d"));
+  }
+
+  @Test
+  public void testCloneOfClone() throws Exception {
+    Props props = Props.of("a", "1");
+    Props first = Props.clone(props);
+    Props second = Props.clone(first);
+
+    first.put("a", "first");
+    Assert.assertEquals("1", props.get("a"));
+    Assert.assertEquals("1", second.get("a"));
+
+    props.put(new Properties());
+    props.clearLocal();
+    Assert.assertNull(props.get("a"));
+    Assert.assertEquals("1", second.get("a"));
+    Assert.assertEquals("first", first.get("a"));
+
+    second.put("b", 2);
+    second.put("c", 3L);
+    second.put("d", 4.0);
+    Assert.assertEquals(4, second.localSize());
+    Assert.assertEquals(1, first.localSize());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testLocalKeySetIsReadOnly() throws Exception {
+    Props props = Props.of("a", "1");
+    Props.clone(props).localKeySet().remove("a");
+  }
+}
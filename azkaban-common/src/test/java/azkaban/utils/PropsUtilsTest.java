@@ -17,6 +17,9 @@
 package azkaban.utils;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.junit.Assert;
@@ -208,6 +211,62 @@ public class PropsUtilsTest {
     failIfNotException(props);
   }
 
+  @Test
+  public void testResolveSiblingProps() throws Exception {
+    Props flowProps = new Props();
+    flowProps.put("base", "/data/${job}");
+    flowProps.put("out", "${base}/out-$(1+1)");
+    flowProps.put("chain", "${out}+${base}");
+
+    // the parsed values are shared, the variables aren't
+    for (int i = 0; i < 3; i++) {
+      Props job = new Props(flowProps);
+      job.put("job", "job" + i);
+      Props resolved = PropsUtils.resolveProps(job);
+      Assert.assertEquals("/data/job" + i, resolved.get("base"));
+      Assert.assertEquals("/data/job" + i + "/out-2", resolved.get("out"));
+      Assert.assertEquals("/data/job" + i + "/out-2+/data/job" + i,
+          resolved.get("chain"));
+    }
+  }
+
+  @Test
+  public void testConcurrentResolveProps() throws Exception {
+    final Props flowProps = new Props();
+    for (int i = 0; i < 100; i++) {
+      flowProps.put("key" + i, "${job}-" + i + "-$(" + i + "*2)");
+    }
+
+    final List<String> failures =
+        Collections.synchronizedList(new ArrayList<String>());
+    List<Thread> threads = new ArrayList<Thread>();
+    for (int t = 0; t < 4; t++) {
+      final String job = "job" + t;
+      Thread thread = new Thread() {
+        @Override
+        public void run() {
+          for (int round = 0; round < 50; round++) {
+            Props props = new Props(flowProps);
+            props.put("job", job);
+            Props resolved = PropsUtils.resolveProps(props);
+            for (int i = 0; i < 100; i++) {
+              String expected = job + "-" + i + "-" + (i * 2);
+              if (!expected.equals(resolved.get("key" + i))) {
+                failures.add(expected + " != " + resolved.get("key" + i));
+              }
+            }
+          }
+        }
+      };
+      threads.add(thread);
+      thread.start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    Assert.assertEquals(Collections.emptyList(), failures);
+  }
+
   private void failIfNotException(Props props) {
     try {
       PropsUtils.resolveProps(props);
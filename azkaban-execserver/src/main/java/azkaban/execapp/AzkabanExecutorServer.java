@@ -324,6 +324,7 @@ public class AzkabanExecutorServer {
   public void stopServer() throws Exception {
     server.stop();
     server.destroy();
+    runnerManager.shutdown();
   }
 
   public IClusterManager getClusterManager() { return clusterManager; }
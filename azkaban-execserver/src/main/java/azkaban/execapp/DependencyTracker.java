@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+
+/**
+ * Keeps the number of unfinished dependencies (the in-degree still pending)
+ * of the nodes of a running flow, so a node is known to be runnable the moment
+ * its last dependency finishes without rescanning all of its dependencies
+ * every time one of them finishes.
+ *
+ * A node's counter is created from the status of its dependencies the first
+ * time one of them finishes. The counter only decides which nodes are worth
+ * checking: FlowRunner still checks the implied status before running a
+ * node, and a node found not ready is recounted on its next finished
+ * dependency, so a counter that drifted (e.g. after retries) corrects itself.
+ *
+ * Not thread safe, it's only used from the FlowRunner main loop.
+ */
+class DependencyTracker {
+  private final Map<ExecutableNode, Integer> unfinishedDependencies =
+      new IdentityHashMap<ExecutableNode, Integer>();
+
+  /**
+   * Records that one of the node's dependencies has finished.
+   *
+   * @return true if none of the node's dependencies are left unfinished
+   */
+  public boolean dependencyFinished(ExecutableNode node) {
+    Integer unfinished = unfinishedDependencies.get(node);
+    if (unfinished == null) {
+      unfinished = countUnfinishedDependencies(node);
+    } else {
+      unfinished--;
+    }
+
+    if (unfinished <= 0) {
+      unfinishedDependencies.remove(node);
+      return true;
+    }
+
+    unfinishedDependencies.put(node, unfinished);
+    return false;
+  }
+
+  /**
+   * Forgets a node's counter, e.g. when it was found not ready to run.
+   */
+  public void forget(ExecutableNode node) {
+    unfinishedDependencies.remove(node);
+  }
+
+  /**
+   * Forgets all counters. Used when the statuses of finished nodes are reset.
+   */
+  public void reset() {
+    unfinishedDependencies.clear();
+  }
+
+  public int getNumTrackedNodes() {
+    return unfinishedDependencies.size();
+  }
+
+  private int countUnfinishedDependencies(ExecutableNode node) {
+    ExecutableFlowBase parentFlow = node.getParentFlow();
+    int unfinished = 0;
+    for (String dependency : node.getInNodes()) {
+      ExecutableNode dependencyNode = parentFlow.getExecutableNode(dependency);
+      if (!Status.isStatusFinished(dependencyNode.getStatus())) {
+        unfinished++;
+      }
+    }
+    return unfinished;
+  }
+}
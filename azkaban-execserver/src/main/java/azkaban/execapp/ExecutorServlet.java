@@ -18,6 +18,7 @@ package azkaban.execapp;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.channels.Channels;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -92,6 +93,9 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
           handleAjaxUpdateRequest(req, respMap);
         } else if (action.equals(PING_ACTION)) {
           respMap.put("status", "alive");
+        } else if (action.equals(QUEUED_FLOWS_ACTION)) {
+          respMap.put(RESPONSE_QUEUED_FLOWS,
+              flowRunnerManager.getQueuedExecutionIds());
         } else if (action.equals(RELOAD_JOBTYPE_PLUGINS_ACTION)) {
           logger.info("Reloading Jobtype plugins");
           handleReloadJobTypePlugins(respMap);
@@ -103,6 +107,9 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
               + execid);
           if (action.equals(METADATA_ACTION)) {
             handleFetchMetaDataEvent(execid, req, resp, respMap);
+          } else if (action.equals(LOG_ACTION) && hasParam(req, LOG_RAW_PARAM)) {
+            handleFetchRawLogEvent(execid, req, resp);
+            return;
           } else if (action.equals(LOG_ACTION)) {
             handleFetchLogEvent(execid, req, resp, respMap);
           } else if (action.equals(ATTACHMENTS_ACTION)) {
@@ -114,6 +121,9 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
           } else if (action.equals(CANCEL_ACTION)) {
             logger.info("Cancel called.");
             handleAjaxCancel(respMap, execid, user);
+          } else if (action.equals(REVOKE_ACTION)) {
+            logger.info("Revoke called.");
+            handleAjaxRevoke(respMap, execid);
           } else if (action.equals(PAUSE_ACTION)) {
             logger.info("Paused called.");
             handleAjaxPause(respMap, execid, user);
@@ -167,6 +177,7 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     if (type.equals("flow")) {
       LogData result;
       try {
+        waitForLogs(execId, null, 0, startByte, req);
         result = flowRunnerManager.readFlowLogs(execId, startByte, length);
         respMap.putAll(result.toObject());
       } catch (Exception e) {
@@ -177,6 +188,7 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
       int attempt = getIntParam(req, "attempt", 0);
       String jobId = getParam(req, "jobId");
       try {
+        waitForLogs(execId, jobId, attempt, startByte, req);
         LogData result =
             flowRunnerManager.readJobLogs(execId, jobId, attempt, startByte,
                 length);
@@ -188,6 +200,53 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     }
   }
 
+  /**
+   * Sends the log range as is, with its offset and length in the headers.
+   * The range is copied from the file to the response by the file system.
+   */
+  private void handleFetchRawLogEvent(int execId, HttpServletRequest req,
+      final HttpServletResponse resp) throws ServletException, IOException {
+    String jobId =
+        getParam(req, "type").equals("flow") ? null : getParam(req, "jobId");
+    int attempt = getIntParam(req, "attempt", 0);
+    int startByte = getIntParam(req, "offset");
+    int length = getIntParam(req, "length");
+
+    try {
+      waitForLogs(execId, jobId, attempt, startByte, req);
+      flowRunnerManager.withLogRange(execId, jobId, attempt, startByte,
+          length, range -> {
+            resp.setContentType("text/plain");
+            resp.setCharacterEncoding("utf-8");
+            resp.setHeader(LOG_OFFSET_HEADER,
+                String.valueOf(range.getOffset()));
+            resp.setHeader(LOG_LENGTH_HEADER,
+                String.valueOf(range.getLength()));
+            resp.setContentLength(range.getLength());
+            range.transferTo(Channels.newChannel(resp.getOutputStream()));
+            return null;
+          });
+    } catch (Exception e) {
+      logger.error(e);
+      if (!resp.isCommitted()) {
+        resp.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            e.getMessage());
+      }
+    }
+  }
+
+  /*
+   * Long polling: waits for the log to grow past startByte if the request
+   * asks for it.
+   */
+  private void waitForLogs(int execId, String jobId, int attempt,
+      int startByte, HttpServletRequest req) throws ExecutorManagerException {
+    long waitMs = Math.min(getIntParam(req, LOG_WAIT_PARAM, 0), MAX_LOG_WAIT_MS);
+    if (waitMs > 0) {
+      flowRunnerManager.waitForLogs(execId, jobId, attempt, startByte, waitMs);
+    }
+  }
+
   private void handleFetchAttachmentsEvent(int execId, HttpServletRequest req,
       HttpServletResponse resp, Map<String, Object> respMap)
       throws ServletException {
@@ -242,7 +301,10 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
       int execId = (Integer) execIDList.get(i);
 
       ExecutableFlowBase flow = flowRunnerManager.getExecutableFlow(execId);
-      if (flow == null) {
+      if (flow == null && flowRunnerManager.isRevoked(execId)) {
+        // runs on another executor now
+        continue;
+      } else if (flow == null) {
         Map<String, Object> errorResponse = new HashMap<String, Object>();
         errorResponse.put(RESPONSE_ERROR, "Flow does not exist");
         errorResponse.put(UPDATE_MAP_EXEC_ID, execId);
@@ -327,6 +389,16 @@ public class ExecutorServlet extends HttpServlet implements ConnectorParams {
     }
   }
 
+  private void handleAjaxRevoke(Map<String, Object> respMap, int execid) {
+    try {
+      flowRunnerManager.revokeFlow(execid);
+      respMap.put(STATUS_PARAM, RESPONSE_SUCCESS);
+    } catch (ExecutorManagerException e) {
+      logger.info(e.getMessage());
+      respMap.put(RESPONSE_ERROR, e.getMessage());
+    }
+  }
+
   private void handleReloadJobTypePlugins(Map<String, Object> respMap)
       throws ServletException {
     try {
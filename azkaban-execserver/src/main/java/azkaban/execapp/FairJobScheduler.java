@@ -0,0 +1,318 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+
+import azkaban.utils.LatencyHistogram;
+
+/**
+ * Executor wide pool of job threads shared by all the running flows.
+ *
+ * At most maxConcurrentJobs jobs run at once on the executor. Every flow gets
+ * its own {@link FlowJobExecutor} that queues the flow's jobs and caps how
+ * many of them run at once. Whenever a thread frees up, the flows with queued
+ * jobs take turns in round robin order, so a flow with a lot of ready jobs
+ * can't starve the others. The time each job spends queued is kept per flow.
+ */
+public class FairJobScheduler {
+  private static final Logger logger = Logger.getLogger(FairJobScheduler.class);
+
+  private final int maxConcurrentJobs;
+  private final ThreadPoolExecutor workers;
+
+  private final Object lock = new Object();
+  // flows with queued jobs that are below their own concurrency limit, in the
+  // order they get their next turn
+  private final Deque<FlowJobExecutor> flowTurns =
+      new ArrayDeque<FlowJobExecutor>();
+  private final Map<Integer, FlowJobExecutor> flowExecutors =
+      new TreeMap<Integer, FlowJobExecutor>();
+  private int numRunningJobs = 0;
+
+  private final LatencyHistogram queueDelay = new LatencyHistogram();
+
+  public FairJobScheduler(int maxConcurrentJobs) {
+    this.maxConcurrentJobs = maxConcurrentJobs;
+    // Jobs are handed to the pool only when a thread is free, so its queue
+    // stays empty.
+    this.workers =
+        new ThreadPoolExecutor(maxConcurrentJobs, maxConcurrentJobs, 60,
+            TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+            new JobThreadFactory());
+    this.workers.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Creates the executor a flow submits its jobs to.
+   *
+   * @param execId execution id of the flow
+   * @param maxFlowJobs maximum number of jobs of this flow running at once
+   */
+  public FlowJobExecutor createFlowExecutor(int execId, int maxFlowJobs) {
+    FlowJobExecutor executor = new FlowJobExecutor(execId, maxFlowJobs);
+    synchronized (lock) {
+      flowExecutors.put(execId, executor);
+    }
+    return executor;
+  }
+
+  public int getMaxConcurrentJobs() {
+    return maxConcurrentJobs;
+  }
+
+  public int getNumRunningJobs() {
+    synchronized (lock) {
+      return numRunningJobs;
+    }
+  }
+
+  public int getNumQueuedJobs() {
+    synchronized (lock) {
+      int numQueued = 0;
+      for (FlowJobExecutor executor : flowExecutors.values()) {
+        numQueued += executor.queuedJobs.size();
+      }
+      return numQueued;
+    }
+  }
+
+  /**
+   * Queueing delay of the jobs of all flows
+   */
+  public LatencyHistogram getQueueDelay() {
+    return queueDelay;
+  }
+
+  /**
+   * Queueing delay of the jobs of each flow using the scheduler, by execution
+   * id
+   */
+  public Map<Integer, String> getFlowQueueDelays() {
+    Map<Integer, String> delays = new TreeMap<Integer, String>();
+    synchronized (lock) {
+      for (FlowJobExecutor executor : flowExecutors.values()) {
+        delays.put(executor.execId, executor.queueDelay.toString());
+      }
+    }
+    return delays;
+  }
+
+  public void shutdown() {
+    workers.shutdownNow();
+  }
+
+  /*
+   * Starts queued jobs while threads are available. Must hold the lock.
+   */
+  private void dispatch() {
+    while (numRunningJobs < maxConcurrentJobs && !flowTurns.isEmpty()) {
+      FlowJobExecutor executor = flowTurns.poll();
+      QueuedJob job = executor.queuedJobs.poll();
+      if (job == null) {
+        continue;
+      }
+
+      numRunningJobs++;
+      executor.numRunningJobs++;
+      long delay = System.currentTimeMillis() - job.queuedTime;
+      executor.queueDelay.record(delay);
+      queueDelay.record(delay);
+
+      // back of the line, unless the flow is at its own limit. The flow gets
+      // a turn again when one of its jobs finishes.
+      if (!executor.queuedJobs.isEmpty()
+          && executor.numRunningJobs < executor.maxFlowJobs) {
+        flowTurns.add(executor);
+      }
+
+      try {
+        workers.execute(new RunningJob(executor, job.task));
+      } catch (RejectedExecutionException e) {
+        logger.error("Job thread pool rejected a job of flow "
+            + executor.execId, e);
+        jobDone(executor);
+      }
+    }
+  }
+
+  /*
+   * Must hold the lock.
+   */
+  private void jobDone(FlowJobExecutor executor) {
+    numRunningJobs--;
+    executor.numRunningJobs--;
+    if (!executor.queuedJobs.isEmpty() && !flowTurns.contains(executor)) {
+      flowTurns.add(executor);
+    }
+    if (executor.isTerminated()) {
+      flowExecutors.remove(executor.execId);
+      lock.notifyAll();
+    }
+    dispatch();
+  }
+
+  private static class QueuedJob {
+    private final Runnable task;
+    private final long queuedTime;
+
+    private QueuedJob(Runnable task) {
+      this.task = task;
+      this.queuedTime = System.currentTimeMillis();
+    }
+  }
+
+  private class RunningJob implements Runnable {
+    private final FlowJobExecutor executor;
+    private final Runnable task;
+
+    private RunningJob(FlowJobExecutor executor, Runnable task) {
+      this.executor = executor;
+      this.task = task;
+    }
+
+    @Override
+    public void run() {
+      try {
+        task.run();
+      } finally {
+        synchronized (lock) {
+          jobDone(executor);
+        }
+      }
+    }
+  }
+
+  /**
+   * The job executor of a single flow. Jobs submitted to it wait in the
+   * flow's queue until the shared scheduler gives the flow a thread.
+   * Shutting it down only stops the flow from submitting more jobs.
+   */
+  public class FlowJobExecutor extends AbstractExecutorService {
+    private final int execId;
+    private final int maxFlowJobs;
+    private final Deque<QueuedJob> queuedJobs = new ArrayDeque<QueuedJob>();
+    private final LatencyHistogram queueDelay = new LatencyHistogram();
+    private int numRunningJobs = 0;
+    private boolean shutdown = false;
+
+    private FlowJobExecutor(int execId, int maxFlowJobs) {
+      this.execId = execId;
+      this.maxFlowJobs = Math.max(1, maxFlowJobs);
+    }
+
+    /**
+     * Time the jobs of this flow spent waiting for a thread
+     */
+    public LatencyHistogram getQueueDelay() {
+      return queueDelay;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      synchronized (lock) {
+        if (shutdown) {
+          throw new RejectedExecutionException("Job executor of flow "
+              + execId + " is shut down");
+        }
+        queuedJobs.add(new QueuedJob(task));
+        if (numRunningJobs < maxFlowJobs && !flowTurns.contains(this)) {
+          flowTurns.add(this);
+        }
+        dispatch();
+      }
+    }
+
+    @Override
+    public void shutdown() {
+      synchronized (lock) {
+        shutdown = true;
+        if (isTerminated()) {
+          flowExecutors.remove(execId);
+          lock.notifyAll();
+        }
+      }
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+      List<Runnable> notRun = new ArrayList<Runnable>();
+      synchronized (lock) {
+        for (QueuedJob job : queuedJobs) {
+          notRun.add(job.task);
+        }
+        queuedJobs.clear();
+        flowTurns.remove(this);
+        shutdown();
+      }
+      return notRun;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      synchronized (lock) {
+        return shutdown;
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      synchronized (lock) {
+        return shutdown && numRunningJobs == 0 && queuedJobs.isEmpty();
+      }
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit)
+        throws InterruptedException {
+      long deadline = System.currentTimeMillis() + unit.toMillis(timeout);
+      synchronized (lock) {
+        while (!isTerminated()) {
+          long remaining = deadline - System.currentTimeMillis();
+          if (remaining <= 0) {
+            return false;
+          }
+          lock.wait(remaining);
+        }
+        return true;
+      }
+    }
+  }
+
+  private static class JobThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable r) {
+      return new Thread(r, "JobRunner-" + threadCount.incrementAndGet());
+    }
+  }
+}
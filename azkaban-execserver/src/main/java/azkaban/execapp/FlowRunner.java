@@ -55,9 +55,11 @@ import java.util.concurrent.RejectedExecutionException;
 public class FlowRunner extends EventHandler implements Runnable {
     private static final Layout DEFAULT_LAYOUT = new PatternLayout(
             "%d{dd-MM-yyyy HH:mm:ss z} %c{1} %p - %m\n");
-    // We check update every 5 minutes, just in case things get stuck. But for the
-    // most part, we'll be idling.
+    // The main loop is woken up by every job completion and state change, so
+    // this is only a safety net in case things get stuck.
     private static final long CHECK_WAIT_MS = 5 * 60 * 1000;
+    // how long a finished flow waits for its job logs to be uploaded
+    private static final long LOG_UPLOAD_WAIT_MS = 10 * 60 * 1000;
 
     private Logger logger;
 
@@ -86,10 +88,17 @@ public class FlowRunner extends EventHandler implements Runnable {
     private JobRunnerEventListener listener = new JobRunnerEventListener();
     private Set<JobRunner> activeJobRunners = Collections
             .newSetFromMap(new ConcurrentHashMap<JobRunner, Boolean>());
+    // sampled by the executor's ProcessResourceSampler, if there is one
+    private final ProcessResourceSampler.Usage resourceUsage =
+            new ProcessResourceSampler.Usage();
 
     // Thread safe swap queue for finishedExecutions.
     private SwapQueue<ExecutableNode> finishedNodes;
 
+    // Unfinished dependency counts, used to find the nodes that became ready
+    // when a node finishes. Only accessed from the main loop.
+    private final DependencyTracker dependencyTracker = new DependencyTracker();
+
     // Used for pipelining
     private Integer pipelineLevel = null;
     private Integer pipelineExecId = null;
@@ -102,6 +111,14 @@ public class FlowRunner extends EventHandler implements Runnable {
 
     private String jobLogFileSize = "5MB";
     private int jobLogNumFiles = 4;
+    private JobLogUploader logUploader = null;
+
+    // Between full writes of the flow, only the updated nodes are persisted.
+    // 0 always writes the full flow.
+    private int maxFlowUpdatesBetweenFullWrites = 0;
+    private int numFlowUpdatesSinceFullWrite = 0;
+    // when the state persisted last was taken, -1 if it never was
+    private long lastFlowPersistTime = -1;
 
     private boolean flowPaused = false;
     private boolean flowFailed = false;
@@ -155,7 +172,11 @@ public class FlowRunner extends EventHandler implements Runnable {
         this.executorService = executorService;
         this.finishedNodes = new SwapQueue<ExecutableNode>();
 
-        this.addListener(AzkabanExecutorServer.getApp().getClusterManager());
+        // there is no server app when flows are run by tests
+        AzkabanExecutorServer app = AzkabanExecutorServer.getApp();
+        if (app != null) {
+            this.addListener(app.getClusterManager());
+        }
 
     }
 
@@ -176,11 +197,21 @@ public class FlowRunner extends EventHandler implements Runnable {
         return this;
     }
 
+    public FlowRunner setLogUploader(JobLogUploader logUploader) {
+        this.logUploader = logUploader;
+        return this;
+    }
+
     public FlowRunner setValidateProxyUser(boolean validateUserProxy) {
         this.validateUserProxy = validateUserProxy;
         return this;
     }
 
+    public FlowRunner setMaxFlowUpdatesBetweenFullWrites(int maxUpdates) {
+        this.maxFlowUpdatesBetweenFullWrites = maxUpdates;
+        return this;
+    }
+
     public File getExecutionDir() {
         return execDir;
     }
@@ -219,12 +250,31 @@ public class FlowRunner extends EventHandler implements Runnable {
                         .info("Watcher cancelled status is " + watcher.isWatchCancelled());
             }
 
+            // The flow may have failed before the main loop shut the job
+            // executor down.
+            if (executorService != null && !executorService.isShutdown()) {
+                executorService.shutdown();
+            }
+
             flow.setEndTime(System.currentTimeMillis());
             logger.info("Setting end time for flow " + execId + " to "
                     + System.currentTimeMillis());
 
 
-            updateFlow();
+            // The logs have to be in the db before the flow shows as finished,
+            // that's when the web server stops asking the executor for them.
+            if (logUploader != null) {
+                try {
+                    if (!logUploader.awaitUploads(execId, LOG_UPLOAD_WAIT_MS)) {
+                        logger.warn("Timed out waiting for the job logs to be uploaded.");
+                    }
+                } catch (InterruptedException e) {
+                    logger.warn("Interrupted waiting for the job logs to be uploaded.");
+                }
+            }
+
+            resourceUsage.applyTo(flow);
+            updateFlow(System.currentTimeMillis(), true);
             this.fireEventListeners(Event.create(this, Type.FLOW_FINISHED));
             closeLogger();
         }
@@ -285,13 +335,37 @@ public class FlowRunner extends EventHandler implements Runnable {
     }
 
     private void updateFlow() {
-        updateFlow(System.currentTimeMillis());
+        updateFlow(System.currentTimeMillis(), false);
     }
 
-    private synchronized void updateFlow(long time) {
+    /**
+     * Persists the flow. Usually only the nodes updated since the last call
+     * are written, and the full flow is written every so many updates, or
+     * when fullWrite is set.
+     */
+    private synchronized void updateFlow(long time, boolean fullWrite) {
+        flow.setUpdateTime(time);
+        // Nodes updated while the flow is being written have an update time
+        // of at least this, so they go in the next update.
+        long persistTime = System.currentTimeMillis();
+        if (!fullWrite && lastFlowPersistTime >= 0
+                && numFlowUpdatesSinceFullWrite < maxFlowUpdatesBetweenFullWrites) {
+            try {
+                executorLoader.appendExecutableFlowUpdate(flow,
+                        lastFlowPersistTime - 1);
+                numFlowUpdatesSinceFullWrite++;
+                lastFlowPersistTime = persistTime;
+                return;
+            } catch (ExecutorManagerException e) {
+                logger.error("Error logging flow update. Writing the full flow.",
+                        e);
+            }
+        }
+
         try {
-            flow.setUpdateTime(time);
             executorLoader.updateExecutableFlow(flow);
+            numFlowUpdatesSinceFullWrite = 0;
+            lastFlowPersistTime = persistTime;
         } catch (ExecutorManagerException e) {
             logger.error("Error updating flow.", e);
         }
@@ -386,6 +460,10 @@ public class FlowRunner extends EventHandler implements Runnable {
 
         logger.info("Finishing up flow. Awaiting Termination");
         executorService.shutdown();
+        if (executorService instanceof FairJobScheduler.FlowJobExecutor) {
+            logger.info("Job queueing delay: "
+                    + ((FairJobScheduler.FlowJobExecutor) executorService).getQueueDelay());
+        }
 
         updateFlow();
         logger.info("Finished Flow");
@@ -398,6 +476,7 @@ public class FlowRunner extends EventHandler implements Runnable {
         this.flowKilled = false;
         this.flowFailed = false;
         this.flow.setStatus(Status.RUNNING);
+        this.dependencyTracker.reset();
 
         ArrayList<ExecutableNode> retryJobs = new ArrayList<ExecutableNode>();
         resetFailedState(this.flow, retryJobs);
@@ -422,9 +501,10 @@ public class FlowRunner extends EventHandler implements Runnable {
     private boolean progressGraph() throws IOException {
         finishedNodes.swap();
 
-        // The following nodes are finished, so we'll collect a list of outnodes
-        // that are candidates for running next.
-        HashSet<ExecutableNode> nodesToCheck = new HashSet<ExecutableNode>();
+        // The following nodes are finished, so we'll collect the outnodes whose
+        // last dependency just finished. Those are the candidates for running
+        // next.
+        Set<ExecutableNode> nodesToCheck = new LinkedHashSet<ExecutableNode>();
         for (ExecutableNode node : finishedNodes) {
             Set<String> outNodeIds = node.getOutNodes();
             ExecutableFlowBase parentFlow = node.getParentFlow();
@@ -459,12 +539,14 @@ public class FlowRunner extends EventHandler implements Runnable {
                 }
             }
 
-            // Add all out nodes from the finished job. We'll check against this set
-            // to
-            // see if any are candidates for running.
+            // Add the out nodes of the finished job that have no unfinished
+            // dependencies left. We'll check against this set to see if any are
+            // candidates for running.
             for (String nodeId : outNodeIds) {
                 ExecutableNode outNode = parentFlow.getExecutableNode(nodeId);
-                nodesToCheck.add(outNode);
+                if (dependencyTracker.dependencyFinished(outNode)) {
+                    nodesToCheck.add(outNode);
+                }
             }
         }
 
@@ -479,7 +561,12 @@ public class FlowRunner extends EventHandler implements Runnable {
                 continue;
             }
 
-            jobsRun |= runReadyJob(node);
+            if (runReadyJob(node)) {
+                jobsRun = true;
+            } else {
+                // Not ready after all, count its dependencies again next time.
+                dependencyTracker.forget(node);
+            }
         }
 
         if (jobsRun || finishedNodes.getSize() > 0) {
@@ -818,6 +905,7 @@ public class FlowRunner extends EventHandler implements Runnable {
 
         jobRunner.setDelayStart(node.getDelayedExecution());
         jobRunner.setLogSettings(logger, jobLogFileSize, jobLogNumFiles);
+        jobRunner.setLogUploader(logUploader);
         jobRunner.addListener(listener);
 
         jobRunner.addListener(new StatusEventListener());
@@ -875,7 +963,7 @@ public class FlowRunner extends EventHandler implements Runnable {
             }
         }
 
-        interrupt();
+        wakeUpMainLoop();
     }
 
     public void resume(String user) {
@@ -897,7 +985,7 @@ public class FlowRunner extends EventHandler implements Runnable {
             }
         }
 
-        interrupt();
+        wakeUpMainLoop();
     }
 
     public void kill(String user) {
@@ -907,7 +995,7 @@ public class FlowRunner extends EventHandler implements Runnable {
             kill();
             updateFlow();
         }
-        interrupt();
+        wakeUpMainLoop();
     }
 
     private void kill() {
@@ -936,7 +1024,7 @@ public class FlowRunner extends EventHandler implements Runnable {
         synchronized (mainSyncObj) {
             logger.info("Retrying failures invoked by " + user);
             retryFailedJobs = true;
-            interrupt();
+            wakeUpMainLoop();
         }
     }
 
@@ -1038,8 +1126,15 @@ public class FlowRunner extends EventHandler implements Runnable {
                 + oldFlowState + " to " + flow.getStatus());
     }
 
-    private void interrupt() {
-        flowRunnerThread.interrupt();
+    /**
+     * Wakes up the main loop so it handles finished jobs and state changes
+     * right away. Every state change is made while holding mainSyncObj and the
+     * main loop checks for changes before it waits, so no wake up is lost.
+     */
+    private void wakeUpMainLoop() {
+        synchronized (mainSyncObj) {
+            mainSyncObj.notifyAll();
+        }
     }
 
     private class JobRunnerEventListener implements EventListener {
@@ -1069,7 +1164,7 @@ public class FlowRunner extends EventHandler implements Runnable {
 
                     finishedNodes.add(node);
                     node.getParentFlow().setUpdateTime(System.currentTimeMillis());
-                    interrupt();
+                    wakeUpMainLoop();
                     fireEventListeners(event);
                 }
             }
@@ -1136,6 +1231,15 @@ public class FlowRunner extends EventHandler implements Runnable {
         return false;
     }
 
+    /**
+     * Releases the job executor of a flow that won't run here
+     */
+    public void discard() {
+        if (executorService != null && !executorService.isShutdown()) {
+            executorService.shutdown();
+        }
+    }
+
     public boolean isThreadPoolShutdown() {
         return executorService.isShutdown();
     }
@@ -1144,6 +1248,14 @@ public class FlowRunner extends EventHandler implements Runnable {
         return activeJobRunners.size();
     }
 
+    public Set<JobRunner> getActiveJobRunners() {
+        return Collections.unmodifiableSet(activeJobRunners);
+    }
+
+    public ProcessResourceSampler.Usage getResourceUsage() {
+        return resourceUsage;
+    }
+
     public int getExecutionId() {
         return execId;
     }
@@ -21,6 +21,8 @@ import java.io.FileFilter;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.lang.Thread.State;
+import java.net.InetAddress;
+import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,6 +36,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -42,6 +45,9 @@ import org.apache.log4j.Logger;
 
 import azkaban.event.Event;
 import azkaban.event.EventListener;
+import azkaban.execapp.LogFileReader.LogRange;
+import azkaban.execapp.LogFileReader.RangeAction;
+import azkaban.execapp.event.ExecutionUpdatePusher;
 import azkaban.execapp.event.FlowWatcher;
 import azkaban.execapp.event.LocalFlowWatcher;
 import azkaban.execapp.event.RemoteFlowWatcher;
@@ -50,6 +56,7 @@ import azkaban.execapp.metric.FlowDurationMetric;
 import azkaban.execapp.metric.TotalNumFlowJobsMetric;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutionOptions;
+import azkaban.executor.ExecutorInfo;
 import azkaban.executor.ExecutorLoader;
 import azkaban.executor.ExecutorManagerException;
 import azkaban.jobtype.JobTypeManager;
@@ -88,16 +95,49 @@ import azkaban.utils.TrackingThreadPool;
  * status. The entries in this map is removed once the flow execution is
  * completed.
  *
+ * A flow still waiting in the executor service queue can be revoked, so the
+ * web server can run it on another executor. It's taken out of the queue and
+ * both maps, and remembered for a while so update requests that were already
+ * under way don't report it as missing.
+ *
  *
  */
 public class FlowRunnerManager implements EventListener,
-    ThreadPoolExecutingListener {
+    ThreadPoolExecutingListener, ExecutionUpdatePusher.ExecutionSource {
   private static final String EXECUTOR_USE_BOUNDED_THREADPOOL_QUEUE =
       "executor.use.bounded.threadpool.queue";
   private static final String EXECUTOR_THREADPOOL_WORKQUEUE_SIZE =
       "executor.threadpool.workqueue.size";
   private static final String EXECUTOR_FLOW_THREADS = "executor.flow.threads";
   private static final String FLOW_NUM_JOB_THREADS = "flow.num.job.threads";
+  private static final String EXECUTOR_JOB_THREADS = "executor.job.threads";
+  private static final String EXECUTOR_PUSH_UPDATES_ENABLED =
+      "executor.push.updates.enabled";
+  private static final String EXECUTOR_PUSH_UPDATES_INTERVAL_MS =
+      "executor.push.updates.interval.ms";
+  private static final String EXECUTOR_PUSH_UPDATES_HEARTBEAT_MS =
+      "executor.push.updates.heartbeat.ms";
+  private static final String EXECUTOR_PUSH_UPDATES_HOST =
+      "executor.push.updates.host";
+  // must match azkaban.executor.push.secret on the web server
+  private static final String EXECUTOR_PUSH_UPDATES_SECRET =
+      "executor.push.updates.secret";
+  private static final String EXECUTOR_FLOW_UPDATES_BETWEEN_FULL_WRITES =
+      "executor.flow.updates.between.full.writes";
+  private static final String EXECUTOR_LOG_UPLOAD_INTERVAL_MS =
+      "executor.log.upload.interval.ms";
+  private static final String EXECUTOR_LOG_UPLOAD_BATCH_SIZE =
+      "executor.log.upload.batch.size";
+  private static final String EXECUTOR_LOG_MAX_WAITERS =
+      "executor.log.max.waiters";
+  // 0 doesn't sample the memory and cpu time of job processes
+  private static final String EXECUTOR_RESOURCE_SAMPLE_INTERVAL_MS =
+      "executor.resource.sample.interval.ms";
+  private static final String EXECUTION_DIR_HARDLINKS =
+      "execution.dir.hardlinks";
+  private static final String PROJECT_CACHE_DIR = "azkaban.project.cache.dir";
+  private static final String PROJECT_CACHE_MAX_SIZE_MB =
+      "azkaban.project.cache.max.size.mb";
   private static Logger logger = Logger.getLogger(FlowRunnerManager.class);
   private File executionDirectory;
   private File projectDirectory;
@@ -120,6 +160,8 @@ public class FlowRunnerManager implements EventListener,
       new ConcurrentHashMap<Integer, FlowRunner>();
   private Map<Integer, ExecutableFlow> recentlyFinishedFlows =
       new ConcurrentHashMap<Integer, ExecutableFlow>();
+  // execution id -> time it was revoked
+  private Map<Integer, Long> revokedFlows = new ConcurrentHashMap<Integer, Long>();
 
   private int numThreads = DEFAULT_NUM_EXECUTING_FLOWS;
   private int threadPoolQueueSize = -1;
@@ -127,6 +169,15 @@ public class FlowRunnerManager implements EventListener,
   private TrackingThreadPool executorService;
 
   private CleanerThread cleanerThread;
+  // job threads shared by all flows, null if every flow has its own pool
+  private FairJobScheduler jobScheduler;
+  private ExecutionUpdatePusher updatePusher;
+  // null if job logs are uploaded when the jobs finish
+  private JobLogUploader logUploader;
+  // null if job processes aren't sampled
+  private ProcessResourceSampler resourceSampler;
+  // uploaded project files by md5, null if caching is off
+  private ProjectArtifactCache projectCache;
   private int numJobThreadPerFlow = DEFAULT_FLOW_NUM_JOB_TREADS;
 
   private ExecutorLoader executorLoader;
@@ -141,6 +192,8 @@ public class FlowRunnerManager implements EventListener,
   private long lastCleanerThreadCheckTime = -1;
   private long shortExecutionDirRetention = 2 * 60 * 60 * 1000;
   private long longExecutionDirRetention = 24 * 60 * 60 * 1000;
+  // hard link the project files into execution dirs instead of symlinking
+  private boolean executionDirHardlinks = false;
 
   // We want to limit the log sizes to about 20 megs
   private String jobLogChunkSize = "5MB";
@@ -149,8 +202,15 @@ public class FlowRunnerManager implements EventListener,
   // If true, jobs will validate proxy user against a list of valid proxy users.
   private boolean validateProxyUser = false;
 
+  // number of flow updates persisted as deltas before the full flow is
+  // written again
+  private int maxFlowUpdatesBetweenFullWrites = 50;
+
   private final ReentrantReadWriteLock executionDirDeletionLock = new ReentrantReadWriteLock();
 
+  // limits the threads held by requests waiting for logs to grow
+  private final Semaphore logWaiters;
+
   // date time of the the last flow submitted.
   private long lastFlowSubmittedDate = 0;
 
@@ -169,6 +229,8 @@ public class FlowRunnerManager implements EventListener,
         props.getLong("execution.dir.short.retention", shortExecutionDirRetention);
     longExecutionDirRetention =
         props.getLong("execution.dir.long.retention", longExecutionDirRetention);
+    executionDirHardlinks = props.getBoolean(EXECUTION_DIR_HARDLINKS, false);
+    logWaiters = new Semaphore(props.getInt(EXECUTOR_LOG_MAX_WAITERS, 20));
 
     if (!executionDirectory.exists()) {
       executionDirectory.mkdirs();
@@ -179,6 +241,17 @@ public class FlowRunnerManager implements EventListener,
 
     installedProjects = loadExistingProjects();
 
+    long projectCacheSizeMB = props.getLong(PROJECT_CACHE_MAX_SIZE_MB, 1024);
+    if (projectCacheSizeMB > 0) {
+      // not matched by loadExistingProjects, so it's never taken as a project
+      File projectCacheDir =
+          new File(props.getString(PROJECT_CACHE_DIR, new File(
+              projectDirectory, "_cache").getPath()));
+      projectCache =
+          new ProjectArtifactCache(projectCacheDir,
+              projectCacheSizeMB * 1024 * 1024);
+    }
+
     // azkaban.temp.dir
     numThreads =
         props.getInt(EXECUTOR_FLOW_THREADS, DEFAULT_NUM_EXECUTING_FLOWS);
@@ -186,6 +259,12 @@ public class FlowRunnerManager implements EventListener,
         props.getInt(FLOW_NUM_JOB_THREADS, DEFAULT_FLOW_NUM_JOB_TREADS);
     executorService = createExecutorService(numThreads);
 
+    int numJobThreads = props.getInt(EXECUTOR_JOB_THREADS, 0);
+    if (numJobThreads > 0) {
+      logger.info("Sharing " + numJobThreads + " job threads between flows");
+      jobScheduler = new FairJobScheduler(numJobThreads);
+    }
+
     this.executorLoader = executorLoader;
     this.projectLoader = projectLoader;
 
@@ -194,10 +273,39 @@ public class FlowRunnerManager implements EventListener,
 
     this.validateProxyUser =
         azkabanProps.getBoolean("proxy.user.lock.down", false);
+    this.maxFlowUpdatesBetweenFullWrites =
+        azkabanProps.getInt(EXECUTOR_FLOW_UPDATES_BETWEEN_FULL_WRITES,
+            maxFlowUpdatesBetweenFullWrites);
 
     cleanerThread = new CleanerThread();
     cleanerThread.start();
 
+    long logUploadIntervalMs =
+        azkabanProps.getLong(EXECUTOR_LOG_UPLOAD_INTERVAL_MS, 10 * 1000);
+    if (logUploadIntervalMs > 0) {
+      logUploader =
+          new JobLogUploader(executorLoader, logUploadIntervalMs,
+              azkabanProps.getInt(EXECUTOR_LOG_UPLOAD_BATCH_SIZE,
+                  1024 * 1024));
+      logUploader.start();
+    }
+
+    long resourceSampleIntervalMs =
+        azkabanProps.getLong(EXECUTOR_RESOURCE_SAMPLE_INTERVAL_MS, 2000);
+    if (resourceSampleIntervalMs > 0 && ProcessResourceSampler.isSupported()) {
+      resourceSampler =
+          new ProcessResourceSampler(runningFlows.values(),
+              resourceSampleIntervalMs);
+      resourceSampler.start();
+    }
+
+    if (azkabanProps.getBoolean(EXECUTOR_PUSH_UPDATES_ENABLED, false)) {
+      updatePusher = createUpdatePusher();
+      if (updatePusher != null) {
+        updatePusher.start();
+      }
+    }
+
     String globalPropsPath =
         props.getString("executor.global.properties", null);
     if (globalPropsPath != null) {
@@ -211,6 +319,48 @@ public class FlowRunnerManager implements EventListener,
             parentClassLoader);
   }
 
+  /**
+   * Creates the pusher that streams execution updates to the web server. The
+   * web server keeps polling this executor if no pusher is created.
+   */
+  private ExecutionUpdatePusher createUpdatePusher() {
+    String webServerUrl = azkabanProps.get(JobRunner.AZKABAN_WEBSERVER_URL);
+    if (webServerUrl == null) {
+      logger.warn(JobRunner.AZKABAN_WEBSERVER_URL
+          + " is not set. Execution updates will not be pushed.");
+      return null;
+    }
+
+    String host = azkabanProps.getString(EXECUTOR_PUSH_UPDATES_HOST, null);
+    if (host == null) {
+      try {
+        host = InetAddress.getLocalHost().getCanonicalHostName();
+      } catch (IOException e) {
+        logger.warn("Failed to fetch local host name. Execution updates will "
+            + "not be pushed.", e);
+        return null;
+      }
+    }
+    int port =
+        azkabanProps.getInt("executor.port",
+            AzkabanExecutorServer.DEFAULT_PORT_NUMBER);
+
+    try {
+      ExecutionUpdatePusher pusher =
+          new ExecutionUpdatePusher(this, webServerUrl, host, port,
+              azkabanProps.getString(EXECUTOR_PUSH_UPDATES_SECRET, null),
+              azkabanProps.getLong(EXECUTOR_PUSH_UPDATES_INTERVAL_MS, 500),
+              azkabanProps.getLong(EXECUTOR_PUSH_UPDATES_HEARTBEAT_MS, 5000));
+      logger.info("Pushing execution updates to " + webServerUrl + " as "
+          + host + ":" + port);
+      return pusher;
+    } catch (URISyntaxException e) {
+      logger.warn("Invalid web server url " + webServerUrl
+          + ". Execution updates will not be pushed.", e);
+      return null;
+    }
+  }
+
   private TrackingThreadPool createExecutorService(int nThreads) {
     boolean useNewThreadPool =
         azkabanProps.getBoolean(EXECUTOR_USE_BOUNDED_THREADPOOL_QUEUE, false);
@@ -298,7 +448,6 @@ public class FlowRunnerManager implements EventListener,
       this.setName("FlowRunnerManager-Cleaner-Thread");
     }
 
-    @SuppressWarnings("unused")
     public void shutdown() {
       shutdown = true;
       this.interrupt();
@@ -410,6 +559,12 @@ public class FlowRunnerManager implements EventListener,
             + " from recently finished flows list.");
         recentlyFinishedFlows.remove(id);
       }
+
+      for (Map.Entry<Integer, Long> entry : revokedFlows.entrySet()) {
+        if (entry.getValue() < cleanupThreshold) {
+          revokedFlows.remove(entry.getKey());
+        }
+      }
     }
 
     private void cleanOlderProjects() {
@@ -517,23 +672,31 @@ public class FlowRunnerManager implements EventListener,
       }
     }
 
-    FlowRunner runner =
-        new FlowRunner(flow, executorLoader, projectLoader, jobtypeManager);
+    FlowRunner runner = createFlowRunner(flow, numJobThreads);
     runner.setFlowWatcher(watcher)
         .setJobLogSettings(jobLogChunkSize, jobLogNumFiles)
+        .setLogUploader(logUploader)
         .setValidateProxyUser(validateProxyUser)
+        .setMaxFlowUpdatesBetweenFullWrites(maxFlowUpdatesBetweenFullWrites)
         .setNumJobThreads(numJobThreads).addListener(this);
 
     configureFlowLevelMetrics(runner);
 
+    if (updatePusher != null) {
+      runner.addListener(updatePusher);
+    }
+
     // Check again.
     if (runningFlows.containsKey(execId)) {
+      // unregisters the runner from the shared job threads
+      runner.discard();
       throw new ExecutorManagerException("Execution " + execId
           + " is already running.");
     }
 
     // Finally, queue the sucker.
     runningFlows.put(execId, runner);
+    revokedFlows.remove(execId);
 
     try {
       // The executorService already has a queue.
@@ -546,6 +709,8 @@ public class FlowRunnerManager implements EventListener,
       // update the last submitted time.
       this.lastFlowSubmittedDate = System.currentTimeMillis();
     } catch (RejectedExecutionException re) {
+      runningFlows.remove(execId);
+      runner.discard();
       throw new ExecutorManagerException(
           "Azkaban server can't execute any more flows. "
               + "The number of running flows has reached the system configured limit."
@@ -553,6 +718,20 @@ public class FlowRunnerManager implements EventListener,
     }
   }
 
+  /*
+   * Creates the runner of the flow, running its jobs on the shared job threads
+   * if there are any
+   */
+  FlowRunner createFlowRunner(ExecutableFlow flow, int numJobThreads)
+      throws ExecutorManagerException {
+    if (jobScheduler != null) {
+      return new FlowRunner(flow, executorLoader, projectLoader,
+          jobtypeManager, jobScheduler.createFlowExecutor(flow.getExecutionId(),
+              numJobThreads));
+    }
+    return new FlowRunner(flow, executorLoader, projectLoader, jobtypeManager);
+  }
+
   /**
    * Configure Azkaban metrics tracking for a new flowRunner instance
    *
@@ -603,8 +782,13 @@ public class FlowRunnerManager implements EventListener,
     }
 
     try {
-      projectVersion.setupProjectFiles(projectLoader, projectDirectory, logger);
-      projectVersion.copyCreateSymlinkDirectory(execPath);
+      projectVersion.setupProjectFiles(projectLoader, projectDirectory,
+          projectCache, logger);
+      if (executionDirHardlinks) {
+        projectVersion.copyCreateHardlinkDirectory(execPath);
+      } else {
+        projectVersion.copyCreateSymlinkDirectory(execPath);
+      }
     } catch (Exception e) {
       e.printStackTrace();
       if (execPath.exists()) {
@@ -618,6 +802,51 @@ public class FlowRunnerManager implements EventListener,
     }
   }
 
+  /**
+   * Takes a flow that hasn't started yet off this executor, so it can run
+   * somewhere else
+   *
+   * @throws ExecutorManagerException if the flow isn't waiting to start
+   */
+  public void revokeFlow(int execId) throws ExecutorManagerException {
+    Future<?> future = null;
+    for (Map.Entry<Future<?>, Integer> entry : submittedFlows.entrySet()) {
+      if (entry.getValue() == execId) {
+        future = entry.getKey();
+        break;
+      }
+    }
+
+    // removing it from the queue fails once a thread took it
+    if (future == null || !executorService.remove((Runnable) future)) {
+      throw new ExecutorManagerException("Execution " + execId
+          + " is not waiting to start.");
+    }
+    revokedFlows.put(execId, System.currentTimeMillis());
+    submittedFlows.remove(future);
+    FlowRunner runner = runningFlows.remove(execId);
+    if (runner != null) {
+      runner.discard();
+      File execPath = new File(runner.getExecutableFlow().getExecutionPath());
+      executionDirDeletionLock.writeLock().lock();
+      try {
+        FileUtils.deleteDirectory(execPath);
+      } catch (IOException e) {
+        logger.error("Error cleaning execution dir " + execPath, e);
+      } finally {
+        executionDirDeletionLock.writeLock().unlock();
+      }
+    }
+    logger.info("Execution " + execId + " revoked before it started.");
+  }
+
+  /**
+   * Whether the flow was revoked lately and not submitted again since
+   */
+  public boolean isRevoked(int execId) {
+    return revokedFlows.containsKey(execId);
+  }
+
   public void cancelFlow(int execId, String user)
       throws ExecutorManagerException {
     FlowRunner runner = runningFlows.get(execId);
@@ -666,6 +895,12 @@ public class FlowRunnerManager implements EventListener,
     runner.retryFailures(user);
   }
 
+  @Override
+  public Set<Integer> getRunningExecutionIds() {
+    return new HashSet<Integer>(runningFlows.keySet());
+  }
+
+  @Override
   public ExecutableFlow getExecutableFlow(int execId) {
     FlowRunner runner = runningFlows.get(execId);
     if (runner == null) {
@@ -674,6 +909,11 @@ public class FlowRunnerManager implements EventListener,
     return runner.getExecutableFlow();
   }
 
+  @Override
+  public ExecutorInfo getExecutorInfo() {
+    return ServerStatisticsServlet.getStatistics();
+  }
+
   @Override
   public void handleEvent(Event event) {
     if (event.getType() == Event.Type.FLOW_FINISHED) {
@@ -690,11 +930,23 @@ public class FlowRunnerManager implements EventListener,
 
   public LogData readFlowLogs(int execId, int startByte, int length)
       throws ExecutorManagerException {
-    FlowRunner runner = runningFlows.get(execId);
-    if (runner == null) {
-      throw new ExecutorManagerException("Running flow " + execId
-          + " not found.");
-    }
+    return withLogRange(execId, null, 0, startByte, length, LogRange::read);
+  }
+
+  public LogData readJobLogs(int execId, String jobId, int attempt,
+      int startByte, int length) throws ExecutorManagerException {
+    return withLogRange(execId, jobId, attempt, startByte, length,
+        LogRange::read);
+  }
+
+  /**
+   * Opens a range of the flow's log, or the job's if jobId isn't null, and
+   * hands it to action while the execution dir can't be deleted.
+   */
+  public <T> T withLogRange(int execId, String jobId, int attempt,
+      int startByte, int length, RangeAction<T> action)
+      throws ExecutorManagerException {
+    FlowRunner runner = getRunningFlow(execId);
 
     File dir = runner.getExecutionDir();
     if (dir != null && dir.exists()) {
@@ -705,11 +957,9 @@ public class FlowRunnerManager implements EventListener,
               "Execution dir file doesn't exist. Probably has beend deleted");
         }
 
-        File logFile = runner.getFlowLogFile();
-        if (logFile != null && logFile.exists()) {
-          return FileIOUtils.readUtf8File(logFile, startByte, length);
-        } else {
-          throw new ExecutorManagerException("Flow log file doesn't exist.");
+        File logFile = getLogFile(runner, jobId, attempt);
+        try (LogRange range = LogFileReader.open(logFile, startByte, length)) {
+          return action.apply(range);
         }
       } catch (IOException e) {
         throw new ExecutorManagerException(e);
@@ -722,37 +972,52 @@ public class FlowRunnerManager implements EventListener,
         "Error reading file. Log directory doesn't exist.");
   }
 
-  public LogData readJobLogs(int execId, String jobId, int attempt,
-      int startByte, int length) throws ExecutorManagerException {
+  /**
+   * Waits up to waitMs for the flow's log, or the job's if jobId isn't null,
+   * to grow past startByte. Returns right away if the flow finishes or too
+   * many requests are waiting already.
+   */
+  public void waitForLogs(int execId, String jobId, int attempt,
+      int startByte, long waitMs) throws ExecutorManagerException {
+    if (!logWaiters.tryAcquire()) {
+      return;
+    }
+    try {
+      File logFile = getLogFile(getRunningFlow(execId), jobId, attempt);
+      LogFileReader.waitForData(logFile, startByte, waitMs,
+          () -> runningFlows.containsKey(execId));
+    } catch (InterruptedException e) {
+      logger.info("Interrupted waiting for logs of " + execId);
+    } finally {
+      logWaiters.release();
+    }
+  }
+
+  private FlowRunner getRunningFlow(int execId)
+      throws ExecutorManagerException {
     FlowRunner runner = runningFlows.get(execId);
     if (runner == null) {
       throw new ExecutorManagerException("Running flow " + execId
           + " not found.");
     }
+    return runner;
+  }
 
-    File dir = runner.getExecutionDir();
-    if (dir != null && dir.exists()) {
-      executionDirDeletionLock.readLock().lock();
-      try {
-        if (!dir.exists()) {
-          throw new ExecutorManagerException(
-              "Execution dir file doesn't exist. Probably has beend deleted");
-        }
-        File logFile = runner.getJobLogFile(jobId, attempt);
-        if (logFile != null && logFile.exists()) {
-          return FileIOUtils.readUtf8File(logFile, startByte, length);
-        } else {
-          throw new ExecutorManagerException("Job log file doesn't exist.");
-        }
-      } catch (IOException e) {
-        throw new ExecutorManagerException(e);
-      } finally {
-        executionDirDeletionLock.readLock().unlock();
+  private File getLogFile(FlowRunner runner, String jobId, int attempt)
+      throws ExecutorManagerException {
+    if (jobId == null) {
+      File logFile = runner.getFlowLogFile();
+      if (logFile == null || !logFile.exists()) {
+        throw new ExecutorManagerException("Flow log file doesn't exist.");
       }
+      return logFile;
     }
 
-    throw new ExecutorManagerException(
-        "Error reading file. Log directory doesn't exist.");
+    File logFile = runner.getJobLogFile(jobId, attempt);
+    if (logFile == null || !logFile.exists()) {
+      throw new ExecutorManagerException("Job log file doesn't exist.");
+    }
+    return logFile;
   }
 
   public List<Object> readJobAttachments(int execId, String jobId, int attempt)
@@ -874,6 +1139,15 @@ public class FlowRunnerManager implements EventListener,
   }
 
   public String getQueuedFlowIds() {
+    List<Integer> flowIdList = getQueuedExecutionIds();
+    Collections.sort(flowIdList);
+    return flowIdList.toString();
+  }
+
+  /**
+   * Execution ids of the flows waiting to start, in the order they'll start
+   */
+  public List<Integer> getQueuedExecutionIds() {
     List<Integer> flowIdList =
         new ArrayList<Integer>(executorService.getQueue().size());
 
@@ -886,14 +1160,64 @@ public class FlowRunnerManager implements EventListener,
             .warn("getQueuedFlowIds: got null execId for queuedTask: " + task);
       }
     }
-    Collections.sort(flowIdList);
-    return flowIdList.toString();
+    return flowIdList;
+  }
+
+  /**
+   * Stops the flow threads, interrupting the running flows, the shared job
+   * threads and the background threads of the manager
+   */
+  public void shutdown() {
+    logger.info("Shutting down flow runner manager");
+    executorService.shutdownNow();
+    if (jobScheduler != null) {
+      jobScheduler.shutdown();
+    }
+    cleanerThread.shutdown();
+    if (logUploader != null) {
+      logUploader.shutdown();
+    }
+    if (resourceSampler != null) {
+      resourceSampler.shutdown();
+    }
+    if (updatePusher != null) {
+      updatePusher.shutdown();
+    }
   }
 
   public int getMaxNumRunningFlows() {
     return numThreads;
   }
 
+  public boolean isJobThreadPoolShared() {
+    return jobScheduler != null;
+  }
+
+  public int getNumRunningJobs() {
+    return jobScheduler == null ? -1 : jobScheduler.getNumRunningJobs();
+  }
+
+  public int getNumQueuedJobs() {
+    return jobScheduler == null ? -1 : jobScheduler.getNumQueuedJobs();
+  }
+
+  public String getJobQueueDelay() {
+    return jobScheduler == null ? "" : jobScheduler.getQueueDelay().toString();
+  }
+
+  public Map<Integer, String> getFlowJobQueueDelays() {
+    return jobScheduler == null ? new HashMap<Integer, String>()
+        : jobScheduler.getFlowQueueDelays();
+  }
+
+  public long getProjectCacheHits() {
+    return projectCache == null ? -1 : projectCache.getHits();
+  }
+
+  public long getProjectCacheMisses() {
+    return projectCache == null ? -1 : projectCache.getMisses();
+  }
+
   public int getTheadPoolQueueSize() {
     return threadPoolQueueSize;
   }
@@ -0,0 +1,357 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+
+import azkaban.executor.ExecutorLoader;
+import azkaban.executor.ExecutorManagerException;
+
+/**
+ * Uploads the logs of running jobs in the background, so that finishing a job
+ * doesn't wait on uploading its whole log.
+ *
+ * The log files are tailed while the jobs write them and new content is
+ * uploaded in batches of batchSize bytes. Once a job is done with its log,
+ * the rest of it gets uploaded on the next pass. Log files rolled over by the
+ * job's appender are followed to the next file by their file key, so they're
+ * uploaded whole as long as a file isn't rolled out of the backups between
+ * two passes.
+ */
+public class JobLogUploader extends Thread {
+  private static final Logger logger = Logger.getLogger(JobLogUploader.class);
+
+  private static final int READ_SIZE = 64 * 1024;
+
+  private final ExecutorLoader loader;
+  private final long uploadIntervalMs;
+  private final int batchSize;
+  private final byte[] readBuffer = new byte[READ_SIZE];
+
+  private final Map<String, TailedLog> logs =
+      new LinkedHashMap<String, TailedLog>();
+  private boolean shutdown = false;
+
+  public JobLogUploader(ExecutorLoader loader, long uploadIntervalMs,
+      int batchSize) {
+    this.loader = loader;
+    this.uploadIntervalMs = uploadIntervalMs;
+    this.batchSize = batchSize;
+    this.setName("JobLogUploader");
+    this.setDaemon(true);
+  }
+
+  /**
+   * Starts tailing a job's log file
+   */
+  public synchronized void addLog(int execId, String name, int attempt,
+      File logFile) {
+    logs.put(getKey(execId, name, attempt), new TailedLog(execId, name,
+        attempt, logFile));
+  }
+
+  /**
+   * Called once the job won't write to its log anymore. The rest of the log
+   * is uploaded in the background.
+   */
+  public synchronized void finishLog(int execId, String name, int attempt) {
+    TailedLog log = logs.get(getKey(execId, name, attempt));
+    if (log != null) {
+      log.finished = true;
+      this.notifyAll();
+    }
+  }
+
+  /**
+   * Waits until all of the logs of the execution are finished and uploaded.
+   *
+   * @return false if it timed out first
+   */
+  public synchronized boolean awaitUploads(int execId, long timeoutMs)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    while (hasLogs(execId)) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0) {
+        return false;
+      }
+      this.wait(remaining);
+    }
+    return true;
+  }
+
+  public synchronized int getNumLogs() {
+    return logs.size();
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+    this.notifyAll();
+  }
+
+  @Override
+  public void run() {
+    boolean failed = false;
+    while (true) {
+      List<TailedLog> toUpload;
+      synchronized (this) {
+        if (shutdown) {
+          break;
+        }
+        // finished logs go right away, unless uploading just failed
+        if (failed || !hasFinishedLogs()) {
+          try {
+            this.wait(uploadIntervalMs);
+          } catch (InterruptedException e) {
+            logger.info("Interrupted. Probably to shut down.");
+          }
+          if (shutdown) {
+            break;
+          }
+        }
+        toUpload = new ArrayList<TailedLog>(logs.values());
+      }
+
+      failed = false;
+      for (TailedLog log : toUpload) {
+        // read the flag before tailing, so nothing written before the job
+        // finished is left out
+        boolean finished;
+        synchronized (this) {
+          finished = log.finished;
+        }
+
+        Boolean done = upload(log, finished);
+        if (done == null) {
+          failed = true;
+        } else if (done) {
+          log.close();
+          synchronized (this) {
+            logs.remove(getKey(log.execId, log.name, log.attempt));
+            this.notifyAll();
+          }
+        }
+      }
+    }
+
+    synchronized (this) {
+      for (TailedLog log : logs.values()) {
+        log.close();
+      }
+      logs.clear();
+      this.notifyAll();
+    }
+  }
+
+  /*
+   * Reads what's new in the log and uploads it in batches. Returns true once
+   * all of a finished log is uploaded, null if uploading failed.
+   */
+  private Boolean upload(TailedLog log, boolean finished) {
+    boolean full;
+    do {
+      try {
+        full = log.readNew(readBuffer, batchSize);
+      } catch (IOException e) {
+        logger.error("Error reading log " + log.file, e);
+        // nothing more will be read from this file
+        full = false;
+        finished = true;
+      }
+
+      while (log.pendingLength >= batchSize
+          || (finished && log.pendingLength > 0)) {
+        int length = Math.min(batchSize, log.pendingLength);
+        if (log.uploaded + length > Integer.MAX_VALUE) {
+          // the log store takes int offsets
+          logger.error("Log " + log.file + " is over " + Integer.MAX_VALUE
+              + " bytes. Not uploading the rest of it.");
+          return true;
+        }
+        try {
+          loader.appendLog(log.execId, log.name, log.attempt,
+              (int) log.uploaded, log.pending, length);
+        } catch (ExecutorManagerException e) {
+          logger.error("Error uploading log " + log.file
+              + ". Will try again later.", e);
+          return null;
+        }
+        log.uploaded += length;
+        log.pendingLength -= length;
+        System.arraycopy(log.pending, length, log.pending, 0,
+            log.pendingLength);
+      }
+    } while (full);
+
+    return finished;
+  }
+
+  /*
+   * Must hold the lock.
+   */
+  private boolean hasFinishedLogs() {
+    for (TailedLog log : logs.values()) {
+      if (log.finished) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /*
+   * Must hold the lock.
+   */
+  private boolean hasLogs(int execId) {
+    for (TailedLog log : logs.values()) {
+      if (log.execId == execId) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static String getKey(int execId, String name, int attempt) {
+    return execId + "." + name + "." + attempt;
+  }
+
+  private static Object getFileKey(File file) {
+    try {
+      return Files.readAttributes(file.toPath(), BasicFileAttributes.class)
+          .fileKey();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static class TailedLog {
+    private final int execId;
+    private final String name;
+    private final int attempt;
+    private final File file;
+    // guarded by the uploader's lock, the rest is only used by its thread
+    private boolean finished = false;
+
+    private FileChannel channel;
+    private Object fileKey;
+    private long uploaded = 0;
+    private byte[] pending = new byte[0];
+    private int pendingLength = 0;
+
+    private TailedLog(int execId, String name, int attempt, File file) {
+      this.execId = execId;
+      this.name = name;
+      this.attempt = attempt;
+      this.file = file;
+    }
+
+    /*
+     * Reads until there are limit bytes pending or there's nothing more to
+     * read. Returns true in the first case.
+     */
+    private boolean readNew(byte[] buffer, int limit) throws IOException {
+      while (pendingLength < limit) {
+        if (channel == null) {
+          if (!file.exists()) {
+            return false;
+          }
+          open(file);
+        }
+
+        int num = channel.read(ByteBuffer.wrap(buffer));
+        if (num > 0) {
+          append(buffer, num);
+          continue;
+        }
+
+        // At the end of the file. If the appender rolled it over, carry on
+        // with the one that replaced it, once it's there.
+        File next = findNextFile();
+        if (next == null || !next.exists()) {
+          return false;
+        }
+        channel.close();
+        open(next);
+      }
+      return true;
+    }
+
+    private void open(File toOpen) throws IOException {
+      fileKey = getFileKey(toOpen);
+      channel = FileChannel.open(toOpen.toPath(), StandardOpenOption.READ);
+    }
+
+    /*
+     * The appender renames log to log.1, log.1 to log.2 and so on. The file
+     * after ours is the one with the next lower index.
+     */
+    private File findNextFile() {
+      if (fileKey == null || fileKey.equals(getFileKey(file))) {
+        return null;
+      }
+
+      List<File> rolled = new ArrayList<File>();
+      for (int i = 1;; i++) {
+        File backup = new File(file.getPath() + "." + i);
+        if (!backup.exists()) {
+          break;
+        }
+        rolled.add(backup);
+      }
+      for (int i = 0; i < rolled.size(); i++) {
+        if (fileKey.equals(getFileKey(rolled.get(i)))) {
+          return i == 0 ? file : rolled.get(i - 1);
+        }
+      }
+      // ours was rolled out of the backups already
+      return rolled.isEmpty() ? file : rolled.get(rolled.size() - 1);
+    }
+
+    private void append(byte[] buffer, int num) {
+      if (pendingLength + num > pending.length) {
+        pending =
+            Arrays.copyOf(pending,
+                Math.max(pending.length * 2, pendingLength + num));
+      }
+      System.arraycopy(buffer, 0, pending, pendingLength, num);
+      pendingLength += num;
+    }
+
+    private void close() {
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException e) {
+          logger.warn("Error closing " + file, e);
+        }
+        channel = null;
+      }
+    }
+  }
+}
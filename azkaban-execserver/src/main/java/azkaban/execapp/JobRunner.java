@@ -75,6 +75,7 @@ public class JobRunner extends EventHandler implements Runnable {
 
   private String jobLogChunkSize;
   private int jobLogBackupIndex;
+  private JobLogUploader logUploader;
 
   private long delayStartMs = 0;
   private boolean killed = false;
@@ -103,6 +104,14 @@ public class JobRunner extends EventHandler implements Runnable {
     this.jobLogBackupIndex = numLogBackup;
   }
 
+  /**
+   * Uploads the job's log in the background while the job runs, instead of
+   * all at once when it finishes.
+   */
+  public void setLogUploader(JobLogUploader logUploader) {
+    this.logUploader = logUploader;
+  }
+
   public Props getProps() {
     return props;
   }
@@ -185,6 +194,13 @@ public class JobRunner extends EventHandler implements Runnable {
     return node;
   }
 
+  /**
+   * The job being run, null until it's created
+   */
+  public Job getJob() {
+    return job;
+  }
+
   public String getLogFilePath() {
     return logFile == null ? null : logFile.getPath();
   }
@@ -212,6 +228,10 @@ public class JobRunner extends EventHandler implements Runnable {
         jobAppender = fileAppender;
         logger.addAppender(jobAppender);
         logger.setAdditivity(false);
+        if (logUploader != null) {
+          logUploader.addLog(executionId, node.getNestedId(),
+              node.getAttempt(), logFile);
+        }
       } catch (IOException e) {
         flowLogger.error("Could not open log file in " + workingDir
             + " for job " + this.jobId, e);
@@ -354,6 +374,11 @@ public class JobRunner extends EventHandler implements Runnable {
       return;
     }
 
+    if (logUploader != null) {
+      logUploader.finishLog(executionId, this.node.getNestedId(), attemptNo);
+      return;
+    }
+
     try {
       File[] files = logFile.getParentFile().listFiles(new FilenameFilter() {
         @Override
@@ -406,53 +431,62 @@ public class JobRunner extends EventHandler implements Runnable {
 
     createAttachmentFile();
     createLogger();
-    boolean errorFound = false;
-    // Delay execution if necessary. Will return a true if something went wrong.
-    errorFound |= delayExecution();
-
-    // For pipelining of jobs. Will watch other jobs. Will return true if
-    // something went wrong.
-    errorFound |= blockOnPipeLine();
+    try {
+      boolean errorFound = false;
+      // Delay execution if necessary. Will return a true if something went
+      // wrong.
+      errorFound |= delayExecution();
+
+      // For pipelining of jobs. Will watch other jobs. Will return true if
+      // something went wrong.
+      errorFound |= blockOnPipeLine();
+
+      // Start the node.
+      node.setStartTime(System.currentTimeMillis());
+      if (!errorFound && !isKilled()) {
+        fireEvent(Event.create(this, Type.JOB_STARTED, null, false));
+        try {
+          loader.uploadExecutableNode(node, props);
+        } catch (ExecutorManagerException e1) {
+          logger.error("Error writing initial node properties");
+        }
 
-    // Start the node.
-    node.setStartTime(System.currentTimeMillis());
-    if (!errorFound && !isKilled()) {
-      fireEvent(Event.create(this, Type.JOB_STARTED, null, false));
-      try {
-        loader.uploadExecutableNode(node, props);
-      } catch (ExecutorManagerException e1) {
-        logger.error("Error writing initial node properties");
+        if (prepareJob()) {
+          // Writes status to the db
+          writeStatus();
+          fireEvent(Event.create(this, Type.JOB_STATUS_CHANGED), false);
+          runJob();
+        } else {
+          changeStatus(Status.FAILED);
+          logError("Job run failed preparing the job.");
+        }
       }
-
-      if (prepareJob()) {
-        // Writes status to the db
-        writeStatus();
-        fireEvent(Event.create(this, Type.JOB_STATUS_CHANGED), false);
-        runJob();
-      } else {
-        changeStatus(Status.FAILED);
-        logError("Job run failed preparing the job.");
+      node.setEndTime(System.currentTimeMillis());
+
+      if (isKilled()) {
+        // even if it's killed, there is a chance that the job failed is marked
+        // as failure,
+        // So we set it to KILLED to make sure we know that we forced kill it
+        // rather than
+        // it being a legitimate failure.
+        changeStatus(Status.KILLED);
       }
-    }
-    node.setEndTime(System.currentTimeMillis());
 
-    if (isKilled()) {
-      // even if it's killed, there is a chance that the job failed is marked as
-      // failure,
-      // So we set it to KILLED to make sure we know that we forced kill it
-      // rather than
-      // it being a legitimate failure.
-      changeStatus(Status.KILLED);
+      int attemptNo = node.getAttempt();
+      logInfo("Finishing job " + this.jobId + " attempt: " + attemptNo + " at "
+          + node.getEndTime() + " with status " + node.getStatus());
+
+      fireEvent(Event.create(this, Type.JOB_FINISHED), false);
+      finalizeLogFile(attemptNo);
+      finalizeAttachmentFile();
+      writeStatus();
+    } finally {
+      // the flow waits for the upload of the log, even if the job errored out
+      if (logUploader != null) {
+        logUploader.finishLog(executionId, node.getNestedId(),
+            node.getAttempt());
+      }
     }
-
-    int attemptNo = node.getAttempt();
-    logInfo("Finishing job " + this.jobId + " attempt: " + attemptNo + " at "
-        + node.getEndTime() + " with status " + node.getStatus());
-
-    fireEvent(Event.create(this, Type.JOB_FINISHED), false);
-    finalizeLogFile(attemptNo);
-    finalizeAttachmentFile();
-    writeStatus();
   }
 
   private boolean prepareJob() throws RuntimeException {
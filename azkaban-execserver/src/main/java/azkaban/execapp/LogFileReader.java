@@ -0,0 +1,229 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BooleanSupplier;
+
+import azkaban.utils.FileIOUtils.LogData;
+
+/**
+ * Reads byte ranges of log files that are still being written.
+ *
+ * Ranges are trimmed to whole UTF-8 characters. UTF-8 is self synchronizing,
+ * so only the few bytes at either end of a range are looked at to find the
+ * character boundaries; the rest of the range is read with positional reads
+ * into a buffer kept per thread, or streamed into the response.
+ */
+public class LogFileReader {
+  // requests for more than this get a buffer of their own
+  private static final int MAX_CACHED_BUFFER_SIZE = 1024 * 1024;
+  private static final long WAIT_CHECK_INTERVAL_MS = 250;
+
+  private static final ThreadLocal<byte[]> buffers = new ThreadLocal<byte[]>();
+
+  public interface RangeAction<T> {
+    public T apply(LogRange range) throws IOException;
+  }
+
+  /**
+   * Opens the range of the log from offset of up to length bytes, trimmed to
+   * whole characters and to what's been written so far.
+   */
+  public static LogRange open(File file, int offset, int length)
+      throws IOException {
+    FileChannel channel =
+        FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    try {
+      return new LogRange(channel, offset, length);
+    } catch (IOException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  /**
+   * Waits for the log to grow past offset.
+   *
+   * @param running checked while waiting, stops it once false
+   * @return true if there is something to read at offset
+   */
+  public static boolean waitForData(File file, int offset, long waitMs,
+      BooleanSupplier running) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + waitMs;
+    while (file.length() <= offset) {
+      long remaining = deadline - System.currentTimeMillis();
+      if (remaining <= 0 || !running.getAsBoolean()) {
+        return false;
+      }
+      Thread.sleep(Math.min(remaining, WAIT_CHECK_INTERVAL_MS));
+    }
+    return true;
+  }
+
+  public static class LogRange implements Closeable {
+    private final FileChannel channel;
+    private final int offset;
+    private final int length;
+
+    private LogRange(FileChannel channel, int offset, int length)
+        throws IOException {
+      this.channel = channel;
+
+      long size = channel.size();
+      if (offset >= size || length <= 0) {
+        this.offset = offset;
+        this.length = 0;
+        return;
+      }
+
+      int start = offset + countContinuationBytes(offset);
+      int end = (int) Math.min(size, (long) offset + length);
+      end = trimPartialCharacter(end);
+      this.offset = start;
+      this.length = Math.max(0, end - start);
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    public int getLength() {
+      return length;
+    }
+
+    public LogData read() throws IOException {
+      if (length == 0) {
+        return new LogData(offset, 0, "");
+      }
+
+      byte[] buffer = getBuffer(length);
+      readFully(ByteBuffer.wrap(buffer, 0, length), offset);
+      return new LogData(offset, length, new String(buffer, 0, length,
+          StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Copies the range to out a chunk at a time rather than reading it into
+     * one buffer
+     */
+    public void transferTo(WritableByteChannel out) throws IOException {
+      long position = offset;
+      long end = offset + length;
+      while (position < end) {
+        long num = channel.transferTo(position, end - position, out);
+        if (num <= 0) {
+          throw new IOException("Log ended before " + end);
+        }
+        position += num;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    /*
+     * Bytes at position that continue a character started before it. A
+     * character is at most four bytes long.
+     */
+    private int countContinuationBytes(int position) throws IOException {
+      ByteBuffer edge = readEdge(position, 3);
+      int count = 0;
+      while (edge.hasRemaining() && isContinuationByte(edge.get())) {
+        count++;
+      }
+      return count;
+    }
+
+    /*
+     * Moves end back to where the last character starts if that character
+     * doesn't end before end.
+     */
+    private int trimPartialCharacter(int end) throws IOException {
+      int start = Math.max(0, end - 4);
+      ByteBuffer edge = readEdge(start, end - start);
+      for (int i = edge.limit() - 1; i >= 0; i--) {
+        byte b = edge.get(i);
+        if (isContinuationByte(b)) {
+          continue;
+        }
+        int charLength = getCharacterLength(b);
+        return start + i + charLength > end ? start + i : end;
+      }
+      return end;
+    }
+
+    private ByteBuffer readEdge(int position, int num) throws IOException {
+      ByteBuffer edge = ByteBuffer.allocate(num);
+      while (edge.hasRemaining()) {
+        if (channel.read(edge, position + edge.position()) <= 0) {
+          break;
+        }
+      }
+      edge.flip();
+      return edge;
+    }
+
+    private void readFully(ByteBuffer buffer, long position)
+        throws IOException {
+      while (buffer.hasRemaining()) {
+        int num = channel.read(buffer, position);
+        if (num <= 0) {
+          throw new IOException("Log ended before " + (position + 1));
+        }
+        position += num;
+      }
+    }
+  }
+
+  private static boolean isContinuationByte(byte b) {
+    return (b & 0xC0) == 0x80;
+  }
+
+  private static int getCharacterLength(byte lead) {
+    if ((lead & 0x80) == 0) {
+      return 1;
+    } else if ((lead & 0xE0) == 0xC0) {
+      return 2;
+    } else if ((lead & 0xF0) == 0xE0) {
+      return 3;
+    }
+    return 4;
+  }
+
+  private static byte[] getBuffer(int length) {
+    if (length > MAX_CACHED_BUFFER_SIZE) {
+      return new byte[length];
+    }
+
+    byte[] buffer = buffers.get();
+    if (buffer == null || buffer.length < length) {
+      buffer = new byte[Math.max(length, 64 * 1024)];
+      buffers.set(buffer);
+    }
+    return buffer;
+  }
+}
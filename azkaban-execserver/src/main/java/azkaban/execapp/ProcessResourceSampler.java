@@ -0,0 +1,288 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.jobExecutor.Job;
+import azkaban.jobExecutor.ProcessJob;
+import azkaban.utils.Pair;
+
+/**
+ * Samples the memory and cpu time the job processes of the running flows take,
+ * so the web server can learn how heavy each flow is.
+ *
+ * The numbers are read from /proc without forking. The processes of a job are
+ * its own process and all of its descendants, so jobs running through a
+ * shell count what the shell runs. The memory of a flow is the most its job
+ * processes had resident at once in any sample, or the peak of a single one
+ * if that's higher. Its cpu time is the sum over its processes of the last
+ * cpu time seen, so processes shorter than the sample interval may be
+ * missed.
+ */
+public class ProcessResourceSampler extends Thread {
+  private static final Logger logger = Logger
+      .getLogger(ProcessResourceSampler.class);
+
+  // units of the times in /proc/<pid>/stat, 100 on about every linux
+  private static final long CLOCK_TICKS_PER_SECOND = 100;
+  private static final File PROC = new File("/proc");
+
+  private final Collection<FlowRunner> flowRunners;
+  private final long sampleIntervalMs;
+  private boolean shutdown = false;
+
+  /**
+   * @param flowRunners live view of the running flows
+   */
+  public ProcessResourceSampler(Collection<FlowRunner> flowRunners,
+      long sampleIntervalMs) {
+    this.flowRunners = flowRunners;
+    this.sampleIntervalMs = sampleIntervalMs;
+    this.setName("ProcessResourceSampler");
+    this.setDaemon(true);
+  }
+
+  public static boolean isSupported() {
+    return new File(PROC, "self/stat").exists();
+  }
+
+  public synchronized void shutdown() {
+    shutdown = true;
+    this.notifyAll();
+  }
+
+  @Override
+  public void run() {
+    while (true) {
+      synchronized (this) {
+        if (shutdown) {
+          break;
+        }
+      }
+
+      try {
+        if (!flowRunners.isEmpty()) {
+          Map<Integer, List<Integer>> children = readChildren();
+          for (FlowRunner runner : flowRunners) {
+            sample(runner, children);
+          }
+        }
+      } catch (Throwable t) {
+        logger.warn("Failed to sample job processes", t);
+      }
+
+      synchronized (this) {
+        try {
+          if (!shutdown) {
+            this.wait(sampleIntervalMs);
+          }
+        } catch (InterruptedException e) {
+          logger.info("Interrupted. Probably to shut down.");
+        }
+      }
+    }
+  }
+
+  private void sample(FlowRunner runner,
+      Map<Integer, List<Integer>> children) {
+    List<Integer> pids = new ArrayList<Integer>();
+    for (JobRunner jobRunner : runner.getActiveJobRunners()) {
+      Job job = jobRunner.getJob();
+      if (!(job instanceof ProcessJob)) {
+        continue;
+      }
+      int pid = ((ProcessJob) job).getRunningProcessId();
+      if (pid > 0) {
+        pids.add(pid);
+      }
+    }
+    runner.getResourceUsage().record(readProcessTrees(pids, children));
+  }
+
+  /*
+   * Stats of the given processes and their descendants, by (pid, start time)
+   */
+  static Map<Pair<Integer, Long>, ProcessStats> readProcessTrees(
+      Collection<Integer> pids, Map<Integer, List<Integer>> children) {
+    Map<Pair<Integer, Long>, ProcessStats> processes =
+        new HashMap<Pair<Integer, Long>, ProcessStats>();
+    Set<Integer> seen = new HashSet<Integer>();
+    Deque<Integer> pending = new ArrayDeque<Integer>(pids);
+    while (!pending.isEmpty()) {
+      int pid = pending.poll();
+      if (!seen.add(pid)) {
+        continue;
+      }
+      ProcessStats stats = readStats(pid);
+      if (stats == null) {
+        continue;
+      }
+      processes.put(new Pair<Integer, Long>(pid, stats.startTime), stats);
+      List<Integer> pidChildren = children.get(pid);
+      if (pidChildren != null) {
+        pending.addAll(pidChildren);
+      }
+    }
+    return processes;
+  }
+
+  /*
+   * Child pids of every running process, by parent pid
+   */
+  static Map<Integer, List<Integer>> readChildren() {
+    Map<Integer, List<Integer>> children =
+        new HashMap<Integer, List<Integer>>();
+    String[] names = PROC.list();
+    if (names == null) {
+      return children;
+    }
+    for (String name : names) {
+      if (name.isEmpty() || !Character.isDigit(name.charAt(0))) {
+        continue;
+      }
+      try {
+        int parentPid = Integer.parseInt(readStatFields(
+            new File(PROC, name))[1]);
+        List<Integer> pids = children.get(parentPid);
+        if (pids == null) {
+          pids = new ArrayList<Integer>();
+          children.put(parentPid, pids);
+        }
+        pids.add(Integer.parseInt(name));
+      } catch (IOException | RuntimeException e) {
+        // the process ended meanwhile
+      }
+    }
+    return children;
+  }
+
+  /*
+   * Memory and cpu time of the process, null if it is gone
+   */
+  static ProcessStats readStats(int pid) {
+    File dir = new File(PROC, String.valueOf(pid));
+    try {
+      ProcessStats stats = new ProcessStats();
+      String[] fields = readStatFields(dir);
+      stats.cpuTicks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+      stats.startTime = Long.parseLong(fields[19]);
+
+      List<String> status =
+          Files.readAllLines(new File(dir, "status").toPath(),
+              StandardCharsets.UTF_8);
+      for (String line : status) {
+        if (line.startsWith("VmRSS:")) {
+          stats.residentKB = parseKB(line);
+        } else if (line.startsWith("VmHWM:")) {
+          stats.peakResidentKB = parseKB(line);
+        }
+      }
+      return stats;
+    } catch (IOException | RuntimeException e) {
+      // the process ended meanwhile
+      return null;
+    }
+  }
+
+  /*
+   * Fields of /proc/<pid>/stat from the state on, since comm may hold spaces:
+   * pid (comm) state ppid ... utime(14) stime(15) ... starttime(22)
+   */
+  private static String[] readStatFields(File dir) throws IOException {
+    String stat =
+        new String(Files.readAllBytes(new File(dir, "stat").toPath()),
+            StandardCharsets.UTF_8);
+    return stat.substring(stat.lastIndexOf(')') + 2).trim().split("\\s+");
+  }
+
+  private static long parseKB(String line) {
+    return Long.parseLong(line.split("\\s+")[1]);
+  }
+
+  static class ProcessStats {
+    long residentKB;
+    long peakResidentKB;
+    long cpuTicks;
+    long startTime;
+  }
+
+  /**
+   * What the job processes of a flow took so far
+   */
+  public static class Usage {
+    private long peakKB = -1;
+    // (pid, start time) -> last cpu ticks seen
+    private final Map<Pair<Integer, Long>, Long> cpuTicks =
+        new HashMap<Pair<Integer, Long>, Long>();
+
+    synchronized void record(Map<Pair<Integer, Long>, ProcessStats> processes) {
+      if (processes.isEmpty()) {
+        return;
+      }
+      long residentKB = 0;
+      for (Map.Entry<Pair<Integer, Long>, ProcessStats> entry : processes
+          .entrySet()) {
+        ProcessStats stats = entry.getValue();
+        residentKB += stats.residentKB;
+        peakKB = Math.max(peakKB, stats.peakResidentKB);
+        cpuTicks.put(entry.getKey(), stats.cpuTicks);
+      }
+      peakKB = Math.max(peakKB, residentKB);
+    }
+
+    public synchronized long getPeakMemoryInMB() {
+      return peakKB < 0 ? -1 : peakKB / 1024;
+    }
+
+    public synchronized long getCpuSeconds() {
+      if (cpuTicks.isEmpty()) {
+        return -1;
+      }
+      long ticks = 0;
+      for (long processTicks : cpuTicks.values()) {
+        ticks += processTicks;
+      }
+      return ticks / CLOCK_TICKS_PER_SECOND;
+    }
+
+    /**
+     * Sets what was sampled on the flow, if anything was
+     */
+    public synchronized void applyTo(ExecutableFlow flow) {
+      if (peakKB >= 0) {
+        flow.setPeakMemoryInMB(getPeakMemoryInMB());
+        flow.setCpuSeconds(getCpuSeconds());
+      }
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.log4j.Logger;
+
+/**
+ * Local cache of uploaded project files, addressed by the md5 of their
+ * content, so a project file is downloaded from the database once per
+ * executor even if its installed directory gets cleaned up or the same file
+ * is uploaded again as a new version.
+ *
+ * Files are evicted least recently used first once the cache grows over its
+ * maximum size.
+ */
+public class ProjectArtifactCache {
+  private static final Logger logger = Logger
+      .getLogger(ProjectArtifactCache.class);
+
+  private static final String CACHED_FILE_SUFFIX = ".zip";
+  private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+  private final File cacheDir;
+  private final long maxSizeBytes;
+
+  private long hits = 0;
+  private long misses = 0;
+
+  public ProjectArtifactCache(File cacheDir, long maxSizeBytes) {
+    this.cacheDir = cacheDir;
+    this.maxSizeBytes = maxSizeBytes;
+    cacheDir.mkdirs();
+
+    // Left overs from downloads interrupted by a restart
+    File[] tempFiles = cacheDir.listFiles((dir, name) -> name
+        .endsWith(TEMP_FILE_SUFFIX));
+    if (tempFiles != null) {
+      for (File tempFile : tempFiles) {
+        tempFile.delete();
+      }
+    }
+  }
+
+  /**
+   * @return the cached file with the given md5, or null if it isn't cached
+   */
+  public synchronized File get(byte[] md5) {
+    File file = getCachedFile(md5);
+    if (!file.exists()) {
+      misses++;
+      return null;
+    }
+
+    hits++;
+    // the modification time orders the files for eviction
+    file.setLastModified(System.currentTimeMillis());
+    return file;
+  }
+
+  /**
+   * Creates a file to download content with the given md5 to, before it is
+   * added with {@link #put(byte[], File)}.
+   */
+  public File createTempFile(byte[] md5) throws IOException {
+    return File.createTempFile(Hex.encodeHexString(md5), TEMP_FILE_SUFFIX,
+        cacheDir);
+  }
+
+  /**
+   * Adds a downloaded file to the cache. The file must have been created by
+   * {@link #createTempFile(byte[])} and its content must have the given md5.
+   */
+  public synchronized void put(byte[] md5, File tempFile) throws IOException {
+    File file = getCachedFile(md5);
+    if (file.exists()) {
+      tempFile.delete();
+    } else if (!tempFile.renameTo(file)) {
+      tempFile.delete();
+      throw new IOException("Failed to add " + file + " to the project cache");
+    }
+
+    evict();
+  }
+
+  public synchronized long getHits() {
+    return hits;
+  }
+
+  public synchronized long getMisses() {
+    return misses;
+  }
+
+  private File getCachedFile(byte[] md5) {
+    return new File(cacheDir, Hex.encodeHexString(md5) + CACHED_FILE_SUFFIX);
+  }
+
+  private void evict() {
+    File[] files =
+        cacheDir.listFiles((dir, name) -> name.endsWith(CACHED_FILE_SUFFIX));
+    if (files == null) {
+      return;
+    }
+
+    long size = 0;
+    for (File file : files) {
+      size += file.length();
+    }
+    if (size <= maxSizeBytes) {
+      return;
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File a, File b) {
+        return Long.compare(a.lastModified(), b.lastModified());
+      }
+    });
+    for (File file : files) {
+      if (size <= maxSizeBytes) {
+        break;
+      }
+      long length = file.length();
+      if (file.delete()) {
+        logger.info("Evicted " + file.getName() + " from the project cache");
+        size -= length;
+      }
+    }
+  }
+}
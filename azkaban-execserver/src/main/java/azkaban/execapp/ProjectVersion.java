@@ -16,11 +16,19 @@
 
 package azkaban.execapp;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.TeeInputStream;
+import org.apache.commons.io.output.NullOutputStream;
 import org.apache.log4j.Logger;
 
 import azkaban.project.ProjectFileHandler;
@@ -56,6 +64,17 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
   public synchronized void setupProjectFiles(ProjectLoader projectLoader,
       File projectDir, Logger logger) throws ProjectManagerException,
       IOException {
+    setupProjectFiles(projectLoader, projectDir, null, logger);
+  }
+
+  /**
+   * Installs the project files if they aren't yet. The file is unzipped from
+   * the cache if it's there. Otherwise it's unzipped while it is streamed from
+   * the project loader, and added to the cache once its md5 is verified.
+   */
+  public synchronized void setupProjectFiles(ProjectLoader projectLoader,
+      File projectDir, ProjectArtifactCache cache, Logger logger)
+      throws ProjectManagerException, IOException {
     String projectVersion =
         String.valueOf(projectId) + "." + String.valueOf(version);
     if (installedDir == null) {
@@ -71,28 +90,101 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
           new File(projectDir, "_temp." + projectVersion + "."
               + System.currentTimeMillis());
       tempDir.mkdirs();
-      ProjectFileHandler projectFileHandler = null;
       try {
-        projectFileHandler = projectLoader.getUploadedFile(projectId, version);
-        if ("zip".equals(projectFileHandler.getFileType())) {
-          logger.info("Downloading zip file.");
-          ZipFile zip = new ZipFile(projectFileHandler.getLocalFile());
-          Utils.unzip(zip, tempDir);
+        ProjectFileHandler projectFileHandler =
+            projectLoader.fetchProjectFileInfo(projectId, version);
+        if (projectFileHandler == null) {
+          throw new ProjectManagerException("Project " + projectId
+              + " version " + version + " doesn't exist.");
+        }
+        if (!"zip".equals(projectFileHandler.getFileType())) {
+          throw new IOException("The file type hasn't been decided yet.");
+        }
 
-          tempDir.renameTo(installedDir);
+        byte[] md5 = projectFileHandler.getMd5Hash();
+        File cachedFile = cache == null ? null : cache.get(md5);
+        if (cachedFile != null) {
+          logger.info("Unzipping cached project file " + cachedFile.getName());
+          ZipFile zip = new ZipFile(cachedFile);
+          try {
+            Utils.unzip(zip, tempDir);
+          } finally {
+            zip.close();
+          }
         } else {
-          throw new IOException("The file type hasn't been decided yet.");
+          logger.info("Downloading zip file.");
+          downloadAndUnzip(projectLoader, projectFileHandler, cache, tempDir);
+        }
+
+        if (!tempDir.renameTo(installedDir)) {
+          throw new IOException("Failed to move " + tempDir + " to "
+              + installedDir);
         }
       } finally {
-        if (projectFileHandler != null) {
-          projectFileHandler.deleteLocalFile();
+        if (tempDir.exists()) {
+          FileUtils.deleteQuietly(tempDir);
         }
       }
     }
   }
 
+  /*
+   * Unzips the project file while it's being fetched, copying the bytes to
+   * the cache on the way.
+   */
+  private void downloadAndUnzip(ProjectLoader projectLoader,
+      ProjectFileHandler projectFileHandler, ProjectArtifactCache cache,
+      File destDir) throws ProjectManagerException, IOException {
+    byte[] md5 = projectFileHandler.getMd5Hash();
+    File cacheFile = cache == null ? null : cache.createTempFile(md5);
+    InputStream fileStream =
+        projectLoader.getUploadedFileStream(projectFileHandler);
+    OutputStream cacheStream = null;
+    try {
+      InputStream source = fileStream;
+      if (cacheFile != null) {
+        cacheStream =
+            new BufferedOutputStream(new FileOutputStream(cacheFile));
+        source = new TeeInputStream(fileStream, cacheStream);
+      }
+
+      ZipInputStream zip = new ZipInputStream(source);
+      Utils.unzip(zip, destDir);
+      // Read what's left after the last entry (the zip directory), which also
+      // gets the md5 verified.
+      IOUtils.copy(source, new NullOutputStream());
+
+      if (cacheStream != null) {
+        cacheStream.close();
+        cache.put(md5, cacheFile);
+        cacheFile = null;
+      }
+    } finally {
+      IOUtils.closeQuietly(fileStream);
+      IOUtils.closeQuietly(cacheStream);
+      if (cacheFile != null) {
+        cacheFile.delete();
+      }
+    }
+  }
+
   public synchronized void copyCreateSymlinkDirectory(File executionDir)
       throws IOException {
+    checkDirectories(executionDir);
+    FileIOUtils.createDeepSymlink(installedDir, executionDir);
+  }
+
+  /**
+   * Links the project files into the execution dir with hard links, so that
+   * the execution keeps its files when the project version is deleted.
+   */
+  public synchronized void copyCreateHardlinkDirectory(File executionDir)
+      throws IOException {
+    checkDirectories(executionDir);
+    FileIOUtils.createDeepHardlink(installedDir, executionDir);
+  }
+
+  private void checkDirectories(File executionDir) throws IOException {
     if (installedDir == null || !installedDir.exists()) {
       throw new IOException("Installed dir doesn't exist: "
           + ((installedDir == null) ? null : installedDir.getAbsolutePath()));
@@ -100,7 +192,6 @@ public class ProjectVersion implements Comparable<ProjectVersion> {
       throw new IOException("Execution dir doesn't exist: "
           + ((executionDir == null) ? null : executionDir.getAbsolutePath()));
     }
-    FileIOUtils.createDeepSymlink(installedDir, executionDir);
   }
 
   public synchronized void deleteDirectory() throws IOException {
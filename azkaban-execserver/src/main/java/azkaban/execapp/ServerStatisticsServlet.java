@@ -18,9 +18,9 @@ package azkaban.execapp;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -31,20 +31,25 @@ import org.apache.log4j.Logger;
 import azkaban.executor.ExecutorInfo;
 import azkaban.utils.JSONUtils;
 
-
+/**
+ * Serves the statistics the web server picks executors with.
+ *
+ * The statistics are read straight from /proc rather than by running shell
+ * commands, and are cached for a second, so executors which also push them
+ * along with their execution updates can do it cheaply.
+ */
 public class ServerStatisticsServlet extends HttpServlet {
   private static final long serialVersionUID = 1L;
   private static final int cacheTimeInMilliseconds = 1000;
   private static final Logger logger = Logger.getLogger(ServerStatisticsServlet.class);
   private static final String noCacheParamName = "nocache";
-  private static final boolean exists_Bash = new File("/bin/bash").exists();
-  private static final boolean exists_Cat = new File("/bin/cat").exists();
-  private static final boolean exists_Grep = new File("/bin/grep").exists();
-  private static final boolean exists_Meminfo = new File("/proc/meminfo").exists();
-  private static final boolean exists_LoadAvg = new File("/proc/loadavg").exists();
+  private static final File meminfo = new File("/proc/meminfo");
+  private static final File loadAvg = new File("/proc/loadavg");
+  private static final boolean exists_Meminfo = meminfo.exists();
+  private static final boolean exists_LoadAvg = loadAvg.exists();
 
-  protected static long lastRefreshedTime = 0;
-  protected static ExecutorInfo cachedstats = null;
+  protected static volatile long lastRefreshedTime = 0;
+  protected static volatile ExecutorInfo cachedstats = null;
 
   /**
    * Handle all get request to Statistics Servlet {@inheritDoc}
@@ -56,11 +61,21 @@ public class ServerStatisticsServlet extends HttpServlet {
 
     boolean noCache = null != req && Boolean.valueOf(req.getParameter(noCacheParamName));
 
-    if (noCache || System.currentTimeMillis() - lastRefreshedTime > cacheTimeInMilliseconds) {
-      this.populateStatistics(noCache);
+    if (noCache) {
+      populateStatistics(true);
     }
 
-    JSONUtils.toJSON(cachedstats, resp.getOutputStream(), true);
+    JSONUtils.toJSON(getStatistics(), resp.getOutputStream(), true);
+  }
+
+  /**
+   * Statistics of this executor, at most a second old
+   */
+  public static ExecutorInfo getStatistics() {
+    if (System.currentTimeMillis() - lastRefreshedTime > cacheTimeInMilliseconds) {
+      populateStatistics(false);
+    }
+    return cachedstats;
   }
 
   /**
@@ -72,32 +87,17 @@ public class ServerStatisticsServlet extends HttpServlet {
    * a double value will be used to present the remaining memory,
    *         a returning value of '55.6' means 55.6%
    */
-  protected void fillRemainingMemoryPercent(ExecutorInfo stats) {
-    if (exists_Bash && exists_Cat && exists_Grep && exists_Meminfo) {
-      java.lang.ProcessBuilder processBuilder =
-          new java.lang.ProcessBuilder("/bin/bash", "-c",
-              "/bin/cat /proc/meminfo | grep -E \"^MemTotal:|^MemFree:|^Buffers:|^Cached:|^SwapCached:\"");
+  protected static void fillRemainingMemoryPercent(ExecutorInfo stats) {
+    if (exists_Meminfo) {
       try {
-        ArrayList<String> output = new ArrayList<String>();
-        Process process = processBuilder.start();
-        process.waitFor();
-        InputStream inputStream = process.getInputStream();
-        try {
-          java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(inputStream));
-          String line = null;
-          while ((line = reader.readLine()) != null) {
-            output.add(line);
-          }
-        } finally {
-          inputStream.close();
-        }
+        List<String> output = Files.readAllLines(meminfo.toPath(), StandardCharsets.UTF_8);
 
         long totalMemory = 0;
         long totalFreeMemory = 0;
+        int foundFields = 0;
         Long parsedResult = (long) 0;
 
-        // process the output from bash call.
-        // we expect the result from the bash call to be something like following -
+        // process the lines of the proc file, we expect lines like following -
         // MemTotal:       65894264 kB
         // MemFree:        57753844 kB
         // Buffers:          305552 kB
@@ -105,46 +105,29 @@ public class ServerStatisticsServlet extends HttpServlet {
         // SwapCached:            0 kB
         // Note : total free memory = freeMemory + cached + buffers + swapCached
         // TODO : think about merging the logic in systemMemoryInfo as the logic is similar
-        if (output.size() == 5) {
-          for (String result : output) {
-            // find the total memory and value the variable.
-            parsedResult = extractMemoryInfo("MemTotal", result);
-            if (null != parsedResult) {
-              totalMemory = parsedResult;
-              continue;
-            }
-
-            // find the free memory.
-            parsedResult = extractMemoryInfo("MemFree", result);
-            if (null != parsedResult) {
-              totalFreeMemory += parsedResult;
-              continue;
-            }
-
-            // find the Buffers.
-            parsedResult = extractMemoryInfo("Buffers", result);
-            if (null != parsedResult) {
-              totalFreeMemory += parsedResult;
-              continue;
-            }
-
-            // find the Cached.
-            parsedResult = extractMemoryInfo("SwapCached", result);
-            if (null != parsedResult) {
-              totalFreeMemory += parsedResult;
-              continue;
-            }
+        for (String result : output) {
+          // find the total memory and value the variable.
+          parsedResult = extractMemoryInfo("MemTotal", result);
+          if (null != parsedResult) {
+            totalMemory = parsedResult;
+            foundFields++;
+            continue;
+          }
 
-            // find the Cached.
-            parsedResult = extractMemoryInfo("Cached", result);
+          // find the free memory, buffers and caches.
+          for (String field : new String[] { "MemFree", "Buffers", "SwapCached", "Cached" }) {
+            parsedResult = extractMemoryInfo(field, result);
             if (null != parsedResult) {
               totalFreeMemory += parsedResult;
-              continue;
+              foundFields++;
+              break;
             }
           }
-        } else {
-          logger.error("failed to get total/free memory info as the bash call returned invalid result."
-              + String.format(" Output from the bash call - %s ", output.toString()));
+        }
+
+        if (foundFields != 5) {
+          logger.error("failed to get total/free memory info as /proc/meminfo is missing fields."
+              + String.format(" Found %d of 5 ", foundFields));
         }
 
         // the number got from the proc file is in KBs we want to see the number in MBs so we are dividing it by 1024.
@@ -152,17 +135,16 @@ public class ServerStatisticsServlet extends HttpServlet {
         stats.setRemainingMemoryPercent(totalMemory == 0 ? 0 : ((double) totalFreeMemory / (double) totalMemory) * 100);
       } catch (Exception ex) {
         logger.error("failed fetch system memory info "
-            + "as exception is captured when fetching result from bash call. Ex -" + ex.getMessage());
+            + "as exception is captured when reading /proc/meminfo. Ex -" + ex.getMessage());
       }
     } else {
-      logger.error("failed fetch system memory info, one or more files from the following list are missing -  "
-          + "'/bin/bash'," + "'/bin/cat'," + "'/proc/loadavg'");
+      logger.error("failed fetch system memory info, '/proc/meminfo' is missing");
     }
   }
 
-  private Long extractMemoryInfo(String field, String result) {
+  private static Long extractMemoryInfo(String field, String result) {
     Long returnResult = null;
-    if (null != result && null != field && result.matches(String.format("^%s:.*", field))
+    if (null != result && null != field && result.startsWith(field + ":")
         && result.split("\\s+").length > 2) {
       try {
         returnResult = Long.parseLong(result.split("\\s+")[1]);
@@ -179,7 +161,7 @@ public class ServerStatisticsServlet extends HttpServlet {
    * call the data providers to fill the returning data container for statistics data.
    * This function refreshes the static cached copy of data in case if necessary.
    * */
-  protected synchronized void populateStatistics(boolean noCache) {
+  protected static synchronized void populateStatistics(boolean noCache) {
     //check again before starting the work.
     if (noCache || System.currentTimeMillis() - lastRefreshedTime > cacheTimeInMilliseconds) {
       final ExecutorInfo stats = new ExecutorInfo();
@@ -198,7 +180,7 @@ public class ServerStatisticsServlet extends HttpServlet {
    * @param stats reference to the result container which contains all the results, this specific method
    *              will only work on the property "remainingFlowCapacity".
    */
-  protected void fillRemainingFlowCapacityAndLastDispatchedTime(ExecutorInfo stats) {
+  protected static void fillRemainingFlowCapacityAndLastDispatchedTime(ExecutorInfo stats) {
 
     AzkabanExecutorServer server = AzkabanExecutorServer.getApp();
     if (server != null) {
@@ -222,26 +204,12 @@ public class ServerStatisticsServlet extends HttpServlet {
    * @param stats reference to the result container which contains all the results, this specific method
    *              will only work on the property "cpuUsage".
    */
-  protected void fillCpuUsage(ExecutorInfo stats) {
-    if (exists_Bash && exists_Cat && exists_LoadAvg) {
-      java.lang.ProcessBuilder processBuilder =
-          new java.lang.ProcessBuilder("/bin/bash", "-c", "/bin/cat /proc/loadavg");
+  protected static void fillCpuUsage(ExecutorInfo stats) {
+    if (exists_LoadAvg) {
       try {
-        ArrayList<String> output = new ArrayList<String>();
-        Process process = processBuilder.start();
-        process.waitFor();
-        InputStream inputStream = process.getInputStream();
-        try {
-          java.io.BufferedReader reader = new java.io.BufferedReader(new InputStreamReader(inputStream));
-          String line = null;
-          while ((line = reader.readLine()) != null) {
-            output.add(line);
-          }
-        } finally {
-          inputStream.close();
-        }
+        List<String> output = Files.readAllLines(loadAvg.toPath(), StandardCharsets.UTF_8);
 
-        // process the output from bash call.
+        // process the content of the proc file.
         if (output.size() > 0) {
           String[] splitedresult = output.get(0).split("\\s+");
           double cpuUsage = 0.0;
@@ -251,16 +219,15 @@ public class ServerStatisticsServlet extends HttpServlet {
           } catch (NumberFormatException e) {
             logger.error("yielding 0.0 for CPU usage as output is invalid -" + output.get(0));
           }
-          logger.info("System load : " + cpuUsage);
+          logger.debug("System load : " + cpuUsage);
           stats.setCpuUpsage(cpuUsage);
         }
       } catch (Exception ex) {
         logger.error("failed fetch system load info "
-            + "as exception is captured when fetching result from bash call. Ex -" + ex.getMessage());
+            + "as exception is captured when reading /proc/loadavg. Ex -" + ex.getMessage());
       }
     } else {
-      logger.error("failed fetch system load info, one or more files from the following list are missing -  "
-          + "'/bin/bash'," + "'/bin/cat'," + "'/proc/loadavg'");
+      logger.error("failed fetch system load info, '/proc/loadavg' is missing");
     }
   }
 }
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp.event;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.log4j.Logger;
+
+import azkaban.event.Event;
+import azkaban.event.EventListener;
+import azkaban.execapp.FlowRunner;
+import azkaban.executor.ConnectorParams;
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutorApiClient;
+import azkaban.executor.ExecutorInfo;
+import azkaban.utils.JSONUtils;
+
+/**
+ * Pushes execution status deltas from this executor to the web server.
+ *
+ * Instead of waiting for the web server to poll every running execution, the
+ * pusher keeps the update time it last delivered for each execution and, on
+ * every round, posts only the executions that changed since then in a single
+ * batched request. An empty batch is sent as a heartbeat when nothing changed
+ * for a while so the web server can tell a quiet executor from a dropped one;
+ * the web server goes back to polling when the heartbeats stop.
+ *
+ * The executor statistics go along with a push whenever they changed since
+ * the last one delivered, and with every heartbeat, so the web server can pick
+ * executors without asking each of them for their statistics.
+ */
+public class ExecutionUpdatePusher extends Thread implements EventListener {
+  private static final Logger logger = Logger
+      .getLogger(ExecutionUpdatePusher.class);
+
+  public static final String UPDATE_PUSH_PATH = "/executionUpdates";
+
+  /**
+   * Source of the executions the pusher reports on.
+   */
+  public interface ExecutionSource {
+    Set<Integer> getRunningExecutionIds();
+
+    ExecutableFlow getExecutableFlow(int execId);
+
+    /**
+     * Current statistics of this executor, null if there are none
+     */
+    ExecutorInfo getExecutorInfo();
+  }
+
+  private final ExecutionSource source;
+  private final URI pushUri;
+  private final String executorHost;
+  private final int executorPort;
+  // shared with the web server, null if the web server doesn't ask for one
+  private final String pushSecret;
+  private final long pushIntervalMs;
+  private final long heartbeatIntervalMs;
+
+  // exec id -> update time of the last state delivered to the web server
+  private final Map<Integer, Long> lastPushedUpdateTimes =
+      new HashMap<Integer, Long>();
+  // flows that finished since the last round, in case they were never seen
+  // running by the pusher
+  private final Set<Integer> finishedExecIds = Collections
+      .newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+  // statistics last delivered to the web server
+  private ExecutorInfo lastPushedInfo = null;
+
+  private volatile boolean shutdown = false;
+  private long lastSuccessfulPushTime = -1;
+  private long numFailedPushes = 0;
+
+  public ExecutionUpdatePusher(ExecutionSource source, String webServerUrl,
+      String executorHost, int executorPort, long pushIntervalMs,
+      long heartbeatIntervalMs) throws URISyntaxException {
+    this(source, webServerUrl, executorHost, executorPort, null,
+        pushIntervalMs, heartbeatIntervalMs);
+  }
+
+  public ExecutionUpdatePusher(ExecutionSource source, String webServerUrl,
+      String executorHost, int executorPort, String pushSecret,
+      long pushIntervalMs, long heartbeatIntervalMs)
+      throws URISyntaxException {
+    this.source = source;
+    this.pushUri = new URI(stripTrailingSlash(webServerUrl) + UPDATE_PUSH_PATH);
+    this.executorHost = executorHost;
+    this.executorPort = executorPort;
+    this.pushSecret = pushSecret;
+    this.pushIntervalMs = pushIntervalMs;
+    this.heartbeatIntervalMs = heartbeatIntervalMs;
+    this.setName("ExecutionUpdatePusher-Thread");
+    this.setDaemon(true);
+  }
+
+  private static String stripTrailingSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
+  /**
+   * Flow level events are pushed right away rather than on the next round, so
+   * the web server sees flow completion without any added delay.
+   */
+  @Override
+  public void handleEvent(Event event) {
+    if (event.getType() == Event.Type.FLOW_FINISHED
+        && event.getRunner() instanceof FlowRunner) {
+      finishedExecIds.add(((FlowRunner) event.getRunner()).getExecutionId());
+    }
+
+    if (event.getType() == Event.Type.FLOW_FINISHED
+        || event.getType() == Event.Type.FLOW_STARTED
+        || event.getType() == Event.Type.JOB_FINISHED) {
+      synchronized (this) {
+        this.notify();
+      }
+    }
+  }
+
+  public void shutdown() {
+    shutdown = true;
+    this.interrupt();
+  }
+
+  public long getLastSuccessfulPushTime() {
+    return lastSuccessfulPushTime;
+  }
+
+  public long getNumFailedPushes() {
+    return numFailedPushes;
+  }
+
+  @Override
+  public void run() {
+    while (!shutdown) {
+      try {
+        pushUpdates();
+        synchronized (this) {
+          wait(pushIntervalMs);
+        }
+      } catch (InterruptedException e) {
+        logger.info("Interrupted. Probably to shut down.");
+      } catch (Throwable t) {
+        logger.warn("Uncaught throwable while pushing execution updates", t);
+      }
+    }
+  }
+
+  private void pushUpdates() {
+    Set<Integer> runningIds = source.getRunningExecutionIds();
+    Set<Integer> trackedIds = new HashSet<Integer>(lastPushedUpdateTimes.keySet());
+    trackedIds.addAll(runningIds);
+    List<Integer> drainedFinishedIds = new ArrayList<Integer>();
+    for (Integer execId : finishedExecIds) {
+      finishedExecIds.remove(execId);
+      drainedFinishedIds.add(execId);
+    }
+    trackedIds.addAll(drainedFinishedIds);
+
+    List<Object> updateList = new ArrayList<Object>();
+    Map<Integer, Long> pushedTimes = new HashMap<Integer, Long>();
+    for (Integer execId : trackedIds) {
+      ExecutableFlow flow = source.getExecutableFlow(execId);
+      if (flow == null) {
+        // No longer known locally, nothing left to report.
+        lastPushedUpdateTimes.remove(execId);
+        continue;
+      }
+
+      Long lastPushed = lastPushedUpdateTimes.get(execId);
+      long lastUpdateTime = lastPushed == null ? 0 : lastPushed;
+      long updateTime = flow.getUpdateTime();
+      if (updateTime > lastUpdateTime) {
+        updateList.add(flow.toUpdateObject(lastUpdateTime));
+        pushedTimes.put(execId, updateTime);
+      }
+    }
+
+    long currentTime = System.currentTimeMillis();
+    boolean heartbeat =
+        currentTime - lastSuccessfulPushTime >= heartbeatIntervalMs;
+    if (updateList.isEmpty() && !heartbeat) {
+      return;
+    }
+
+    Map<String, Object> payload = new HashMap<String, Object>();
+    payload.put(ConnectorParams.PUSH_EXECUTOR_HOST_PARAM, executorHost);
+    payload.put(ConnectorParams.PUSH_EXECUTOR_PORT_PARAM, executorPort);
+    payload.put(ConnectorParams.RESPONSE_UPDATED_FLOWS, updateList);
+    if (pushSecret != null) {
+      payload.put(ConnectorParams.SHAREDTOKEN_PARAM, pushSecret);
+    }
+    ExecutorInfo info = source.getExecutorInfo();
+    if (info != null && (heartbeat || !info.equals(lastPushedInfo))) {
+      payload.put(ConnectorParams.PUSH_EXECUTOR_INFO_PARAM, info);
+    }
+
+    List<Integer> notFoundIds;
+    try {
+      notFoundIds = post(payload);
+    } catch (IOException e) {
+      // The pushed times are not recorded, so the same deltas are resent in
+      // the next round. The web server resumes polling on its own if this
+      // keeps failing.
+      numFailedPushes++;
+      finishedExecIds.addAll(drainedFinishedIds);
+      logger.warn("Failed to push " + updateList.size()
+          + " execution updates to " + pushUri, e);
+      return;
+    }
+
+    lastSuccessfulPushTime = currentTime;
+    lastPushedUpdateTimes.putAll(pushedTimes);
+    if (payload.containsKey(ConnectorParams.PUSH_EXECUTOR_INFO_PARAM)) {
+      lastPushedInfo = info;
+    }
+
+    // The web server may not have registered a flow yet when its first update
+    // is pushed. Forget what was delivered so the full state is sent again.
+    for (Integer execId : notFoundIds) {
+      if (runningIds.contains(execId)) {
+        lastPushedUpdateTimes.remove(execId);
+      }
+    }
+
+    // Flows that left the running set are dropped once their final state has
+    // been delivered.
+    trackedIds.removeAll(runningIds);
+    for (Integer execId : trackedIds) {
+      ExecutableFlow flow = source.getExecutableFlow(execId);
+      Long lastPushed = lastPushedUpdateTimes.get(execId);
+      if (flow == null || (lastPushed != null
+          && lastPushed >= flow.getUpdateTime())) {
+        lastPushedUpdateTimes.remove(execId);
+      }
+    }
+  }
+
+  /**
+   * Posts the payload and returns the execution ids the web server didn't
+   * recognize.
+   */
+  @SuppressWarnings("unchecked")
+  private List<Integer> post(Map<String, Object> payload) throws IOException {
+    List<NameValuePair> headerEntries = new ArrayList<NameValuePair>();
+    headerEntries.add(new BasicNameValuePair("Content-Type",
+        "application/json"));
+
+    String response =
+        ExecutorApiClient.getInstance().httpPost(pushUri, headerEntries,
+            JSONUtils.toJSON(payload));
+
+    Map<String, Object> responseMap =
+        (Map<String, Object>) JSONUtils.parseJSONFromString(response);
+    String error = (String) responseMap.get(ConnectorParams.RESPONSE_ERROR);
+    if (error != null) {
+      throw new IOException(error);
+    }
+
+    List<Integer> notFoundIds =
+        (List<Integer>) responseMap.get(ConnectorParams.RESPONSE_NOTFOUND);
+    return notFoundIds == null ? Collections.<Integer> emptyList()
+        : notFoundIds;
+  }
+}
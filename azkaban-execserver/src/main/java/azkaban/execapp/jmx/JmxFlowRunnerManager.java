@@ -16,6 +16,8 @@
 
 package azkaban.execapp.jmx;
 
+import java.util.Map;
+
 import azkaban.execapp.FlowRunnerManager;
 
 public class JmxFlowRunnerManager implements JmxFlowRunnerManagerMBean {
@@ -79,4 +81,39 @@ public class JmxFlowRunnerManager implements JmxFlowRunnerManagerMBean {
   public int getTotalNumExecutedFlows() {
     return manager.getTotalNumExecutedFlows();
   }
-}
\ No newline at end of file
+
+  @Override
+  public boolean isJobThreadPoolShared() {
+    return manager.isJobThreadPoolShared();
+  }
+
+  @Override
+  public int getNumRunningJobs() {
+    return manager.getNumRunningJobs();
+  }
+
+  @Override
+  public int getNumQueuedJobs() {
+    return manager.getNumQueuedJobs();
+  }
+
+  @Override
+  public String getJobQueueDelay() {
+    return manager.getJobQueueDelay();
+  }
+
+  @Override
+  public Map<Integer, String> getFlowJobQueueDelays() {
+    return manager.getFlowJobQueueDelays();
+  }
+
+  @Override
+  public long getProjectCacheHits() {
+    return manager.getProjectCacheHits();
+  }
+
+  @Override
+  public long getProjectCacheMisses() {
+    return manager.getProjectCacheMisses();
+  }
+}
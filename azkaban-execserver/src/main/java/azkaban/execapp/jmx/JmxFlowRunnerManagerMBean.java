@@ -16,6 +16,8 @@
 
 package azkaban.execapp.jmx;
 
+import java.util.Map;
+
 import azkaban.jmx.DisplayName;
 
 public interface JmxFlowRunnerManagerMBean {
@@ -52,4 +54,25 @@ public interface JmxFlowRunnerManagerMBean {
   @DisplayName("OPERATION: getTotalNumExecutedFlows")
   public int getTotalNumExecutedFlows();
 
+  @DisplayName("OPERATION: isJobThreadPoolShared")
+  public boolean isJobThreadPoolShared();
+
+  @DisplayName("OPERATION: getNumRunningJobs")
+  public int getNumRunningJobs();
+
+  @DisplayName("OPERATION: getNumQueuedJobs")
+  public int getNumQueuedJobs();
+
+  @DisplayName("OPERATION: getJobQueueDelay")
+  public String getJobQueueDelay();
+
+  @DisplayName("OPERATION: getFlowJobQueueDelays")
+  public Map<Integer, String> getFlowJobQueueDelays();
+
+  @DisplayName("OPERATION: getProjectCacheHits")
+  public long getProjectCacheHits();
+
+  @DisplayName("OPERATION: getProjectCacheMisses")
+  public long getProjectCacheMisses();
+
 }
\ No newline at end of file
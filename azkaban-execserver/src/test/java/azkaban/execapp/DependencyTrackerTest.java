@@ -0,0 +1,206 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Test;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutableFlowBase;
+import azkaban.executor.ExecutableNode;
+import azkaban.executor.Status;
+import azkaban.flow.Edge;
+import azkaban.flow.Flow;
+import azkaban.flow.Node;
+import azkaban.project.Project;
+
+/**
+ * Tests the dependency counting used by FlowRunner to find ready jobs, and
+ * measures the job-to-next-job scheduling cost on wide and deep flows
+ * compared to rescanning every dependency of every candidate.
+ */
+public class DependencyTrackerTest {
+  private static final Logger logger = Logger
+      .getLogger(DependencyTrackerTest.class);
+
+  @Test
+  public void testReadyOnLastDependency() throws Exception {
+    Flow flow = new Flow("join");
+    addNode(flow, "a");
+    addNode(flow, "b");
+    addNode(flow, "c");
+    flow.addEdge(new Edge("a", "c"));
+    flow.addEdge(new Edge("b", "c"));
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    ExecutableNode c = exFlow.getExecutableNode("c");
+
+    DependencyTracker tracker = new DependencyTracker();
+    exFlow.getExecutableNode("a").setStatus(Status.SUCCEEDED);
+    Assert.assertFalse(tracker.dependencyFinished(c));
+    Assert.assertEquals(1, tracker.getNumTrackedNodes());
+
+    exFlow.getExecutableNode("b").setStatus(Status.FAILED);
+    Assert.assertTrue(tracker.dependencyFinished(c));
+    Assert.assertEquals(0, tracker.getNumTrackedNodes());
+  }
+
+  @Test
+  public void testRecountAfterForget() throws Exception {
+    Flow flow = new Flow("join");
+    addNode(flow, "a");
+    addNode(flow, "b");
+    addNode(flow, "c");
+    flow.addEdge(new Edge("a", "c"));
+    flow.addEdge(new Edge("b", "c"));
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    ExecutableNode c = exFlow.getExecutableNode("c");
+
+    DependencyTracker tracker = new DependencyTracker();
+    exFlow.getExecutableNode("a").setStatus(Status.SUCCEEDED);
+    Assert.assertFalse(tracker.dependencyFinished(c));
+    // the same dependency reported twice drives the counter to zero early
+    Assert.assertTrue(tracker.dependencyFinished(c));
+
+    // FlowRunner finds the node isn't ready and forgets it, so it's recounted
+    tracker.forget(c);
+    Assert.assertFalse(tracker.dependencyFinished(c));
+    exFlow.getExecutableNode("b").setStatus(Status.SUCCEEDED);
+    Assert.assertTrue(tracker.dependencyFinished(c));
+  }
+
+  @Test
+  public void testResetForRetries() throws Exception {
+    Flow flow = new Flow("join");
+    addNode(flow, "a");
+    addNode(flow, "b");
+    addNode(flow, "c");
+    flow.addEdge(new Edge("a", "c"));
+    flow.addEdge(new Edge("b", "c"));
+    ExecutableFlow exFlow = createExecutableFlow(flow);
+    ExecutableNode c = exFlow.getExecutableNode("c");
+
+    DependencyTracker tracker = new DependencyTracker();
+    exFlow.getExecutableNode("a").setStatus(Status.FAILED);
+    Assert.assertFalse(tracker.dependencyFinished(c));
+
+    tracker.reset();
+    exFlow.getExecutableNode("a").setStatus(Status.READY);
+    exFlow.getExecutableNode("b").setStatus(Status.SUCCEEDED);
+    Assert.assertFalse(tracker.dependencyFinished(c));
+  }
+
+  /**
+   * Runs the scheduling loop over a fan out / fan in flow and a long chain,
+   * logging the average cost of finding the next job once a job finishes.
+   */
+  @Test
+  public void testSchedulingLatencyOnWideAndDeepFlows() throws Exception {
+    int width = 2000;
+    Flow wide = new Flow("wide");
+    addNode(wide, "start");
+    addNode(wide, "end");
+    for (int i = 0; i < width; i++) {
+      addNode(wide, "job" + i);
+      wide.addEdge(new Edge("start", "job" + i));
+      wide.addEdge(new Edge("job" + i, "end"));
+    }
+
+    int depth = 2000;
+    Flow deep = new Flow("deep");
+    addNode(deep, "job0");
+    for (int i = 1; i < depth; i++) {
+      addNode(deep, "job" + i);
+      deep.addEdge(new Edge("job" + (i - 1), "job" + i));
+    }
+
+    for (Flow flow : new Flow[] { wide, deep }) {
+      // warm up
+      schedule(createExecutableFlow(flow), true);
+      schedule(createExecutableFlow(flow), false);
+
+      ExecutableFlow exFlow = createExecutableFlow(flow);
+      long start = System.nanoTime();
+      int numJobs = schedule(exFlow, true);
+      long trackedNs = (System.nanoTime() - start) / numJobs;
+      Assert.assertEquals(flow.getNodes().size(), numJobs);
+
+      exFlow = createExecutableFlow(flow);
+      start = System.nanoTime();
+      numJobs = schedule(exFlow, false);
+      long scanNs = (System.nanoTime() - start) / numJobs;
+      Assert.assertEquals(flow.getNodes().size(), numJobs);
+
+      logger.info(String.format(
+          "%s flow: %d ns per job with dependency counts, %d ns rescanning",
+          flow.getId(), trackedNs, scanNs));
+    }
+  }
+
+  /*
+   * Runs every job of the flow, finishing each one as soon as it is ready.
+   * Returns the number of jobs run.
+   */
+  private int schedule(ExecutableFlowBase flow, boolean useTracker) {
+    DependencyTracker tracker = new DependencyTracker();
+    Deque<ExecutableNode> ready = new ArrayDeque<ExecutableNode>();
+    for (String startNodeId : flow.getStartNodes()) {
+      ready.add(flow.getExecutableNode(startNodeId));
+    }
+
+    int numJobs = 0;
+    while (!ready.isEmpty()) {
+      ExecutableNode node = ready.poll();
+      node.setStatus(Status.SUCCEEDED);
+      numJobs++;
+
+      for (String outNodeId : node.getOutNodes()) {
+        ExecutableNode outNode = flow.getExecutableNode(outNodeId);
+        if (useTracker ? tracker.dependencyFinished(outNode)
+            : allDependenciesFinished(outNode)) {
+          ready.add(outNode);
+        }
+      }
+    }
+    return numJobs;
+  }
+
+  private boolean allDependenciesFinished(ExecutableNode node) {
+    for (String dependency : node.getInNodes()) {
+      Status status =
+          node.getParentFlow().getExecutableNode(dependency).getStatus();
+      if (!Status.isStatusFinished(status)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void addNode(Flow flow, String id) {
+    Node node = new Node(id);
+    node.setType("command");
+    flow.addNode(node);
+  }
+
+  private ExecutableFlow createExecutableFlow(Flow flow) {
+    flow.initialize();
+    return new ExecutableFlow(new Project(1, "test"), flow);
+  }
+}
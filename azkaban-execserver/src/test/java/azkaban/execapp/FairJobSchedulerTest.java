@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.execapp.FairJobScheduler.FlowJobExecutor;
+
+public class FairJobSchedulerTest {
+  private FairJobScheduler scheduler;
+
+  @Before
+  public void setUp() {
+    scheduler = new FairJobScheduler(2);
+  }
+
+  @After
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  /* Jobs never run above the global limit, nor above a flow's own limit */
+  @Test
+  public void testConcurrencyLimits() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    FlowJobExecutor flow1 = scheduler.createFlowExecutor(1, 1);
+    FlowJobExecutor flow2 = scheduler.createFlowExecutor(2, 10);
+
+    final AtomicInteger maxFlow1Running = new AtomicInteger();
+    final AtomicInteger flow1Running = new AtomicInteger();
+    for (int i = 0; i < 10; i++) {
+      flow1.submit(new Runnable() {
+        @Override
+        public void run() {
+          maxFlow1Running.accumulateAndGet(flow1Running.incrementAndGet(),
+              Math::max);
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          sleep(5);
+          running.decrementAndGet();
+          flow1Running.decrementAndGet();
+        }
+      });
+      flow2.submit(new Runnable() {
+        @Override
+        public void run() {
+          maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+          sleep(5);
+          running.decrementAndGet();
+        }
+      });
+    }
+
+    flow1.shutdown();
+    flow2.shutdown();
+    Assert.assertTrue(flow1.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertTrue(flow2.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertEquals(2, maxRunning.get());
+    Assert.assertEquals(1, maxFlow1Running.get());
+    Assert.assertEquals(10, flow1.getQueueDelay().getCount());
+    Assert.assertEquals(20, scheduler.getQueueDelay().getCount());
+    Assert.assertEquals(0, scheduler.getNumRunningJobs());
+  }
+
+  /* Flows with queued jobs take turns */
+  @Test
+  public void testRoundRobinBetweenFlows() throws Exception {
+    final CountDownLatch blocker = new CountDownLatch(1);
+    FlowJobExecutor blocking = scheduler.createFlowExecutor(0, 1);
+    blocking.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          blocker.await();
+        } catch (InterruptedException e) {
+        }
+      }
+    });
+
+    // one thread left, everything else queues up
+    final List<Integer> order =
+        Collections.synchronizedList(new ArrayList<Integer>());
+    FlowJobExecutor busy = scheduler.createFlowExecutor(1, 10);
+    FlowJobExecutor quiet = scheduler.createFlowExecutor(2, 10);
+    final CountDownLatch busyStarted = new CountDownLatch(1);
+    busy.submit(new Runnable() {
+      @Override
+      public void run() {
+        order.add(1);
+        busyStarted.countDown();
+        sleep(50);
+      }
+    });
+    Assert.assertTrue(busyStarted.await(10, TimeUnit.SECONDS));
+    for (int i = 0; i < 3; i++) {
+      busy.submit(new Runnable() {
+        @Override
+        public void run() {
+          order.add(1);
+        }
+      });
+    }
+    quiet.submit(new Runnable() {
+      @Override
+      public void run() {
+        order.add(2);
+      }
+    });
+    Assert.assertEquals(4, scheduler.getNumQueuedJobs());
+
+    busy.shutdown();
+    quiet.shutdown();
+    Assert.assertTrue(busy.awaitTermination(10, TimeUnit.SECONDS));
+    Assert.assertTrue(quiet.awaitTermination(10, TimeUnit.SECONDS));
+    blocker.countDown();
+
+    // the quiet flow doesn't wait behind all of the busy flow's jobs
+    Assert.assertEquals(5, order.size());
+    Assert.assertEquals(2, order.get(2).intValue());
+  }
+
+  @Test(expected = RejectedExecutionException.class)
+  public void testRejectAfterShutdown() throws Exception {
+    FlowJobExecutor flow = scheduler.createFlowExecutor(1, 1);
+    flow.shutdown();
+    Assert.assertTrue(flow.isTerminated());
+    flow.submit(new Runnable() {
+      @Override
+      public void run() {
+      }
+    });
+  }
+
+  private static void sleep(long ms) {
+    try {
+      Thread.sleep(ms);
+    } catch (InterruptedException e) {
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.executor.ExecutionOptions;
+import azkaban.executor.ExecutorManagerException;
+import azkaban.executor.MockExecutorLoader;
+import azkaban.flow.Flow;
+import azkaban.project.DirectoryFlowLoader;
+import azkaban.project.MockProjectLoader;
+import azkaban.project.Project;
+import azkaban.utils.Props;
+
+public class FlowRunnerManagerTest {
+  private static final Logger logger = Logger
+      .getLogger(FlowRunnerManagerTest.class);
+
+  private File workingDir;
+  private MockExecutorLoader loader;
+  private FlowRunnerManager manager;
+  private Flow flow;
+  private CountDownLatch started = new CountDownLatch(1);
+  private CountDownLatch finish = new CountDownLatch(1);
+
+  @Before
+  public void setUp() throws Exception {
+    workingDir = new File("_AzkabanTestDir_" + System.currentTimeMillis());
+    if (workingDir.exists()) {
+      FileUtils.deleteDirectory(workingDir);
+    }
+    // installed project 1 version 1
+    File projectDir = new File(workingDir, "projects/1.1");
+    projectDir.mkdirs();
+    FileUtils.writeStringToFile(new File(projectDir, "noop.job"),
+        "type=noop\n", StandardCharsets.UTF_8);
+
+    Project project = new Project(1, "myproject");
+    project.setVersion(1);
+    DirectoryFlowLoader flowLoader = new DirectoryFlowLoader(new Props(), logger);
+    flowLoader.loadProjectFlow(project, projectDir);
+    flow = flowLoader.getFlowMap().get("noop");
+
+    Props props = new Props();
+    props.put("azkaban.execution.dir",
+        new File(workingDir, "executions").getPath());
+    props.put("azkaban.project.dir", new File(workingDir, "projects").getPath());
+    props.put("executor.flow.threads", 1);
+    loader = new MockExecutorLoader();
+    manager =
+        new FlowRunnerManager(props, loader, new MockProjectLoader(workingDir),
+            getClass().getClassLoader()) {
+          @Override
+          FlowRunner createFlowRunner(ExecutableFlow flow, int numJobThreads)
+              throws ExecutorManagerException {
+            return new BlockingFlowRunner(flow);
+          }
+        };
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    finish.countDown();
+    manager.shutdown();
+    if (workingDir != null) {
+      FileUtils.deleteDirectory(workingDir);
+      workingDir = null;
+    }
+  }
+
+  /* Test a flow waiting for a flow thread is taken off the executor */
+  @Test
+  public void testRevokeQueuedFlow() throws Exception {
+    submitAndWaitForStart(1);
+    submitFlow(2);
+    File execDir = new File(manager.getExecutableFlow(2).getExecutionPath());
+    Assert.assertTrue(execDir.exists());
+    Assert.assertEquals(1, manager.getNumQueuedFlows());
+
+    manager.revokeFlow(2);
+    Assert.assertTrue(manager.isRevoked(2));
+    Assert.assertFalse(manager.getRunningExecutionIds().contains(2));
+    Assert.assertEquals(0, manager.getNumQueuedFlows());
+    Assert.assertFalse(execDir.exists());
+  }
+
+  /* Test a flow that already started stays on the executor */
+  @Test
+  public void testRevokeStartedFlow() throws Exception {
+    submitAndWaitForStart(1);
+    try {
+      manager.revokeFlow(1);
+      Assert.fail("Revoked a started flow");
+    } catch (ExecutorManagerException e) {
+    }
+    Assert.assertFalse(manager.isRevoked(1));
+    Assert.assertTrue(manager.getRunningExecutionIds().contains(1));
+  }
+
+  private void submitFlow(int execId) throws Exception {
+    Project project = new Project(1, "myproject");
+    project.setVersion(1);
+    ExecutableFlow exFlow = new ExecutableFlow(project, flow);
+    exFlow.setExecutionId(execId);
+    exFlow.setExecutionOptions(new ExecutionOptions());
+    loader.uploadExecutableFlow(exFlow);
+    manager.submitFlow(execId);
+  }
+
+  private void submitAndWaitForStart(int execId) throws Exception {
+    submitFlow(execId);
+    Assert.assertTrue("Flow didn't start",
+        started.await(10, TimeUnit.SECONDS));
+  }
+
+  /*
+   * Runner keeping its flow thread until the test finishes
+   */
+  private class BlockingFlowRunner extends FlowRunner {
+    public BlockingFlowRunner(ExecutableFlow flow)
+        throws ExecutorManagerException {
+      super(flow, loader, null, null);
+    }
+
+    @Override
+    public void run() {
+      started.countDown();
+      try {
+        finish.await();
+      } catch (InterruptedException e) {
+      }
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.executor.MockExecutorLoader;
+
+public class JobLogUploaderTest {
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  private MockExecutorLoader loader;
+  private JobLogUploader uploader;
+
+  @Before
+  public void setUp() throws Exception {
+    loader = new MockExecutorLoader();
+    // long interval, so uploads only happen when a log is finished
+    uploader = new JobLogUploader(loader, 60 * 1000, 4);
+    uploader.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    uploader.shutdown();
+    uploader.join(10000);
+  }
+
+  @Test
+  public void testUploadsFinishedLog() throws Exception {
+    File log = temp.newFile("_job.1.job.log");
+    uploader.addLog(1, "job", 1, log);
+    FileUtils.writeStringToFile(log, "0123456789");
+
+    Assert.assertFalse(uploader.awaitUploads(1, 100));
+    uploader.finishLog(1, "job", 1);
+    Assert.assertTrue(uploader.awaitUploads(1, 10000));
+
+    Assert.assertEquals("0123456789", getLog(1, "job", 1));
+    Assert.assertEquals(0, uploader.getNumLogs());
+  }
+
+  @Test
+  public void testAwaitsOnlyTheExecution() throws Exception {
+    File first = temp.newFile("_job.1.first.log");
+    File second = temp.newFile("_job.2.second.log");
+    uploader.addLog(1, "first", 1, first);
+    uploader.addLog(2, "second", 1, second);
+    FileUtils.writeStringToFile(first, "first");
+
+    uploader.finishLog(1, "first", 1);
+    Assert.assertTrue(uploader.awaitUploads(1, 10000));
+    Assert.assertEquals("first", getLog(1, "first", 1));
+    Assert.assertEquals(1, uploader.getNumLogs());
+  }
+
+  @Test
+  public void testFollowsRolledFiles() throws Exception {
+    uploader.shutdown();
+    uploader.join(10000);
+    // uploads on every pass
+    uploader = new JobLogUploader(loader, 10, 4);
+    uploader.start();
+
+    File log = temp.newFile("_job.1.job.log");
+    uploader.addLog(1, "job", 1, log);
+    FileUtils.writeStringToFile(log, "0123456789");
+    waitForLog(1, "job", 1, 8);
+
+    // what the appender does when the file is full
+    Assert.assertTrue(log.renameTo(new File(log.getPath() + ".1")));
+    FileUtils.writeStringToFile(log, "abcdef");
+
+    uploader.finishLog(1, "job", 1);
+    Assert.assertTrue(uploader.awaitUploads(1, 10000));
+    Assert.assertEquals("0123456789abcdef", getLog(1, "job", 1));
+  }
+
+  @Test
+  public void testWaitsForFileReplacingRolledOne() throws Exception {
+    uploader.shutdown();
+    uploader.join(10000);
+    uploader = new JobLogUploader(loader, 10, 4);
+    uploader.start();
+
+    File log = temp.newFile("_job.1.job.log");
+    uploader.addLog(1, "job", 1, log);
+    FileUtils.writeStringToFile(log, "0123456789");
+    waitForLog(1, "job", 1, 8);
+
+    // the appender hasn't created the new file yet for a few passes
+    Assert.assertTrue(log.renameTo(new File(log.getPath() + ".1")));
+    Thread.sleep(100);
+    FileUtils.writeStringToFile(log, "abcdef");
+
+    uploader.finishLog(1, "job", 1);
+    Assert.assertTrue(uploader.awaitUploads(1, 10000));
+    Assert.assertEquals("0123456789abcdef", getLog(1, "job", 1));
+  }
+
+  private String getLog(int execId, String name, int attempt) {
+    byte[] log = loader.getLog(execId, name, attempt);
+    return log == null ? null : new String(log, StandardCharsets.UTF_8);
+  }
+
+  private void waitForLog(int execId, String name, int attempt, int length)
+      throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10000;
+    while (System.currentTimeMillis() < deadline) {
+      byte[] log = loader.getLog(execId, name, attempt);
+      if (log != null && log.length >= length) {
+        return;
+      }
+      Thread.sleep(10);
+    }
+    Assert.fail("Log wasn't uploaded");
+  }
+}
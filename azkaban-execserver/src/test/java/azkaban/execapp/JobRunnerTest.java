@@ -31,6 +31,7 @@ import org.junit.Test;
 
 import azkaban.event.Event;
 import azkaban.event.Event.Type;
+import azkaban.event.EventListener;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutableNode;
 import azkaban.executor.ExecutorLoader;
@@ -368,6 +369,34 @@ public class JobRunnerTest {
     }
   }
 
+  /* Test the log of a job that errors out is still finished for uploading */
+  @Test
+  public void testErrorFinishesUploadedLog() throws Exception {
+    MockExecutorLoader loader = new MockExecutorLoader();
+    JobRunner runner =
+        createJobRunner(1, "testJob", 1, false, loader,
+            new EventCollectorListener());
+    runner.addListener(new EventListener() {
+      @Override
+      public void handleEvent(Event event) {
+        if (event.getType() == Type.JOB_STARTED) {
+          throw new IllegalStateException("listener failed");
+        }
+      }
+    });
+    JobLogUploader uploader = new JobLogUploader(loader, 60 * 1000, 1024);
+    uploader.start();
+    runner.setLogUploader(uploader);
+
+    try {
+      runner.run();
+      Assert.fail("The listener error didn't get through");
+    } catch (IllegalStateException e) {
+    }
+    Assert.assertTrue(uploader.awaitUploads(1, 10 * 1000));
+    uploader.shutdown();
+  }
+
   private Props createProps(int sleepSec, boolean fail) {
     Props props = new Props();
     props.put("type", "java");
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.execapp.LogFileReader.LogRange;
+import azkaban.utils.FileIOUtils.LogData;
+
+public class LogFileReaderTest {
+  // one, two, three and four byte characters
+  private static final String LOG = "a\u00e9\u20ac\uD83D\uDE00b\u00e9\u20ac";
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testReadsWholeCharacters() throws Exception {
+    File file = createLog(LOG);
+
+    LogData data = read(file, 0, 100);
+    Assert.assertEquals(LOG, data.getData());
+    Assert.assertEquals(0, data.getOffset());
+    Assert.assertEquals(LOG.getBytes(StandardCharsets.UTF_8).length,
+        data.getLength());
+
+    // starts in the middle of the euro sign and ends in the middle of the
+    // smiley
+    data = read(file, 4, 5);
+    Assert.assertEquals("", data.getData());
+    data = read(file, 2, 7);
+    Assert.assertEquals("\u20ac", data.getData());
+    Assert.assertEquals(3, data.getOffset());
+    Assert.assertEquals(3, data.getLength());
+  }
+
+  /**
+   * Every range is trimmed to the whole characters inside it
+   */
+  @Test
+  public void testAllRanges() throws Exception {
+    File file = createLog(LOG);
+    byte[] bytes = LOG.getBytes(StandardCharsets.UTF_8);
+    int[] boundaries = new int[] { 0, 1, 3, 6, 10, 11, 13, 16 };
+    for (int offset = 0; offset < bytes.length; offset++) {
+      for (int length = 1; offset + length <= bytes.length; length++) {
+        int start = bytes.length;
+        int end = 0;
+        for (int boundary : boundaries) {
+          if (boundary >= offset) {
+            start = Math.min(start, boundary);
+          }
+          if (boundary <= offset + length) {
+            end = Math.max(end, boundary);
+          }
+        }
+        int expectedLength = Math.max(0, end - start);
+
+        LogData data = read(file, offset, length);
+        String range = offset + "+" + length;
+        Assert.assertEquals(range, start, data.getOffset());
+        Assert.assertEquals(range, expectedLength, data.getLength());
+        Assert.assertEquals(range, new String(bytes, start, expectedLength,
+            StandardCharsets.UTF_8), data.getData());
+      }
+    }
+  }
+
+  @Test
+  public void testReadPastEnd() throws Exception {
+    File file = createLog("abc");
+    LogData data = read(file, 3, 100);
+    Assert.assertEquals(3, data.getOffset());
+    Assert.assertEquals(0, data.getLength());
+    Assert.assertEquals("", data.getData());
+  }
+
+  @Test
+  public void testTransferTo() throws Exception {
+    File file = createLog(LOG);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try (LogRange range = LogFileReader.open(file, 1, 8)) {
+      range.transferTo(Channels.newChannel(out));
+      Assert.assertEquals(1, range.getOffset());
+      Assert.assertEquals(5, range.getLength());
+    }
+    Assert.assertEquals("\u00e9\u20ac",
+        new String(out.toByteArray(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  public void testWaitForData() throws Exception {
+    final File file = createLog("abc");
+    Assert.assertTrue(LogFileReader.waitForData(file, 2, 10000, () -> true));
+    Assert.assertFalse(LogFileReader.waitForData(file, 3, 100, () -> true));
+
+    long start = System.currentTimeMillis();
+    Assert.assertFalse(LogFileReader.waitForData(file, 3, 10000, () -> false));
+    Assert.assertTrue(System.currentTimeMillis() - start < 5000);
+
+    Thread writer = new Thread() {
+      @Override
+      public void run() {
+        try {
+          Thread.sleep(100);
+          FileUtils.writeStringToFile(file, "abcdef");
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+      }
+    };
+    writer.start();
+    Assert.assertTrue(LogFileReader.waitForData(file, 3, 10000, () -> true));
+    writer.join();
+  }
+
+  private File createLog(String log) throws Exception {
+    File file = temp.newFile("log");
+    FileUtils.writeStringToFile(file, log, "UTF-8");
+    return file;
+  }
+
+  private LogData read(File file, int offset, int length) throws Exception {
+    try (LogRange range = LogFileReader.open(file, offset, length)) {
+      return range.read();
+    }
+  }
+}
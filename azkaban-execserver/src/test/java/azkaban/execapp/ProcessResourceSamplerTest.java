@@ -0,0 +1,130 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import azkaban.executor.ExecutableFlow;
+import azkaban.utils.Pair;
+
+public class ProcessResourceSamplerTest {
+
+  @Test
+  public void testUsageKeepsPeakAndCpuPerProcess() throws Exception {
+    ProcessResourceSampler.Usage usage = new ProcessResourceSampler.Usage();
+    ExecutableFlow flow = new ExecutableFlow();
+    usage.applyTo(flow);
+    Assert.assertEquals(-1, flow.getPeakMemoryInMB());
+    Assert.assertEquals(-1, flow.getCpuSeconds());
+
+    // two processes at once take 3G together
+    Map<Pair<Integer, Long>, ProcessResourceSampler.ProcessStats> processes =
+        new HashMap<Pair<Integer, Long>, ProcessResourceSampler.ProcessStats>();
+    processes.put(new Pair<Integer, Long>(10, 1L), createStats(1024, 1024, 100));
+    processes.put(new Pair<Integer, Long>(11, 1L), createStats(2048, 2048, 200));
+    usage.record(processes);
+    Assert.assertEquals(3, usage.getPeakMemoryInMB() / 1024);
+
+    // a later process peaked higher on its own, and the first one kept going
+    processes.clear();
+    processes.put(new Pair<Integer, Long>(10, 1L), createStats(1024, 1024, 300));
+    processes.put(new Pair<Integer, Long>(12, 5L), createStats(512, 4096, 100));
+    usage.record(processes);
+    Assert.assertEquals(4, usage.getPeakMemoryInMB() / 1024);
+    Assert.assertEquals(6, usage.getCpuSeconds());
+
+    usage.applyTo(flow);
+    Assert.assertEquals(4096, flow.getPeakMemoryInMB());
+    Assert.assertEquals(6, flow.getCpuSeconds());
+  }
+
+  @Test
+  public void testReadStats() throws Exception {
+    Assume.assumeTrue(ProcessResourceSampler.isSupported());
+    String name = ManagementFactory.getRuntimeMXBean().getName();
+    int pid = Integer.parseInt(name.substring(0, name.indexOf('@')));
+
+    ProcessResourceSampler.ProcessStats stats =
+        ProcessResourceSampler.readStats(pid);
+    Assert.assertNotNull(stats);
+    Assert.assertTrue(stats.residentKB > 0);
+    Assert.assertTrue(stats.peakResidentKB >= stats.residentKB);
+    Assert.assertTrue(stats.startTime > 0);
+    Assert.assertNull(ProcessResourceSampler.readStats(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testReadsChildrenOfJobProcess() throws Exception {
+    Assume.assumeTrue(ProcessResourceSampler.isSupported());
+    // a command job running through a shell
+    Process process =
+        new ProcessBuilder("sh", "-c", "echo $$; sleep 5 & sleep 5 & wait")
+            .start();
+    try {
+      BufferedReader reader =
+          new BufferedReader(new InputStreamReader(process.getInputStream(),
+              StandardCharsets.UTF_8));
+      int pid = Integer.parseInt(reader.readLine().trim());
+
+      Map<Pair<Integer, Long>, ProcessResourceSampler.ProcessStats> processes =
+          null;
+      long deadline = System.currentTimeMillis() + 10000;
+      while (System.currentTimeMillis() < deadline) {
+        processes =
+            ProcessResourceSampler.readProcessTrees(
+                Collections.singletonList(pid),
+                ProcessResourceSampler.readChildren());
+        if (processes.size() == 3) {
+          break;
+        }
+        Thread.sleep(50);
+      }
+      Assert.assertEquals(3, processes.size());
+
+      // the children count on top of the shell
+      ProcessResourceSampler.ProcessStats shell =
+          ProcessResourceSampler.readStats(pid);
+      long residentKB = 0;
+      for (ProcessResourceSampler.ProcessStats stats : processes.values()) {
+        residentKB += stats.residentKB;
+      }
+      Assert.assertTrue(residentKB > shell.residentKB);
+    } finally {
+      process.destroy();
+    }
+  }
+
+  private static ProcessResourceSampler.ProcessStats createStats(
+      long residentMB, long peakResidentMB, long cpuTicks) {
+    ProcessResourceSampler.ProcessStats stats =
+        new ProcessResourceSampler.ProcessStats();
+    stats.residentKB = residentMB * 1024;
+    stats.peakResidentKB = peakResidentMB * 1024;
+    stats.cpuTicks = cpuTicks;
+    return stats;
+  }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2017 LinkedIn Corp.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package azkaban.execapp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import azkaban.project.MockProjectLoader;
+import azkaban.project.ProjectFileHandler;
+import azkaban.project.ProjectManagerException;
+import azkaban.utils.Md5Hasher;
+
+public class ProjectArtifactCacheTest {
+  private static final Logger logger = Logger
+      .getLogger(ProjectArtifactCacheTest.class);
+
+  @Rule
+  public TemporaryFolder temp = new TemporaryFolder();
+
+  @Test
+  public void testPutAndGet() throws Exception {
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(temp.newFolder("cache"), 1024);
+    byte[] md5 = md5("a".getBytes());
+    Assert.assertNull(cache.get(md5));
+
+    File tempFile = cache.createTempFile(md5);
+    FileUtils.writeStringToFile(tempFile, "a");
+    cache.put(md5, tempFile);
+    Assert.assertFalse(tempFile.exists());
+
+    File cached = cache.get(md5);
+    Assert.assertNotNull(cached);
+    Assert.assertEquals("a", FileUtils.readFileToString(cached));
+    Assert.assertEquals(1, cache.getHits());
+    Assert.assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void testEvictsLeastRecentlyUsed() throws Exception {
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(temp.newFolder("cache"), 250);
+    byte[] first = md5("1".getBytes());
+    byte[] second = md5("2".getBytes());
+    byte[] third = md5("3".getBytes());
+
+    add(cache, first, 100);
+    add(cache, second, 100);
+    // make sure the first file is the most recently used
+    cache.get(second).setLastModified(System.currentTimeMillis() - 10000);
+    add(cache, third, 100);
+
+    Assert.assertNotNull(cache.get(first));
+    Assert.assertNull(cache.get(second));
+    Assert.assertNotNull(cache.get(third));
+  }
+
+  @Test
+  public void testCleansUpTempFiles() throws Exception {
+    File cacheDir = temp.newFolder("cache");
+    ProjectArtifactCache cache = new ProjectArtifactCache(cacheDir, 1024);
+    File tempFile = cache.createTempFile(md5("a".getBytes()));
+    Assert.assertTrue(tempFile.exists());
+
+    new ProjectArtifactCache(cacheDir, 1024);
+    Assert.assertFalse(tempFile.exists());
+  }
+
+  /**
+   * The project file is downloaded once, and installed from the cache after
+   * the installed directory is gone.
+   */
+  @Test
+  public void testSetupProjectFilesFromCache() throws Exception {
+    final byte[] zip = createZip();
+    final byte[] md5 = md5(zip);
+    final AtomicInteger downloads = new AtomicInteger();
+    MockProjectLoader loader = new MockProjectLoader(temp.newFolder("loader")) {
+      @Override
+      public ProjectFileHandler fetchProjectFileInfo(int projectId,
+          int version) throws ProjectManagerException {
+        return new ProjectFileHandler(projectId, version, 0, "test", "zip",
+            "test.zip", 1, md5);
+      }
+
+      @Override
+      public InputStream getUploadedFileStream(ProjectFileHandler handler)
+          throws ProjectManagerException {
+        downloads.incrementAndGet();
+        return new ByteArrayInputStream(zip);
+      }
+    };
+
+    File projectDir = temp.newFolder("projects");
+    ProjectArtifactCache cache =
+        new ProjectArtifactCache(new File(projectDir, "_cache"), 1024 * 1024);
+
+    ProjectVersion version = new ProjectVersion(1, 1);
+    version.setupProjectFiles(loader, projectDir, cache, logger);
+    File installed = new File(projectDir, "1.1");
+    Assert.assertEquals("command",
+        FileUtils.readFileToString(new File(installed, "dir/a.job")));
+    Assert.assertEquals(1, downloads.get());
+
+    FileUtils.deleteDirectory(installed);
+    version.setupProjectFiles(loader, projectDir, cache, logger);
+    Assert.assertEquals("command",
+        FileUtils.readFileToString(new File(installed, "dir/a.job")));
+    Assert.assertEquals(1, downloads.get());
+    Assert.assertEquals(1, cache.getHits());
+  }
+
+  private static void add(ProjectArtifactCache cache, byte[] md5, int size)
+      throws Exception {
+    File tempFile = cache.createTempFile(md5);
+    FileUtils.writeByteArrayToFile(tempFile, new byte[size]);
+    cache.put(md5, tempFile);
+  }
+
+  private static byte[] createZip() throws Exception {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ZipOutputStream zip = new ZipOutputStream(bytes);
+    zip.putNextEntry(new ZipEntry("dir/"));
+    zip.closeEntry();
+    zip.putNextEntry(new ZipEntry("dir/a.job"));
+    zip.write("command".getBytes());
+    zip.closeEntry();
+    zip.close();
+    return bytes.toByteArray();
+  }
+
+  private static byte[] md5(byte[] content) {
+    MessageDigest digest = Md5Hasher.getMd5Digest();
+    digest.update(content);
+    return digest.digest();
+  }
+}
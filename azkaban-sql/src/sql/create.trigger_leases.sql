@@ -0,0 +1,6 @@
+CREATE TABLE trigger_leases (
+	shard INT NOT NULL,
+	owner VARCHAR(128),
+	lease_expire_time BIGINT NOT NULL,
+	PRIMARY KEY (shard)
+);
@@ -0,0 +1,5 @@
+CREATE TABLE trigger_owners (
+	owner VARCHAR(128) NOT NULL,
+	heartbeat_time BIGINT NOT NULL,
+	PRIMARY KEY (owner)
+);
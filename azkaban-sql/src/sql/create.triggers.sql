@@ -6,3 +6,5 @@ CREATE TABLE triggers (
 	data LONGBLOB,
 	PRIMARY KEY (trigger_id)
 );
+
+CREATE INDEX triggers_modify_time ON triggers(modify_time);
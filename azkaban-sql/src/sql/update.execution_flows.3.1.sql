@@ -0,0 +1,4 @@
+ALTER TABLE execution_flows ADD COLUMN schedule_id INT DEFAULT -1;
+CREATE INDEX ex_flows_status ON execution_flows(status);
+CREATE INDEX ex_flows_flow_status ON execution_flows(project_id, flow_id, status);
+CREATE INDEX ex_flows_submit_user ON execution_flows(submit_user);
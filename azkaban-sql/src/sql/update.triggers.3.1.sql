@@ -0,0 +1 @@
+CREATE INDEX triggers_modify_time ON triggers(modify_time);
@@ -18,11 +18,16 @@ package azkaban.webapp;
 
 import azkaban.alert.Alerter;
 import azkaban.database.AzkabanDatabaseSetup;
+import azkaban.executor.ExecutionUpdateServlet;
 import azkaban.executor.ExecutorManager;
 import azkaban.executor.JdbcExecutorLoader;
 import azkaban.jmx.JmxExecutorManager;
+import azkaban.jmx.JmxFlowCache;
 import azkaban.jmx.JmxJettyServer;
+import azkaban.jmx.JmxStartup;
+import azkaban.jmx.JmxTriggerActionRunner;
 import azkaban.jmx.JmxTriggerManager;
+import azkaban.jmx.JmxTriggerUpdateBatcher;
 import azkaban.project.JdbcProjectLoader;
 import azkaban.project.ProjectManager;
 import azkaban.scheduler.ScheduleLoader;
@@ -35,6 +40,7 @@ import azkaban.trigger.JdbcTriggerLoader;
 import azkaban.trigger.TriggerLoader;
 import azkaban.trigger.TriggerManager;
 import azkaban.trigger.TriggerManagerException;
+import azkaban.trigger.TriggerUpdateBatcher;
 import azkaban.trigger.builtin.*;
 import azkaban.user.UserManager;
 import azkaban.user.XmlUserManager;
@@ -136,6 +142,7 @@ public class AzkabanWebServer extends AzkabanServer {
 
   private MBeanServer mbeanServer;
   private ArrayList<ObjectName> registeredMBeans = new ArrayList<ObjectName>();
+  private JmxStartup startupStats;
 
   public static AzkabanWebServer getInstance() {
     return app;
@@ -756,6 +763,8 @@ public class AzkabanWebServer extends AzkabanServer {
     root.addServlet(new ServletHolder(new JMXHttpServlet()), "/jmx");
     root.addServlet(new ServletHolder(new TriggerManagerServlet()), "/triggers");
     root.addServlet(new ServletHolder(new StatsServlet()), "/stats");
+    root.addServlet(new ServletHolder(new ExecutionUpdateServlet(
+        app.getExecutorManager())), "/executionUpdates");
 
     ServletHolder restliHolder = new ServletHolder(new RestliServlet());
     restliHolder.setInitParameter("resourcePackages", "azkaban.restli");
@@ -782,6 +791,11 @@ public class AzkabanWebServer extends AzkabanServer {
       logger.warn(e);
       Utils.croak(e.getMessage(), 1);
     }
+    long servingTimeMs =
+        System.currentTimeMillis()
+            - ManagementFactory.getRuntimeMXBean().getStartTime();
+    app.startupStats.setServingTimeMs(servingTimeMs);
+    logger.info("Serving requests " + servingTimeMs + " ms after startup.");
 
     Runtime.getRuntime().addShutdownHook(new Thread() {
 
@@ -1213,10 +1227,25 @@ public class AzkabanWebServer extends AzkabanServer {
 
     registerMbean("jetty", new JmxJettyServer(server));
     registerMbean("triggerManager", new JmxTriggerManager(triggerManager));
+    registerMbean("triggerActions", new JmxTriggerActionRunner(
+        triggerManager.getActionRunner()));
+    if (triggerManager.getTriggerLoader() instanceof JdbcTriggerLoader) {
+      TriggerUpdateBatcher batcher =
+          ((JdbcTriggerLoader) triggerManager.getTriggerLoader())
+              .getUpdateBatcher();
+      if (batcher != null) {
+        registerMbean("triggerUpdates", new JmxTriggerUpdateBatcher(batcher));
+      }
+    }
     if (executorManager instanceof ExecutorManager) {
       registerMbean("executorManager", new JmxExecutorManager(
           (ExecutorManager) executorManager));
     }
+    if (projectManager.getFlowCache() != null) {
+      registerMbean("flowCache", new JmxFlowCache(projectManager.getFlowCache()));
+    }
+    startupStats = new JmxStartup(projectManager, triggerManager);
+    registerMbean("startup", startupStats);
 
     // Register Log4J loggers as JMX beans so the log level can be
     // updated via JConsole or Java VisualVM
@@ -46,14 +46,19 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 
 public class ExecutorServlet extends LoginAbstractAzkabanServlet {
   private static final long serialVersionUID = 1L;
+  // a job log request that waits for more of the log holds a jetty thread,
+  // requests past this many are answered right away
+  private static final String MAX_LOG_WAITERS = "webserver.log.max.waiters";
   private ProjectManager projectManager;
   private ExecutorManagerAdapter executorManager;
   private ScheduleManager scheduleManager;
   private ExecutorVelocityHelper velocityHelper;
   private UserManager userManager;
+  private Semaphore logWaiters;
 
   @Override
   public void init(ServletConfig config) throws ServletException {
@@ -64,6 +69,11 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
     executorManager = server.getExecutorManager();
     scheduleManager = server.getScheduleManager();
     velocityHelper = new ExecutorVelocityHelper();
+    // a quarter of the jetty threads by default
+    int jettyThreads = server.getServerProps().getInt("jetty.maxThreads", 20);
+    logWaiters =
+        new Semaphore(server.getServerProps().getInt(MAX_LOG_WAITERS,
+            Math.max(1, jettyThreads / 4)));
   }
 
   @Override
@@ -482,9 +492,20 @@ public class ExecutorServlet extends LoginAbstractAzkabanServlet {
       }
 
       int attempt = this.getIntParam(req, "attempt", node.getAttempt());
-      LogData data =
-          executorManager.getExecutionJobLog(exFlow, jobId, offset, length,
-              attempt);
+      // tailing clients ask to wait for more of the log instead of polling,
+      // unless too many requests wait already
+      long waitMs = this.getIntParam(req, "wait", 0);
+      boolean waiting = waitMs > 0 && logWaiters.tryAcquire();
+      LogData data;
+      try {
+        data =
+            executorManager.getExecutionJobLog(exFlow, jobId, offset, length,
+                attempt, waiting ? waitMs : 0);
+      } finally {
+        if (waiting) {
+          logWaiters.release();
+        }
+      }
       if (data == null) {
         ret.put("length", 0);
         ret.put("offset", offset);
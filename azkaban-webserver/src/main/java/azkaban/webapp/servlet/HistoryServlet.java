@@ -19,10 +19,16 @@ package azkaban.webapp.servlet;
 import azkaban.executor.ExecutableFlow;
 import azkaban.executor.ExecutorManagerAdapter;
 import azkaban.executor.ExecutorManagerException;
+import azkaban.executor.HistoryCursor;
 import azkaban.project.Project;
 import azkaban.project.ProjectManager;
 import azkaban.server.session.Session;
+import azkaban.user.Permission.Type;
 import azkaban.webapp.AzkabanWebServer;
+import org.apache.log4j.Logger;
+import org.codehaus.jackson.JsonEncoding;
+import org.codehaus.jackson.JsonFactory;
+import org.codehaus.jackson.JsonGenerator;
 import org.joda.time.format.DateTimeFormat;
 
 import javax.servlet.ServletConfig;
@@ -37,6 +43,11 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
 
   private static final String FILTER_BY_DATE_PATTERN = "MM/dd/yyyy hh:mm aa";
   private static final long serialVersionUID = 1L;
+  private static final Logger logger = Logger.getLogger(HistoryServlet.class);
+  private static final int DEFAULT_STREAM_PAGE_SIZE = 1000;
+  private static final int MAX_STREAM_PAGE_SIZE = 100000;
+  private static final JsonFactory jsonFactory = new JsonFactory();
+
   private ExecutorManagerAdapter executorManager;
   private ProjectManager projectManager;
   private ExecutorVMHelper vmHelper;
@@ -71,18 +82,142 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
     HashMap<String, Object> ret = new HashMap<String, Object>();
     String ajaxName = getParam(req, "ajax");
 
+    boolean streamed = false;
     if (ajaxName.equals("fetch")) {
-      fetchHistoryData(req, resp, ret);
+      streamed = fetchHistoryData(req, resp, ret);
+    } else if (ajaxName.equals("fetchJobs")) {
+      streamed = fetchJobHistoryData(req, resp, session, ret);
     }
 
-    if (ret != null) {
+    if (!streamed) {
       this.writeJSON(resp, ret);
     }
   }
 
-  private void fetchHistoryData(HttpServletRequest req,
+  /**
+   * Streams a page of executions as
+   * {"executions": [...], "next": "cursor token"}, writing each row as it is
+   * read from the database. The next token is left out on the last page.
+   *
+   * @return false if nothing was written because of an error put in ret
+   */
+  private boolean fetchHistoryData(HttpServletRequest req,
       HttpServletResponse resp, HashMap<String, Object> ret)
+      throws ServletException, IOException {
+    HistoryCursor cursor = null;
+    if (hasParam(req, "cursor")) {
+      try {
+        cursor = HistoryCursor.fromToken(getParam(req, "cursor"));
+      } catch (IllegalArgumentException e) {
+        ret.put("error", e.getMessage());
+        return false;
+      }
+    }
+    int size = getStreamPageSize(req);
+    String projContain = getParam(req, "projcontain", null);
+    String flowContain = getParam(req, "flowcontain", null);
+    String userContain = getParam(req, "usercontain", null);
+    int status = getIntParam(req, "status", 0);
+    long beginTime = getLongParam(req, "begin", -1);
+    long endTime = getLongParam(req, "end", -1);
+
+    resp.setContentType(JSON_MIME_TYPE);
+    JsonGenerator generator =
+        jsonFactory.createJsonGenerator(resp.getOutputStream(),
+            JsonEncoding.UTF8);
+    try {
+      generator.writeStartObject();
+      generator.writeArrayFieldStart("executions");
+      HistoryCursor next = null;
+      String error = null;
+      try {
+        next =
+            executorManager.writeExecutableFlows(generator, projContain,
+                flowContain, userContain, status, beginTime, endTime, cursor,
+                size);
+      } catch (ExecutorManagerException e) {
+        logger.error("Error streaming execution history", e);
+        error = e.getMessage();
+      }
+      generator.writeEndArray();
+      writeStreamEnd(generator, next, error);
+    } finally {
+      generator.close();
+    }
+    return true;
+  }
+
+  /**
+   * Streams a page of the runs of a job, the same way as fetchHistoryData.
+   */
+  private boolean fetchJobHistoryData(HttpServletRequest req,
+      HttpServletResponse resp, Session session, HashMap<String, Object> ret)
+      throws ServletException, IOException {
+    String projectName = getParam(req, "project");
+    String jobId = getParam(req, "job");
+    Project project = projectManager.getProject(projectName);
+    if (project == null) {
+      ret.put("error", "Project " + projectName + " doesn't exist.");
+      return false;
+    }
+    if (!hasPermission(project, session.getUser(), Type.READ)) {
+      ret.put("error", "Permission denied. Need READ access.");
+      return false;
+    }
+
+    HistoryCursor cursor = null;
+    if (hasParam(req, "cursor")) {
+      try {
+        cursor = HistoryCursor.fromToken(getParam(req, "cursor"));
+      } catch (IllegalArgumentException e) {
+        ret.put("error", e.getMessage());
+        return false;
+      }
+    }
+    int size = getStreamPageSize(req);
+
+    resp.setContentType(JSON_MIME_TYPE);
+    JsonGenerator generator =
+        jsonFactory.createJsonGenerator(resp.getOutputStream(),
+            JsonEncoding.UTF8);
+    try {
+      generator.writeStartObject();
+      generator.writeStringField("project", projectName);
+      generator.writeStringField("job", jobId);
+      generator.writeArrayFieldStart("runs");
+      HistoryCursor next = null;
+      String error = null;
+      try {
+        next =
+            executorManager.writeExecutableJobs(generator, project, jobId,
+                cursor, size);
+      } catch (ExecutorManagerException e) {
+        logger.error("Error streaming history of job " + jobId, e);
+        error = e.getMessage();
+      }
+      generator.writeEndArray();
+      writeStreamEnd(generator, next, error);
+    } finally {
+      generator.close();
+    }
+    return true;
+  }
+
+  private int getStreamPageSize(HttpServletRequest req)
       throws ServletException {
+    int size = getIntParam(req, "size", DEFAULT_STREAM_PAGE_SIZE);
+    return Math.max(1, Math.min(size, MAX_STREAM_PAGE_SIZE));
+  }
+
+  private void writeStreamEnd(JsonGenerator generator, HistoryCursor next,
+      String error) throws IOException {
+    if (error != null) {
+      // rows may have been written already, so the error goes at the end
+      generator.writeStringField("error", error);
+    } else if (next != null) {
+      generator.writeStringField("next", next.toToken());
+    }
+    generator.writeEndObject();
   }
 
   private void handleHistoryPage(HttpServletRequest req,
@@ -94,6 +229,10 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
     int pageSize = getIntParam(req, "size", 16);
     page.add("vmutils", vmHelper);
 
+    // Following the next link pages from the last execution of this page
+    // instead of by offset, which stays cheap however deep the page is.
+    int beforeExecId = getIntParam(req, "before", -1);
+
     if (pageNum < 0) {
       pageNum = 1;
     }
@@ -114,32 +253,54 @@ public class HistoryServlet extends LoginAbstractAzkabanServlet {
           end.equals("") ? -1 : DateTimeFormat.forPattern(FILTER_BY_DATE_PATTERN)
               .parseDateTime(end).getMillis();
       try {
-        history =
-            executorManager.getExecutableFlows(projContain, flowContain,
-                userContain, status, beginTime, endTime, (pageNum - 1)
-                    * pageSize, pageSize);
+        if (beforeExecId > 0) {
+          history =
+              executorManager.getExecutableFlowsBefore(projContain,
+                  flowContain, userContain, status, beginTime, endTime,
+                  beforeExecId, pageSize);
+        } else {
+          history =
+              executorManager.getExecutableFlows(projContain, flowContain,
+                  userContain, status, beginTime, endTime, (pageNum - 1)
+                      * pageSize, pageSize);
+        }
       } catch (ExecutorManagerException e) {
         page.add("error", e.getMessage());
       }
     } else if (hasParam(req, "search")) {
       String searchTerm = getParam(req, "searchterm");
       try {
-        history =
-            executorManager.getExecutableFlows(searchTerm, (pageNum - 1)
-                * pageSize, pageSize);
+        if (beforeExecId > 0) {
+          history =
+              executorManager.getExecutableFlowsBefore(null, searchTerm, null,
+                  0, -1, -1, beforeExecId, pageSize);
+        } else {
+          history =
+              executorManager.getExecutableFlows(searchTerm, (pageNum - 1)
+                  * pageSize, pageSize);
+        }
       } catch (ExecutorManagerException e) {
         page.add("error", e.getMessage());
       }
     } else {
       try {
-        history =
-            executorManager.getExecutableFlows((pageNum - 1) * pageSize,
-                pageSize);
+        if (beforeExecId > 0) {
+          history =
+              executorManager.getExecutableFlowsBefore(null, null, null, 0,
+                  -1, -1, beforeExecId, pageSize);
+        } else {
+          history =
+              executorManager.getExecutableFlows((pageNum - 1) * pageSize,
+                  pageSize);
+        }
       } catch (ExecutorManagerException e) {
         e.printStackTrace();
       }
     }
     page.add("flowHistory", history);
+    if (history != null && !history.isEmpty()) {
+      page.add("nextBefore", history.get(history.size() - 1).getExecutionId());
+    }
     page.add("size", pageSize);
     page.add("page", pageNum);
     // keep the search terms so that we can navigate to later pages
@@ -77,4 +77,50 @@ azkaban.JobLogModel = Backbone.Model.extend({
       });
     }
   },
+
+  // Keeps fetching the log as it's written. Each request waits on the server
+  // for more of the log, so nothing is polled while the job is quiet.
+  tail: function() {
+    var requestURL = contextURL + "/executor";
+    var offset = this.get("offset");
+    var requestData = {
+      "execid": execId,
+      "jobId": jobId,
+      "ajax":"fetchExecJobLogs",
+      "offset": offset,
+      "length": 50000,
+      "attempt": attempt,
+      "wait": 20000
+    };
+
+    var self = this;
+    var next = function(delay) {
+      setTimeout(function() {
+        self.tail();
+      }, delay);
+    };
+
+    $.ajax({
+      url: requestURL,
+      type: "get",
+      data: requestData,
+      dataType: "json",
+      error: function(data) {
+        console.log(data);
+        next(5000);
+      },
+      success: function(data) {
+        // skipped if a refresh read past the offset in the meantime
+        if (!data.error && data.length > 0 && self.get("offset") == offset) {
+          self.set("offset", data.offset + data.length);
+          self.set("logData", self.get("logData") + data.data);
+          next(0);
+        }
+        else {
+          // finished jobs answer right away, no need to ask that often
+          next(5000);
+        }
+      }
+    });
+  }
 });
@@ -61,8 +61,5 @@ $(function() {
     model: jobLogModel
   });
   jobLogView.refresh();
-
-  setInterval(function () {
-    jobLogView.refresh();
-  },5000);
+  jobLogModel.tail();
 });